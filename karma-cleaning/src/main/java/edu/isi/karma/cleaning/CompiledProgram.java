@@ -0,0 +1,731 @@
+package edu.isi.karma.cleaning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A cleaning program compiled to an expression tree that runs on the JVM. The
+ * programs are the python expressions written by Partition.toProgram and
+ * Template: constants and calls to substr, indexOf and loop joined by "+".
+ * They are evaluated with the semantics of FunctionList.py and
+ * Interpreter.py, so a compiled program returns exactly what the python
+ * interpreter returns for the same script, including the "_FATAL_ERROR_"
+ * markers, the "None" of a position that does not exist and the errors of
+ * invalid programs.
+ *
+ * A compiled program keeps no state between executions, and can be executed
+ * by several threads at the same time.
+ */
+public class CompiledProgram implements InterpreterType {
+
+	private static final String[][] TOKENS = { { "NUM", "([\\d]+)" },
+			{ "LWRD", "([a-z]+)" }, { "UWRD", "([A-Z])" }, { "BNK", "([\\s])" },
+			{ "SYB", "([^a-zA-Z0-9\\s+])" }, { "WORD", "([a-z|A-Z]+)" },
+			{ "ANY", "" }, { "START", "^" }, { "END", "$" } };
+
+	private static final int MAX_CACHED_PATTERNS = 1024;
+
+	private static final Map<String, Pattern> patterns = Collections
+			.synchronizedMap(new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+					return size() > MAX_CACHED_PATTERNS;
+				}
+			});
+
+	private final String script;
+	private final Expression expression;
+
+	private CompiledProgram(String script, Expression expression) {
+		this.script = script;
+		this.expression = expression;
+	}
+
+	/**
+	 * Compiles a program written with the tokens of the Translator.
+	 * @throws IllegalArgumentException if the script is not a program of the
+	 * cleaning language, e.g. a switch over the classes of a partition
+	 */
+	public static CompiledProgram compile(String script) {
+		String translated = translate(script);
+		return new CompiledProgram(script, new Parser(translated).parseProgram());
+	}
+
+	/**
+	 * Replaces the tokens of the script by their regular expressions, the
+	 * same way as Translator.py, that is everywhere in the script.
+	 */
+	static String translate(String script) {
+		for (String[] token : TOKENS) {
+			script = script.replace(token[0], token[1]);
+		}
+		return script;
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	@Override
+	public void func(String name, Object x) {
+	}
+
+	@Override
+	public String execute(String value) {
+		return str(expression.evaluate(value, false));
+	}
+
+	@Override
+	public String execute_debug(String value) {
+		return str(expression.evaluate(value, true));
+	}
+
+	@Override
+	public String toString() {
+		return script;
+	}
+
+	/*
+	 * Values of the expressions are String, Long or null, which is None
+	 */
+
+	private static String str(Object value) {
+		if (value == null)
+			return "None";
+		return value.toString();
+	}
+
+	private static String typeName(Object value) {
+		if (value == null)
+			return "NoneType";
+		if (value instanceof Long)
+			return "int";
+		return "str";
+	}
+
+	private static ProgramException typeError(String message) {
+		return new ProgramException("TypeError: " + message);
+	}
+
+	private static String asString(Object value, String function) {
+		if (value instanceof String)
+			return (String) value;
+		throw typeError(function + "() expected a string, got " + typeName(value));
+	}
+
+	private static long asInt(Object value, String function) {
+		if (value instanceof Long)
+			return (Long) value;
+		throw typeError(function + "() expected an integer, got " + typeName(value));
+	}
+
+	/**
+	 * Compares two values the way python 2 does: None is smaller than the
+	 * numbers, and the numbers are smaller than the strings.
+	 */
+	private static int compare(Object a, Object b) {
+		int rankA = rank(a);
+		int rankB = rank(b);
+		if (rankA != rankB)
+			return rankA < rankB ? -1 : 1;
+		if (a == null)
+			return 0;
+		if (a instanceof Long)
+			return ((Long) a).compareTo((Long) b);
+		return ((String) a).compareTo((String) b);
+	}
+
+	private static int rank(Object value) {
+		if (value == null)
+			return 0;
+		return value instanceof Long ? 1 : 2;
+	}
+
+	private static Pattern getPattern(String regex) {
+		Pattern pattern = patterns.get(regex);
+		if (pattern == null) {
+			try {
+				pattern = Pattern.compile(toJavaRegex(regex), Pattern.UNIX_LINES);
+			} catch (PatternSyntaxException e) {
+				throw new ProgramException("error: " + e.getDescription() + " in " + regex, e);
+			}
+			patterns.put(regex, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Rewrites the constructs of a python regular expression that java reads
+	 * differently: braces that are not a repetition are literals in python,
+	 * escaped letters that python does not know are the letters themselves,
+	 * and a bracket inside a class is a literal.
+	 */
+	static String toJavaRegex(String regex) {
+		StringBuilder sb = new StringBuilder(regex.length() + 8);
+		boolean inClass = false;
+		int i = 0;
+		while (i < regex.length()) {
+			char c = regex.charAt(i);
+			if (c == '\\' && i + 1 < regex.length()) {
+				i = appendEscape(regex, i + 1, inClass, sb);
+				continue;
+			}
+			if (inClass) {
+				if (c == ']') {
+					inClass = false;
+					sb.append(c);
+				} else if (c == '[' || c == '&') {
+					sb.append('\\').append(c);
+				} else {
+					sb.append(c);
+				}
+				i++;
+			} else if (c == '[') {
+				inClass = true;
+				sb.append(c);
+				i++;
+				if (i < regex.length() && regex.charAt(i) == '^') {
+					sb.append('^');
+					i++;
+				}
+				// a bracket right after the opening one is a literal
+				if (i < regex.length() && regex.charAt(i) == ']') {
+					sb.append("\\]");
+					i++;
+				}
+			} else if (c == '{') {
+				i = appendBrace(regex, i, sb);
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static int appendEscape(String regex, int i, boolean inClass, StringBuilder sb) {
+		char c = regex.charAt(i);
+		if (c == 'Z') {
+			sb.append("\\z");
+		} else if (c == 'v') {
+			sb.append("\\x0B");
+		} else if (c == 'b' && inClass) {
+			sb.append("\\x08");
+		} else if (c == '0') {
+			sb.append("\\0");
+			if (i + 1 >= regex.length() || regex.charAt(i + 1) < '0' || regex.charAt(i + 1) > '7')
+				sb.append('0');
+		} else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+			if ("dDsSwWbBAntrfax".indexOf(c) != -1)
+				sb.append('\\');
+			sb.append(c);
+		} else {
+			sb.append('\\').append(c);
+		}
+		return i + 1;
+	}
+
+	private static int appendBrace(String regex, int i, StringBuilder sb) {
+		int j = i + 1;
+		int loStart = j;
+		while (j < regex.length() && Character.isDigit(regex.charAt(j)) && regex.charAt(j) < 128)
+			j++;
+		String lo = regex.substring(loStart, j);
+		String hi = null;
+		if (j < regex.length() && regex.charAt(j) == ',') {
+			int hiStart = ++j;
+			while (j < regex.length() && Character.isDigit(regex.charAt(j)) && regex.charAt(j) < 128)
+				j++;
+			hi = regex.substring(hiStart, j);
+		}
+		if (j < regex.length() && regex.charAt(j) == '}' && j > i + 1) {
+			sb.append('{').append(lo.isEmpty() ? "0" : lo);
+			if (hi != null)
+				sb.append(',').append(hi);
+			sb.append('}');
+			return j + 1;
+		}
+		sb.append("\\{");
+		return i + 1;
+	}
+
+	/**
+	 * The errors python raises while evaluating a program.
+	 */
+	public static class ProgramException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		public ProgramException(String message) {
+			super(message);
+		}
+
+		public ProgramException(String message, Throwable cause) {
+			super(message, cause);
+		}
+	}
+
+	private interface Expression {
+		Object evaluate(String value, boolean debug);
+	}
+
+	private static class Constant implements Expression {
+		private final Object constant;
+
+		Constant(Object constant) {
+			this.constant = constant;
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			return constant;
+		}
+	}
+
+	private static class Value implements Expression {
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			return value;
+		}
+	}
+
+	private static class Negate implements Expression {
+		private final Expression operand;
+
+		Negate(Expression operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			Object x = operand.evaluate(value, debug);
+			if (!(x instanceof Long))
+				throw typeError("bad operand type for unary -: '" + typeName(x) + "'");
+			return -(Long) x;
+		}
+	}
+
+	private static class BinaryOperation implements Expression {
+		private final char operator;
+		private final Expression left;
+		private final Expression right;
+
+		BinaryOperation(char operator, Expression left, Expression right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			Object a = left.evaluate(value, debug);
+			Object b = right.evaluate(value, debug);
+			if (a instanceof Long && b instanceof Long) {
+				long x = (Long) a;
+				long y = (Long) b;
+				switch (operator) {
+				case '+':
+					return x + y;
+				case '-':
+					return x - y;
+				default:
+					return x * y;
+				}
+			}
+			if (operator == '+' && a instanceof String && b instanceof String)
+				return (String) a + (String) b;
+			if (operator == '*' && a instanceof String && b instanceof Long)
+				return repeat((String) a, (Long) b);
+			if (operator == '*' && a instanceof Long && b instanceof String)
+				return repeat((String) b, (Long) a);
+			throw typeError("unsupported operand type(s) for " + operator + ": '"
+					+ typeName(a) + "' and '" + typeName(b) + "'");
+		}
+	}
+
+	private static String repeat(String s, long times) {
+		StringBuilder sb = new StringBuilder();
+		for (long i = 0; i < times; i++)
+			sb.append(s);
+		return sb.toString();
+	}
+
+	/**
+	 * substr(str, p1, p2) of FunctionList.py
+	 */
+	private static class Substr implements Expression {
+		private final Expression string;
+		private final Expression start;
+		private final Expression end;
+
+		Substr(List<Expression> arguments) {
+			this.string = arguments.get(0);
+			this.start = arguments.get(1);
+			this.end = arguments.get(2);
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			Object s = string.evaluate(value, debug);
+			Object p1 = start.evaluate(value, debug);
+			Object p2 = end.evaluate(value, debug);
+			if ((p1 == null || compare(p1, 0L) < 0) && p2 != null)
+				return "<_2_FATAL_ERROR_>";
+			if (p1 != null && (p2 == null || compare(p2, (long) length(s)) > 0))
+				return "<_2_FATAL_ERROR_>";
+			if (p1 == null && p2 == null)
+				return "<_3_FATAL_ERROR_>";
+			if (compare(p1, p2) > 0)
+				return "<_1_FATAL_ERROR_>";
+			int from = (int) asInt(p1, "substr");
+			int to = (int) asInt(p2, "substr");
+			if (debug)
+				return "{_S}" + from + "{_C}" + to + "{_S}";
+			return asString(s, "substr").substring(from, to);
+		}
+
+		private static int length(Object s) {
+			return asString(s, "len").length();
+		}
+	}
+
+	/**
+	 * indexOf(str, lregx, rregx, cnt=0) of FunctionList.py
+	 */
+	private static class IndexOf implements Expression {
+		private final Expression string;
+		private final Expression left;
+		private final Expression right;
+		private final Expression count;
+
+		IndexOf(List<Expression> arguments) {
+			this.string = arguments.get(0);
+			this.left = arguments.get(1);
+			this.right = arguments.get(2);
+			this.count = arguments.size() > 3 ? arguments.get(3) : new Constant(0L);
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			String s = asString(string.evaluate(value, debug), "indexOf");
+			String lregx = asString(left.evaluate(value, debug), "indexOf");
+			String rregx = asString(right.evaluate(value, debug), "indexOf");
+			long cnt = asInt(count.evaluate(value, debug), "indexOf");
+
+			Matcher m = getPattern("(" + lregx + ")" + rregx).matcher(s);
+			boolean anchored = lregx.equals("^") || rregx.equals("$");
+			List<Integer> positions = new ArrayList<Integer>();
+			int tpos = 0;
+			int pre = -1;
+			while (tpos < s.length()) {
+				if (!m.find(tpos))
+					break;
+				if (m.groupCount() < 2 || anchored) {
+					tpos = m.start() + 1;
+				} else {
+					String group = m.group(2);
+					if (group == null)
+						throw typeError("object of type 'NoneType' has no len()");
+					tpos = m.start() + group.length();
+				}
+				int cpos = m.start() + m.group(1).length();
+				if (cpos > pre) {
+					positions.add(cpos);
+					pre = cpos;
+				}
+			}
+			long index = cnt > 0 ? cnt - 1 : positions.size() + cnt;
+			if (index < 0 || index >= positions.size())
+				return null;
+			return (long) positions.get((int) index);
+		}
+	}
+
+	/**
+	 * loop(value, stript) of FunctionList.py. The body is compiled once for
+	 * every value of the counter.
+	 */
+	private static class Loop implements Expression {
+		private final Expression string;
+		private final Expression body;
+		private final Map<String, Map<Long, Expression>> bodies = new ConcurrentHashMap<String, Map<Long, Expression>>();
+
+		Loop(List<Expression> arguments) {
+			this.string = arguments.get(0);
+			this.body = arguments.get(1);
+		}
+
+		@Override
+		public Object evaluate(String value, boolean debug) {
+			Object loopValue = string.evaluate(value, debug);
+			String stript = asString(body.evaluate(value, debug), "loop");
+			StringBuilder res = new StringBuilder();
+			if (stript.indexOf("counter") != -1) {
+				for (long cnt = 1;; cnt++) {
+					Object s = getBody(stript, cnt).evaluate(
+							asString(loopValue, "loop"), debug);
+					if (asString(s, "find").indexOf("_FATAL_ERROR_") != -1)
+						break;
+					res.append((String) s);
+				}
+			}
+			if (debug)
+				return "{_L}" + res + "{_L}";
+			return res.toString();
+		}
+
+		private Expression getBody(String stript, long cnt) {
+			Map<Long, Expression> compiled = bodies.get(stript);
+			if (compiled == null) {
+				compiled = new ConcurrentHashMap<Long, Expression>();
+				bodies.put(stript, compiled);
+			}
+			Expression expression = compiled.get(cnt);
+			if (expression == null) {
+				expression = new Parser(stript.replace("counter", Long.toString(cnt))).parseProgram();
+				compiled.put(cnt, expression);
+			}
+			return expression;
+		}
+	}
+
+	/**
+	 * Parses the python expressions of the cleaning programs.
+	 */
+	private static class Parser {
+		private final String source;
+		private int pos = 0;
+
+		Parser(String source) {
+			this.source = source;
+		}
+
+		Expression parseProgram() {
+			Expression expression = parseSum();
+			skipSpaces();
+			if (pos < source.length())
+				throw error("unexpected '" + source.charAt(pos) + "'");
+			return expression;
+		}
+
+		private Expression parseSum() {
+			Expression expression = parseProduct();
+			while (true) {
+				skipSpaces();
+				if (accept('+'))
+					expression = new BinaryOperation('+', expression, parseProduct());
+				else if (accept('-'))
+					expression = new BinaryOperation('-', expression, parseProduct());
+				else
+					return expression;
+			}
+		}
+
+		private Expression parseProduct() {
+			Expression expression = parseUnary();
+			while (true) {
+				skipSpaces();
+				if (accept('*'))
+					expression = new BinaryOperation('*', expression, parseUnary());
+				else
+					return expression;
+			}
+		}
+
+		private Expression parseUnary() {
+			skipSpaces();
+			if (accept('-'))
+				return new Negate(parseUnary());
+			return parsePrimary();
+		}
+
+		private Expression parsePrimary() {
+			skipSpaces();
+			if (pos >= source.length())
+				throw error("unexpected end of program");
+			char c = source.charAt(pos);
+			if (c == '(') {
+				pos++;
+				Expression expression = parseSum();
+				skipSpaces();
+				expect(')');
+				return expression;
+			}
+			if (c >= '0' && c <= '9')
+				return new Constant(parseNumber());
+			if (c == '\'' || c == '"')
+				return new Constant(parseString(false));
+			if (!Character.isLetter(c) && c != '_')
+				throw error("unexpected '" + c + "'");
+
+			int start = pos;
+			while (pos < source.length()
+					&& (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_'))
+				pos++;
+			String name = source.substring(start, pos);
+			if (pos < source.length() && (source.charAt(pos) == '\'' || source.charAt(pos) == '"')) {
+				String prefix = name.toLowerCase();
+				if (prefix.equals("r") || prefix.equals("ur"))
+					return new Constant(parseString(true));
+				if (prefix.equals("u"))
+					return new Constant(parseString(false));
+			}
+			if (name.equals("value"))
+				return new Value();
+			if (name.equals("None"))
+				return new Constant(null);
+
+			skipSpaces();
+			expect('(');
+			List<Expression> arguments = new ArrayList<Expression>();
+			skipSpaces();
+			if (!accept(')')) {
+				do {
+					arguments.add(parseSum());
+					skipSpaces();
+				} while (accept(','));
+				expect(')');
+			}
+			if (name.equals("substr") && arguments.size() == 3)
+				return new Substr(arguments);
+			if (name.equals("indexOf") && (arguments.size() == 3 || arguments.size() == 4))
+				return new IndexOf(arguments);
+			if (name.equals("loop") && arguments.size() == 2)
+				return new Loop(arguments);
+			throw error("unsupported function " + name + " with " + arguments.size() + " arguments");
+		}
+
+		private long parseNumber() {
+			int start = pos;
+			while (pos < source.length() && source.charAt(pos) >= '0' && source.charAt(pos) <= '9')
+				pos++;
+			String digits = source.substring(start, pos);
+			if (pos < source.length() && (source.charAt(pos) == 'L' || source.charAt(pos) == 'l'))
+				pos++;
+			if (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '.'))
+				throw error("unsupported number");
+			try {
+				// python 2 reads a number with a leading zero in octal
+				if (digits.length() > 1 && digits.charAt(0) == '0')
+					return Long.parseLong(digits, 8);
+				return Long.parseLong(digits);
+			} catch (NumberFormatException e) {
+				throw error("invalid number " + digits);
+			}
+		}
+
+		/**
+		 * Reads a string literal with the escapes of a python 2 string.
+		 */
+		private String parseString(boolean raw) {
+			char quote = source.charAt(pos);
+			if (source.startsWith("" + quote + quote + quote, pos))
+				throw error("unsupported triple quoted string");
+			pos++;
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				if (pos >= source.length())
+					throw error("unterminated string");
+				char c = source.charAt(pos++);
+				if (c == quote)
+					break;
+				if (c == '\n')
+					throw error("unterminated string");
+				if (c != '\\') {
+					sb.append(c);
+					continue;
+				}
+				if (pos >= source.length())
+					throw error("unterminated string");
+				char e = source.charAt(pos++);
+				if (raw) {
+					sb.append(c).append(e);
+					continue;
+				}
+				switch (e) {
+				case '\n':
+					break;
+				case '\\':
+				case '\'':
+				case '"':
+					sb.append(e);
+					break;
+				case 'a':
+					sb.append('\u0007');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'v':
+					sb.append('\u000B');
+					break;
+				case 'x':
+					if (pos + 2 > source.length() || !isHex(source.charAt(pos)) || !isHex(source.charAt(pos + 1)))
+						throw error("invalid \\x escape");
+					sb.append((char) Integer.parseInt(source.substring(pos, pos + 2), 16));
+					pos += 2;
+					break;
+				default:
+					if (e >= '0' && e <= '7') {
+						int code = e - '0';
+						for (int k = 0; k < 2 && pos < source.length()
+								&& source.charAt(pos) >= '0' && source.charAt(pos) <= '7'; k++)
+							code = code * 8 + source.charAt(pos++) - '0';
+						sb.append((char) (code & 0xFF));
+					} else {
+						sb.append(c).append(e);
+					}
+				}
+			}
+			if (pos < source.length() && (source.charAt(pos) == '\'' || source.charAt(pos) == '"'))
+				throw error("unsupported implicit concatenation of strings");
+			return sb.toString();
+		}
+
+		private static boolean isHex(char c) {
+			return Character.digit(c, 16) != -1 && c < 128;
+		}
+
+		private void skipSpaces() {
+			while (pos < source.length() && (source.charAt(pos) == ' ' || source.charAt(pos) == '\t'))
+				pos++;
+		}
+
+		private boolean accept(char c) {
+			if (pos < source.length() && source.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char c) {
+			if (!accept(c))
+				throw error("expected '" + c + "'");
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at " + pos + " in " + source);
+		}
+	}
+}
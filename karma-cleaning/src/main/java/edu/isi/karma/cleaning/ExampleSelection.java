@@ -37,6 +37,9 @@ public class ExampleSelection {
 	// testdata rowid:{tar, tarcolor}
 	public HashMap<String, HashMap<String, String[]>> testdata = new HashMap<String, HashMap<String, String[]>>();
 	public int way = 7;
+	// the first example of a session is chosen without looking at the results,
+	// as no program has been learned yet
+	public boolean firsttime = true;
 	public HashSet<String> dictionary = new HashSet<String>();
 
 	public ExampleSelection() {
@@ -187,8 +190,6 @@ public class ExampleSelection {
 	}
 
 	// only try to find the wrong ones
-	public static boolean firsttime = true;
-
 	public String way4() {
 		if (firsttime) {
 			firsttime = false;
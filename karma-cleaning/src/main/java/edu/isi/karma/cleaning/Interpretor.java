@@ -3,14 +3,26 @@ package edu.isi.karma.cleaning;
 import org.python.core.PyObject;
 import org.python.core.PyString;
 import org.python.util.PythonInterpreter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.webserver.ServletContextParameterMap;
 import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 public class Interpretor {
+	private static Logger logger = LoggerFactory.getLogger(Interpretor.class);
 	private PyObject interpreterClass;
 
 	public Interpretor() {
+	}
+
+	/**
+	 * The python interpreter is only started for the scripts that cannot be
+	 * compiled to CompiledProgram
+	 */
+	private synchronized PyObject getInterpreterClass() {
+		if (interpreterClass != null)
+			return interpreterClass;
 		PythonInterpreter interpreter = new PythonInterpreter();
 		// change the sys.path
 		String dirpathString = ServletContextParameterMap
@@ -25,16 +37,22 @@ public class Interpretor {
 		interpreter.exec("from Interpreter import *");
 		// interpreter.exec("print sys.path");
 		interpreterClass = interpreter.get("Interpreter");
+		return interpreterClass;
 	}
 
 	/**
-	 * The create method is responsible for performing the actual coercion of
-	 * the referenced python module into Java bytecode
+	 * The create method compiles the script to a program that runs on the
+	 * JVM. The scripts that use more of python than the cleaning language
+	 * are coerced from the python module into Java bytecode.
 	 */
 
 	public InterpreterType create(String scripts) {
-
-		PyObject buildingObject = interpreterClass.__call__(new PyString(
+		try {
+			return CompiledProgram.compile(scripts);
+		} catch (IllegalArgumentException e) {
+			logger.debug("Interpreting the script in python: " + e.getMessage());
+		}
+		PyObject buildingObject = getInterpreterClass().__call__(new PyString(
 				scripts));
 		InterpreterType ele = (InterpreterType) buildingObject
 				.__tojava__(InterpreterType.class);
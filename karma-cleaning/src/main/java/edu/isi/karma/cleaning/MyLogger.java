@@ -11,13 +11,15 @@ public class MyLogger {
 	public static HashMap<String, Long> timespan = new HashMap<String, Long>();
 
 	public MyLogger() {
-		if (out == null) {
-			try {
-				out = new BufferedWriter(new FileWriter(new File(
-						"./log/mylog.txt"), true));
-			} catch (Exception e) {
-				// LoggerFactory.getLogger(MyLogger.class).info(e.toString());
-				out = null;
+		synchronized (MyLogger.class) {
+			if (out == null) {
+				try {
+					out = new BufferedWriter(new FileWriter(new File(
+							"./log/mylog.txt"), true));
+				} catch (Exception e) {
+					// LoggerFactory.getLogger(MyLogger.class).info(e.toString());
+					out = null;
+				}
 			}
 		}
 	}
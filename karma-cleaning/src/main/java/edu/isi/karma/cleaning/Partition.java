@@ -18,12 +18,13 @@ public class Partition implements GrammarTreeNode {
 		return trace.size();
 	}
 
-	public Partition(Vector<Vector<TNode>> org, Vector<Vector<TNode>> tar) {
+	public Partition(Vector<Vector<TNode>> org, Vector<Vector<TNode>> tar,
+			SynthesisContext context) {
 		this.orgNodes = org;
 		this.tarNodes = tar;
 		Vector<Traces> ts = new Vector<Traces>();
 		for (int i = 0; i < orgNodes.size(); i++) {
-			Traces t = new Traces(orgNodes.get(i), tarNodes.get(i));
+			Traces t = new Traces(orgNodes.get(i), tarNodes.get(i), context);
 			ts.add(t);
 		}
 		Traces iterTraces = ts.get(0);
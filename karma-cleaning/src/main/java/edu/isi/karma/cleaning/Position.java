@@ -11,7 +11,6 @@ public class Position implements GrammarTreeNode {
 	public Vector<String> tarStrings = new Vector<String>();
 	public boolean isinloop = false;
 	public int curState = 0;
-	public static Interpretor itInterpretor = null;
 	public int fixedlength = 0;
 
 	public Position(Vector<Integer> absPos, Vector<TNode> lcxt,
@@ -20,8 +19,6 @@ public class Position implements GrammarTreeNode {
 		this.absPosition = absPos;
 		this.orgStrings.addAll(orgStrings);
 		this.tarStrings.addAll(tarStrings);
-		if (itInterpretor == null)
-			itInterpretor = new Interpretor();
 		// occurance of a reg pattern
 		this.counters.add(-1);
 		this.counters.add(1);
@@ -20,6 +20,8 @@ public class ProgSynthesis {
 	public String[] vocab = null;
 	public HashMap<String, Boolean> legalParitions = new HashMap<String, Boolean>();
 	public MyLogger logger = new MyLogger();
+	// the state of this synthesis, which is not shared with the other ones
+	public SynthesisContext context = new SynthesisContext();
 	public void inite(Vector<String[]> examples) {
 		for (int i = 0; i < examples.size(); i++) {
 			Ruler r = new Ruler();
@@ -84,7 +86,7 @@ public class ProgSynthesis {
 			Vector<Vector<TNode>> tvt = new Vector<Vector<TNode>>();
 			ovt.add(this.orgVector.get(i));
 			tvt.add(this.tarVector.get(i));
-			Partition pt = new Partition(ovt, tvt);
+			Partition pt = new Partition(ovt, tvt, context);
 			pars.add(pt);
 		}
 		return pars;
@@ -227,7 +229,7 @@ public class ProgSynthesis {
 		{
 			MyLogger.logsth(Prober.PartitionDisplay1(vp));
 		}
-		Traces.AllSegs.clear();
+		context.clear();
 		return cpr;
 	}
 
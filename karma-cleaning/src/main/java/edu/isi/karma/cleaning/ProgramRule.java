@@ -6,18 +6,17 @@ public class ProgramRule {
 	public HashMap<String, InterpreterType> rules = new HashMap<String, InterpreterType>();
 	public HashMap<String, String> strRules = new HashMap<String, String>();
 	public PartitionClassifierType pClassifier;
-	public static Interpretor itInterpretor;
+	// compiled programs keep no state, so all the syntheses share the interpretor
+	public static final Interpretor itInterpretor = new Interpretor();
 	public String signString = "";
 	public static final String IDENTITY = "substr(value,'START','END')";
 	public boolean nullRule = false;
 
 	public ProgramRule(Program prog) {
 		this.pClassifier = prog.classifier;
-		initInterpretor();
 	}
 
 	public ProgramRule(String rule) {
-		initInterpretor();
 		InterpreterType worker = itInterpretor.create(rule);
 		rules.put("attr_0", worker);
 
@@ -28,11 +27,6 @@ public class ProgramRule {
 		return s2;
 	}
 
-	public void initInterpretor() {
-		if (itInterpretor == null)
-			itInterpretor = new Interpretor();
-	}
-
 	public InterpreterType getRuleForValue(String value) {
 		String c = getClassForValue(value);
 
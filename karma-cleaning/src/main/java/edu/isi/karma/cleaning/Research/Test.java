@@ -119,14 +119,12 @@ public class Test {
 					if (entries.size() <= 1)
 						continue;
 					ExampleSelection expsel = new ExampleSelection();
-					ExampleSelection.firsttime = true;
 					expsel.inite(xHashMap, null);
 					int target = Integer.parseInt(expsel.Choose());
 					String[] mt = {
 							"<_START>" + entries.get(target)[0] + "<_END>",
 							entries.get(target)[1] };
 					examples.add(mt);
-					ExampleSelection.firsttime = false;
 					while (true) // repeat as no correct answer appears.
 					{
 						long checknumber = 1;
@@ -240,6 +238,7 @@ public class Test {
 							String[] wexp = new String[2];
 							while (true) {
 								expsel = new ExampleSelection();
+								expsel.firsttime = false;
 								expsel.inite(xHashMap, expFeData);
 								int e = Integer.parseInt(expsel.Choose());
 								// /
@@ -11,7 +11,6 @@ public class Section implements GrammarTreeNode {
 	public boolean isinloop = false;
 	public Vector<String> orgStrings = new Vector<String>();
 	public Vector<String> tarStrings = new Vector<String>();
-	public static Interpretor itInterpretor = null;
 	public static final int supermode = 1;
 
 	public Section(Position[] p, Vector<String> orgStrings,
@@ -19,8 +18,6 @@ public class Section implements GrammarTreeNode {
 		pair = p;
 		this.orgStrings = orgStrings;
 		this.tarStrings = tarStrings;
-		if (itInterpretor == null)
-			itInterpretor = new Interpretor();
 		/*
 		 * if(supermode == 0) this.createTotalOrderVector();
 		 */
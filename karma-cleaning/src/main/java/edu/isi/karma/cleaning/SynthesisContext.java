@@ -0,0 +1,26 @@
+package edu.isi.karma.cleaning;
+
+import java.util.HashMap;
+
+/**
+ * The state of one program synthesis, e.g. the examples of one user for one
+ * column. Every ProgSynthesis has its own context, which is handed to the
+ * Traces it creates, so that several syntheses can run at the same time on
+ * different threads. A context is used by one thread at a time.
+ */
+public class SynthesisContext {
+	// keep all the segment expression to prevent repeated construction
+	private final HashMap<String, Segment> allSegs = new HashMap<String, Segment>();
+
+	public Segment getSegment(String key) {
+		return allSegs.get(key);
+	}
+
+	public void putSegment(String key, Segment segment) {
+		allSegs.put(key, segment);
+	}
+
+	public void clear() {
+		allSegs.clear();
+	}
+}
@@ -10,12 +10,16 @@ public class Traces implements GrammarTreeNode {
 	public HashMap<Integer, HashMap<String, Template>> loopline = new HashMap<Integer, HashMap<String, Template>>();
 	private int curState = 0;
 	private Vector<Template> totalOrderVector = new Vector<Template>();
-	// keep all the segment expression to prevent repeated construction
-	public static HashMap<String, Segment> AllSegs = new HashMap<String, Segment>();
+	private SynthesisContext context;
 
 	public Traces(Vector<TNode> org, Vector<TNode> tar) {
+		this(org, tar, new SynthesisContext());
+	}
+
+	public Traces(Vector<TNode> org, Vector<TNode> tar, SynthesisContext context) {
 		this.orgNodes = org;
 		this.tarNodes = tar;
+		this.context = context;
 		this.createTraces();
 		createTotalOrderVector();
 	}
@@ -143,12 +147,10 @@ public class Traces implements GrammarTreeNode {
 				q = Ruler.Search(orgNodes, tmp, 0);
 			}
 			String key = UtilTools.print(this.tarNodes) + pos + cnt;
-			Segment seg;
-			if (AllSegs.containsKey(key)) {
-				seg = AllSegs.get(key);
-			} else {
+			Segment seg = context.getSegment(key);
+			if (seg == null) {
 				seg = new Segment(pos, cnt, tvec);
-				AllSegs.put(key, seg);
+				context.putSegment(key, seg);
 			}
 			segs.add(seg);
 			return segs;
@@ -172,12 +174,10 @@ public class Traces implements GrammarTreeNode {
 				}
 				// create a segment now
 				String key = UtilTools.print(this.tarNodes) + pos + (i + 1);
-				Segment s;
-				if (AllSegs.containsKey(key)) {
-					s = AllSegs.get(key);
-				} else {
+				Segment s = context.getSegment(key);
+				if (s == null) {
 					s = new Segment(pos, i + 1, corrm, orgNodes, tarNodes);
-					AllSegs.put(key, s);
+					context.putSegment(key, s);
 				}
 				if (s.section.size() > 0)
 					segs.add(s);
@@ -191,12 +191,10 @@ public class Traces implements GrammarTreeNode {
 					corrm.add(m);
 					String key = UtilTools.print(this.tarNodes)
 							+ UtilTools.print(this.orgNodes);
-					Segment s;
-					if (AllSegs.containsKey(key)) {
-						s = AllSegs.get(key);
-					} else {
+					Segment s = context.getSegment(key);
+					if (s == null) {
 						s = new Segment(pos, i + 1, corrm, orgNodes, tarNodes);
-						AllSegs.put(key, s);
+						context.putSegment(key, s);
 					}
 					if (s.section.size() > 0)
 						segs.add(s);
@@ -219,13 +217,11 @@ public class Traces implements GrammarTreeNode {
 						corrm.add(m);
 						String key = UtilTools.print(this.tarNodes) + pos
 								+ (i + 1);
-						Segment s;
-						if (AllSegs.containsKey(key)) {
-							s = AllSegs.get(key);
-						} else {
+						Segment s = context.getSegment(key);
+						if (s == null) {
 							s = new Segment(pos, i + 1, corrm, orgNodes,
 									tarNodes);
-							AllSegs.put(key, s);
+							context.putSegment(key, s);
 						}
 						if (s.section.size() > 0)
 							segs.add(s);
@@ -4,9 +4,6 @@ import java.util.*;
 import java.util.Map.Entry;
 
 public class UtilTools {
-	public static int index = 0;
-	public static Vector<String> results = new Vector<String>();
-
 	public static Vector<Integer> getStringPos(int tokenpos,
 			Vector<TNode> example) {
 		Vector<Integer> poss = new Vector<Integer>();
@@ -207,11 +204,6 @@ public class UtilTools {
 		}
 	}
 
-	public static void clearTmpVars() {
-		results.clear();
-		index = 0;
-	}
-
 	public static Vector<String> buildDict(Collection<String> data) {
 		HashMap<String, Integer> mapHashSet = new HashMap<String, Integer>();
 		for (String pair : data) {
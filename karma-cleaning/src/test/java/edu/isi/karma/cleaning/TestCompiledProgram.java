@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.cleaning;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Runs cleaning programs through CompiledProgram and compares the results
+ * with the ones of the Interpreter.py path, that is the functions of
+ * FunctionList.py run by python 2.
+ */
+public class TestCompiledProgram {
+
+	// program, value, what Interpreter.execute returns
+	private static final String[][] PROGRAMS = {
+			// the examples of testcase.py and Interpreter.py
+			{ "substr(value,indexOf(value,'START','NUM',1),12)+loop(value,\"substr(value,-11,18)\")+substr(value,12,-12)",
+					"13 Jan 2008 00:00:00 +0000", "13 Jan 2008 <_1_FATAL_ERROR_>" },
+			{ "substr(value,indexOf(value,'NUM','\\.',1),indexOf(value,'\\.','22',1))+'edu'+'/'+'images'+'/'+substr(value,indexOf(value,'ANY','NUM',-1),-12)+'/'+substr(value,indexOf(value,'START','NUM',1),-12)+substr(value,-9,-8)+substr(value,5,16)",
+					"1978.43.8_1a.jpg", "<_2_FATAL_ERROR_>edu/images/<_1_FATAL_ERROR_>/<_1_FATAL_ERROR_><_2_FATAL_ERROR_>43.8_1a.jpg" },
+			{ "substr(value,indexOf(value,\"SYB\",\"[.|\\s]+\"),indexOf(value,\"[a-z]+\",\"END\"))+substr(value,indexOf(value,\"[a-z]+\",\"SYB\"),indexOf(value,\",\",\"[.|\\s]+\"))+substr(value,indexOf(value,\"START\",\"[.]+\"),indexOf(value,\"[a-z]+\",\",\"))",
+					"1 normandie ave, Los angels", "<_3_FATAL_ERROR_><_3_FATAL_ERROR_><_3_FATAL_ERROR_>" },
+			// programs like the ones learned from the examples of TestConcurrentSynthesis
+			{ "substr(value,indexOf(value,'BNK','WORD',-1),indexOf(value,'LWRD','END',1))+', '+substr(value,indexOf(value,'START','WORD',1),indexOf(value,'LWRD','BNK',-1))",
+					"Robert Boardman Howard", "Howard, Robert Boardman" },
+			{ "substr(value,indexOf(value,'BNK','WORD',-1),indexOf(value,'LWRD','END',1))+', '+substr(value,indexOf(value,'START','WORD',1),indexOf(value,'LWRD','BNK',-1))",
+					"Pablo Picasso", "Picasso, Pablo" },
+			{ "substr(value,indexOf(value,'SYB','NUM',1),indexOf(value,'NUM','SYB',1))+'-'+substr(value,indexOf(value,'BNK','NUM',1),indexOf(value,'NUM','SYB',-1))+'-'+substr(value,indexOf(value,'SYB','NUM',-1),indexOf(value,'NUM','END',1))",
+					"(310) 448-8714", "310-448-8714" },
+			{ "substr(value,indexOf(value,'SYB','NUM',-1),indexOf(value,'NUM','END',1))+'-'+substr(value,indexOf(value,'START','NUM',1),indexOf(value,'NUM','SYB',1))+'-'+substr(value,indexOf(value,'SYB','NUM',1),indexOf(value,'NUM','SYB',-1))",
+					"7/4/1776", "1776-7-4" },
+			// loops
+			{ "loop(value,r\"substr(value,indexOf(value,'ANY','UWRD',1*counter),indexOf(value,'UWRD','ANY',1*counter))\")",
+					"A_BB_C_DD_E", "ABBCDDE" },
+			{ "loop(value,r\"substr(value,indexOf(value,'ANY','UWRD',1*counter),indexOf(value,'UWRD','ANY',1*counter))\")",
+					"K_LL_M_NN_O", "KLLMNNO" },
+			{ "loop(value,r\"substr(value,indexOf(value,'ANY','NUM',1*counter),indexOf(value,'NUM','SYB',1*counter))+'.'\")+substr(value,indexOf(value,'SYB','NUM',-1),indexOf(value,'NUM','END',1))",
+					"192-168-0-1", "192.168.0.1" },
+			{ "loop(value,r\"substr(value,indexOf(value,'SYB','WORD',1*counter),indexOf(value,'WORD','SYB',1*counter))+'|'\")",
+					",a,bc,def,", "a|bc|def|" },
+			{ "loop(value,r\"substr(value,indexOf(value,'BNK','NUM',-1*counter),indexOf(value,'NUM','BNK',-1*counter))\")",
+					" 1 22 333 ", "333221" },
+			// regular expressions with repetitions, literal braces and escapes
+			{ "substr(value,indexOf(value,'[0-9]{4}','-',1),indexOf(value,'-','[0-9]{2}',-1))",
+					"2013-12-25", "-12-" },
+			{ "substr(value,indexOf(value,'{','NUM',1),indexOf(value,'NUM','}',1))",
+					"id{42}", "42" },
+			{ "substr(value,indexOf(value,'\\{','NUM',1),indexOf(value,'NUM','\\}',1))",
+					"id{42}", "42" },
+			{ "substr(value,indexOf(value,'x{,2}','y',1),indexOf(value,'y','END',1))",
+					"axxy", "y" },
+			{ "substr(value,indexOf(value,'a{x}','NUM',1),indexOf(value,'NUM','END',1))",
+					"a{x}12", "12" },
+			{ "substr(value,indexOf(value,'\\\\.','NUM',1),indexOf(value,'NUM','\\\\-',1))",
+					"v.10-2", "10" },
+			{ "substr(value,indexOf(value,r'\\(','NUM',1),indexOf(value,'NUM',r'\\)',1))",
+					"(213) 555", "213" },
+			{ "substr(value,indexOf(value,'[\\\\s]','\\d+',1),indexOf(value,'\\d+','\\Z',1))",
+					"ab 123", "123" },
+			{ "substr(value,indexOf(value,'[]a]','NUM',1),indexOf(value,'NUM','END',1))",
+					"]1a2", "1a2" },
+			{ "substr(value,indexOf(value,'\\t','NUM',1),indexOf(value,'NUM','END',1))",
+					"a\t7", "7" },
+			// positions that do not exist, and expressions over positions
+			{ "indexOf(value,'NUM','END',1)",
+					"abc", "None" },
+			{ "indexOf(value,'LWRD','NUM',-1)",
+					"ab1cd2", "5" },
+			{ "substr(value,indexOf(value,'NUM','END',1),indexOf(value,'START','NUM',1))",
+					"abc", "<_3_FATAL_ERROR_>" },
+			{ "substr(value,0,3)+'-'+substr(value,3,99)",
+					"abcdef", "abc-<_2_FATAL_ERROR_>" },
+			{ "substr(value,indexOf(value,'LWRD','NUM',1),2)",
+					"ab1", "" },
+			{ "'a'*3+substr(value,-1+2,2*1)",
+					"xyz", "aaay" }
+	};
+
+	// program, value, what Interpreter.execute_debug returns
+	private static final String[][] DEBUG_PROGRAMS = {
+			{ "substr(value,0,3)",
+					"abcdef", "{_S}0{_C}3{_S}" },
+			{ "loop(value,r\"substr(value,indexOf(value,'START','NUM',1*counter),indexOf(value,'NUM','END',1*counter))\")",
+					"42", "{_L}{_S}0{_C}2{_S}{_L}" }
+	};
+
+	@Test
+	public void testPrograms() {
+		for (String[] program : PROGRAMS) {
+			assertEquals(program[0], program[2], CompiledProgram.compile(program[0]).execute(program[1]));
+		}
+	}
+
+	@Test
+	public void testDebugPrograms() {
+		for (String[] program : DEBUG_PROGRAMS) {
+			assertEquals(program[0], program[2], CompiledProgram.compile(program[0]).execute_debug(program[1]));
+		}
+	}
+
+	@Test
+	public void testPython2Semantics() {
+		// python 2 reads an escaped letter it does not know as the letter itself
+		assertEquals("5", CompiledProgram.compile(
+				"substr(value,indexOf(value,'\\e','NUM',1),indexOf(value,'NUM','END',1))").execute("e5"));
+		// and orders the numbers before the strings
+		assertEquals("<_1_FATAL_ERROR_>", CompiledProgram.compile("substr(value,'a',3)").execute("abc"));
+	}
+
+	@Test
+	public void testSameResultsAfterCaching() {
+		// the patterns and the loop bodies are cached by the first execution
+		CompiledProgram program = CompiledProgram.compile(PROGRAMS[7][0]);
+		assertEquals(PROGRAMS[7][2], program.execute(PROGRAMS[7][1]));
+		assertEquals(PROGRAMS[8][2], program.execute(PROGRAMS[8][1]));
+		assertEquals(PROGRAMS[7][2], program.execute(PROGRAMS[7][1]));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSwitchIsNotCompiled() {
+		CompiledProgram.compile("switch([(getClass(\"c\",value)=='attr_0',substr(value,0,1))])");
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.cleaning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Runs several program syntheses at the same time, and checks that every one
+ * of them learns the same programs, with the same results, as when it runs
+ * alone.
+ */
+public class TestConcurrentSynthesis {
+
+	private static final int NUM_THREADS = 4;
+	private static final int NUM_JOBS = 16;
+
+	// the examples of a synthesis, and values to transform with its programs
+	private static final String[][][] EXAMPLES = {
+			{ { "Ruth Asawa", "Asawa, Ruth" },
+					{ "Robert Boardman Howard", "Howard, Robert Boardman" } },
+			{ { "(213) 555-1234", "213-555-1234" } },
+			{ { "12/25/2013", "2013-12-25" } },
+			{ { "A_BB_C_DD_E", "ABBCDDE" }, { "F_GG_H_II_J", "FGGHIIJ" } } };
+	private static final String[][] VALUES = {
+			{ "J. B. Blunk", "Pablo Picasso" },
+			{ "(310) 448-8714", "(800) 123-0000" },
+			{ "01/02/1999", "7/4/1776" },
+			{ "K_LL_M_NN_O", "P_Q_R" } };
+
+	@Test
+	public void testConcurrentSynthesisMatchesSequential() throws Exception {
+		List<List<String>> expected = new ArrayList<List<String>>();
+		for (int i = 0; i < EXAMPLES.length; i++) {
+			expected.add(synthesize(i));
+		}
+		assertFalse(expected.get(0).isEmpty());
+
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+			for (int job = 0; job < NUM_JOBS; job++) {
+				final int examples = job % EXAMPLES.length;
+				futures.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() {
+						return synthesize(examples);
+					}
+				}));
+			}
+			for (int job = 0; job < NUM_JOBS; job++) {
+				assertEquals("job " + job, expected.get(job % EXAMPLES.length),
+						futures.get(job).get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the learned programs, followed by the values they transform
+	 */
+	private static List<String> synthesize(int i) {
+		Vector<String[]> examples = new Vector<String[]>();
+		for (String[] example : EXAMPLES[i]) {
+			String[] pair = { "<_START>" + example[0] + "<_END>", example[1] };
+			examples.add(pair);
+		}
+		ProgSynthesis psProgSynthesis = new ProgSynthesis();
+		psProgSynthesis.inite(examples);
+		Collection<ProgramRule> rules = psProgSynthesis.run_main();
+
+		List<String> programs = new ArrayList<String>();
+		List<String> transformed = new ArrayList<String>();
+		if (rules != null) {
+			for (ProgramRule rule : rules) {
+				programs.add(rule.toString());
+				for (String value : VALUES[i]) {
+					transformed.add(rule.getRuleForValue(value).execute(value));
+				}
+			}
+		}
+		// the rules are in a hash set of objects without a hash code
+		Collections.sort(programs);
+		Collections.sort(transformed);
+		programs.addAll(transformed);
+		return programs;
+	}
+}
@@ -102,6 +102,7 @@ public class GenerateCleaningRulesCommand extends WorksheetCommand {
 	private String getBestExample(HashMap<String, String[]> xHashMap,
 			HashMap<String, Vector<String[]>> expFeData) {
 		ExampleSelection es = new ExampleSelection();
+		es.firsttime = examples.isEmpty();
 		es.inite(xHashMap, expFeData);
 		return es.Choose();
 	}
@@ -22,12 +22,9 @@
 package edu.isi.karma.controller.update;
 
 import edu.isi.karma.rep.*;
-import edu.isi.karma.util.HTTPUtil;
 import edu.isi.karma.view.VWorksheet;
 import edu.isi.karma.view.VWorkspace;
 import edu.isi.karma.view.ViewPreferences.ViewPreference;
-import edu.isi.karma.webserver.ServletContextParameterMap;
-import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -50,7 +47,7 @@ public class WorksheetCleaningUpdate extends
 	public static int MIN_COLUMN_LENGTH = 10;
 	
 	private enum JsonKeys {
-		worksheetId, hNodeId, worksheetChartData, chartData, id, value, json, Preferred_Length
+		worksheetId, hNodeId, worksheetChartData, chartData
 	}
 	
 	public WorksheetCleaningUpdate(String worksheetId, boolean forceUpdates) {
@@ -72,62 +69,42 @@ public class WorksheetCleaningUpdate extends
 			String leafHNodeId = path.getLeaf().getId();
 			Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet.getDataTable().getNumRows()));
 			worksheet.getDataTable().collectNodes(path, nodes);
+			if (nodes.isEmpty()) {
+				logger.error("Empty values input for path" + path.toColumnNamePath());
+				continue;
+			}
 			try {
-				// Check if the column metadata doesn't contains the cleaning information
-				if (colMetadata.getColumnHistogramData(leafHNodeId) == null 
-						|| forceUpdates) {
-					// Prepare the input data for the cleaning service
-					JSONArray requestJsonArray = new JSONArray();  
-					for (Node node : nodes) {
-						JSONObject jsonRecord = new JSONObject();
-						jsonRecord.put(JsonKeys.id.name(), node.getId());
-						String originalVal = node.getValue().asString();
-						originalVal = originalVal == null ? "" : originalVal;
-						jsonRecord.put(JsonKeys.value.name(), originalVal);
-						requestJsonArray.put(jsonRecord);
-					}
-					if (requestJsonArray.length() == 0) {
-						logger.error("Empty values input for path" + path.toColumnNamePath());
-						continue;
-					}
-					String cleaningServiceURL = ServletContextParameterMap.getParameterValue(
-							ContextParameter.CLEANING_SERVICE_URL);
-					
-					Map<String, String> formParams = new HashMap<String, String>();
-					formParams.put(JsonKeys.json.name(), requestJsonArray.toString());
-					
-					String reqResponse = HTTPUtil.executeHTTPPostRequest(cleaningServiceURL, null,
-							null, formParams);
-//					
-//					logger.debug("***");
-//					logger.debug(path.getLeaf().getColumnName());
-//					logger.debug(reqResponse);
+				// Only profile the column again if its values have changed since the last profile
+				long signature = ColumnProfile.signature(nodes);
+				ColumnProfile profile = colMetadata.getColumnProfile(leafHNodeId);
+				boolean changed = profile == null || profile.getSignature() != signature
+						|| colMetadata.getColumnHistogramData(leafHNodeId) == null;
+				if (!changed && !forceUpdates)
+					continue;
+				
+				if (changed) {
 					try {
-						// Test if the output is valid JSON object. Throws exception if not.
-						JSONObject output = new JSONObject(reqResponse);
-						
-						// Add to the metadata if valid
-						colMetadata.addColumnHistogramData(leafHNodeId, output);
-	
-						// Parse the request response to populate the column metadata for the worksheet
-						int colLength = getColumnLength(path.getLeaf(), output, 
-								vWorkspace.getPreferences().getIntViewPreferenceValue(
-										ViewPreference.maxCharactersInCell));
-						colMetadata.addColumnPreferredLength(leafHNodeId, colLength);
-						
-						// Add the hNodeId to the list for which we invoked successfully
-						columnsInvoked.add(leafHNodeId);
+						profile = ColumnProfile.compute(nodes, signature);
+						colMetadata.addColumnProfile(leafHNodeId, profile);
+						colMetadata.addColumnHistogramData(leafHNodeId, profile.toJSON());
 					} catch (JSONException e) {
-						logger.error("Error occured with cleaning service for HNode: " 
+						logger.error("Error occured while profiling the values of HNode: " 
 								+ path.toColumnNamePath(), e);
 						
 						// Set to a default column word length
 						colMetadata.addColumnPreferredLength(leafHNodeId, DEFAULT_COLUMN_LENGTH);
 						continue;
-					}	
+					}
 				}
+				
+				// The maximum width of the cells can change without the values changing
+				int colLength = getColumnLength(path.getLeaf(), profile, 
+						vWorkspace.getPreferences().getIntViewPreferenceValue(
+								ViewPreference.maxCharactersInCell));
+				colMetadata.addColumnPreferredLength(leafHNodeId, colLength);
+				columnsInvoked.add(leafHNodeId);
 			} catch (Exception e) {
-				logger.error("Error while invoking cleaning service", e);
+				logger.error("Error while profiling the values of the column", e);
 			}
 		}
 		
@@ -159,9 +136,8 @@ public class WorksheetCleaningUpdate extends
 		}
 	}
 	
-	private int getColumnLength(HNode hNode, JSONObject serviceResults, int maxColumnWidth)
-			throws JSONException {
-		int colLength = serviceResults.getInt(JsonKeys.Preferred_Length.name());
+	private int getColumnLength(HNode hNode, ColumnProfile profile, int maxColumnWidth) {
+		int colLength = profile.getPreferredLength();
 		colLength = (colLength == -1 || colLength == 0) ? DEFAULT_COLUMN_LENGTH : colLength;
 		
 		// Check if it is greater that max column data length
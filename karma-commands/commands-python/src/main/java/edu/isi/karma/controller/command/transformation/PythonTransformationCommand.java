@@ -27,21 +27,22 @@ import edu.isi.karma.controller.command.worksheet.MultipleValueEditColumnCommand
 import edu.isi.karma.controller.update.UpdateContainer;
 import edu.isi.karma.controller.update.WorksheetUpdateFactory;
 import edu.isi.karma.rep.*;
+import edu.isi.karma.transformation.PythonInterpreterPool;
 import edu.isi.karma.transformation.PythonTransformationHelper;
-import edu.isi.karma.webserver.ServletContextParameterMap;
-import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.python.core.PyCode;
 import org.python.core.PyException;
 import org.python.core.PyObject;
+import org.python.core.PyString;
 import org.python.util.PythonInterpreter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 public abstract class PythonTransformationCommand extends WorksheetCommand {
 
@@ -52,6 +53,13 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 	private static Logger logger = LoggerFactory
 			.getLogger(PythonTransformationCommand.class);
 
+	// Smallest number of cells worth giving to another interpreter
+	private static final int MIN_CELLS_PER_TASK = 256;
+
+	// The globals set in the interpreter for a transformation, cleared afterwards so that
+	// the pooled interpreter does not keep the nodes and the factory of the worksheet
+	private static final String[] TRANSFORMATION_GLOBALS = { "workspaceid", "factory", "nodeid", "node" };
+
 	private enum JsonKeys {
 		row, error
 	}
@@ -87,7 +95,7 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 	}
 
 	protected void generateTransformedValues(Workspace workspace,
-			Worksheet worksheet, RepFactory f, HNode hNode,
+			Worksheet worksheet, final RepFactory f, HNode hNode,
 			JSONArray transformedRows, JSONArray errorValues, Integer limit)
 			throws JSONException {
 
@@ -100,65 +108,73 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 			logger.info("Empty PyTransform statement in "
 					+ hNode.getColumnName());
 		}
-		String transformMethodStmt = pyHelper
+		final String transformMethodStmt = pyHelper
 				.getPythonTransformMethodDefinitionState(worksheet,
 						trimmedTransformationCode);
 
 		
 		logger.debug("Executing PyTransform\n" + transformMethodStmt);
 
-		// Prepare the Python interpreter
-		PythonInterpreter interpreter = new PythonInterpreter();
-		
-		
-		interpreter.exec(pyHelper.getImportStatements());
-		importUserScripts(interpreter);
-		interpreter.exec(pyHelper.getGetValueDefStatement());
-		interpreter.exec(pyHelper.getVDefStatement());
-		interpreter.exec(transformMethodStmt);
-
-		Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet
+		List<Node> collectedNodes = new ArrayList<Node>(Math.max(1000, worksheet
 				.getDataTable().getNumRows()));
-		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), nodes);
-
-		Map<String, String> rowToValueMap = new HashMap<String, String>();
+		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), collectedNodes);
+		final List<Node> nodes = (limit != null && collectedNodes.size() > limit) ?
+				collectedNodes.subList(0, limit) : collectedNodes;
 
-		int counter = 0;
 		long starttime = System.currentTimeMillis();
-		// Go through all nodes collected for the column with given hNodeId
-		
-		interpreter.set("workspaceid", workspace.getId());
-		
-		PyCode py = interpreter.compile("transform(nodeid)");
+		// Go through all nodes collected for the column with given hNodeId,
+		// split over the interpreters of the pool when there are enough of them
+		final String workspaceId = workspace.getId();
+		final TransformedValue[] results = new TransformedValue[nodes.size()];
+		// Defines the transform method on this thread first, so that a syntax error is thrown
+		// here whether or not the cells are split over several interpreters
+		PythonInterpreterPool.getInstance().getTransformFunction(transformMethodStmt);
+		int numTasks = Math.min(PythonInterpreterPool.getNumThreads(),
+				(nodes.size() + MIN_CELLS_PER_TASK - 1) / MIN_CELLS_PER_TASK);
+		if (numTasks <= 1) {
+			transformCells(nodes, 0, nodes.size(), transformMethodStmt, workspaceId, f, results);
+		} else {
+			List<Future<?>> futures = new ArrayList<Future<?>>(numTasks);
+			int cellsPerTask = (nodes.size() + numTasks - 1) / numTasks;
+			for (int start = 0; start < nodes.size(); start += cellsPerTask) {
+				final int from = start;
+				final int to = Math.min(nodes.size(), start + cellsPerTask);
+				futures.add(PythonInterpreterPool.getExecutor().submit(new Runnable() {
+					@Override
+					public void run() {
+						transformCells(nodes, from, to, transformMethodStmt, workspaceId, f, results);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					for (Future<?> other : futures) {
+						other.cancel(true);
+					}
+					break;
+				} catch (ExecutionException e) {
+					logger.error("Error occured while transforming the values of "
+							+ hNode.getColumnName(), e.getCause());
+				}
+			}
+		}
 
 		int numRowsWithErrors = 0;
-
-		for (Node node : nodes) {
-			Row row = node.getBelongsToRow();
-
-			interpreter.set("nodeid", node.getId());
-
-			try {
-				PyObject output = interpreter.eval(py);
-				String transformedValue = pyHelper
-						.getPyObjectValueAsString(output);
-				addTransformedValue(transformedRows, row, transformedValue);
-			} catch (PyException p) {
-				logger.info("error in evaluation python, skipping one row");
-				numRowsWithErrors++;
-				// Error occured in the Python method execution
-				addTransformedValue(transformedRows, row, errorDefaultValue);
-				addError(errorValues, row, counter, p.value);
-			} catch (Exception t) {
-				// Error occured in the Python method execution
-				logger.debug(
-						"Error occured while transforming, using default value.",
-						t);
-				numRowsWithErrors++;
-				rowToValueMap.put(row.getId(), errorDefaultValue);
+		for (int i = 0; i < results.length; i++) {
+			if (results[i] == null) {
+				// The chunk of this cell failed or was cancelled before the cell was transformed
+				results[i] = new TransformedValue(errorDefaultValue, true, null);
 			}
-			if (limit != null && ++counter >= limit) {
-				break;
+			Row row = nodes.get(i).getBelongsToRow();
+			addTransformedValue(transformedRows, row, results[i].value);
+			if (results[i].failed) {
+				numRowsWithErrors++;
+				if (results[i].error != null) {
+					addError(errorValues, row, i, results[i].error);
+				}
 			}
 		}
 		if (numRowsWithErrors > 0) {
@@ -170,13 +186,56 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 				+ (System.currentTimeMillis() - starttime));
 	}
 
-	private void importUserScripts(PythonInterpreter interpreter) {
-		String dirpathString = ServletContextParameterMap
-				.getParameterValue(ContextParameter.USER_PYTHON_SCRIPTS_DIRECTORY);
-		if (dirpathString != null && dirpathString.compareTo("") != 0) {
-			interpreter.exec("import sys");
-			interpreter.exec("sys.path.append('" + dirpathString.replace('\\','/') + "')");
-			interpreter.exec("from karma.transformation import *");
+	/**
+	 * Transforms the cells from start to end with the interpreter of the calling thread.
+	 */
+	private void transformCells(List<Node> nodes, int start, int end, String transformMethodStmt,
+			String workspaceId, RepFactory f, TransformedValue[] results) {
+		PythonTransformationHelper pyHelper = new PythonTransformationHelper();
+		PythonInterpreterPool pool = PythonInterpreterPool.getInstance();
+		PythonInterpreter interpreter = pool.getInterpreter();
+		PyObject transform = pool.getTransformFunction(transformMethodStmt);
+		interpreter.set("workspaceid", workspaceId);
+		interpreter.set("factory", f);
+
+		try {
+			for (int i = start; i < end; i++) {
+				Node node = nodes.get(i);
+				String nodeId = node.getId();
+				interpreter.set("nodeid", nodeId);
+				interpreter.set("node", node);
+
+				try {
+					PyObject output = transform.__call__(new PyString(nodeId));
+					results[i] = new TransformedValue(pyHelper.getPyObjectValueAsString(output), false, null);
+				} catch (PyException p) {
+					logger.info("error in evaluation python, skipping one row");
+					// Error occured in the Python method execution
+					results[i] = new TransformedValue(errorDefaultValue, true, p.value);
+				} catch (Exception t) {
+					// Error occured in the Python method execution
+					logger.debug(
+							"Error occured while transforming, using default value.",
+							t);
+					results[i] = new TransformedValue(errorDefaultValue, true, null);
+				}
+			}
+		} finally {
+			for (String global : TRANSFORMATION_GLOBALS) {
+				interpreter.set(global, null);
+			}
+		}
+	}
+
+	private static class TransformedValue {
+		private final String value;
+		private final boolean failed;
+		private final PyObject error;
+
+		private TransformedValue(String value, boolean failed, PyObject error) {
+			this.value = value;
+			this.failed = failed;
+			this.error = error;
 		}
 	}
 
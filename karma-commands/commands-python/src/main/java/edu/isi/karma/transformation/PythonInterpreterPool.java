@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.transformation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.core.PyCode;
+import org.python.core.PyObject;
+import org.python.util.PythonInterpreter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.webserver.ServletContextParameterMap;
+import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
+
+/**
+ * Python interpreters for the PyTransforms. Every thread gets its own
+ * interpreter, in which the import statements, the user scripts and the
+ * getValue functions have already been executed, and keeps it for the next
+ * transformations. The transform methods are compiled once for all the
+ * interpreters, and defined once in every interpreter.
+ *
+ * The interpreters do not share their globals, so the threads of the executor
+ * can each run the transform method over a part of the cells of a column.
+ */
+public class PythonInterpreterPool {
+
+	private static Logger logger = LoggerFactory.getLogger(PythonInterpreterPool.class);
+
+	private static final int MAX_CACHED_TRANSFORMS = 256;
+
+	private static final PythonInterpreterPool instance = new PythonInterpreterPool();
+
+	private static final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "python-transformation-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	private final Map<String, PyCode> compiledTransforms = Collections.synchronizedMap(
+			new LinkedHashMap<String, PyCode>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PyCode> eldest) {
+					return size() > MAX_CACHED_TRANSFORMS;
+				}
+			});
+
+	private final ThreadLocal<WarmInterpreter> interpreters = new ThreadLocal<WarmInterpreter>();
+
+	private PythonInterpreterPool() {
+	}
+
+	public static PythonInterpreterPool getInstance() {
+		return instance;
+	}
+
+	public static ExecutorService getExecutor() {
+		return executor;
+	}
+
+	public static int getNumThreads() {
+		return Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @return the interpreter of the calling thread, ready to define transform methods
+	 */
+	public PythonInterpreter getInterpreter() {
+		return getWarmInterpreter().interpreter;
+	}
+
+	/**
+	 * Returns the transform function defined by the statement in the interpreter of the calling thread.
+	 * @param transformMethodStmt the definition of the method, as returned by
+	 * PythonTransformationHelper.getPythonTransformMethodDefinitionState
+	 */
+	public PyObject getTransformFunction(String transformMethodStmt) {
+		WarmInterpreter warm = getWarmInterpreter();
+		PyObject function = warm.transforms.get(transformMethodStmt);
+		if (function == null) {
+			PyCode code = compiledTransforms.get(transformMethodStmt);
+			if (code == null) {
+				code = warm.interpreter.compile(transformMethodStmt);
+				compiledTransforms.put(transformMethodStmt, code);
+			}
+			// The function keeps its code after another transform method is defined with the same name
+			warm.interpreter.exec(code);
+			function = warm.interpreter.get("transform");
+			warm.transforms.put(transformMethodStmt, function);
+		}
+		return function;
+	}
+
+	private WarmInterpreter getWarmInterpreter() {
+		String userScriptsDirectory = ServletContextParameterMap
+				.getParameterValue(ContextParameter.USER_PYTHON_SCRIPTS_DIRECTORY);
+		WarmInterpreter warm = interpreters.get();
+		if (warm == null || !sameDirectory(warm.userScriptsDirectory, userScriptsDirectory)) {
+			warm = new WarmInterpreter(userScriptsDirectory);
+			interpreters.set(warm);
+		}
+		return warm;
+	}
+
+	private static boolean sameDirectory(String d1, String d2) {
+		return d1 == null ? d2 == null : d1.equals(d2);
+	}
+
+	private static class WarmInterpreter {
+		private final PythonInterpreter interpreter;
+		private final String userScriptsDirectory;
+		private final Map<String, PyObject> transforms = new LinkedHashMap<String, PyObject>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PyObject> eldest) {
+				return size() > MAX_CACHED_TRANSFORMS;
+			}
+		};
+
+		private WarmInterpreter(String userScriptsDirectory) {
+			long start = System.currentTimeMillis();
+			PythonTransformationHelper pyHelper = new PythonTransformationHelper();
+			this.userScriptsDirectory = userScriptsDirectory;
+			this.interpreter = new PythonInterpreter();
+			interpreter.exec(pyHelper.getImportStatements());
+			if (userScriptsDirectory != null && userScriptsDirectory.compareTo("") != 0) {
+				interpreter.exec("import sys");
+				interpreter.exec("sys.path.append('" + userScriptsDirectory.replace('\\','/') + "')");
+				interpreter.exec("from karma.transformation import *");
+			}
+			interpreter.exec(pyHelper.getGetValueDefStatement());
+			interpreter.exec(pyHelper.getVDefStatement());
+			logger.debug("Python interpreter for " + Thread.currentThread().getName() + " started in "
+					+ (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+}
@@ -67,9 +67,8 @@ public class PythonTransformationHelper {
 
 	public String getGetValueDefStatement() {
 		StringBuilder methodStmt = new StringBuilder();
+		// node and factory are set in the interpreter for every cell, instead of looking up the node by id
 		methodStmt.append("def getValue(columnName):\n");
-		methodStmt.append("	factory = edu.isi.karma.rep.WorkspaceManager.getInstance().getWorkspace(workspaceid).getFactory()\n");
-		methodStmt.append("	node = factory.getNode(nodeid)\n");
 		methodStmt.append("	targetNode = node.getNeighborByColumnName(columnName, factory)\n");
 		methodStmt.append("	if targetNode is not None:\n");
 		methodStmt.append("		value = targetNode.getValue()\n");
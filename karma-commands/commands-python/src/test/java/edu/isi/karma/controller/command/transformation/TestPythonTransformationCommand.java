@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.controller.command.transformation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Test;
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.util.PythonInterpreter;
+
+import edu.isi.karma.controller.command.worksheet.MultipleValueEditColumnCommandFactory;
+import edu.isi.karma.controller.update.UpdateContainer;
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+import edu.isi.karma.transformation.PythonInterpreterPool;
+
+public class TestPythonTransformationCommand {
+
+	// More cells than one interpreter gets, so that the column is split over the pool
+	private static final int NUM_ROWS = 2000;
+
+	private static final String ERROR_VALUE = "error";
+
+	private static final String TRANSFORMATION_CODE = "x = int(getValue(\"value\"))\n"
+			+ "if x % 7 == 0:\n"
+			+ "\traise ValueError(\"multiple of 7\")\n"
+			+ "return str(x * 2)";
+
+	private final Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+	private final RepFactory factory = workspace.getFactory();
+
+	@Test
+	public void testValuesInRowOrder() throws JSONException {
+		Worksheet ws = worksheet(NUM_ROWS);
+		JSONArray transformedRows = new JSONArray();
+		JSONArray errorValues = new JSONArray();
+		transform(ws, TRANSFORMATION_CODE, transformedRows, errorValues);
+
+		List<Row> rows = ws.getDataTable().getRows(0, NUM_ROWS);
+		assertEquals(NUM_ROWS, transformedRows.length());
+		int numErrors = 0;
+		for (int i = 0; i < NUM_ROWS; i++) {
+			assertEquals(rows.get(i).getId(), transformedRows.getJSONObject(i)
+					.getString(MultipleValueEditColumnCommandFactory.Arguments.rowID.name()));
+			String value = transformedRows.getJSONObject(i)
+					.getString(MultipleValueEditColumnCommandFactory.Arguments.value.name());
+			if (i % 7 == 0) {
+				assertEquals(ERROR_VALUE, value);
+				assertEquals(i, errorValues.getJSONObject(numErrors++).getInt("row"));
+			} else {
+				assertEquals(Integer.toString(i * 2), value);
+			}
+		}
+		assertEquals(numErrors, errorValues.length());
+	}
+
+	@Test
+	public void testGlobalsCleared() throws JSONException {
+		transform(worksheet(10), TRANSFORMATION_CODE, new JSONArray(), new JSONArray());
+		// A column this small is transformed by the interpreter of this thread
+		PythonInterpreter interpreter = PythonInterpreterPool.getInstance().getInterpreter();
+		assertEquals(Py.None, interpreter.get("node"));
+		assertEquals(Py.None, interpreter.get("factory"));
+		assertEquals(Py.None, interpreter.get("nodeid"));
+		assertEquals(Py.None, interpreter.get("workspaceid"));
+	}
+
+	@Test(expected = PyException.class)
+	public void testSyntaxErrorInSplitColumn() throws JSONException {
+		transform(worksheet(NUM_ROWS), "return (", new JSONArray(), new JSONArray());
+	}
+
+	private Worksheet worksheet(int numRows) {
+		Worksheet ws = factory.createWorksheet("python", workspace, "UTF-8");
+		HNode value = ws.getHeaders().addHNode("value", ws, factory);
+		for (int i = 0; i < numRows; i++) {
+			Row row = ws.getDataTable().addRow(factory);
+			row.setValue(value.getId(), Integer.toString(i), factory);
+		}
+		return ws;
+	}
+
+	private void transform(Worksheet ws, String code, JSONArray transformedRows, JSONArray errorValues)
+			throws JSONException {
+		HNode hNode = ws.getHeaders().getHNodeFromColumnName("value");
+		PythonTransformationCommand command = new PythonTransformationCommand("c1", code, ws.getId(),
+				hNode.getId(), ERROR_VALUE) {
+			@Override
+			public UpdateContainer doIt(Workspace workspace) {
+				return null;
+			}
+		};
+		command.generateTransformedValues(workspace, ws, factory, hNode, transformedRows, errorValues, null);
+	}
+}
@@ -2,7 +2,9 @@ package edu.isi.karma.controller.command.worksheet;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 
 import org.json.JSONArray;
@@ -183,26 +185,37 @@ public class AddValuesCommand extends WorksheetCommand{
 		}
 		Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet.getDataTable().getNumRows()));
 		worksheet.getDataTable().collectNodes(selectedPath, nodes);	
+		// Index the values by row id, so that every node only looks at the values of its row
+		Map<String, List<JSONObject>> valuesByRowId = new HashMap<String, List<JSONObject>>();
+		for (int i = 0; i < array.length(); i++) {
+			if (array.get(i) instanceof JSONObject) {
+				JSONObject obj = (JSONObject)array.get(i);
+				String rowId = obj.getString("rowId");
+				List<JSONObject> rowValues = valuesByRowId.get(rowId);
+				if (rowValues == null) {
+					rowValues = new ArrayList<JSONObject>();
+					valuesByRowId.put(rowId, rowValues);
+				}
+				rowValues.add(obj);
+			}
+		}
 		for (Node node : nodes) {
-			for (int i = 0; i < array.length(); i++) {
-				if (array.get(i) instanceof JSONObject) {
-					JSONObject obj = (JSONObject)array.get(i);
-					if (node.getBelongsToRow().getId().compareTo(obj.getString("rowId")) == 0) {
-						Object t = obj.get("values");
-						if (t instanceof String) {
-							String value = (String)t;
-							addValues(node, value, factory);
-						}
-						else if (t instanceof JSONObject) {
-							addJSONObjectValues((JSONObject)t, worksheet, worksheet.getHeaders(), factory, node.getBelongsToRow(), newHNodeId);
-						}
-						else if (t instanceof JSONArray) {
-							addJSONArrayValues((JSONArray)t, worksheet, worksheet.getHeaders(), factory, node.getBelongsToRow(), newHNodeId);
-						}
-					}
+			List<JSONObject> rowValues = valuesByRowId.get(node.getBelongsToRow().getId());
+			if (rowValues == null)
+				continue;
+			for (JSONObject obj : rowValues) {
+				Object t = obj.get("values");
+				if (t instanceof String) {
+					String value = (String)t;
+					addValues(node, value, factory);
+				}
+				else if (t instanceof JSONObject) {
+					addJSONObjectValues((JSONObject)t, worksheet, worksheet.getHeaders(), factory, node.getBelongsToRow(), newHNodeId);
+				}
+				else if (t instanceof JSONArray) {
+					addJSONArrayValues((JSONArray)t, worksheet, worksheet.getHeaders(), factory, node.getBelongsToRow(), newHNodeId);
 				}
 			}
-			
 		}
 	}
 
@@ -94,7 +94,6 @@ public class FoldCommand extends WorksheetCommand {
 		//System.out.println("HNodeID: " + htable.getHNodeIdFromColumnName("homeworks"));
 		//HNodeIds.add(htable.getHNodeIdFromColumnName("homeworks"));
 		ArrayList<Row> rows = worksheet.getDataTable().getRows(0, worksheet.getDataTable().getNumRows());
-		//HashValueManager.getHashValue(rows.get(0), HNodeIds);
 		//hnodes.add(htable.getHNode("HN5"));
 		//hnodes.add(htable.getHNode("HN7"));
 		JSONArray array = new JSONArray();
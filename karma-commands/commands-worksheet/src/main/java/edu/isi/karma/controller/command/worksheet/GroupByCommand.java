@@ -1,6 +1,7 @@
 package edu.isi.karma.controller.command.worksheet;
 
 
+import java.io.IOException;
 import java.util.*;
 
 import org.json.JSONArray;
@@ -98,11 +99,11 @@ public class GroupByCommand extends WorksheetCommand {
 		}
 
 		Worksheet newws = null;
-		if (ht == oldws.getHeaders())
-			newws = groupByTopLevel(oldws, workspace, hnodeIDs, keyhnodes, valuehnodes, factory);
-		else
-			groupByNestedTable(oldws, workspace, ht, hnodeIDs, keyhnodes, valuehnodes, factory);
 		try{
+			if (ht == oldws.getHeaders())
+				newws = groupByTopLevel(oldws, workspace, hnodeIDs, keyhnodes, valuehnodes, factory);
+			else
+				groupByNestedTable(oldws, workspace, ht, hnodeIDs, keyhnodes, valuehnodes, factory);
 			UpdateContainer c =  new UpdateContainer();
 			c.add(new WorksheetListUpdate());
 			c.append(WorksheetUpdateFactory.createRegenerateWorksheetUpdates(oldws.getId()));
@@ -131,42 +132,38 @@ public class GroupByCommand extends WorksheetCommand {
 		return newHNodeId;
 	}
 
-	private Worksheet groupByTopLevel(Worksheet oldws, Workspace workspace, List<String> hnodeIDs, List<HNode> keyhnodes, List<HNode> valuehnodes, RepFactory factory) {
-		Worksheet newws = factory.createWorksheet("GroupBy: " + oldws.getTitle(), workspace, oldws.getEncoding());
-		HTable newht =  newws.getHeaders();
+	Worksheet groupByTopLevel(final Worksheet oldws, Workspace workspace, List<String> hnodeIDs, final List<HNode> keyhnodes, final List<HNode> valuehnodes, final RepFactory factory) throws IOException {
+		final Worksheet newws = factory.createWorksheet("GroupBy: " + oldws.getTitle(), workspace, oldws.getEncoding());
+		final HTable newht =  newws.getHeaders();
 		ArrayList<Row> rows = oldws.getDataTable().getRows(0, oldws.getDataTable().getNumRows());
 		HTable oldht =  oldws.getHeaders();
-		Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-		for (Row row : rows) {
-			String hashValue = HashValueManager.getHashValue(row, hnodeIDs);
-			ArrayList<String> ids = hash.get(hashValue);
-			if (ids == null)
-				ids = new ArrayList<String>();
-			ids.add(row.getId());
-			hash.put(hashValue, ids);
-			//System.out.println("Hash: " + HashValueManager.getHashValue(row, hnodeIDs));
-		}	
-		//HTable newKeyTable = newht.getHNodeFromColumnName("Keys").addNestedTable("Table for keys", newws, factory);
-		//newValueTable.addHNode("Values", newws, factory);
-		//HTable newValueNestedTable = newValueTable.getHNodeFromColumnName("Values").addNestedTable("Table for nested values", newws, factory);
-		CloneTableUtils.cloneHTable(oldht, newht, newws, factory, keyhnodes);
-		newht.addHNode("Values", newws, factory);
-		HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", newws, factory);
-		CloneTableUtils.cloneHTable(oldht, newValueTable, newws, factory, valuehnodes);
-		for (String key : hash.keySet()) {
-			//System.out.println("key: " + hash.get(key));
-			ArrayList<String> r = hash.get(key);
-			Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), newws.getDataTable(), oldws.getHeaders(), newht, keyhnodes, factory);
-			for (String rowid : r) {
-				Row cur = CloneTableUtils.getRow(rows, rowid);
-				Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
-				CloneTableUtils.cloneDataTable(cur, dataTable, oldws.getHeaders(), newValueTable, valuehnodes, factory);
-			}
+		RowGrouper grouper = new RowGrouper(hnodeIDs);
+		try {
+			grouper.addAll(rows);
+			//HTable newKeyTable = newht.getHNodeFromColumnName("Keys").addNestedTable("Table for keys", newws, factory);
+			//newValueTable.addHNode("Values", newws, factory);
+			//HTable newValueNestedTable = newValueTable.getHNodeFromColumnName("Values").addNestedTable("Table for nested values", newws, factory);
+			CloneTableUtils.cloneHTable(oldht, newht, newws, factory, keyhnodes);
+			newht.addHNode("Values", newws, factory);
+			final HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", newws, factory);
+			CloneTableUtils.cloneHTable(oldht, newValueTable, newws, factory, valuehnodes);
+			grouper.forEachGroup(new RowGrouper.GroupHandler() {
+				@Override
+				public void handleGroup(List<Row> r) {
+					Row lastRow = CloneTableUtils.cloneDataTable(r.get(0), newws.getDataTable(), oldws.getHeaders(), newht, keyhnodes, factory);
+					Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
+					for (Row cur : r) {
+						CloneTableUtils.cloneDataTable(cur, dataTable, oldws.getHeaders(), newValueTable, valuehnodes, factory);
+					}
+				}
+			});
+		} finally {
+			grouper.close();
 		}
 		return newws;
 	}
 
-	private void groupByNestedTable(Worksheet oldws, Workspace workspace, HTable ht, List<String> hnodeIDs, List<HNode> keyhnodes, List<HNode> valuehnodes, RepFactory factory) {
+	private void groupByNestedTable(Worksheet oldws, Workspace workspace, final HTable ht, List<String> hnodeIDs, final List<HNode> keyhnodes, final List<HNode> valuehnodes, final RepFactory factory) throws IOException {
 		HTable parentHT = ht.getParentHNode().getHTable(factory);
 		List<Table> parentTables = new ArrayList<Table>();
 		CloneTableUtils.getDatatable(oldws.getDataTable(), parentHT,parentTables);
@@ -176,13 +173,13 @@ public class GroupByCommand extends WorksheetCommand {
 				parentRows.add(row);
 			}
 		}
-		HNode newNode = parentHT.addHNode(parentHT.getNewColumnName("GroupBy"), oldws, factory);
-		HTable newht = newNode.addNestedTable(newNode.getColumnName(), oldws, factory);
+		final HNode newNode = parentHT.addHNode(parentHT.getNewColumnName("GroupBy"), oldws, factory);
+		final HTable newht = newNode.addNestedTable(newNode.getColumnName(), oldws, factory);
 		CloneTableUtils.cloneHTable(ht, newht, oldws, factory, keyhnodes);
 		newht.addHNode("Values", oldws, factory);
-		HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", oldws, factory);
+		final HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", oldws, factory);
 		CloneTableUtils.cloneHTable(ht, newValueTable, oldws, factory, valuehnodes);
-		for (Row parentRow : parentRows) {
+		for (final Row parentRow : parentRows) {
 			Table t = null;
 			for (Node node : parentRow.getNodes()) {
 				if (node.getNestedTable().getHTableId().compareTo(ht.getId()) == 0) {
@@ -190,27 +187,22 @@ public class GroupByCommand extends WorksheetCommand {
 					break;
 				}	
 			}
-			ArrayList<Row> rows = t.getRows(0, t.getNumRows());
-			Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-			for (Row row : rows) {
-				String hashValue = HashValueManager.getHashValue(row, hnodeIDs);
-				ArrayList<String> ids = hash.get(hashValue);
-				if (ids == null)
-					ids = new ArrayList<String>();
-				ids.add(row.getId());
-				hash.put(hashValue, ids);
-			}	
-			
-			for (String key : hash.keySet()) {
-				//System.out.println("key: " + hash.get(key));
-				ArrayList<String> r = hash.get(key);
-				Node node = parentRow.getNeighbor(newNode.getId());
-				Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), node.getNestedTable(), ht, newht, keyhnodes, factory);
-				for (String rowid : r) {
-					Row cur = CloneTableUtils.getRow(rows, rowid);
-					Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
-					CloneTableUtils.cloneDataTable(cur, dataTable, ht, newValueTable, valuehnodes, factory);
-				}
+			RowGrouper grouper = new RowGrouper(hnodeIDs);
+			try {
+				grouper.addAll(t.getRows(0, t.getNumRows()));
+				grouper.forEachGroup(new RowGrouper.GroupHandler() {
+					@Override
+					public void handleGroup(List<Row> r) {
+						Node node = parentRow.getNeighbor(newNode.getId());
+						Row lastRow = CloneTableUtils.cloneDataTable(r.get(0), node.getNestedTable(), ht, newht, keyhnodes, factory);
+						Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
+						for (Row cur : r) {
+							CloneTableUtils.cloneDataTable(cur, dataTable, ht, newValueTable, valuehnodes, factory);
+						}
+					}
+				});
+			} finally {
+				grouper.close();
 			}
 		}
 	}
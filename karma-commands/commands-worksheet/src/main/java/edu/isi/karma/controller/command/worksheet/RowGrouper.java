@@ -0,0 +1,360 @@
+package edu.isi.karma.controller.command.worksheet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.Node;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Table;
+import edu.isi.karma.util.Fingerprint;
+
+/**
+ * Groups the rows of a table by the values of some of their columns, for the
+ * GroupBy and Unfold commands. A row is represented by a 64 bit fingerprint of
+ * the values of the columns; the value of a column with a nested table is the
+ * fingerprint of the set of its nested rows, so the order of the nested rows
+ * does not matter. Rows with the same fingerprint are only grouped together
+ * when their values are the same, so a collision of fingerprints does not
+ * merge groups. The groups keep the positions of their rows, so no row has
+ * to be looked up by id.
+ *
+ * A grouper belongs to one execution of a command. When there are more groups
+ * than fit in memory, the fingerprints and positions of the rows are written
+ * to partition files on disk, and the groups are built one partition at a time.
+ */
+public class RowGrouper {
+
+	private static Logger logger = LoggerFactory.getLogger(RowGrouper.class);
+
+	public static final int DEFAULT_MAX_GROUPS_IN_MEMORY = 1 << 20;
+	private static final int PARTITION_BITS = 6;
+
+	public interface GroupHandler {
+		/**
+		 * @param rows the rows of a group, in the order they were added
+		 */
+		public void handleGroup(List<Row> rows);
+	}
+
+	private final List<String> hNodeIds;
+	private final int maxGroupsInMemory;
+	private final List<Row> rows = new ArrayList<Row>();
+	private Map<Long, RowPositions> groups = new LinkedHashMap<Long, RowPositions>();
+	private File[] partitionFiles;
+	private DataOutputStream[] partitions;
+
+	public RowGrouper(List<String> hNodeIds) {
+		this(hNodeIds, DEFAULT_MAX_GROUPS_IN_MEMORY);
+	}
+
+	public RowGrouper(List<String> hNodeIds, int maxGroupsInMemory) {
+		this.hNodeIds = hNodeIds;
+		this.maxGroupsInMemory = maxGroupsInMemory;
+	}
+
+	public void add(Row row) throws IOException {
+		int position = rows.size();
+		rows.add(row);
+		long fingerprint = fingerprint(row);
+		if (partitions == null) {
+			RowPositions group = findGroup(groups, fingerprint, row);
+			if (group != null) {
+				group.add(position);
+				return;
+			}
+			if (groups.size() < maxGroupsInMemory) {
+				addGroup(groups, fingerprint, position);
+				return;
+			}
+			spill();
+		}
+		write(fingerprint, position);
+	}
+
+	public void addAll(List<Row> rows) throws IOException {
+		for (Row row : rows)
+			add(row);
+	}
+
+	/**
+	 * Calls the handler once for every group. The groups that are in memory come in the order
+	 * of their first row; the groups that were spilled to disk come one partition at a time.
+	 */
+	public void forEachGroup(GroupHandler handler) throws IOException {
+		if (partitions == null) {
+			handleGroups(groups, handler);
+			return;
+		}
+
+		for (DataOutputStream partition : partitions)
+			partition.close();
+		for (int i = 0; i < partitionFiles.length; i++) {
+			Map<Long, RowPositions> partitionGroups = new LinkedHashMap<Long, RowPositions>();
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partitionFiles[i])));
+			try {
+				while (true) {
+					long fingerprint;
+					try {
+						fingerprint = in.readLong();
+					} catch (EOFException e) {
+						break;
+					}
+					int position = in.readInt();
+					RowPositions group = findGroup(partitionGroups, fingerprint, rows.get(position));
+					if (group != null)
+						group.add(position);
+					else
+						addGroup(partitionGroups, fingerprint, position);
+				}
+			} finally {
+				in.close();
+			}
+			handleGroups(partitionGroups, handler);
+			deletePartition(i);
+		}
+		partitions = null;
+		partitionFiles = null;
+		groups = new LinkedHashMap<Long, RowPositions>();
+	}
+
+	/**
+	 * Deletes the partition files, if the groups were spilled to disk and not all of them have been handled.
+	 */
+	public void close() {
+		if (partitions == null)
+			return;
+		for (int i = 0; i < partitions.length; i++) {
+			try {
+				partitions[i].close();
+			} catch (IOException e) {
+				logger.error("Error closing the partition file " + partitionFiles[i], e);
+			}
+			deletePartition(i);
+		}
+		partitions = null;
+		partitionFiles = null;
+	}
+
+	private void spill() throws IOException {
+		int numPartitions = 1 << PARTITION_BITS;
+		logger.info("More than " + maxGroupsInMemory + " groups, spilling them to " + numPartitions + " partition files");
+		partitionFiles = new File[numPartitions];
+		partitions = new DataOutputStream[numPartitions];
+		for (int i = 0; i < numPartitions; i++) {
+			partitionFiles[i] = File.createTempFile("karma-groups-", ".bin");
+			partitions[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partitionFiles[i])));
+		}
+		for (Map.Entry<Long, RowPositions> entry : groups.entrySet()) {
+			for (RowPositions group = entry.getValue(); group != null; group = group.next) {
+				for (int i = 0; i < group.size; i++)
+					write(entry.getKey(), group.positions[i]);
+			}
+		}
+		groups = null;
+	}
+
+	/**
+	 * @return the group with the given fingerprint whose rows have the same values as the row, null if there is none
+	 */
+	private RowPositions findGroup(Map<Long, RowPositions> groups, long fingerprint, Row row) {
+		for (RowPositions group = groups.get(fingerprint); group != null; group = group.next) {
+			if (sameValues(rows.get(group.positions[0]), row, hNodeIds))
+				return group;
+		}
+		return null;
+	}
+
+	private void addGroup(Map<Long, RowPositions> groups, long fingerprint, int position) {
+		RowPositions group = new RowPositions();
+		group.add(position);
+		RowPositions last = groups.get(fingerprint);
+		if (last == null) {
+			groups.put(fingerprint, group);
+			return;
+		}
+		while (last.next != null)
+			last = last.next;
+		last.next = group;
+	}
+
+	private void handleGroups(Map<Long, RowPositions> groups, GroupHandler handler) {
+		for (RowPositions first : groups.values()) {
+			for (RowPositions group = first; group != null; group = group.next)
+				handler.handleGroup(group.getRows(rows));
+		}
+	}
+
+	private void write(long fingerprint, int position) throws IOException {
+		DataOutputStream partition = partitions[(int) (fingerprint >>> (64 - PARTITION_BITS))];
+		partition.writeLong(fingerprint);
+		partition.writeInt(position);
+	}
+
+	private void deletePartition(int i) {
+		if (partitionFiles[i] != null && partitionFiles[i].exists() && !partitionFiles[i].delete())
+			logger.error("Unable to delete the partition file " + partitionFiles[i]);
+		partitionFiles[i] = null;
+	}
+
+	/**
+	 * Computes the fingerprint of the values of the grouped columns of a row.
+	 */
+	protected long fingerprint(Row row) {
+		return fingerprint(row, hNodeIds);
+	}
+
+	/**
+	 * Computes the fingerprint of the values of the given columns of a row.
+	 */
+	public static long fingerprint(Row row, List<String> hNodeIds) {
+		long h = Fingerprint.of("");
+		for (String hNodeId : hNodeIds)
+			h = combine(h, row.getNode(hNodeId));
+		return mix(h);
+	}
+
+	/**
+	 * Continues a fingerprint with the value of a node, or with the sum of the fingerprints of the
+	 * rows of its nested table. Values that get the same fingerprint are told apart by sameValues.
+	 */
+	private static long combine(long h, Node node) {
+		if (node == null)
+			return Fingerprint.combine(h, "");
+		if (node.hasNestedTable()) {
+			List<Row> nestedRows = nestedRows(node);
+			List<String> ids = columnIds(nestedRows);
+			long sum = 0;
+			for (Row nestedRow : nestedRows)
+				sum += fingerprint(nestedRow, ids);
+			return Fingerprint.combine(h, Long.toHexString(sum));
+		}
+		return Fingerprint.combine(h, value(node));
+	}
+
+	/**
+	 * Tells if the given columns of two rows have the same values. The values of two columns with
+	 * nested tables are the same if their nested rows are the same, in any order.
+	 */
+	public static boolean sameValues(Row row1, Row row2, List<String> hNodeIds) {
+		for (String hNodeId : hNodeIds) {
+			if (!sameValues(row1.getNode(hNodeId), row2.getNode(hNodeId)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean sameValues(Node node1, Node node2) {
+		if (node1 == null || node2 == null)
+			return node1 == node2;
+		if (node1.hasNestedTable() != node2.hasNestedTable())
+			return false;
+		if (!node1.hasNestedTable())
+			return value(node1).equals(value(node2));
+
+		List<Row> nestedRows1 = nestedRows(node1);
+		List<Row> nestedRows2 = nestedRows(node2);
+		if (nestedRows1.size() != nestedRows2.size())
+			return false;
+		if (nestedRows1.isEmpty())
+			return true;
+		List<String> ids = columnIds(nestedRows1);
+		if (!ids.equals(columnIds(nestedRows2)))
+			return false;
+		// Every nested row of the first node is matched with a different nested row of the second one
+		Map<Long, List<Row>> unmatched = new HashMap<Long, List<Row>>();
+		for (Row nestedRow : nestedRows2) {
+			long fingerprint = fingerprint(nestedRow, ids);
+			List<Row> sameFingerprint = unmatched.get(fingerprint);
+			if (sameFingerprint == null) {
+				sameFingerprint = new LinkedList<Row>();
+				unmatched.put(fingerprint, sameFingerprint);
+			}
+			sameFingerprint.add(nestedRow);
+		}
+		for (Row nestedRow : nestedRows1) {
+			List<Row> sameFingerprint = unmatched.get(fingerprint(nestedRow, ids));
+			if (sameFingerprint == null || !removeSameValues(sameFingerprint, nestedRow, ids))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean removeSameValues(List<Row> rows, Row row, List<String> hNodeIds) {
+		for (int i = 0; i < rows.size(); i++) {
+			if (sameValues(rows.get(i), row, hNodeIds)) {
+				rows.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Row> nestedRows(Node node) {
+		Table nestedTable = node.getNestedTable();
+		return nestedTable.getRows(0, nestedTable.getNumRows());
+	}
+
+	/**
+	 * @return the sorted ids of the columns of the rows of a nested table, so that the fingerprints
+	 * do not depend on the order of the nodes in the rows
+	 */
+	private static List<String> columnIds(List<Row> nestedRows) {
+		if (nestedRows.isEmpty())
+			return Collections.emptyList();
+		List<String> ids = new ArrayList<String>(nestedRows.get(0).getNodesMap().keySet());
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static String value(Node node) {
+		String value = node.getValue().asString();
+		return value == null ? "" : value;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static final class RowPositions {
+		private int[] positions = new int[2];
+		private int size = 0;
+		// The next group whose rows have the same fingerprint but other values
+		private RowPositions next;
+
+		void add(int position) {
+			if (size == positions.length)
+				positions = Arrays.copyOf(positions, size * 2);
+			positions[size++] = position;
+		}
+
+		List<Row> getRows(List<Row> rows) {
+			List<Row> groupRows = new ArrayList<Row>(size);
+			for (int i = 0; i < size; i++)
+				groupRows.add(rows.get(positions[i]));
+			return groupRows;
+		}
+	}
+}
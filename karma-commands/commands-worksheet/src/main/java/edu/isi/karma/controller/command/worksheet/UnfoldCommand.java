@@ -1,5 +1,6 @@
 package edu.isi.karma.controller.command.worksheet;
 
+import java.io.IOException;
 import java.util.*;
 
 import org.json.JSONArray;
@@ -88,9 +89,7 @@ public class UnfoldCommand extends WorksheetCommand {
 				worksheetId);
 		Worksheet newws = null;
 		HTable ht = CloneTableUtils.getHTable(oldws.getHeaders(), keyHNodeid);
-		if (ht == oldws.getHeaders())
-			newws = unfoldTopLevel(oldws, keyHNodeid, valueHNodeid, workspace, factory);
-		else {
+		if (ht != oldws.getHeaders()) {
 			try {
 			unfoldNestedLevel(oldws, ht, keyHNodeid, valueHNodeid, factory);
 			}catch(Exception e) {
@@ -98,6 +97,8 @@ public class UnfoldCommand extends WorksheetCommand {
 			}
 		}
 		try{
+			if (ht == oldws.getHeaders())
+				newws = unfoldTopLevel(oldws, keyHNodeid, valueHNodeid, workspace, factory);
 			UpdateContainer c =  new UpdateContainer();
 			c.add(new WorksheetListUpdate());
 			c.append(WorksheetUpdateFactory.createRegenerateWorksheetUpdates(oldws.getId()));
@@ -117,9 +118,9 @@ public class UnfoldCommand extends WorksheetCommand {
 		// TODO Auto-generated method stub
 		return null;
 	}
-	private void unfoldNestedLevel(Worksheet oldws, HTable ht, String keyHNodeid, String valueHNodeid, RepFactory factory) {
+	private void unfoldNestedLevel(Worksheet oldws, HTable ht, String keyHNodeid, String valueHNodeid, final RepFactory factory) throws IOException {
 		ArrayList<HNode> topHNodes = new ArrayList<HNode>(ht.getHNodes());
-		HTable parentHT = ht.getParentHNode().getHTable(factory);
+		final HTable parentHT = ht.getParentHNode().getHTable(factory);
 		List<Table> parentTables = new ArrayList<Table>();
 		CloneTableUtils.getDatatable(oldws.getDataTable(), parentHT,parentTables);
 		ArrayList<Row> parentRows = new ArrayList<Row>();
@@ -129,11 +130,11 @@ public class UnfoldCommand extends WorksheetCommand {
 			}
 		}
 		//ArrayList<Row> parentRows = parentTable.getRows(0, parentTable.getNumRows());
-		HNode newNode = parentHT.addHNode("Unfold: " + ht.getHNode(keyHNodeid).getColumnName(), oldws, factory);
-		HTable newHT = newNode.addNestedTable("Unfold: " + ht.getHNode(keyHNodeid).getColumnName(), oldws, factory);
-		HNode key = ht.getHNode(keyHNodeid);
-		HNode value = ht.getHNode(valueHNodeid);
-		List<HNode> hnodes = new ArrayList<HNode>();
+		final HNode newNode = parentHT.addHNode("Unfold: " + ht.getHNode(keyHNodeid).getColumnName(), oldws, factory);
+		final HTable newHT = newNode.addNestedTable("Unfold: " + ht.getHNode(keyHNodeid).getColumnName(), oldws, factory);
+		final HNode key = ht.getHNode(keyHNodeid);
+		final HNode value = ht.getHNode(valueHNodeid);
+		final List<HNode> hnodes = new ArrayList<HNode>();
 		List<String> hnodeIds = new ArrayList<String>();
 		for (HNode h : topHNodes) {
 			if (h.getId().compareTo(value.getId()) != 0 && h.getId().compareTo(key.getId()) != 0) {
@@ -142,7 +143,7 @@ public class UnfoldCommand extends WorksheetCommand {
 			}
 		}
 		CloneTableUtils.cloneHTable(ht, newHT, oldws, factory, hnodes);
-		for (Row parentRow: parentRows) {
+		for (final Row parentRow: parentRows) {
 			Table t = null;
 			for (Node node : parentRow.getNodes()) {
 				if (node.hasNestedTable() && node.getNestedTable().getHTableId().compareTo(ht.getId()) == 0) {
@@ -150,61 +151,55 @@ public class UnfoldCommand extends WorksheetCommand {
 					break;
 				}	
 			}
-			Map<String, String> keyMapping = new HashMap<String, String>();
-			Map<String, String> HNodeidMapping = new HashMap<String, String>();
+			Set<String> keyValues = new LinkedHashSet<String>();
+			final Map<String, String> HNodeidMapping = new HashMap<String, String>();
 			ArrayList<Row> rows = t.getRows(0, t.getNumRows());
 			for (Row row : rows) {
-				Node n = row.getNode(key.getId());
-				keyMapping.put(HashValueManager.getHashValue(oldws, n.getId()), n.getValue().asString());
+				keyValues.add(row.getNode(key.getId()).getValue().asString());
 			}
-			for (String mapkey : keyMapping.keySet()) {
-				HNode hn = newHT.getHNodeFromColumnName(keyMapping.get(mapkey).toLowerCase().replace('/', '_'));
+			for (String keyValue : keyValues) {
+				HNode hn = newHT.getHNodeFromColumnName(keyValue.toLowerCase().replace('/', '_'));
 				if (hn == null) {
-					HNode n = newHT.addHNode(keyMapping.get(mapkey).toLowerCase().replace('/', '_'), oldws, factory);
+					HNode n = newHT.addHNode(keyValue.toLowerCase().replace('/', '_'), oldws, factory);
 					HTable htt = n.addNestedTable("values", oldws, factory);
 					htt.addHNode("Values", oldws, factory);
-					HNodeidMapping.put(keyMapping.get(mapkey), n.getId());
+					HNodeidMapping.put(keyValue, n.getId());
 				}
 				else
-					HNodeidMapping.put(keyMapping.get(mapkey), hn.getId());
+					HNodeidMapping.put(keyValue, hn.getId());
 			}
-			Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-			for (Row row : rows) {
-				String hashValue = HashValueManager.getHashValue(row, hnodeIds);
-				ArrayList<String> ids = hash.get(hashValue);
-				if (ids == null)
-					ids = new ArrayList<String>();
-				ids.add(row.getId());
-				hash.put(hashValue, ids);
-				//System.out.println("Hash: " + HashValueManager.getHashValue(row, hnodeIDs));
-			}
-
-			for (String hashKey : hash.keySet()) {
-				ArrayList<String> r = hash.get(hashKey);
-				Node node = parentRow.getNeighbor(newNode.getId());
-				Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(t.getRows(0, t.getNumRows()), r.get(0)), node.getNestedTable(), parentHT, newHT, hnodes, factory);
-				for (String rowid : r) {
-					Row cur = CloneTableUtils.getRow(rows, rowid);
-					String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
-					Node newnode = lastRow.getNode(newId);
-					Node oldnode = cur.getNode(value.getId());
-					System.out.println("values: " + oldnode.getValue().asString());
-					Row tmprow = newnode.getNestedTable().addRow(factory);
-					tmprow.getNeighborByColumnName("Values", factory).setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
-					//newnode.setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
-				}
+			RowGrouper grouper = new RowGrouper(hnodeIds);
+			try {
+				grouper.addAll(rows);
+				grouper.forEachGroup(new RowGrouper.GroupHandler() {
+					@Override
+					public void handleGroup(List<Row> r) {
+						Node node = parentRow.getNeighbor(newNode.getId());
+						Row lastRow = CloneTableUtils.cloneDataTable(r.get(0), node.getNestedTable(), parentHT, newHT, hnodes, factory);
+						for (Row cur : r) {
+							String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
+							Node newnode = lastRow.getNode(newId);
+							Node oldnode = cur.getNode(value.getId());
+							Row tmprow = newnode.getNestedTable().addRow(factory);
+							tmprow.getNeighborByColumnName("Values", factory).setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
+							//newnode.setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
+						}
+					}
+				});
+			} finally {
+				grouper.close();
 			}
 		}
 
 
 	}
-	private Worksheet unfoldTopLevel(Worksheet oldws, String keyHNodeid, String valueHNodeid, Workspace workspace, RepFactory factory) {
-		Worksheet newws = factory.createWorksheet("Unfold: " + oldws.getTitle(), workspace, oldws.getEncoding());
+	Worksheet unfoldTopLevel(final Worksheet oldws, String keyHNodeid, String valueHNodeid, Workspace workspace, final RepFactory factory) throws IOException {
+		final Worksheet newws = factory.createWorksheet("Unfold: " + oldws.getTitle(), workspace, oldws.getEncoding());
 		ArrayList<HNode> topHNodes = new ArrayList<HNode>(oldws.getHeaders().getHNodes());
 		ArrayList<Row> rows = oldws.getDataTable().getRows(0, oldws.getDataTable().getNumRows());
-		HNode key = oldws.getHeaders().getHNode(keyHNodeid);
-		HNode value = oldws.getHeaders().getHNode(valueHNodeid);
-		List<HNode> hnodes = new ArrayList<HNode>();
+		final HNode key = oldws.getHeaders().getHNode(keyHNodeid);
+		final HNode value = oldws.getHeaders().getHNode(valueHNodeid);
+		final List<HNode> hnodes = new ArrayList<HNode>();
 		List<String> hnodeIds = new ArrayList<String>();
 		for (HNode h : topHNodes) {
 			if (h.getId().compareTo(value.getId()) != 0 && h.getId().compareTo(key.getId()) != 0) {
@@ -213,42 +208,37 @@ public class UnfoldCommand extends WorksheetCommand {
 			}
 		}
 		CloneTableUtils.cloneHTable(oldws.getHeaders(), newws.getHeaders(), newws, factory, hnodes);
-		Map<String, String> keyMapping = new HashMap<String, String>();
-		Map<String, String> HNodeidMapping = new HashMap<String, String>();
+		Set<String> keyValues = new LinkedHashSet<String>();
+		final Map<String, String> HNodeidMapping = new HashMap<String, String>();
 		for (Row row : rows) {
-			Node n = row.getNode(key.getId());
-			keyMapping.put(HashValueManager.getHashValue(oldws, n.getId()), n.getValue().asString());
+			keyValues.add(row.getNode(key.getId()).getValue().asString());
 		}
-		for (String mapkey : keyMapping.keySet()) {
-			HNode n = newws.getHeaders().addHNode(keyMapping.get(mapkey), newws, factory);
+		for (String keyValue : keyValues) {
+			HNode n = newws.getHeaders().addHNode(keyValue, newws, factory);
 			HTable ht = n.addNestedTable("values", newws, factory);
 			ht.addHNode("Values", newws, factory);
-			HNodeidMapping.put(keyMapping.get(mapkey), n.getId());
+			HNodeidMapping.put(keyValue, n.getId());
 		}
 
-		Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-		for (Row row : rows) {
-			String hashValue = HashValueManager.getHashValue(row, hnodeIds);
-			ArrayList<String> ids = hash.get(hashValue);
-			if (ids == null)
-				ids = new ArrayList<String>();
-			ids.add(row.getId());
-			hash.put(hashValue, ids);
-			//System.out.println("Hash: " + HashValueManager.getHashValue(row, hnodeIDs));
-		}
-
-		for (String hashKey : hash.keySet()) {
-			ArrayList<String> r = hash.get(hashKey);
-			Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), newws.getDataTable(), oldws.getHeaders(), newws.getHeaders(), hnodes, factory);
-			for (String rowid : r) {
-				Row cur = CloneTableUtils.getRow(rows, rowid);
-				String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
-				Node newnode = lastRow.getNode(newId);
-				Node oldnode = cur.getNode(value.getId());
-				Row tmprow = newnode.getNestedTable().addRow(factory);
-				tmprow.getNeighborByColumnName("Values", factory).setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
-				//newnode.setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
-			}
+		RowGrouper grouper = new RowGrouper(hnodeIds);
+		try {
+			grouper.addAll(rows);
+			grouper.forEachGroup(new RowGrouper.GroupHandler() {
+				@Override
+				public void handleGroup(List<Row> r) {
+					Row lastRow = CloneTableUtils.cloneDataTable(r.get(0), newws.getDataTable(), oldws.getHeaders(), newws.getHeaders(), hnodes, factory);
+					for (Row cur : r) {
+						String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
+						Node newnode = lastRow.getNode(newId);
+						Node oldnode = cur.getNode(value.getId());
+						Row tmprow = newnode.getNestedTable().addRow(factory);
+						tmprow.getNeighborByColumnName("Values", factory).setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
+						//newnode.setValue(oldnode.getValue().asString(), oldnode.getStatus(), factory);
+					}
+				}
+			});
+		} finally {
+			grouper.close();
 		}
 		return newws;
 	}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.controller.command.worksheet;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.Node;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Table;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+public class TestRowGrouper {
+
+	private static final int NUM_ROWS = 5000;
+	private static final int NUM_GROUPS = 500;
+	private static final int MAX_GROUPS_IN_MEMORY = 50;
+
+	private final Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+	private final RepFactory factory = workspace.getFactory();
+
+	@Test
+	public void testGroupsInOrderOfFirstRow() throws IOException {
+		Worksheet ws = worksheet("city", "name");
+		addRows(ws, "LA", "a", "NY", "b", "LA", "c", "SF", "d", "NY", "e");
+		List<String> ids = Arrays.asList(hNodeId(ws, "city"));
+		assertEquals(Arrays.asList("[a, c]", "[b, e]", "[d]"), groups(new RowGrouper(ids), ws, "name"));
+	}
+
+	@Test
+	public void testSpilledGroups() throws IOException {
+		Worksheet ws = worksheet("key", "name");
+		for (int i = 0; i < 200; i++)
+			addRows(ws, "k" + (i % 50), "n" + i);
+		List<String> ids = Arrays.asList(hNodeId(ws, "key"));
+		List<String> inMemory = groups(new RowGrouper(ids), ws, "name");
+		List<String> spilled = groups(new RowGrouper(ids, 2), ws, "name");
+		assertEquals(50, inMemory.size());
+		// The spilled groups come one partition at a time, with their rows in order
+		assertEquals(new HashSet<String>(inMemory), new HashSet<String>(spilled));
+		assertEquals(inMemory.size(), spilled.size());
+	}
+
+	@Test
+	public void testCollidingFingerprints() throws IOException {
+		Worksheet ws = worksheet("city", "name");
+		addRows(ws, "LA", "a", "NY", "b", "LA", "c", "SF", "d", "NY", "e");
+		List<String> ids = Arrays.asList(hNodeId(ws, "city"));
+		assertEquals(Arrays.asList("[a, c]", "[b, e]", "[d]"), groups(collidingGrouper(ids, RowGrouper.DEFAULT_MAX_GROUPS_IN_MEMORY), ws, "name"));
+		assertEquals(Arrays.asList("[a, c]", "[b, e]", "[d]"), groups(collidingGrouper(ids, 1), ws, "name"));
+	}
+
+	@Test
+	public void testNestedTables() throws IOException {
+		Worksheet ws = factory.createWorksheet("nested", workspace, "UTF-8");
+		HNode items = ws.getHeaders().addHNode("items", ws, factory);
+		HTable itemsTable = items.addNestedTable("Table for items", ws, factory);
+		HNode a = itemsTable.addHNode("a", ws, factory);
+		HNode b = itemsTable.addHNode("b", ws, factory);
+		HNode name = ws.getHeaders().addHNode("name", ws, factory);
+		String[][][] values = {
+				{ { "1", "x" }, { "2", "y" } },
+				{ { "2", "y" }, { "1", "x" } },
+				{ { "1", "x" }, { "2", "z" } },
+				{ { "1", "x" }, { "1", "x" }, { "2", "y" } },
+				{ { "1", "x" }, { "2", "y" } },
+		};
+		for (int i = 0; i < values.length; i++) {
+			Row row = ws.getDataTable().addRow(factory);
+			row.setValue(name.getId(), "r" + i, factory);
+			for (String[] nestedValues : values[i]) {
+				Row nestedRow = row.addNestedRow(items.getId(), factory);
+				nestedRow.setValue(a.getId(), nestedValues[0], factory);
+				nestedRow.setValue(b.getId(), nestedValues[1], factory);
+			}
+		}
+		List<String> ids = Arrays.asList(items.getId());
+		// The order of the nested rows does not matter, their number does
+		List<String> expected = Arrays.asList("[r0, r1, r4]", "[r2]", "[r3]");
+		assertEquals(expected, groups(new RowGrouper(ids), ws, "name"));
+		assertEquals(expected, groups(collidingGrouper(ids, RowGrouper.DEFAULT_MAX_GROUPS_IN_MEMORY), ws, "name"));
+	}
+
+	@Test
+	public void testGroupBy() throws IOException {
+		Worksheet ws = worksheet("city", "name", "age");
+		addRows(ws, "LA", "a", "1", "NY", "b", "2", "LA", "c", "3");
+		HTable ht = ws.getHeaders();
+		GroupByCommand command = new GroupByCommand("c1", ws.getId(), ht.getId(), hNodeId(ws, "city"));
+		List<HNode> keyhnodes = new ArrayList<HNode>(Arrays.asList(ht.getHNodeFromColumnName("city")));
+		List<HNode> valuehnodes = new ArrayList<HNode>(Arrays.asList(ht.getHNodeFromColumnName("name"), ht.getHNodeFromColumnName("age")));
+		Worksheet newws = command.groupByTopLevel(ws, workspace, Arrays.asList(hNodeId(ws, "city")), keyhnodes, valuehnodes, factory);
+
+		List<Row> rows = rows(newws.getDataTable());
+		assertEquals(2, rows.size());
+		assertEquals("LA", value(rows.get(0), "city"));
+		assertEquals("NY", value(rows.get(1), "city"));
+		List<Row> values = rows(rows.get(0).getNeighborByColumnName("Values", factory).getNestedTable());
+		assertEquals(2, values.size());
+		assertEquals("a", value(values.get(0), "name"));
+		assertEquals("1", value(values.get(0), "age"));
+		assertEquals("c", value(values.get(1), "name"));
+		assertEquals("3", value(values.get(1), "age"));
+		values = rows(rows.get(1).getNeighborByColumnName("Values", factory).getNestedTable());
+		assertEquals(1, values.size());
+		assertEquals("b", value(values.get(0), "name"));
+	}
+
+	@Test
+	public void testUnfold() throws IOException {
+		Worksheet ws = worksheet("id", "key", "value");
+		addRows(ws, "1", "color", "red", "1", "size", "L", "2", "color", "blue", "1", "color", "green");
+		UnfoldCommand command = new UnfoldCommand("c1", ws.getId(), ws.getHeaders().getId(), hNodeId(ws, "key"));
+		Worksheet newws = command.unfoldTopLevel(ws, hNodeId(ws, "key"), hNodeId(ws, "value"), workspace, factory);
+
+		List<Row> rows = rows(newws.getDataTable());
+		assertEquals(2, rows.size());
+		assertEquals("1", value(rows.get(0), "id"));
+		assertEquals(Arrays.asList("red", "green"), unfolded(rows.get(0), "color"));
+		assertEquals(Arrays.asList("L"), unfolded(rows.get(0), "size"));
+		assertEquals("2", value(rows.get(1), "id"));
+		assertEquals(Arrays.asList("blue"), unfolded(rows.get(1), "color"));
+		assertEquals(Collections.<String>emptyList(), unfolded(rows.get(1), "size"));
+	}
+
+	@Test
+	public void testManySpilledRows() throws IOException {
+		factory.setColumnarStorage(true);
+		Worksheet ws = worksheet("key", "name");
+		final String keyId = hNodeId(ws, "key");
+		String nameId = hNodeId(ws, "name");
+		Table dataTable = ws.getDataTable();
+		for (int i = 0; i < NUM_ROWS; i++) {
+			Row row = dataTable.addRow(factory);
+			row.setValue(keyId, "k" + (i % NUM_GROUPS), factory);
+			row.setValue(nameId, "n" + i, factory);
+		}
+		List<Row> rows = rows(dataTable);
+
+		final int[] counts = new int[2];
+		final List<String> keys = new ArrayList<String>();
+		RowGrouper grouper = new RowGrouper(Arrays.asList(keyId), MAX_GROUPS_IN_MEMORY);
+		try {
+			grouper.addAll(rows);
+			grouper.forEachGroup(new RowGrouper.GroupHandler() {
+				@Override
+				public void handleGroup(List<Row> r) {
+					counts[0]++;
+					counts[1] += r.size();
+					assertEquals(NUM_ROWS / NUM_GROUPS, r.size());
+					String key = r.get(0).getNode(keyId).getValue().asString();
+					for (Row row : r)
+						assertEquals(key, row.getNode(keyId).getValue().asString());
+					keys.add(key);
+				}
+			});
+		} finally {
+			grouper.close();
+		}
+		assertEquals(NUM_GROUPS, counts[0]);
+		assertEquals(NUM_ROWS, counts[1]);
+		assertEquals(NUM_GROUPS, new HashSet<String>(keys).size());
+	}
+
+	private static RowGrouper collidingGrouper(List<String> hNodeIds, int maxGroupsInMemory) {
+		return new RowGrouper(hNodeIds, maxGroupsInMemory) {
+			@Override
+			protected long fingerprint(Row row) {
+				return 42;
+			}
+		};
+	}
+
+	private Worksheet worksheet(String... columnNames) {
+		Worksheet ws = factory.createWorksheet("test", workspace, "UTF-8");
+		for (String columnName : columnNames)
+			ws.getHeaders().addHNode(columnName, ws, factory);
+		return ws;
+	}
+
+	/**
+	 * Adds rows with the given values, one value per column in the order of the columns.
+	 */
+	private void addRows(Worksheet ws, String... values) {
+		List<String> ids = ws.getHeaders().getOrderedNodeIds();
+		for (int i = 0; i < values.length; i += ids.size()) {
+			Row row = ws.getDataTable().addRow(factory);
+			for (int j = 0; j < ids.size(); j++)
+				row.setValue(ids.get(j), values[i + j], factory);
+		}
+	}
+
+	private static String hNodeId(Worksheet ws, String columnName) {
+		return ws.getHeaders().getHNodeFromColumnName(columnName).getId();
+	}
+
+	private static List<Row> rows(Table table) {
+		return table.getRows(0, table.getNumRows());
+	}
+
+	private String value(Row row, String columnName) {
+		return row.getNeighborByColumnName(columnName, factory).getValue().asString();
+	}
+
+	private List<String> unfolded(Row row, String key) {
+		List<String> values = new ArrayList<String>();
+		for (Row nestedRow : rows(row.getNeighborByColumnName(key, factory).getNestedTable()))
+			values.add(value(nestedRow, "Values"));
+		return values;
+	}
+
+	/**
+	 * @return the values of the given column in every group, in the order of the groups
+	 */
+	private List<String> groups(RowGrouper grouper, Worksheet ws, final String columnName) throws IOException {
+		final List<String> groups = new ArrayList<String>();
+		try {
+			grouper.addAll(rows(ws.getDataTable()));
+			grouper.forEachGroup(new RowGrouper.GroupHandler() {
+				@Override
+				public void handleGroup(List<Row> rows) {
+					List<String> values = new ArrayList<String>();
+					for (Row row : rows)
+						values.add(value(row, columnName));
+					groups.add(values.toString());
+				}
+			});
+		} finally {
+			grouper.close();
+		}
+		return groups;
+	}
+}
@@ -0,0 +1,135 @@
+package edu.isi.karma.kr2rml;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the output of BinaryKR2RMLRDFWriter back and replays it, row by row,
+ * on another KR2RMLRDFWriter, e.g. to turn it into N-Triples.
+ */
+public class BinaryKR2RMLRDFReader {
+
+	private DataInputStream input;
+	private List<String> dictionary = new ArrayList<String>();
+	private String previousTerm = "";
+
+	public BinaryKR2RMLRDFReader(InputStream inputStream) throws IOException
+	{
+		this.input = new DataInputStream(new BufferedInputStream(inputStream));
+		for(byte b : BinaryKR2RMLRDFWriter.MAGIC)
+		{
+			if(input.readByte() != b)
+			{
+				throw new IOException("Not a binary KR2RML RDF stream");
+			}
+		}
+		int version = readVarInt();
+		if(version != BinaryKR2RMLRDFWriter.VERSION)
+		{
+			throw new IOException("Unsupported binary KR2RML RDF stream version: " + version);
+		}
+	}
+
+	/**
+	 * Replays the whole stream on outWriter
+	 * @return the number of rows read
+	 */
+	public int read(KR2RMLRDFWriter outWriter) throws IOException
+	{
+		int numRows = 0;
+		while(true)
+		{
+			int recordType = input.read();
+			if(recordType == -1)
+			{
+				break;
+			}
+			switch(recordType)
+			{
+			case BinaryKR2RMLRDFWriter.TERM:
+				readTerm();
+				break;
+			case BinaryKR2RMLRDFWriter.TRIPLE_WITH_URI_OBJECT:
+				outWriter.outputTripleWithURIObject(readTermReference(), readTermReference(), readTermReference());
+				break;
+			case BinaryKR2RMLRDFWriter.TRIPLE_WITH_LITERAL_OBJECT:
+				outWriter.outputTripleWithLiteralObject(readTermReference(), readTermReference(), readTermReference(), readLiteralType());
+				break;
+			case BinaryKR2RMLRDFWriter.QUAD_WITH_LITERAL_OBJECT:
+				outWriter.outputQuadWithLiteralObject(readTermReference(), readTermReference(), readTermReference(), readLiteralType(), readTermReference());
+				break;
+			case BinaryKR2RMLRDFWriter.END_OF_ROW:
+				outWriter.finishRow();
+				numRows++;
+				break;
+			case BinaryKR2RMLRDFWriter.RESET_DICTIONARY:
+				dictionary.clear();
+				previousTerm = "";
+				break;
+			default:
+				throw new IOException("Unknown record type " + recordType);
+			}
+		}
+		return numRows;
+	}
+
+	public void close() throws IOException
+	{
+		input.close();
+	}
+
+	private void readTerm() throws IOException
+	{
+		int sharedPrefix = readVarInt();
+		byte[] suffix = new byte[readVarInt()];
+		input.readFully(suffix);
+		String term = previousTerm.substring(0, sharedPrefix) + new String(suffix, BinaryKR2RMLRDFWriter.UTF8);
+		dictionary.add(term);
+		previousTerm = term;
+	}
+
+	private String readTermReference() throws IOException
+	{
+		int id = readVarInt();
+		if(id >= dictionary.size())
+		{
+			throw new IOException("Reference to an undefined term: " + id);
+		}
+		return dictionary.get(id);
+	}
+
+	private String readLiteralType() throws IOException
+	{
+		int type = readVarInt();
+		if(type == 0)
+		{
+			return null;
+		}
+		return dictionary.get(type - 1);
+	}
+
+	private int readVarInt() throws IOException
+	{
+		int value = 0;
+		int shift = 0;
+		while(true)
+		{
+			int b = input.read();
+			if(b == -1)
+			{
+				throw new EOFException("Unexpected end of the binary KR2RML RDF stream");
+			}
+			value |= (b & 0x7f) << shift;
+			if((b & 0x80) == 0)
+			{
+				return value;
+			}
+			shift += 7;
+		}
+	}
+}
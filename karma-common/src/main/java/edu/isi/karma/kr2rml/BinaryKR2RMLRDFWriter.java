@@ -0,0 +1,288 @@
+package edu.isi.karma.kr2rml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.util.Fingerprint;
+import edu.isi.karma.util.LongHashSet;
+
+/**
+ * Writes the triples as a compact binary stream of dictionary encoded terms
+ * that can be read back with BinaryKR2RMLRDFReader.
+ *
+ * Every term is written once, the first time it is used, and referred to by
+ * its number afterwards. A new term only stores the characters that differ
+ * from the previous new term, which removes most of the repeated namespaces
+ * and URI templates. The dictionary is started over when it reaches
+ * maxDictionarySize terms so that the memory used stays bounded.
+ *
+ * The stream starts with the MAGIC bytes and the VERSION, followed by records
+ * that start with one of the record types below. Numbers are written as
+ * unsigned variable length integers, strings as their UTF-8 length and bytes.
+ *
+ * The duplicate triples of a row are removed, on request, by keeping a 64-bit
+ * fingerprint of the record type and terms of every triple of the row. This
+ * is probabilistic: two distinct triples of a row with the same fingerprint,
+ * which happens with a probability of about 2^-64, are written as one.
+ */
+public class BinaryKR2RMLRDFWriter implements KR2RMLRDFWriter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BinaryKR2RMLRDFWriter.class);
+
+	static final byte[] MAGIC = {'K', 'R', 'D', 'F'};
+	static final int VERSION = 1;
+
+	/** shared prefix length, suffix: defines the next term number */
+	static final int TERM = 0;
+	/** subject, predicate, object */
+	static final int TRIPLE_WITH_URI_OBJECT = 1;
+	/** subject, predicate, value, literal type + 1 or 0 */
+	static final int TRIPLE_WITH_LITERAL_OBJECT = 2;
+	/** subject, predicate, value, literal type + 1 or 0, graph */
+	static final int QUAD_WITH_LITERAL_OBJECT = 3;
+	static final int END_OF_ROW = 4;
+	/** forget all the terms, numbering starts again from 0 */
+	static final int RESET_DICTIONARY = 5;
+
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 20;
+	private static final int MAX_TERMS_PER_RECORD = 5;
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+	private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
+	protected OutputStream outputStream;
+	protected boolean deduplicateRows;
+	private int maxDictionarySize;
+	private Map<String, Integer> dictionary = new HashMap<String, Integer>();
+	private String previousTerm = "";
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int length = 0;
+	private LongHashSet rowFingerprints;
+
+	public BinaryKR2RMLRDFWriter(OutputStream outputStream, boolean deduplicateRows)
+	{
+		this(outputStream, deduplicateRows, DEFAULT_MAX_DICTIONARY_SIZE);
+	}
+
+	public BinaryKR2RMLRDFWriter(OutputStream outputStream, boolean deduplicateRows, int maxDictionarySize)
+	{
+		this.outputStream = outputStream;
+		this.deduplicateRows = deduplicateRows;
+		this.maxDictionarySize = Math.max(maxDictionarySize, MAX_TERMS_PER_RECORD);
+		if(deduplicateRows)
+		{
+			rowFingerprints = new LongHashSet();
+		}
+		for(byte b : MAGIC)
+		{
+			appendByte(b);
+		}
+		appendVarInt(VERSION);
+	}
+
+	@Override
+	public synchronized void outputTripleWithURIObject(String subjUri, String predicateUri, String objectUri)
+	{
+		if(isDuplicate(TRIPLE_WITH_URI_OBJECT, subjUri, predicateUri, objectUri, null, null))
+		{
+			return;
+		}
+		prepareDictionary();
+		int subject = term(subjUri);
+		int predicate = term(predicateUri);
+		int object = term(objectUri);
+		appendVarInt(TRIPLE_WITH_URI_OBJECT);
+		appendVarInt(subject);
+		appendVarInt(predicate);
+		appendVarInt(object);
+	}
+
+	@Override
+	public synchronized void outputTripleWithLiteralObject(String subjUri, String predicateUri, String value,
+			String literalType) {
+		if(isDuplicate(TRIPLE_WITH_LITERAL_OBJECT, subjUri, predicateUri, value, literalType, null))
+		{
+			return;
+		}
+		prepareDictionary();
+		int subject = term(subjUri);
+		int predicate = term(predicateUri);
+		int object = term(value);
+		int type = literalType(literalType);
+		appendVarInt(TRIPLE_WITH_LITERAL_OBJECT);
+		appendVarInt(subject);
+		appendVarInt(predicate);
+		appendVarInt(object);
+		appendVarInt(type);
+	}
+
+	@Override
+	public synchronized void outputQuadWithLiteralObject(String subjUri, String predicateUri,
+			String value, String literalType, String graph) {
+		if(isDuplicate(QUAD_WITH_LITERAL_OBJECT, subjUri, predicateUri, value, literalType, graph))
+		{
+			return;
+		}
+		prepareDictionary();
+		int subject = term(subjUri);
+		int predicate = term(predicateUri);
+		int object = term(value);
+		int type = literalType(literalType);
+		int graphTerm = term(graph);
+		appendVarInt(QUAD_WITH_LITERAL_OBJECT);
+		appendVarInt(subject);
+		appendVarInt(predicate);
+		appendVarInt(object);
+		appendVarInt(type);
+		appendVarInt(graphTerm);
+	}
+
+	@Override
+	public synchronized void finishRow()
+	{
+		appendVarInt(END_OF_ROW);
+		writeBuffer();
+		if(deduplicateRows)
+		{
+			rowFingerprints.clear();
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		LOG.debug("Flushing writer");
+		writeBuffer();
+		try {
+			outputStream.flush();
+		} catch (IOException e) {
+			LOG.error("Unable to flush the RDF output", e);
+		}
+		LOG.debug("Flushed writer");
+	}
+
+	@Override
+	public synchronized void close() {
+		writeBuffer();
+		try {
+			outputStream.close();
+		} catch (IOException e) {
+			LOG.error("Unable to close the RDF output", e);
+		}
+	}
+
+	private boolean isDuplicate(int recordType, String subject, String predicate, String object, String literalType, String graph)
+	{
+		if(!deduplicateRows)
+		{
+			return false;
+		}
+		// The record type keeps a URI object and a literal with the same text apart
+		long fingerprint = Fingerprint.combine(Fingerprint.of(Integer.toString(recordType)), subject);
+		fingerprint = Fingerprint.combine(fingerprint, predicate);
+		fingerprint = Fingerprint.combine(fingerprint, object);
+		fingerprint = Fingerprint.combine(fingerprint, literalType == null ? "" : literalType);
+		fingerprint = Fingerprint.combine(fingerprint, graph == null ? "" : graph);
+		return !rowFingerprints.add(fingerprint);
+	}
+
+	/**
+	 * Starts the dictionary over if the terms of the next record might not fit
+	 */
+	private void prepareDictionary()
+	{
+		if(dictionary.size() + MAX_TERMS_PER_RECORD > maxDictionarySize)
+		{
+			appendVarInt(RESET_DICTIONARY);
+			dictionary.clear();
+			previousTerm = "";
+		}
+	}
+
+	private int literalType(String literalType)
+	{
+		if(literalType == null || literalType.equals(""))
+		{
+			return 0;
+		}
+		return term(literalType) + 1;
+	}
+
+	private int term(String value)
+	{
+		Integer id = dictionary.get(value);
+		if(id != null)
+		{
+			return id;
+		}
+		int sharedPrefix = 0;
+		int maxSharedPrefix = Math.min(value.length(), previousTerm.length());
+		while(sharedPrefix < maxSharedPrefix && value.charAt(sharedPrefix) == previousTerm.charAt(sharedPrefix))
+		{
+			sharedPrefix++;
+		}
+		// Keep surrogate pairs together
+		if(sharedPrefix > 0 && Character.isHighSurrogate(value.charAt(sharedPrefix - 1)))
+		{
+			sharedPrefix--;
+		}
+		appendVarInt(TERM);
+		appendVarInt(sharedPrefix);
+		byte[] suffix = value.substring(sharedPrefix).getBytes(UTF8);
+		appendVarInt(suffix.length);
+		ensureCapacity(suffix.length);
+		System.arraycopy(suffix, 0, buffer, length, suffix.length);
+		length += suffix.length;
+
+		id = dictionary.size();
+		dictionary.put(value, id);
+		previousTerm = value;
+		return id;
+	}
+
+	private void writeBuffer()
+	{
+		try {
+			outputStream.write(buffer, 0, length);
+		} catch (IOException e) {
+			LOG.error("Unable to write the RDF output", e);
+		}
+		length = 0;
+		if(buffer.length > MAX_REUSED_BUFFER_SIZE)
+		{
+			buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+	}
+
+	private void ensureCapacity(int additional)
+	{
+		if(length + additional > buffer.length)
+		{
+			byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + additional)];
+			System.arraycopy(buffer, 0, newBuffer, 0, length);
+			buffer = newBuffer;
+		}
+	}
+
+	private void appendByte(byte b)
+	{
+		ensureCapacity(1);
+		buffer[length++] = b;
+	}
+
+	private void appendVarInt(int value)
+	{
+		ensureCapacity(5);
+		while((value & ~0x7f) != 0)
+		{
+			buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		buffer[length++] = (byte) value;
+	}
+}
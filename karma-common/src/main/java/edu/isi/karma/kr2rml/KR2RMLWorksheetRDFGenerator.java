@@ -28,7 +28,6 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -46,15 +45,14 @@ import edu.isi.karma.kr2rml.exception.NoValueFoundInNodeException;
 import edu.isi.karma.kr2rml.exception.ValueNotFoundKarmaException;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMappingColumnNameHNodeTranslator;
-import edu.isi.karma.kr2rml.planning.DFSTriplesMapGraphDAGifier;
-import edu.isi.karma.kr2rml.planning.SteinerTreeRootStrategy;
+import edu.isi.karma.kr2rml.planning.BatchTriplesMapPlanExecutor;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
 import edu.isi.karma.kr2rml.planning.TriplesMap;
 import edu.isi.karma.kr2rml.planning.TriplesMapLink;
 import edu.isi.karma.kr2rml.planning.TriplesMapPlan;
 import edu.isi.karma.kr2rml.planning.TriplesMapPlanExecutor;
 import edu.isi.karma.kr2rml.planning.TriplesMapPlanGenerator;
 import edu.isi.karma.kr2rml.planning.TriplesMapWorkerPlan;
-import edu.isi.karma.kr2rml.planning.WorksheetDepthRootStrategy;
 import edu.isi.karma.kr2rml.template.ColumnTemplateTerm;
 import edu.isi.karma.kr2rml.template.StringTemplateTerm;
 import edu.isi.karma.kr2rml.template.TemplateTerm;
@@ -81,6 +79,10 @@ public class KR2RMLWorksheetRDFGenerator {
 	protected KR2RMLMappingColumnNameHNodeTranslator translator;
 	protected ConcurrentHashMap<String, String> hNodeToContextUriMap;
 	protected KR2RMLRDFWriter outWriter;
+	protected CompiledKR2RMLMapping compiledMapping;
+	protected int executionParallelism = 0;
+	protected int rowsPerBatch = BatchTriplesMapPlanExecutor.DEFAULT_ROWS_PER_BATCH;
+	protected BatchTriplesMapPlanExecutor batchExecutor;
 
 	private Logger logger = LoggerFactory.getLogger(KR2RMLWorksheetRDFGenerator.class);
 	private URIFormatter uriFormatter;
@@ -120,7 +122,59 @@ public class KR2RMLWorksheetRDFGenerator {
 
 	}
 
+	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
+			OntologyManager ontMgr, PrintWriter writer, CompiledKR2RMLMapping compiledMapping,  
+			ErrorReport errorReport, boolean addColumnContextInformation) {
+		this(worksheet, factory, ontMgr, writer, compiledMapping.getMapping(), errorReport, addColumnContextInformation);
+		this.compiledMapping = compiledMapping;
+	}
+
+	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
+			OntologyManager ontMgr, KR2RMLRDFWriter outWriter, KR2RMLMapping kr2rmlMapping,  
+			ErrorReport errorReport, boolean addColumnContextInformation) {
+		super();
+		this.ontMgr = ontMgr;
+		this.kr2rmlMapping = kr2rmlMapping;
+		this.factory = factory;
+		this.worksheet = worksheet;
+		this.errorReport = errorReport;
+		this.uriFormatter = new URIFormatter(ontMgr, errorReport);
+		this.outWriter = outWriter;
+		this.hNodeToContextUriMap = new ConcurrentHashMap<String, String>();
+		this.addColumnContextInformation = addColumnContextInformation;
+		this.translator = new KR2RMLMappingColumnNameHNodeTranslator(factory, worksheet);
+	}
+
+	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
+			OntologyManager ontMgr, KR2RMLRDFWriter outWriter, CompiledKR2RMLMapping compiledMapping,  
+			ErrorReport errorReport, boolean addColumnContextInformation) {
+		this(worksheet, factory, ontMgr, outWriter, compiledMapping.getMapping(), errorReport, addColumnContextInformation);
+		this.compiledMapping = compiledMapping;
+	}
+
+
+
+	/**
+	 * Generate the rows in batches on a work stealing pool of the given number
+	 * of threads instead of one TriplesMapPlan per row. 0 keeps the per row
+	 * executor.
+	 */
+	public void setExecutionParallelism(int executionParallelism) {
+		this.executionParallelism = executionParallelism;
+	}
 
+	public void setRowsPerBatch(int rowsPerBatch) {
+		this.rowsPerBatch = rowsPerBatch;
+	}
+
+	/**
+	 * Use an executor that is shared with other generations, e.g. the ones of
+	 * the other chunks of a source, instead of starting a pool for this one.
+	 * The owner of the executor shuts it down.
+	 */
+	public void setBatchExecutor(BatchTriplesMapPlanExecutor batchExecutor) {
+		this.batchExecutor = batchExecutor;
+	}
 
 	public void generateRDF(boolean closeWriterAfterGeneration) throws IOException {
 
@@ -142,37 +196,39 @@ public class KR2RMLWorksheetRDFGenerator {
 			ArrayList<Row> rows = this.worksheet.getDataTable().getRows(0, 
 					this.worksheet.getDataTable().getNumRows());
 
-
-
-			try{
-				DFSTriplesMapGraphDAGifier dagifier = new DFSTriplesMapGraphDAGifier();
-				dagifier.dagify(kr2rmlMapping.getAuxInfo().getTriplesMapGraph(), new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
-
-			}catch (Exception e)
-			{
-				logger.error("Unable to find DAG for RDF Generation!", e);
-				throw new Exception("Unable to find DAG for RDF Generation!", e);
-
-			}
-			int i=1;
-			TriplesMapPlanExecutor e = new TriplesMapPlanExecutor();
-			Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan = new HashMap<TriplesMap, TriplesMapWorkerPlan>() ;
-			for(TriplesMap triplesMap : kr2rmlMapping.getTriplesMapList())
+			if(compiledMapping == null)
 			{
-				TriplesMapWorkerPlan workerPlan = new TriplesMapWorkerPlan(factory, triplesMap, kr2rmlMapping, uriFormatter, translator,  addColumnContextInformation, hNodeToContextUriMap);
-				triplesMapToWorkerPlan.put(triplesMap, workerPlan);
+				compiledMapping = new CompiledKR2RMLMapping(kr2rmlMapping);
 			}
-			for (Row row:rows) {
+			Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan = compiledMapping.getWorkerPlans(worksheet, factory, translator, addColumnContextInformation, hNodeToContextUriMap, errorReport);
+			if (executionParallelism > 0) {
+				BatchTriplesMapPlanExecutor e = batchExecutor != null ? batchExecutor
+						: new BatchTriplesMapPlanExecutor(executionParallelism, rowsPerBatch);
+				try {
+					TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(triplesMapToWorkerPlan);
+					List<TriplesMapWorkerPlan> orderedPlans = g.generateOrderedWorkerPlans(kr2rmlMapping.getAuxInfo().getTriplesMapGraph());
+					errorReport.combine(e.execute(orderedPlans, rows, outWriter, uriFormatter));
+				} finally {
+					if (e != batchExecutor) {
+						e.shutdown();
+					}
+				}
+				logger.info("Done processing " + rows.size() + " rows");
+			} else {
+				int i=1;
+				TriplesMapPlanExecutor e = new TriplesMapPlanExecutor();
+				for (Row row:rows) {
 
-				TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(triplesMapToWorkerPlan, row, outWriter);
-				TriplesMapPlan plan = g.generatePlan(kr2rmlMapping.getAuxInfo().getTriplesMapGraph());
-				errorReport.combine(e.execute(plan));
-				outWriter.finishRow();
-				if (i++%2000 == 0)
-					logger.info("Done processing " + i + " rows");
+					TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(triplesMapToWorkerPlan, row, outWriter, uriFormatter);
+					TriplesMapPlan plan = g.generatePlan(kr2rmlMapping.getAuxInfo().getTriplesMapGraph());
+					errorReport.combine(e.execute(plan));
+					outWriter.finishRow();
+					if (i++%2000 == 0)
+						logger.info("Done processing " + i + " rows");
 
+				}
+				e.shutdown(errorReport);
 			}
-			e.shutdown(errorReport);
 			// Generate column provenance information if required
 			if (addColumnContextInformation) {
 				generateColumnProvenanceInformation();
@@ -42,10 +42,18 @@ public class N3KR2RMLRDFWriter implements KR2RMLRDFWriter {
 	
 	private String constructTripleWithURIObject(String subjUri, String predicateUri, String objectUri) {
 		return subjUri + " " 
-				+ uriFormatter.getExpandedAndNormalizedUri(predicateUri) + " " 
+				+ expandPredicateUri(predicateUri) + " " 
 				+ objectUri + " .";
 	}
 	
+	// Predicates coming from the TriplesMapPlans are already expanded
+	private String expandPredicateUri(String predicateUri) {
+		if (URIFormatter.isExpandedUri(predicateUri)) {
+			return predicateUri;
+		}
+		return uriFormatter.getExpandedAndNormalizedUri(predicateUri);
+	}
+
 	@Override
 	public void outputTripleWithLiteralObject(String subjUri, String predicateUri, String value, 
 			String literalType) {
@@ -59,10 +67,10 @@ public class N3KR2RMLRDFWriter implements KR2RMLRDFWriter {
 		
 		// Add the RDF literal type to the literal if present
 		if (literalType != null && !literalType.equals("")) {
-			return subjUri + " " + uriFormatter.getExpandedAndNormalizedUri(predicateUri) + " \"" + value + 
+			return subjUri + " " + expandPredicateUri(predicateUri) + " \"" + value + 
 					"\"" + "^^<" + literalType + "> .";
 		}
-		return subjUri + " " + uriFormatter.getExpandedAndNormalizedUri(predicateUri) + " \"" + value + "\" .";
+		return subjUri + " " + expandPredicateUri(predicateUri) + " \"" + value + "\" .";
 	}
 	
 	@Override
@@ -0,0 +1,258 @@
+package edu.isi.karma.kr2rml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.util.Fingerprint;
+import edu.isi.karma.util.LongHashSet;
+
+/**
+ * Writes the triples as N-Triples as soon as they are generated, instead of
+ * collecting them as Strings in a map like N3KR2RMLRDFWriter does.
+ *
+ * The terms are copied into a character buffer that is reused for every row;
+ * literals are escaped while they are copied. The buffer is written out at
+ * the end of every row. The duplicate triples of a row are only removed when
+ * deduplication is turned on, by keeping a 64-bit fingerprint of every triple
+ * of the row.
+ */
+public class NTriplesKR2RMLRDFWriter implements KR2RMLRDFWriter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NTriplesKR2RMLRDFWriter.class);
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+	private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	protected URIFormatter uriFormatter;
+	protected Writer outWriter;
+	protected boolean deduplicateRows;
+	private final String lineSeparator = System.getProperty("line.separator");
+	private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+	private int length = 0;
+	private LongHashSet rowFingerprints;
+
+	public NTriplesKR2RMLRDFWriter(URIFormatter uriFormatter, OutputStream outputStream, boolean deduplicateRows)
+	{
+		this(uriFormatter, new PrintWriter(new OutputStreamWriter(outputStream, Charset.forName("UTF-8"))), deduplicateRows);
+	}
+
+	public NTriplesKR2RMLRDFWriter(URIFormatter uriFormatter, PrintWriter writer, boolean deduplicateRows)
+	{
+		this.outWriter = writer;
+		this.uriFormatter = uriFormatter;
+		this.deduplicateRows = deduplicateRows;
+		if(deduplicateRows)
+		{
+			rowFingerprints = new LongHashSet();
+		}
+	}
+
+	@Override
+	public synchronized void outputTripleWithURIObject(String subjUri, String predicateUri, String objectUri)
+	{
+		int start = length;
+		append(subjUri);
+		append(' ');
+		append(expandPredicateUri(predicateUri));
+		append(' ');
+		append(objectUri);
+		append(" .");
+		endTriple(start);
+	}
+
+	// Predicates coming from the TriplesMapPlans are already expanded
+	private String expandPredicateUri(String predicateUri) {
+		if (URIFormatter.isExpandedUri(predicateUri)) {
+			return predicateUri;
+		}
+		return uriFormatter.getExpandedAndNormalizedUri(predicateUri);
+	}
+
+	@Override
+	public synchronized void outputTripleWithLiteralObject(String subjUri, String predicateUri, String value,
+			String literalType) {
+		int start = length;
+		appendLiteralTriple(subjUri, predicateUri, value, literalType);
+		append(" .");
+		endTriple(start);
+	}
+
+	@Override
+	public synchronized void outputQuadWithLiteralObject(String subjUri, String predicateUri,
+			String value, String literalType, String graph) {
+		int start = length;
+		appendLiteralTriple(subjUri, predicateUri, value, literalType);
+		append(" <");
+		append(graph);
+		append("> .");
+		endTriple(start);
+	}
+
+	private void appendLiteralTriple(String subjUri, String predicateUri, String value,
+			String literalType) {
+		append(subjUri);
+		append(' ');
+		append(expandPredicateUri(predicateUri));
+		append(" \"");
+		appendEscaped(value);
+		append('"');
+		// Add the RDF literal type to the literal if present
+		if (literalType != null && !literalType.equals("")) {
+			append("^^<");
+			append(literalType);
+			append('>');
+		}
+	}
+
+	/**
+	 * Drops the triple that starts at start if it was already written for this
+	 * row, otherwise ends its line
+	 */
+	private void endTriple(int start)
+	{
+		if(deduplicateRows && !rowFingerprints.add(Fingerprint.of(buffer, start, length)))
+		{
+			length = start;
+			return;
+		}
+		append(lineSeparator);
+	}
+
+	@Override
+	public synchronized void finishRow()
+	{
+		append(lineSeparator);
+		writeBuffer();
+		if(deduplicateRows)
+		{
+			rowFingerprints.clear();
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		LOG.debug("Flushing writer");
+		writeBuffer();
+		try {
+			outWriter.flush();
+		} catch (IOException e) {
+			LOG.error("Unable to flush the RDF output", e);
+		}
+		LOG.debug("Flushed writer");
+	}
+
+	@Override
+	public synchronized void close() {
+		writeBuffer();
+		try {
+			outWriter.close();
+		} catch (IOException e) {
+			LOG.error("Unable to close the RDF output", e);
+		}
+	}
+
+	private void writeBuffer()
+	{
+		try {
+			outWriter.write(buffer, 0, length);
+		} catch (IOException e) {
+			LOG.error("Unable to write the RDF output", e);
+		}
+		length = 0;
+		if(buffer.length > MAX_REUSED_BUFFER_SIZE)
+		{
+			buffer = new char[INITIAL_BUFFER_SIZE];
+		}
+	}
+
+	private void ensureCapacity(int additional)
+	{
+		if(length + additional > buffer.length)
+		{
+			char[] newBuffer = new char[Math.max(buffer.length * 2, length + additional)];
+			System.arraycopy(buffer, 0, newBuffer, 0, length);
+			buffer = newBuffer;
+		}
+	}
+
+	private void append(char c)
+	{
+		ensureCapacity(1);
+		buffer[length++] = c;
+	}
+
+	private void append(String value)
+	{
+		int valueLength = value.length();
+		ensureCapacity(valueLength);
+		value.getChars(0, valueLength, buffer, length);
+		length += valueLength;
+	}
+
+	/**
+	 * Appends value with the escapes of the N-Triples string literals
+	 */
+	private void appendEscaped(String value)
+	{
+		int valueLength = value.length();
+		// Most values need no escaping, so make room for them upfront
+		ensureCapacity(valueLength);
+		for(int i = 0; i < valueLength; i++)
+		{
+			char c = value.charAt(i);
+			switch(c)
+			{
+			case '\\':
+				appendEscape('\\');
+				break;
+			case '"':
+				appendEscape('"');
+				break;
+			case '\n':
+				appendEscape('n');
+				break;
+			case '\r':
+				appendEscape('r');
+				break;
+			case '\t':
+				appendEscape('t');
+				break;
+			case '\b':
+				appendEscape('b');
+				break;
+			case '\f':
+				appendEscape('f');
+				break;
+			default:
+				if(c < 0x20 || c == 0x7f)
+				{
+					ensureCapacity(6);
+					buffer[length++] = '\\';
+					buffer[length++] = 'u';
+					buffer[length++] = HEX_DIGITS[(c >> 12) & 0xf];
+					buffer[length++] = HEX_DIGITS[(c >> 8) & 0xf];
+					buffer[length++] = HEX_DIGITS[(c >> 4) & 0xf];
+					buffer[length++] = HEX_DIGITS[c & 0xf];
+				}
+				else
+				{
+					append(c);
+				}
+			}
+		}
+	}
+
+	private void appendEscape(char c)
+	{
+		ensureCapacity(2);
+		buffer[length++] = '\\';
+		buffer[length++] = c;
+	}
+}
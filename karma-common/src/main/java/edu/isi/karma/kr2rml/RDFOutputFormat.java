@@ -0,0 +1,78 @@
+package edu.isi.karma.kr2rml;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+/**
+ * The KR2RMLRDFWriters the RDF generators can write with
+ */
+public enum RDFOutputFormat {
+
+	/**
+	 * One line per triple; the duplicate triples of a row are always removed
+	 */
+	N3("n3") {
+		@Override
+		public KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, PrintWriter pw, boolean deduplicateRows) {
+			return new N3KR2RMLRDFWriter(uriFormatter, pw);
+		}
+	},
+
+	/**
+	 * The same lines as N3, written as they are generated; the duplicate
+	 * triples of a row are removed on request
+	 */
+	NTRIPLES("nt") {
+		@Override
+		public KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, PrintWriter pw, boolean deduplicateRows) {
+			return new NTriplesKR2RMLRDFWriter(uriFormatter, pw, deduplicateRows);
+		}
+	},
+
+	/**
+	 * Dictionary encoded terms, see BinaryKR2RMLRDFWriter. It can only be
+	 * written to an OutputStream; the RdfGenerators refuse it unless they are
+	 * given such a writer with setRDFWriter.
+	 */
+	BINARY("krdf") {
+		@Override
+		public boolean isBinary() {
+			return true;
+		}
+
+		@Override
+		public KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, PrintWriter pw, boolean deduplicateRows) {
+			throw new UnsupportedOperationException(name() + " output has to be written to an OutputStream");
+		}
+
+		@Override
+		public KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, OutputStream outputStream, boolean deduplicateRows) {
+			return new BinaryKR2RMLRDFWriter(outputStream, deduplicateRows);
+		}
+	};
+
+	private final String fileExtension;
+
+	private RDFOutputFormat(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	/**
+	 * @return the extension, without the dot, of the files written in this format
+	 */
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	public boolean isBinary() {
+		return false;
+	}
+
+	public abstract KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, PrintWriter pw, boolean deduplicateRows);
+
+	public KR2RMLRDFWriter createWriter(URIFormatter uriFormatter, OutputStream outputStream, boolean deduplicateRows) {
+		return createWriter(uriFormatter, new PrintWriter(new OutputStreamWriter(outputStream, Charset.forName("UTF-8"))), deduplicateRows);
+	}
+}
@@ -2,6 +2,7 @@ package edu.isi.karma.kr2rml;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.isi.karma.kr2rml.ErrorReport.Priority;
 import edu.isi.karma.modeling.Uris;
@@ -9,33 +10,78 @@ import edu.isi.karma.modeling.ontology.OntologyManager;
 
 public class URIFormatter {
 	
+	public static final int DEFAULT_MAX_CACHED_URIS = 10000;
+
 	protected Map<String, String> prefixToNamespaceMap;
 	private ErrorReport errorReport;
+	// Prefixed URIs are few and repeated (predicates, classes), so their
+	// expansions are remembered; the cache is emptied when it gets full
+	private ConcurrentHashMap<String, String> expandedUris;
+	private int maxCachedUris;
 
 
 
 	public URIFormatter(OntologyManager ontMgr, ErrorReport errorReport)
+	{
+		this(ontMgr, errorReport, DEFAULT_MAX_CACHED_URIS);
+	}
+
+	public URIFormatter(OntologyManager ontMgr, ErrorReport errorReport, int maxCachedUris)
 	{
 		prefixToNamespaceMap = new HashMap<String, String>();
 		populatePrefixToNamespaceMap(ontMgr);
 		this.errorReport = errorReport;
+		this.expandedUris = new ConcurrentHashMap<String, String>();
+		this.maxCachedUris = maxCachedUris;
 	}
+
+	/**
+	 * @return true if uri is already between angle brackets, as returned by
+	 * getExpandedAndNormalizedUri, so it does not need to be expanded again
+	 */
+	public static boolean isExpandedUri(String uri) {
+		return uri.length() > 1 && uri.charAt(0) == '<' && uri.charAt(uri.length() - 1) == '>';
+	}
+
 	public String getExpandedAndNormalizedUri(String uri) {
-		// Check if the predicate contains a predicate.
-		if (!uri.startsWith("<") && !uri.startsWith("http:") && uri.contains(":") && !uri.startsWith("_:")) {
-			// Replace the prefix with proper namespace by looking into the ontology manager
-			String prefix = uri.substring(0, uri.indexOf(":"));
-			
-			String namespace = this.prefixToNamespaceMap.get(prefix);
-			if (namespace == null || namespace.isEmpty()) {
-				this.errorReport.addReportMessage(new ReportMessage("Error creating predicate's URI: " + uri, 
-						"No namespace found for the prefix: " + prefix, Priority.high));
-//				logger.error("No namespace found for the predicate prefix: " + prefix);
-			} else {
-				uri = namespace + uri.substring(uri.indexOf(":")+1);
+		if (!isPrefixedUri(uri)) {
+			return normalizeAndBracketUri(uri);
+		}
+		String expandedUri = expandedUris.get(uri);
+		if (expandedUri == null) {
+			String namespaceUri = expandPrefix(uri);
+			if (namespaceUri == null) {
+				// Not cached so that every use of the unknown prefix is reported
+				return normalizeAndBracketUri(uri);
 			}
+			expandedUri = normalizeAndBracketUri(namespaceUri);
+			if (expandedUris.size() >= maxCachedUris) {
+				expandedUris.clear();
+			}
+			expandedUris.put(uri, expandedUri);
 		}
+		return expandedUri;
+	}
+
+	private static boolean isPrefixedUri(String uri) {
+		return !uri.startsWith("<") && !uri.startsWith("http:") && uri.contains(":") && !uri.startsWith("_:");
+	}
+
+	private String expandPrefix(String uri) {
+		// Replace the prefix with proper namespace by looking into the ontology manager
+		String prefix = uri.substring(0, uri.indexOf(":"));
 		
+		String namespace = this.prefixToNamespaceMap.get(prefix);
+		if (namespace == null || namespace.isEmpty()) {
+			this.errorReport.addReportMessage(new ReportMessage("Error creating predicate's URI: " + uri, 
+					"No namespace found for the prefix: " + prefix, Priority.high));
+//			logger.error("No namespace found for the predicate prefix: " + prefix);
+			return null;
+		}
+		return namespace + uri.substring(uri.indexOf(":")+1);
+	}
+
+	private static String normalizeAndBracketUri(String uri) {
 		// Remove all unwanted characters
 		uri = normalizeUri(uri);
 		
@@ -95,6 +95,10 @@ public class KR2RMLMappingColumnNameHNodeTranslator {
 		{
 			try {
 				String hNodeId = translateColumnNameToHNodeId(templateTermValue);
+				if(hNodeId == null)
+				{
+					throw new HNodeNotFoundKarmaException("Unable to find HNodeId for column name", templateTermValue);
+				}
 				columnNameToHNodeId.put(templateTermValue, hNodeId);
 				hNodeIdToColumnName.put(hNodeId, templateTermValue);
 				
@@ -77,6 +77,17 @@ public class WorksheetR2RMLJenaModelParser {
 		this.id = id;
 	}
 
+	/**
+	 * Parses the mapping of id from a model that is already loaded, e.g. to
+	 * parse the mappings of several sources from the same model file. Parsing
+	 * only reads the model.
+	 */
+	public WorksheetR2RMLJenaModelParser(Model model, R2RMLMappingIdentifier id) throws JSONException, KarmaException 
+	{
+		this.model = model;
+		this.id = id;
+	}
+
 	public KR2RMLMapping parse() throws IOException, KarmaException, JSONException
 	{
 		if(null == model)
@@ -144,7 +155,7 @@ public class WorksheetR2RMLJenaModelParser {
 		
 		
 	}
-    private Model loadSourceModelIntoJenaModel(URL modelURL) throws IOException {
+    public static Model loadSourceModelIntoJenaModel(URL modelURL) throws IOException {
         // Create an empty Model
         Model model = ModelFactory.createDefaultModel();
         InputStream s = modelURL.openStream();
@@ -0,0 +1,174 @@
+package edu.isi.karma.kr2rml.planning;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.ErrorReport.Priority;
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.ReportMessage;
+import edu.isi.karma.kr2rml.URIFormatter;
+import edu.isi.karma.rep.Row;
+
+/**
+ * Executes the worker plans of a mapping over many rows at once, as an
+ * alternative to running a TriplesMapPlan per row on the TriplesMapPlanExecutor.
+ *
+ * The rows are split into batches of rowsPerBatch rows that are spread over a
+ * work stealing pool. Within a batch the worker plans are executed one after
+ * the other, in dependency order, so there is no per triples map task or latch.
+ * Every batch writes to its own buffer; the buffers are written to the output
+ * writer in the order of the rows, one batch window at a time, so the output is
+ * the same as the one of the per row executor and the memory used is bounded.
+ */
+public class BatchTriplesMapPlanExecutor {
+
+	private static Logger LOG = LoggerFactory.getLogger(BatchTriplesMapPlanExecutor.class);
+	public static final int DEFAULT_ROWS_PER_BATCH = 100;
+	private static final int BATCHES_PER_THREAD_PER_WINDOW = 4;
+
+	private int parallelism;
+	private int rowsPerBatch;
+	private ForkJoinPool pool;
+
+	public BatchTriplesMapPlanExecutor()
+	{
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_ROWS_PER_BATCH);
+	}
+
+	public BatchTriplesMapPlanExecutor(int parallelism)
+	{
+		this(parallelism, DEFAULT_ROWS_PER_BATCH);
+	}
+
+	public BatchTriplesMapPlanExecutor(int parallelism, int rowsPerBatch)
+	{
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.rowsPerBatch = rowsPerBatch > 0 ? rowsPerBatch : DEFAULT_ROWS_PER_BATCH;
+		this.pool = new ForkJoinPool(this.parallelism);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public int getRowsPerBatch() {
+		return rowsPerBatch;
+	}
+
+	/**
+	 * @param orderedPlans the worker plans in dependency order, as returned by
+	 * TriplesMapPlanGenerator.generateOrderedWorkerPlans
+	 * @param uriFormatter the formatter of the generation the rows belong to
+	 */
+	public ErrorReport execute(List<TriplesMapWorkerPlan> orderedPlans, List<Row> rows, KR2RMLRDFWriter outWriter, URIFormatter uriFormatter)
+	{
+		ErrorReport errorReport = new ErrorReport();
+		int numBatches = (rows.size() + rowsPerBatch - 1) / rowsPerBatch;
+		int batchesPerWindow = parallelism * BATCHES_PER_THREAD_PER_WINDOW;
+		try {
+			// The next window is generated while the previous one is written
+			ForkJoinTask<Void> previousWindow = null;
+			RowBufferingKR2RMLRDFWriter[] previousBuffers = null;
+			for(int firstBatch = 0; firstBatch < numBatches; firstBatch += batchesPerWindow)
+			{
+				int lastBatch = Math.min(firstBatch + batchesPerWindow, numBatches);
+				RowBufferingKR2RMLRDFWriter[] buffers = new RowBufferingKR2RMLRDFWriter[lastBatch - firstBatch];
+				ForkJoinTask<Void> window = pool.submit(new BatchTask(orderedPlans, rows, uriFormatter, errorReport, firstBatch, firstBatch, lastBatch, buffers));
+				if(previousWindow != null)
+				{
+					writeWindow(previousWindow, previousBuffers, outWriter);
+				}
+				previousWindow = window;
+				previousBuffers = buffers;
+				LOG.debug("Submitted " + Math.min(lastBatch * rowsPerBatch, rows.size()) + " rows");
+			}
+			if(previousWindow != null)
+			{
+				writeWindow(previousWindow, previousBuffers, outWriter);
+			}
+		} catch (Exception e) {
+			LOG.error("Unable to finish executing plan", e);
+			errorReport.addReportMessage(new ReportMessage("Triples Map Plan Execution Error", e.getMessage(), Priority.high));
+		}
+		return errorReport;
+	}
+
+	private void writeWindow(ForkJoinTask<Void> window, RowBufferingKR2RMLRDFWriter[] buffers, KR2RMLRDFWriter outWriter)
+	{
+		window.join();
+		for(RowBufferingKR2RMLRDFWriter buffer : buffers)
+		{
+			buffer.replay(outWriter);
+		}
+	}
+
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	private class BatchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private List<TriplesMapWorkerPlan> orderedPlans;
+		private List<Row> rows;
+		private URIFormatter uriFormatter;
+		private ErrorReport errorReport;
+		private int windowStart;
+		private int firstBatch;
+		private int lastBatch;
+		private RowBufferingKR2RMLRDFWriter[] buffers;
+
+		public BatchTask(List<TriplesMapWorkerPlan> orderedPlans, List<Row> rows, URIFormatter uriFormatter,
+				ErrorReport errorReport, int windowStart, int firstBatch, int lastBatch, RowBufferingKR2RMLRDFWriter[] buffers)
+		{
+			this.orderedPlans = orderedPlans;
+			this.rows = rows;
+			this.uriFormatter = uriFormatter;
+			this.errorReport = errorReport;
+			this.windowStart = windowStart;
+			this.firstBatch = firstBatch;
+			this.lastBatch = lastBatch;
+			this.buffers = buffers;
+		}
+
+		@Override
+		protected void compute() {
+			if(lastBatch - firstBatch > 1)
+			{
+				int middle = (firstBatch + lastBatch) >>> 1;
+				invokeAll(new BatchTask(orderedPlans, rows, uriFormatter, errorReport, windowStart, firstBatch, middle, buffers),
+						new BatchTask(orderedPlans, rows, uriFormatter, errorReport, windowStart, middle, lastBatch, buffers));
+				return;
+			}
+			RowBufferingKR2RMLRDFWriter buffer = new RowBufferingKR2RMLRDFWriter();
+			int lastRow = Math.min((firstBatch + 1) * rowsPerBatch, rows.size());
+			for(int i = firstBatch * rowsPerBatch; i < lastRow; i++)
+			{
+				Row r = rows.get(i);
+				for(TriplesMapWorkerPlan plan : orderedPlans)
+				{
+					try
+					{
+						plan.execute(r, buffer, uriFormatter);
+					}
+					catch (Exception e)
+					{
+						// The other plans and rows of the batch are still generated,
+						// as with the per row executor
+						LOG.error("Something went wrong " + e.getMessage() );
+						errorReport.addReportMessage(new ReportMessage("Triples Map Plan Execution Error", e.toString(), Priority.high));
+					}
+				}
+				buffer.finishRow();
+			}
+			buffers[firstBatch - windowStart] = buffer;
+		}
+	}
+}
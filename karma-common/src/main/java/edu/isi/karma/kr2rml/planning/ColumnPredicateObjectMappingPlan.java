@@ -3,8 +3,6 @@ package edu.isi.karma.kr2rml.planning;
 import java.util.Map;
 
 import org.apache.commons.lang.RandomStringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.PredicateObjectMap;
@@ -24,13 +22,18 @@ import edu.isi.karma.rep.RepFactory;
 public class ColumnPredicateObjectMappingPlan extends
 		PredicateObjectMappingPlan {
 
-	private static Logger LOG = LoggerFactory.getLogger(ColumnPredicateObjectMappingPlan.class);
 	protected Map<String, String> hNodeToContextUriMap;
 	protected boolean generateContext;
+	// The value of a constant URI object, expanded by the formatter of the
+	// generation that outputs it
+	private String objectUri;
+	// The column whose context is output with the object, found when the plan
+	// is built
+	private String contextHNodeId;
 	
-	public ColumnPredicateObjectMappingPlan(TemplateTermSet subjectMapTemplate, PredicateObjectMap pom, Map<ColumnTemplateTerm, HNodePath> subjectTermsToPaths,KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator, Map<String, String> hNodeToContextUriMap,  boolean generateContext) throws HNodeNotFoundKarmaException
+	public ColumnPredicateObjectMappingPlan(TemplateTermSet subjectMapTemplate, PredicateObjectMap pom, Map<ColumnTemplateTerm, HNodePath> subjectTermsToPaths,KR2RMLMapping kr2rmlMapping, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator, Map<String, String> hNodeToContextUriMap,  boolean generateContext) throws HNodeNotFoundKarmaException
 	{
-		super(kr2rmlMapping, uriFormatter, factory, translator);
+		super(kr2rmlMapping, factory, translator);
 		this.hNodeToContextUriMap = hNodeToContextUriMap;
 		this.generateContext = generateContext;
 		generateLiteral(subjectMapTemplate, pom, subjectTermsToPaths);
@@ -46,11 +49,16 @@ public class ColumnPredicateObjectMappingPlan extends
 		{
 			literalTemplateValue = generateStringValueForTemplate(literalTemplate);
 		}
-		objectTemplateTermSetPopulator = new TemplateTermSetPopulator(pom.getObject().getTemplate(), new StringBuilder(), uriFormatter, false, true);
+		objectTemplateTermSetPopulator = new TemplateTermSetPopulator(pom.getObject().getTemplate(), new StringBuilder(), false, true);
+		if(objectTemplateTermSetPopulator.getTerms().isSingleUriString())
+		{
+			objectUri = generateStringValueForTemplate(objectTemplateTermSetPopulator.getTerms());
+		}
 		generateInternal(subjectMapTemplate, pom, subjectTermsToPaths);
 		if(generateContext && objectTemplateTermSetPopulator.getTerms().isSingleColumnTerm())
 		{
-			getColumnContextUri(translator.getHNodeIdForColumnName(objectTemplateTermSetPopulator.getTerms().getAllTerms().get(0).getTemplateTermValue()));
+			contextHNodeId = translator.getHNodeIdForColumnName(objectTemplateTermSetPopulator.getTerms().getAllTerms().get(0).getTemplateTermValue());
+			getColumnContextUri(contextHNodeId);
 		}
 	}
 
@@ -67,18 +75,14 @@ public class ColumnPredicateObjectMappingPlan extends
 	@Override
 	protected void outputTriple(KR2RMLRDFWriter outWriter,
 			PopulatedTemplateTermSet subject,
-			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object) {
-		if(objectTemplateTermSetPopulator.getTerms().isSingleUriString())
+			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object, URIFormatter uriFormatter) {
+		if(objectUri != null)
 		{
-			outWriter.outputTripleWithURIObject(subject.getURI(), predicate.getURI(), uriFormatter.getExpandedAndNormalizedUri(object.getURI()));
+			outWriter.outputTripleWithURIObject(subject.getURI(), predicate.getURI(), uriFormatter.getExpandedAndNormalizedUri(objectUri));
 		}
-		else if(generateContext && objectTemplateTermSetPopulator.getTerms().isSingleColumnTerm())
+		else if(contextHNodeId != null)
 		{
-			try {
-				outWriter.outputQuadWithLiteralObject(subject.getURI(), predicate.getURI(), object.getURI(), literalTemplateValue,getColumnContextUri(translator.getHNodeIdForColumnName(objectTemplateTermSetPopulator.getTerms().getAllTerms().get(0).getTemplateTermValue())));
-			} catch (HNodeNotFoundKarmaException e) {
-				LOG.error("No hnode found for context " +objectTemplateTermSetPopulator.getTerms().getAllTerms().get(0).getTemplateTermValue() + " " + e);
-			}
+			outWriter.outputQuadWithLiteralObject(subject.getURI(), predicate.getURI(), object.getURI(), literalTemplateValue, getColumnContextUri(contextHNodeId));
 		}
 		else
 		{
@@ -0,0 +1,158 @@
+package edu.isi.karma.kr2rml.planning;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.ErrorReport.Priority;
+import edu.isi.karma.kr2rml.ReportMessage;
+import edu.isi.karma.kr2rml.exception.HNodeNotFoundKarmaException;
+import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
+import edu.isi.karma.kr2rml.mapping.KR2RMLMappingColumnNameHNodeTranslator;
+import edu.isi.karma.rep.HNodePath;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * A KR2RMLMapping that has been prepared for RDF generation once so that it
+ * can be applied to many worksheets, e.g. the chunks of a database table.
+ *
+ * The triples map graph is DAGified when the mapping is compiled. The
+ * TriplesMapWorkerPlans are built for the first worksheet they are requested
+ * for and reused for every following worksheet with the same headers (same
+ * HNode ids and column names); they are only rebuilt when the headers change.
+ * The plans do not keep anything of the generation that built them: the
+ * factory and translator are only used to find the HNode paths of the
+ * columns, and the URIFormatter (with the error report of the generation) is
+ * passed in when a plan is executed.
+ * The (triples and predicate object) maps left out of the plans because the
+ * worksheet is missing their columns are added to the error report of every
+ * generation that uses the plans, not only to the one that built them.
+ * The worksheet history is kept as a string because replaying it rewrites the
+ * column names in the JSON with the HNode ids of the worksheet.
+ */
+public class CompiledKR2RMLMapping {
+
+	private static Logger logger = LoggerFactory.getLogger(CompiledKR2RMLMapping.class);
+
+	private KR2RMLMapping kr2rmlMapping;
+	private String worksheetHistory;
+
+	private String headersSignature;
+	private boolean generateContext;
+	private Map<String, String> hNodeToContextUriMap;
+	private Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan;
+	private List<ReportMessage> skippedMappingMessages;
+	private int numWorkerPlanGenerations = 0;
+
+	public CompiledKR2RMLMapping(KR2RMLMapping kr2rmlMapping) throws KarmaException
+	{
+		this.kr2rmlMapping = kr2rmlMapping;
+		if(kr2rmlMapping.getWorksheetHistory() != null)
+		{
+			this.worksheetHistory = kr2rmlMapping.getWorksheetHistory().toString();
+		}
+		try{
+			DFSTriplesMapGraphDAGifier dagifier = new DFSTriplesMapGraphDAGifier();
+			dagifier.dagify(kr2rmlMapping.getAuxInfo().getTriplesMapGraph(), new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
+		}catch (Exception e)
+		{
+			logger.error("Unable to find DAG for RDF Generation!", e);
+			throw new KarmaException("Unable to find DAG for RDF Generation! " + e.getMessage());
+		}
+	}
+
+	public KR2RMLMapping getMapping()
+	{
+		return kr2rmlMapping;
+	}
+
+	/**
+	 * @return a fresh copy of the worksheet history of the mapping that can be
+	 * replayed on a worksheet, or null if the mapping has no history
+	 */
+	public JSONArray getWorksheetHistory() throws JSONException
+	{
+		if(worksheetHistory == null)
+		{
+			return null;
+		}
+		return new JSONArray(worksheetHistory);
+	}
+
+	/**
+	 * @return how many times the worker plans had to be built
+	 */
+	public int getNumWorkerPlanGenerations()
+	{
+		return numWorkerPlanGenerations;
+	}
+
+	public synchronized Map<TriplesMap, TriplesMapWorkerPlan> getWorkerPlans(Worksheet worksheet, RepFactory factory,
+			KR2RMLMappingColumnNameHNodeTranslator translator,
+			boolean generateContext, Map<String, String> hNodeToContextUriMap, ErrorReport errorReport)
+	{
+		String signature = getHeadersSignature(worksheet);
+		if(triplesMapToWorkerPlan != null && signature.equals(headersSignature)
+				&& generateContext == this.generateContext
+				&& (!generateContext || hNodeToContextUriMap == this.hNodeToContextUriMap))
+		{
+			reportSkippedMappings(errorReport);
+			return triplesMapToWorkerPlan;
+		}
+
+		Map<TriplesMap, TriplesMapWorkerPlan> workerPlans = new HashMap<TriplesMap, TriplesMapWorkerPlan>();
+		List<ReportMessage> skippedMessages = new LinkedList<ReportMessage>();
+		for(TriplesMap triplesMap : kr2rmlMapping.getTriplesMapList())
+		{
+			try
+			{
+				TriplesMapWorkerPlan workerPlan = new TriplesMapWorkerPlan(factory, triplesMap, kr2rmlMapping, translator, generateContext, hNodeToContextUriMap);
+				workerPlans.put(triplesMap, workerPlan);
+				skippedMessages.addAll(workerPlan.getSkippedMappingMessages());
+			}
+			catch (HNodeNotFoundKarmaException ex)
+			{
+				logger.warn("Unable to generate RDF for " + triplesMap.getId() + ". " + ex.getMessage() + ": " + ex.getOffendingColumn());
+				skippedMessages.add(new ReportMessage("Column not found in the worksheet: " + ex.getOffendingColumn(),
+						"No RDF generated for " + triplesMap.getId() + ". " + ex.getMessage(), Priority.medium));
+			}
+		}
+		numWorkerPlanGenerations++;
+		this.triplesMapToWorkerPlan = workerPlans;
+		this.skippedMappingMessages = skippedMessages;
+		this.headersSignature = signature;
+		this.generateContext = generateContext;
+		this.hNodeToContextUriMap = hNodeToContextUriMap;
+		reportSkippedMappings(errorReport);
+		return workerPlans;
+	}
+
+	private void reportSkippedMappings(ErrorReport errorReport)
+	{
+		for(ReportMessage message : skippedMappingMessages)
+		{
+			errorReport.addReportMessage(message);
+		}
+	}
+
+	private String getHeadersSignature(Worksheet worksheet) {
+		StringBuilder signature = new StringBuilder();
+		for(HNodePath path : worksheet.getHeaders().getAllPaths())
+		{
+			signature.append(path.toString());
+			signature.append('=');
+			signature.append(path.toColumnNamePath());
+			signature.append('\n');
+		}
+		return signature.toString();
+	}
+}
@@ -17,9 +17,9 @@ import edu.isi.karma.rep.RepFactory;
 public class InternalPredicateObjectMappingPlan extends
 		PredicateObjectMappingPlan {
 
-	public InternalPredicateObjectMappingPlan(TemplateTermSet subjectMapTemplate, PredicateObjectMap pom, TriplesMap objectTriplesMap, Map<ColumnTemplateTerm, HNodePath> subjectTermsToPaths, boolean isFlipped,KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator) throws HNodeNotFoundKarmaException
+	public InternalPredicateObjectMappingPlan(TemplateTermSet subjectMapTemplate, PredicateObjectMap pom, TriplesMap objectTriplesMap, Map<ColumnTemplateTerm, HNodePath> subjectTermsToPaths, boolean isFlipped,KR2RMLMapping kr2rmlMapping, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator) throws HNodeNotFoundKarmaException
 	{
-		super(kr2rmlMapping, uriFormatter, factory, translator);
+		super(kr2rmlMapping, factory, translator);
 		this.isFlipped = isFlipped;
 		generateInternal(subjectMapTemplate, pom, objectTriplesMap, subjectTermsToPaths);
 	}
@@ -31,7 +31,7 @@ public class InternalPredicateObjectMappingPlan extends
 	}
 	@Override
 	protected void outputTriple(KR2RMLRDFWriter outWriter, PopulatedTemplateTermSet subject,
-			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object) {
+			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object, URIFormatter uriFormatter) {
 	
 		if(isFlipped)
 		{
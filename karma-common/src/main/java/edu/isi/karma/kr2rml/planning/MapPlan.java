@@ -4,7 +4,6 @@ import java.util.List;
 import java.util.Map;
 
 import edu.isi.karma.kr2rml.SubjectMap;
-import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.exception.HNodeNotFoundKarmaException;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMappingColumnNameHNodeTranslator;
@@ -16,17 +15,21 @@ import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.rep.HNodePath;
 import edu.isi.karma.rep.RepFactory;
 
+/**
+ * The factory and translator are only used while the plan is built, to find
+ * the HNode paths of the columns; a plan can then be executed on any
+ * worksheet with the same headers, with the URIFormatter of the generation
+ * that executes it.
+ */
 public abstract class MapPlan {
 	
 	protected KR2RMLMapping kr2rmlMapping;
-	protected URIFormatter uriFormatter;
 	protected RepFactory factory;
 	protected KR2RMLMappingColumnNameHNodeTranslator translator;
 	
-	public MapPlan(KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator)
+	public MapPlan(KR2RMLMapping kr2rmlMapping, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator)
 	{
 		this.factory = factory;
-		this.uriFormatter = uriFormatter;
 		this.kr2rmlMapping = kr2rmlMapping;
 		this.translator = translator;
 	}
@@ -36,10 +39,10 @@ public abstract class MapPlan {
 		if (subjMap.isBlankNode()) {
 			List<String> columnsCovered  = kr2rmlMapping.getAuxInfo().getBlankNodesColumnCoverage().get(subjMap.getId());
 			subjMapTemplate = generateSubjectMapTemplateForBlankNode(subjMap, columnsCovered);	
-			subjectMapTTSPopulator = new TemplateTermSetPopulator(subjMapTemplate, new StringBuilder(), uriFormatter, true, false);
+			subjectMapTTSPopulator = new TemplateTermSetPopulator(subjMapTemplate, new StringBuilder(), true, false);
 		} else {
 			subjMapTemplate = subjMap.getTemplate();
-			subjectMapTTSPopulator = new TemplateTermSetPopulator(subjMapTemplate, new StringBuilder(), uriFormatter);
+			subjectMapTTSPopulator = new TemplateTermSetPopulator(subjMapTemplate, new StringBuilder());
 		}
 		return subjectMapTTSPopulator;
 	}
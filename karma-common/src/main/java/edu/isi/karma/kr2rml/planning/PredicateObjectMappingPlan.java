@@ -26,9 +26,9 @@ import edu.isi.karma.rep.Row;
 public abstract class PredicateObjectMappingPlan extends MapPlan {
 
 	public PredicateObjectMappingPlan(KR2RMLMapping kr2rmlMapping,
-			URIFormatter uriFormatter, RepFactory factory,
+			RepFactory factory,
 			KR2RMLMappingColumnNameHNodeTranslator translator) {
-		super(kr2rmlMapping, uriFormatter, factory, translator);
+		super(kr2rmlMapping, factory, translator);
 	}
 
 	protected ComplicatedTemplateTermSetPopulatorPlan complicatedPlan;
@@ -63,7 +63,7 @@ public abstract class PredicateObjectMappingPlan extends MapPlan {
 		subjectAndObjectTemplateTerms.addAll(this.combinedSubjectObjectTermsToPaths.keySet());
 		LinkedList<ColumnTemplateTerm> predicateColumnTemplateTerms = new LinkedList<ColumnTemplateTerm>();
 		predicateColumnTemplateTerms.addAll(pom.getPredicate().getTemplate().getAllColumnNameTermElements());
-		predicateTemplateTermSetPopulator = new TemplateTermSetPopulator(pom.getPredicate().getTemplate(), new StringBuilder(), uriFormatter, true, true);
+		predicateTemplateTermSetPopulator = new TemplateTermSetPopulator(pom.getPredicate().getTemplate(), new StringBuilder(), true, true);
 		Map<ColumnTemplateTerm, HNodePath> combinedSubjectObjectPredicateTermsToPaths = new HashMap<ColumnTemplateTerm, HNodePath>();
 		combinedSubjectObjectPredicateTermsToPaths.putAll(combinedSubjectObjectTermsToPaths);
 		Map<ColumnTemplateTerm, HNodePath> predicateTermsToPaths = new HashMap<ColumnTemplateTerm, HNodePath>();
@@ -83,24 +83,24 @@ public abstract class PredicateObjectMappingPlan extends MapPlan {
 		return subjectsToObjects;
 	}
 	
-	public void outputTriples(KR2RMLRDFWriter outWriter, Map<PopulatedTemplateTermSet, List<PartiallyPopulatedTermSet>> subjectsToObjects, Row r)
+	public void outputTriples(KR2RMLRDFWriter outWriter, Map<PopulatedTemplateTermSet, List<PartiallyPopulatedTermSet>> subjectsToObjects, Row r, URIFormatter uriFormatter)
 	{
 		for(Entry<PopulatedTemplateTermSet, List<PartiallyPopulatedTermSet>> subjectToObjects : subjectsToObjects.entrySet())
 		{
 			PopulatedTemplateTermSet subject = subjectToObjects.getKey();
-			List<PopulatedTemplateTermSet> objects = objectTemplateTermSetPopulator.generatePopulatedTemplatesFromPartials( subjectToObjects.getValue());
+			List<PopulatedTemplateTermSet> objects = objectTemplateTermSetPopulator.generatePopulatedTemplatesFromPartials( subjectToObjects.getValue(), uriFormatter);
 			for(PopulatedTemplateTermSet object : objects )
 			{
-				List<PopulatedTemplateTermSet> predicates = predicateTemplateTermSetPopulator.generatePopulatedTemplatesFromPartials(predicatePlan.execute(r, subject, object));
+				List<PopulatedTemplateTermSet> predicates = predicateTemplateTermSetPopulator.generatePopulatedTemplatesFromPartials(predicatePlan.execute(r, subject, object), uriFormatter);
 				for(PopulatedTemplateTermSet predicate : predicates)
 				{
-					outputTriple(outWriter, subject, predicate, object);	
+					outputTriple(outWriter, subject, predicate, object, uriFormatter);	
 				}
 			}
 		}
 	}
 
 	protected abstract void outputTriple(KR2RMLRDFWriter outWriter, PopulatedTemplateTermSet subject,
-			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object);
+			PopulatedTemplateTermSet predicate, PopulatedTemplateTermSet object, URIFormatter uriFormatter);
 	
 }
@@ -0,0 +1,89 @@
+package edu.isi.karma.kr2rml.planning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+
+/**
+ * Records the triples of a batch of rows so that the batch can be generated on
+ * any thread and then written to the real KR2RMLRDFWriter, row by row, in the
+ * order of the worksheet.
+ */
+class RowBufferingKR2RMLRDFWriter implements KR2RMLRDFWriter {
+
+	private enum OutputType {
+		uriObject, literalObject, quadLiteralObject, endOfRow
+	}
+
+	private List<BufferedOutput> bufferedOutput = new ArrayList<BufferedOutput>();
+
+	@Override
+	public void outputTripleWithURIObject(String subjUri, String predicateUri,
+			String objectUri) {
+		bufferedOutput.add(new BufferedOutput(OutputType.uriObject, subjUri, predicateUri, objectUri));
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subjUri,
+			String predicateUri, String value, String literalType) {
+		bufferedOutput.add(new BufferedOutput(OutputType.literalObject, subjUri, predicateUri, value, literalType));
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subjUri,
+			String predicateUri, String value, String literalType, String graph) {
+		bufferedOutput.add(new BufferedOutput(OutputType.quadLiteralObject, subjUri, predicateUri, value, literalType, graph));
+	}
+
+	@Override
+	public void finishRow() {
+		bufferedOutput.add(new BufferedOutput(OutputType.endOfRow));
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * Writes everything recorded so far to outWriter and empties the buffer
+	 */
+	public void replay(KR2RMLRDFWriter outWriter)
+	{
+		for(BufferedOutput buffered : bufferedOutput)
+		{
+			String[] output = buffered.terms;
+			switch(buffered.type)
+			{
+			case uriObject:
+				outWriter.outputTripleWithURIObject(output[0], output[1], output[2]);
+				break;
+			case literalObject:
+				outWriter.outputTripleWithLiteralObject(output[0], output[1], output[2], output[3]);
+				break;
+			case quadLiteralObject:
+				outWriter.outputQuadWithLiteralObject(output[0], output[1], output[2], output[3], output[4]);
+				break;
+			default:
+				outWriter.finishRow();
+			}
+		}
+		bufferedOutput = new ArrayList<BufferedOutput>();
+	}
+
+	private static class BufferedOutput
+	{
+		private final OutputType type;
+		private final String[] terms;
+
+		private BufferedOutput(OutputType type, String... terms)
+		{
+			this.type = type;
+			this.terms = terms;
+		}
+	}
+}
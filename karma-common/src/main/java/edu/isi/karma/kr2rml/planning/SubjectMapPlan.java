@@ -24,9 +24,9 @@ public class SubjectMapPlan extends MapPlan {
 	TemplateTermSetPopulatorPlan subjectPlan;
 	Map<ColumnTemplateTerm, HNodePath> subjectTermsToPaths;
 	
-	public SubjectMapPlan(TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator) throws HNodeNotFoundKarmaException
+	public SubjectMapPlan(TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, RepFactory factory, KR2RMLMappingColumnNameHNodeTranslator translator) throws HNodeNotFoundKarmaException
 	{
-		super(kr2rmlMapping, uriFormatter, factory, translator);
+		super(kr2rmlMapping, factory, translator);
 		configureSubjectMapPlan(triplesMap);
 	}
 	public SubjectMap configureSubjectMapPlan(TriplesMap triplesMap)
@@ -39,10 +39,10 @@ public class SubjectMapPlan extends MapPlan {
 		return subjMap;
 	}
 	
-	public List<PopulatedTemplateTermSet> execute(Row r)
+	public List<PopulatedTemplateTermSet> execute(Row r, URIFormatter uriFormatter)
 	{
 		List<PopulatedTemplateTermSet> subjects = new LinkedList<PopulatedTemplateTermSet>();
-		subjects.addAll(subjectMapTTSPopulator.populate(r, subjectPlan));
+		subjects.addAll(subjectMapTTSPopulator.populate(r, subjectPlan, uriFormatter));
 		return subjects;
 	}
 	
@@ -3,6 +3,7 @@ package edu.isi.karma.kr2rml.planning;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.template.PopulatedTemplateTermSet;
 import edu.isi.karma.rep.Row;
 
@@ -24,12 +26,18 @@ public class TriplesMapPlanGenerator {
 	private Set<TriplesMap> visitedMaps = new HashSet<TriplesMap>();
 	private Row r;
 	private KR2RMLRDFWriter outWriter;
+	private URIFormatter uriFormatter;
 	
-	public TriplesMapPlanGenerator(Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan, Row r, KR2RMLRDFWriter outWriter) {
+	public TriplesMapPlanGenerator(Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan, Row r, KR2RMLRDFWriter outWriter, URIFormatter uriFormatter) {
 		
 		this.triplesMapToWorkerPlan = triplesMapToWorkerPlan;
 		this.r = r;
 		this.outWriter = outWriter;
+		this.uriFormatter = uriFormatter;
+	}
+
+	public TriplesMapPlanGenerator(Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan) {
+		this(triplesMapToWorkerPlan, null, null, null);
 	}
 
 	public TriplesMapPlan generatePlan(TriplesMapGraphMerger tmf)
@@ -63,6 +71,51 @@ public class TriplesMapPlanGenerator {
 		generateTriplesMapWorker(mapToWorker, graph, map, plan);
 		return mapToWorker.values();
 	}
+	/**
+	 * Orders the worker plans of the graph so that every plan comes after the
+	 * plans it depends on. Executing them one after the other in this order is
+	 * equivalent to executing the TriplesMapPlan of a row.
+	 */
+	public List<TriplesMapWorkerPlan> generateOrderedWorkerPlans(TriplesMapGraph graph)
+	{
+		Set<TriplesMap> orderedMaps = new LinkedHashSet<TriplesMap>();
+		String triplesMapId = graph.findRoot(new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
+		orderTriplesMaps(orderedMaps, graph, graph.getTriplesMap(triplesMapId));
+		
+		List<TriplesMapWorkerPlan> workerPlans = new LinkedList<TriplesMapWorkerPlan>();
+		for(TriplesMap map : orderedMaps)
+		{
+			// No plan could be built if the worksheet is missing the columns of the subject
+			TriplesMapWorkerPlan workerPlan = triplesMapToWorkerPlan.get(map);
+			if(workerPlan != null)
+			{
+				workerPlans.add(workerPlan);
+			}
+		}
+		return workerPlans;
+	}
+
+	private void orderTriplesMaps(Set<TriplesMap> orderedMaps, TriplesMapGraph graph, TriplesMap map) {
+		
+		if(!visitedMaps.add(map))
+		{
+			LOG.error("already visited " + map.toString());
+			return;
+		}
+		for(TriplesMapLink link : graph.getAllNeighboringTriplesMap(map.getId()))
+		{
+			if((link.getSourceMap() == map && !link.isFlipped()) || (link.getTargetMap() == map && link.isFlipped()))
+			{
+				TriplesMap mapDependedOn = link.getSourceMap()==map? link.getTargetMap() : link.getSourceMap(); 
+				if(!orderedMaps.contains(mapDependedOn))
+				{
+					orderTriplesMaps(orderedMaps, graph, mapDependedOn);
+				}
+			}
+		}
+		orderedMaps.add(map);
+	}
+
 	private void generateTriplesMapWorker(
 			Map<TriplesMap, TriplesMapWorker> mapToWorker,
 			TriplesMapGraph graph, TriplesMap map, TriplesMapPlan plan) {
@@ -88,7 +141,7 @@ public class TriplesMapPlanGenerator {
 				workersDependentOn.add(mapToWorker.get(mapDependedOn));
 			}
 		}
-		TriplesMapWorker newWorker = new TriplesMapWorker(map, new CountDownLatch(workersDependentOn.size()), r, triplesMapToWorkerPlan.get(map), outWriter);
+		TriplesMapWorker newWorker = new TriplesMapWorker(map, new CountDownLatch(workersDependentOn.size()), r, triplesMapToWorkerPlan.get(map), outWriter, uriFormatter);
 		mapToWorker.put(map, newWorker);
 		
 		for(TriplesMapWorker worker : workersDependentOn)
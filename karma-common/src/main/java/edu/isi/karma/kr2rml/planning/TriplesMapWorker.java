@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.exception.HNodeNotFoundKarmaException;
 import edu.isi.karma.kr2rml.exception.NoValueFoundInNodeException;
 import edu.isi.karma.kr2rml.exception.ValueNotFoundKarmaException;
@@ -24,10 +25,11 @@ public class TriplesMapWorker implements Callable<Boolean> {
 	protected TriplesMap triplesMap;
 	protected Row r;
 	protected KR2RMLRDFWriter outWriter;
+	protected URIFormatter uriFormatter;
 	
 	protected TriplesMapWorkerPlan plan;
 	
-	public TriplesMapWorker(TriplesMap triplesMap, CountDownLatch latch, Row r, TriplesMapWorkerPlan plan, KR2RMLRDFWriter outWriter)
+	public TriplesMapWorker(TriplesMap triplesMap, CountDownLatch latch, Row r, TriplesMapWorkerPlan plan, KR2RMLRDFWriter outWriter, URIFormatter uriFormatter)
 	{
 		this.latch = latch;
 		this.triplesMap = triplesMap;
@@ -35,6 +37,7 @@ public class TriplesMapWorker implements Callable<Boolean> {
 		this.dependentTriplesMapLatches = new LinkedList<CountDownLatch>();
 		this.r = r;
 		this.outWriter =outWriter;
+		this.uriFormatter = uriFormatter;
 	}
 	public void addDependentTriplesMapLatch(CountDownLatch latch)
 	{
@@ -66,9 +69,11 @@ public class TriplesMapWorker implements Callable<Boolean> {
 		LOG.debug("Processing " + triplesMap.getId() + " " +triplesMap.getSubject().getId());
 		try
 		{
-		
-			plan.execute(r, outWriter);
-		
+			// No plan could be built if the worksheet is missing the columns of the subject
+			if(plan != null)
+			{
+				plan.execute(r, outWriter, uriFormatter);
+			}
 		}
 		catch (Exception e)
 		{
@@ -8,10 +8,12 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.isi.karma.kr2rml.ErrorReport.Priority;
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.ObjectMap;
 import edu.isi.karma.kr2rml.Predicate;
 import edu.isi.karma.kr2rml.PredicateObjectMap;
+import edu.isi.karma.kr2rml.ReportMessage;
 import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.exception.HNodeNotFoundKarmaException;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
@@ -33,19 +35,21 @@ public class TriplesMapWorkerPlan {
 	private Deque<PredicateObjectMappingPlan> internalLinksPlans;
 	private Deque<PredicateObjectMappingPlan> columnLinksPlans;
 
-	private URIFormatter uriFormatter;
-
 	private KR2RMLMappingColumnNameHNodeTranslator translator;
 
 	private boolean generateContext;
 
 	private Map<String, String> hNodeToContextUriMap;
-	public TriplesMapWorkerPlan(RepFactory factory, TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, KR2RMLMappingColumnNameHNodeTranslator translator, boolean generateContext, Map<String, String> hNodeToContextUriMap) throws HNodeNotFoundKarmaException
+
+	// The predicate object maps that were left out because the worksheet is
+	// missing one of their columns
+	private List<ReportMessage> skippedMappingMessages;
+
+	public TriplesMapWorkerPlan(RepFactory factory, TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, KR2RMLMappingColumnNameHNodeTranslator translator, boolean generateContext, Map<String, String> hNodeToContextUriMap) throws HNodeNotFoundKarmaException
 	{
 		this.factory = factory;
 		this.triplesMap = triplesMap;
 		this.kr2rmlMapping = kr2rmlMapping;
-		this.uriFormatter = uriFormatter;
 		this.translator = translator;
 		this.generateContext = generateContext;
 		this.hNodeToContextUriMap = hNodeToContextUriMap;
@@ -54,9 +58,10 @@ public class TriplesMapWorkerPlan {
 	
 	public void generate() throws HNodeNotFoundKarmaException
 	{
-		subjectMapPlan = new SubjectMapPlan(triplesMap, kr2rmlMapping,uriFormatter, factory, translator);
+		subjectMapPlan = new SubjectMapPlan(triplesMap, kr2rmlMapping, factory, translator);
 		
 		internalLinksPlans = new LinkedList<PredicateObjectMappingPlan>();
+		skippedMappingMessages = new LinkedList<ReportMessage>();
 		
 		List<TriplesMapLink> links = kr2rmlMapping.getAuxInfo().getTriplesMapGraph().getAllNeighboringTriplesMap(triplesMap.getId());
 		for(TriplesMapLink link : links) {
@@ -73,7 +78,16 @@ public class TriplesMapWorkerPlan {
 				{
 					objectTriplesMap = link.getTargetMap();
 				}
-				PredicateObjectMappingPlan pomPlan = new InternalPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, objectTriplesMap, subjectMapPlan.getSubjectTermsToPaths(),link.isFlipped(), kr2rmlMapping,uriFormatter, factory, translator);
+				PredicateObjectMappingPlan pomPlan = null;
+				try
+				{
+					pomPlan = new InternalPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, objectTriplesMap, subjectMapPlan.getSubjectTermsToPaths(),link.isFlipped(), kr2rmlMapping, factory, translator);
+				}
+				catch (HNodeNotFoundKarmaException e)
+				{
+					skipPredicateObjectMap(pom, e);
+					continue;
+				}
 				if(link.isFlipped())
 				{
 					internalLinksPlans.addFirst(pomPlan);
@@ -97,7 +111,7 @@ public class TriplesMapWorkerPlan {
 			typeTemplate.addTemplateTermToSet(new StringTemplateTerm(Uris.RDF_TYPE_URI));
 			typePredicate.setTemplate(typeTemplate);
 			pom.setPredicate(typePredicate);
-			PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping,uriFormatter, factory, translator, hNodeToContextUriMap, generateContext);
+			PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping, factory, translator, hNodeToContextUriMap, generateContext);
 			columnLinksPlans.add(pomPlan);
 		}
 		
@@ -114,25 +128,52 @@ public class TriplesMapWorkerPlan {
 				LOG.debug("Skipping " + pom.toString());
 				continue;
 			}
-			PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping,uriFormatter, factory, translator, hNodeToContextUriMap, generateContext);
-			columnLinksPlans.add(pomPlan);
+			try
+			{
+				PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping, factory, translator, hNodeToContextUriMap, generateContext);
+				columnLinksPlans.add(pomPlan);
+			}
+			catch (HNodeNotFoundKarmaException e)
+			{
+				skipPredicateObjectMap(pom, e);
+			}
 		}
 	}
+
+	private void skipPredicateObjectMap(PredicateObjectMap pom, HNodeNotFoundKarmaException e)
+	{
+		LOG.warn("Skipping " + pom.toString() + ". " + e.getMessage() + ": " + e.getOffendingColumn());
+		skippedMappingMessages.add(new ReportMessage("Column not found in the worksheet: " + e.getOffendingColumn(),
+				"No RDF generated for " + pom.toString() + ". " + e.getMessage(), Priority.medium));
+	}
+
+	/**
+	 * @return a message for every predicate object map of the triples map that
+	 * is left out of the plan because its columns are not in the worksheet
+	 */
+	public List<ReportMessage> getSkippedMappingMessages()
+	{
+		return skippedMappingMessages;
+	}
 	
-	public void execute(Row r, KR2RMLRDFWriter outWriter)
+	/**
+	 * @param uriFormatter the formatter of the generation the row belongs to,
+	 * which reports the unknown prefixes to its error report
+	 */
+	public void execute(Row r, KR2RMLRDFWriter outWriter, URIFormatter uriFormatter)
 	{
 
-		List<PopulatedTemplateTermSet> subjects = subjectMapPlan.execute(r);
+		List<PopulatedTemplateTermSet> subjects = subjectMapPlan.execute(r, uriFormatter);
 		
 		for(PredicateObjectMappingPlan internalLinkPlan : internalLinksPlans)
 		{
-			internalLinkPlan.outputTriples(outWriter, internalLinkPlan.execute(r, subjects), r);
+			internalLinkPlan.outputTriples(outWriter, internalLinkPlan.execute(r, subjects), r, uriFormatter);
 		}
 		
 		for(PredicateObjectMappingPlan columnLinkPlan : columnLinksPlans)
 		{
 			
-			columnLinkPlan.outputTriples(outWriter, columnLinkPlan.execute(r, subjects), r);
+			columnLinkPlan.outputTriples(outWriter, columnLinkPlan.execute(r, subjects), r, uriFormatter);
 		}
 	}
 }
@@ -10,8 +10,9 @@ import edu.isi.karma.rep.Row;
 public class MemoizedTemplateTermSetPopulatorStrategy implements
 		TemplateTermSetPopulatorStrategy {
 
-	private Collection<Node> nodes = null;
-	private Row topRow = null;
+	// The row and its nodes are swapped together so that rows populated
+	// concurrently never see each other's nodes
+	private volatile MemoizedNodes memoizedNodes = null;
 	private HNodePath path;
 	public MemoizedTemplateTermSetPopulatorStrategy(HNodePath path)
 	{
@@ -20,13 +21,26 @@ public class MemoizedTemplateTermSetPopulatorStrategy implements
 	@Override
 	public Collection<Node> getNodes(Row topRow, Row currentRow) 
 	{
-		if(nodes == null || topRow != this.topRow)
+		MemoizedNodes memoized = memoizedNodes;
+		if(memoized == null || topRow != memoized.topRow)
 		{
-			nodes = new LinkedList<Node>();
+			Collection<Node> nodes = new LinkedList<Node>();
 			topRow.collectNodes(path, nodes);
-			this.topRow = topRow;
+			memoized = new MemoizedNodes(topRow, nodes);
+			memoizedNodes = memoized;
 		}
-		return nodes;
+		return memoized.nodes;
 	}
 
+	private static class MemoizedNodes
+	{
+		private final Row topRow;
+		private final Collection<Node> nodes;
+
+		private MemoizedNodes(Row topRow, Collection<Node> nodes)
+		{
+			this.topRow = topRow;
+			this.nodes = nodes;
+		}
+	}
 }
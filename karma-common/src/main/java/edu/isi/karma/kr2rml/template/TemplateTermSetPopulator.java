@@ -9,55 +9,105 @@ import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.rep.Node;
 import edu.isi.karma.rep.Row;
 
+/**
+ * Populates a template with the values of a row. A populator only depends on
+ * the mapping and the worksheet headers; the URIFormatter, and so the error
+ * report the unknown prefixes go to, is the one of the generation that is
+ * running and is passed in with every row.
+ */
 public class TemplateTermSetPopulator {
 	
 	protected TemplateTermSet originalTerms;
 	private boolean URIify;
 	private boolean useNodeValue;
 	private StringBuilder baseTemplate;
-	private URIFormatter formatter;
+	// Value of a template without column terms, computed once as it is the
+	// same for every row
+	private String constantValue;
+	// The constant value as expanded by the last formatter it was asked for
+	private volatile ExpandedConstant expandedConstant;
 	
-	public TemplateTermSetPopulator(TemplateTermSet originalTerms, StringBuilder baseTemplate, URIFormatter formatter)
+	public TemplateTermSetPopulator(TemplateTermSet originalTerms, StringBuilder baseTemplate)
 	{
-		configure(originalTerms, baseTemplate, formatter);
+		configure(originalTerms, baseTemplate);
 		this.URIify = true;
 		this.useNodeValue = true;
+		precomputeConstantValue();
 	}
 	
-	public TemplateTermSetPopulator(TemplateTermSet originalTerms, StringBuilder baseTemplate, URIFormatter formatter, boolean URIify, boolean useNodeValue)
+	public TemplateTermSetPopulator(TemplateTermSet originalTerms, StringBuilder baseTemplate, boolean URIify, boolean useNodeValue)
 	{
-		configure(originalTerms, baseTemplate, formatter);
+		configure(originalTerms, baseTemplate);
 		this.URIify = URIify;
 		this.useNodeValue = useNodeValue;
+		precomputeConstantValue();
 	}
 	
-	private void configure(TemplateTermSet originalTerms, StringBuilder baseTemplate, URIFormatter formatter)
+	private void configure(TemplateTermSet originalTerms, StringBuilder baseTemplate)
 	{
 		this.originalTerms = originalTerms;
 		this.baseTemplate = baseTemplate;
-		this.formatter = formatter;
+	}
+	
+	private void precomputeConstantValue()
+	{
+		StringBuilder value = new StringBuilder();
+		for(TemplateTerm term : originalTerms.getAllTerms())
+		{
+			if(term instanceof ColumnTemplateTerm)
+			{
+				return;
+			}
+			value.append(term.getTemplateTermValue());
+		}
+		constantValue = value.toString();
+	}
+
+	private String getConstantValue(URIFormatter formatter)
+	{
+		if(!URIify)
+		{
+			return constantValue;
+		}
+		ExpandedConstant expanded = expandedConstant;
+		if(expanded == null || expanded.formatter != formatter)
+		{
+			expanded = new ExpandedConstant(formatter, formatter.getExpandedAndNormalizedUri(constantValue));
+			expandedConstant = expanded;
+		}
+		return expanded.value;
 	}
 	
 	public TemplateTermSet getTerms()
 	{
 		return originalTerms;
 	}
-	public List<PopulatedTemplateTermSet> populate(Row topRow, TemplateTermSetPopulatorPlan plan)
+	public List<PopulatedTemplateTermSet> populate(Row topRow, TemplateTermSetPopulatorPlan plan, URIFormatter formatter)
 	{
 		List<PartiallyPopulatedTermSet> partials = plan.execute(topRow);
 		
-		return generatePopulatedTemplatesFromPartials(partials);
+		return generatePopulatedTemplatesFromPartials(partials, formatter);
 	}
 
 	
 	
 	
-	public List<PopulatedTemplateTermSet> generatePopulatedTemplatesFromPartials(List<PartiallyPopulatedTermSet> partials)
+	public List<PopulatedTemplateTermSet> generatePopulatedTemplatesFromPartials(List<PartiallyPopulatedTermSet> partials, URIFormatter formatter)
 	{
-		return generatePopulatedTemplates(partials, baseTemplate, originalTerms.getAllTerms());
+		if(constantValue != null)
+		{
+			String value = getConstantValue(formatter);
+			List<PopulatedTemplateTermSet> templates = new LinkedList<PopulatedTemplateTermSet>();
+			for(int i = 0; i < partials.size(); i++)
+			{
+				templates.add(new PopulatedTemplateTermSet(originalTerms, new HashMap<ColumnTemplateTerm, Node>(), value));
+			}
+			return templates;
+		}
+		return generatePopulatedTemplates(partials, baseTemplate, originalTerms.getAllTerms(), formatter);
 	}
 	protected List<PopulatedTemplateTermSet> generatePopulatedTemplates(List<PartiallyPopulatedTermSet> partials, StringBuilder output,
-			List<TemplateTerm> terms) {
+			List<TemplateTerm> terms, URIFormatter formatter) {
 		List<PopulatedTemplateTermSet> templates = new LinkedList<PopulatedTemplateTermSet>();
 		
 		for(PartiallyPopulatedTermSet partial : partials)
@@ -104,5 +154,16 @@ public class TemplateTermSetPopulator {
 		}
 		return templates;
 	}
-	
+
+	private static class ExpandedConstant
+	{
+		private final URIFormatter formatter;
+		private final String value;
+
+		private ExpandedConstant(URIFormatter formatter, String value)
+		{
+			this.formatter = formatter;
+			this.value = value;
+		}
+	}
 }
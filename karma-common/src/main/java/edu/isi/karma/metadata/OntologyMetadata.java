@@ -25,6 +25,10 @@ public class OntologyMetadata extends KarmaUserMetadata {
 	public void setup() throws KarmaException{
 		logger.info("Start OntologyMetadata.setup");
 		OntologyManager ontologyManager = workspace.getOntologyManager();
+		/** Keep the index of the ontology cache in the user directory, so it is not rebuilt at every start **/
+		String userDir = ServletContextParameterMap.getParameterValue(ServletContextParameterMap.ContextParameter.USER_DIRECTORY_PATH);
+		if (userDir != null && !userDir.isEmpty())
+			ontologyManager.setCacheIndexDirectory(new File(userDir, "ontology-cache"));
 		/** Check if any ontology needs to be preloaded **/
 		String preloadedOntDir = ServletContextParameterMap.getParameterValue(ServletContextParameterMap.ContextParameter.PRELOADED_ONTOLOGY_DIRECTORY);
 		File ontDir = new File(preloadedOntDir);
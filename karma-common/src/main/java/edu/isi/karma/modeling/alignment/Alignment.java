@@ -36,8 +36,8 @@ import org.slf4j.LoggerFactory;
 import com.rits.cloning.Cloner;
 
 import edu.isi.karma.modeling.Uris;
+import edu.isi.karma.modeling.ontology.IncrementalOntologyUpdateListener;
 import edu.isi.karma.modeling.ontology.OntologyManager;
-import edu.isi.karma.modeling.ontology.OntologyUpdateListener;
 import edu.isi.karma.rep.alignment.ClassInstanceLink;
 import edu.isi.karma.rep.alignment.ColumnNode;
 import edu.isi.karma.rep.alignment.ColumnSubClassLink;
@@ -60,7 +60,7 @@ import edu.isi.karma.rep.alignment.SubClassLink;
 
 
 
-public class Alignment implements OntologyUpdateListener {
+public class Alignment implements IncrementalOntologyUpdateListener {
 
 	static Logger logger = LoggerFactory.getLogger(Alignment.class);
 
@@ -584,6 +584,11 @@ public class Alignment implements OntologyUpdateListener {
 		
 	}
 	
+	@Override
+	public void ontologyModelUpdated(Set<String> changedUris) {
+		this.graphBuilder.resetOntologyMaps(changedUris);
+	}
+	
 	private void saveAlignment() {
 		for(IAlignmentSaver saver : savers) {
 			try {
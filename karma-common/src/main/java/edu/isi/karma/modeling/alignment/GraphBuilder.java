@@ -226,6 +226,24 @@ public class GraphBuilder {
 			computeUriClosure(uri);
 	}
 
+	/**
+	 * Computes again only the closures that contain, or belong to, one of the changed uris.
+	 * The other closures only consist of classes whose direct connections did not change.
+	 * @param changedUris the uris of the classes and properties that changed in the ontology cache
+	 */
+	public void resetOntologyMaps(Set<String> changedUris) {
+		List<String> affectedUris = new ArrayList<String>();
+		for (Entry<String, Set<String>> entry : this.uriClosure.entrySet()) {
+			if (changedUris.contains(entry.getKey()) || !Collections.disjoint(entry.getValue(), changedUris))
+				affectedUris.add(entry.getKey());
+		}
+		logger.debug("number of closures to compute again: " + affectedUris.size() + " of " + this.uriClosure.size());
+		for (String uri : affectedUris)
+			this.uriClosure.remove(uri);
+		for (String uri : affectedUris)
+			computeUriClosure(uri);
+	}
+
 	public boolean addNodeAndUpdate(Node node) {
 		if (ModelingConfiguration.getManualAlignment()) {
 			return addNode(node);
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jgrapht.UndirectedGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * Shortest paths over an undirected view of the alignment graph.
+ * The weights of the links are never negative, so the shortest paths from a source are computed
+ * with Dijkstra's algorithm on a binary heap, and the whole shortest path tree of the source is kept.
+ * The steiner tree algorithm uses the same trees for the costs between the steiner nodes and for the paths between them.
+ *
+ * The trees are cached by their source, so the graph must not change while the shortest paths are used.
+ * The graph of a graph builder changes, the shortest paths over it are taken on an UndirectedGraphSnapshot.
+ */
+public class ShortestPaths {
+
+	static Logger logger = LoggerFactory.getLogger(ShortestPaths.class);
+
+	private UndirectedGraph<Node, DefaultLink> graph;
+	private ConcurrentHashMap<Node, ShortestPathTree> trees;
+
+	/**
+	 * @param graph a graph that is not changed while the shortest paths are used
+	 */
+	public ShortestPaths(UndirectedGraph<Node, DefaultLink> graph) {
+		this.graph = graph;
+		this.trees = new ConcurrentHashMap<Node, ShortestPathTree>();
+	}
+
+	public UndirectedGraph<Node, DefaultLink> getGraph() {
+		return this.graph;
+	}
+
+	/**
+	 * Returns the tree of the shortest paths from the source, computing it if it is not in the cache.
+	 * It can be called by several threads at the same time, as long as the graph is not changed.
+	 */
+	public ShortestPathTree getShortestPathTree(Node source) {
+
+		ShortestPathTree tree = this.trees.get(source);
+		if (tree == null) {
+			tree = new ShortestPathTree(this.graph, source);
+			ShortestPathTree existing = this.trees.putIfAbsent(source, tree);
+			if (existing != null)
+				tree = existing;
+		}
+		return tree;
+	}
+
+	/**
+	 * The shortest paths from one source to all the nodes that can be reached from it.
+	 */
+	public static class ShortestPathTree {
+
+		private Node source;
+		private HashMap<Node, Double> costs;
+		private HashMap<Node, DefaultLink> predecessorLinks;
+		private HashMap<Node, Node> predecessors;
+
+		private ShortestPathTree(UndirectedGraph<Node, DefaultLink> graph, Node source) {
+
+			this.source = source;
+			this.costs = new HashMap<Node, Double>();
+			this.predecessorLinks = new HashMap<Node, DefaultLink>();
+			this.predecessors = new HashMap<Node, Node>();
+
+			// nodes are added again when their cost decreases, the entries with an old cost are skipped
+			PriorityQueue<HeapEntry> heap = new PriorityQueue<HeapEntry>();
+			HashMap<Node, Double> tentativeCosts = new HashMap<Node, Double>();
+			tentativeCosts.put(source, 0.0);
+			heap.add(new HeapEntry(source, 0.0));
+
+			while (!heap.isEmpty()) {
+				HeapEntry entry = heap.poll();
+				Node n = entry.node;
+				if (this.costs.containsKey(n))
+					continue;
+				this.costs.put(n, entry.cost);
+
+				for (DefaultLink link : graph.edgesOf(n)) {
+					Node opposite = graph.getEdgeTarget(link);
+					if (opposite.equals(n))
+						opposite = graph.getEdgeSource(link);
+					if (opposite.equals(n) || this.costs.containsKey(opposite))
+						continue;
+					double cost = entry.cost + graph.getEdgeWeight(link);
+					Double tentativeCost = tentativeCosts.get(opposite);
+					if (tentativeCost == null || cost < tentativeCost.doubleValue()) {
+						tentativeCosts.put(opposite, cost);
+						this.predecessorLinks.put(opposite, link);
+						this.predecessors.put(opposite, n);
+						heap.add(new HeapEntry(opposite, cost));
+					}
+				}
+			}
+		}
+
+		public Node getSource() {
+			return this.source;
+		}
+
+		/**
+		 * @return the cost of the shortest path to the target, Double.POSITIVE_INFINITY if the target cannot be reached
+		 */
+		public double getCost(Node target) {
+			Double cost = this.costs.get(target);
+			if (cost == null)
+				return Double.POSITIVE_INFINITY;
+			return cost.doubleValue();
+		}
+
+		/**
+		 * @return the links of the shortest path from the source to the target, null if the target cannot be reached
+		 */
+		public List<DefaultLink> getPathEdgeList(Node target) {
+			if (!this.costs.containsKey(target))
+				return null;
+			List<DefaultLink> path = new ArrayList<DefaultLink>();
+			Node n = target;
+			while (!n.equals(this.source)) {
+				path.add(this.predecessorLinks.get(n));
+				n = this.predecessors.get(n);
+			}
+			Collections.reverse(path);
+			return path;
+		}
+	}
+
+	private static class HeapEntry implements Comparable<HeapEntry> {
+
+		private Node node;
+		private double cost;
+
+		private HeapEntry(Node node, double cost) {
+			this.node = node;
+			this.cost = cost;
+		}
+
+		@Override
+		public int compareTo(HeapEntry e) {
+			return Double.compare(this.cost, e.cost);
+		}
+	}
+}
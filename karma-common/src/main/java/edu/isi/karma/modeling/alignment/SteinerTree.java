@@ -26,8 +26,6 @@ import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.UndirectedGraph;
-import org.jgrapht.alg.BellmanFordShortestPath;
-import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.alg.KruskalMinimumSpanningTree;
 import org.jgrapht.graph.Pseudograph;
 import org.jgrapht.graph.WeightedMultigraph;
@@ -48,11 +46,22 @@ public class SteinerTree {
 	static Logger logger = LoggerFactory.getLogger(SteinerTree.class);
 
 	UndirectedGraph<Node, DefaultLink> graph;
+	ShortestPaths shortestPaths;
 	WeightedMultigraph<Node, DefaultLink> tree;
 	List<Node> steinerNodes;
 	
 	public SteinerTree(UndirectedGraph<Node, DefaultLink> graph, List<Node> steinerNodes) {
-		this.graph = graph;
+		this(new ShortestPaths(graph), steinerNodes);
+	}
+	
+	/**
+	 * @param shortestPaths the shortest paths over the graph, the shortest path trees of the steiner nodes are 
+	 * taken from its cache if they have already been computed for another set of steiner nodes 
+	 * @param steinerNodes
+	 */
+	public SteinerTree(ShortestPaths shortestPaths, List<Node> steinerNodes) {
+		this.graph = shortestPaths.getGraph();
+		this.shortestPaths = shortestPaths;
 		this.steinerNodes = steinerNodes;
 		
 		runAlgorithm();
@@ -73,10 +82,10 @@ public class SteinerTree {
 			g.addVertex(n);
 		}
 		
-		BellmanFordShortestPath<Node, DefaultLink> path;
+		ShortestPaths.ShortestPathTree path;
 		
 		for (Node n1 : this.steinerNodes) {
-			path = new BellmanFordShortestPath<Node, DefaultLink>(this.graph, n1);
+			path = this.shortestPaths.getShortestPathTree(n1);
 			
 			for (Node n2 : this.steinerNodes) {
 				
@@ -151,7 +160,7 @@ public class SteinerTree {
 			new WeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
 		
 		Set<DefaultLink> edges = g2.edgeSet();
-		DijkstraShortestPath<Node, DefaultLink> path;
+		ShortestPaths.ShortestPathTree path;
 		
 		Node source, target;
 		
@@ -159,8 +168,9 @@ public class SteinerTree {
 			source = edge.getSource();
 			target = edge.getTarget();
 			
-			path = new DijkstraShortestPath<Node, DefaultLink>(this.graph, source, target);
-			List<DefaultLink> pathEdges = path.getPathEdgeList();
+			// the shortest path tree of the source has been computed in step 1
+			path = this.shortestPaths.getShortestPathTree(source);
+			List<DefaultLink> pathEdges = path.getPathEdgeList(target);
 			
 			if (pathEdges == null)
 				continue;
@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import java.util.HashMap;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.jgrapht.graph.WeightedMultigraph;
+
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * An undirected copy of the alignment graph that cannot be changed, so that several threads can read it
+ * while the graph builder changes the graph.
+ * The weights of the links are copied too, they are kept in the links themselves by jgrapht.
+ * The containers that jgrapht creates on the first access to a vertex are all created by the constructor,
+ * the copy is only read after that.
+ */
+public class UndirectedGraphSnapshot extends WeightedMultigraph<Node, DefaultLink> {
+
+	private static final long serialVersionUID = 1L;
+
+	private HashMap<DefaultLink, Double> weights;
+	private boolean frozen = false;
+
+	public UndirectedGraphSnapshot(DirectedWeightedMultigraph<Node, DefaultLink> graph) {
+		super(DefaultLink.class);
+		
+		this.weights = new HashMap<DefaultLink, Double>();
+		for (Node v : graph.vertexSet())
+			super.addVertex(v);
+		for (DefaultLink e : graph.edgeSet()) {
+			super.addEdge(graph.getEdgeSource(e), graph.getEdgeTarget(e), e);
+			this.weights.put(e, graph.getEdgeWeight(e));
+		}
+		
+		this.vertexSet();
+		this.edgeSet();
+		for (Node v : this.vertexSet())
+			this.edgesOf(v);
+		this.frozen = true;
+	}
+
+	@Override
+	public double getEdgeWeight(DefaultLink e) {
+		Double weight = this.weights.get(e);
+		if (weight == null)
+			return super.getEdgeWeight(e);
+		return weight.doubleValue();
+	}
+
+	@Override
+	public DefaultLink addEdge(Node sourceVertex, Node targetVertex) {
+		checkNotFrozen();
+		return super.addEdge(sourceVertex, targetVertex);
+	}
+
+	@Override
+	public boolean addEdge(Node sourceVertex, Node targetVertex, DefaultLink e) {
+		checkNotFrozen();
+		return super.addEdge(sourceVertex, targetVertex, e);
+	}
+
+	@Override
+	public boolean addVertex(Node v) {
+		checkNotFrozen();
+		return super.addVertex(v);
+	}
+
+	@Override
+	public DefaultLink removeEdge(Node sourceVertex, Node targetVertex) {
+		checkNotFrozen();
+		return super.removeEdge(sourceVertex, targetVertex);
+	}
+
+	@Override
+	public boolean removeEdge(DefaultLink e) {
+		checkNotFrozen();
+		return super.removeEdge(e);
+	}
+
+	@Override
+	public boolean removeVertex(Node v) {
+		checkNotFrozen();
+		return super.removeVertex(v);
+	}
+
+	@Override
+	public void setEdgeWeight(DefaultLink e, double weight) {
+		checkNotFrozen();
+		super.setEdgeWeight(e, weight);
+	}
+
+	private void checkNotFrozen() {
+		if (this.frozen)
+			throw new UnsupportedOperationException("the graph snapshot cannot be changed.");
+	}
+}
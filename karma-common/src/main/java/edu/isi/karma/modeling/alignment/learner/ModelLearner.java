@@ -32,10 +32,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.jgrapht.UndirectedGraph;
-import org.jgrapht.graph.AsUndirectedGraph;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.jgrapht.graph.WeightedMultigraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,8 +56,10 @@ import edu.isi.karma.modeling.alignment.LinkIdFactory;
 import edu.isi.karma.modeling.alignment.ModelEvaluation;
 import edu.isi.karma.modeling.alignment.NodeIdFactory;
 import edu.isi.karma.modeling.alignment.SemanticModel;
+import edu.isi.karma.modeling.alignment.ShortestPaths;
 import edu.isi.karma.modeling.alignment.SteinerTree;
 import edu.isi.karma.modeling.alignment.TreePostProcess;
+import edu.isi.karma.modeling.alignment.UndirectedGraphSnapshot;
 import edu.isi.karma.modeling.ontology.OntologyManager;
 import edu.isi.karma.modeling.research.ModelReader;
 import edu.isi.karma.modeling.research.Params;
@@ -73,6 +81,19 @@ public class ModelLearner {
 
 	private static Logger logger = LoggerFactory.getLogger(ModelLearner.class);
 
+	// the steiner trees of the candidate sets are independent, they are computed by a bounded pool shared by all the learners
+	private static final ExecutorService steinerTreeExecutor = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "steiner-tree-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
 	private OntologyManager ontologyManager = null;
 	private GraphBuilder graphBuilder = null;
 	private NodeIdFactory nodeIdFactory = null; 
@@ -159,13 +180,28 @@ public class ModelLearner {
 
 		
 		logger.info("computing steiner trees ...");
-		List<SortableSemanticModel> sortableSemanticModels = new ArrayList<SortableSemanticModel>();
+		List<SteinerNodes> steinerNodesList = new ArrayList<SteinerNodes>();
 		int count = 1;
 		for (SteinerNodes sn : candidateSteinerSets.getSteinerSets()) {
-			logger.debug("computing steiner tree for steiner nodes set " + count + " ...");
-			logger.debug(sn.getScoreDetailsString());
-			DirectedWeightedMultigraph<Node, LabeledLink> tree = computeSteinerTree(sn.getNodes());
+			steinerNodesList.add(sn);
 			count ++;
+			if (count == ModelingConfiguration.getMaxCandidateModels())
+				break;
+		}
+		
+		start = System.currentTimeMillis();
+		List<WeightedMultigraph<Node, DefaultLink>> steinerTrees = computeSteinerTrees(steinerNodesList);
+		long steinerTreesElapsedTimeMillis = System.currentTimeMillis() - start;
+		logger.info("time to compute " + steinerNodesList.size() + " steiner trees: " + (steinerTreesElapsedTimeMillis/1000F));
+		
+		// the post processing adds the selected links to the graph builder, so the trees are processed one by one 
+		// in the order of the candidate sets
+		List<SortableSemanticModel> sortableSemanticModels = new ArrayList<SortableSemanticModel>();
+		for (int i = 0; i < steinerNodesList.size(); i++) {
+			SteinerNodes sn = steinerNodesList.get(i);
+			logger.debug("post processing steiner tree for steiner nodes set " + (i + 1) + " ...");
+			logger.debug(sn.getScoreDetailsString());
+			DirectedWeightedMultigraph<Node, LabeledLink> tree = postProcessSteinerTree(steinerTrees.get(i));
 			if (tree != null) {
 				SemanticModel sm = new SemanticModel(new RandomGUID().toString(), 
 						tree,
@@ -176,8 +212,6 @@ public class ModelLearner {
 						new SortableSemanticModel(sm, sn);
 				sortableSemanticModels.add(sortableSemanticModel);
 			}
-			if (count == ModelingConfiguration.getMaxCandidateModels())
-				break;
 		}
 		
 		Collections.sort(sortableSemanticModels);
@@ -203,7 +237,65 @@ public class ModelLearner {
 
 	}
 	
-	private DirectedWeightedMultigraph<Node, LabeledLink> computeSteinerTree(Set<Node> steinerNodes) {
+	private List<WeightedMultigraph<Node, DefaultLink>> computeSteinerTrees(List<SteinerNodes> steinerNodesList) {
+		List<Set<Node>> steinerNodeSets = new ArrayList<Set<Node>>(steinerNodesList.size());
+		for (SteinerNodes sn : steinerNodesList)
+			steinerNodeSets.add(sn.getNodes());
+		return computeSteinerTrees(this.graphBuilder.getGraph(), steinerNodeSets, steinerTreeExecutor);
+	}
+	
+	/**
+	 * Computes the steiner trees of the candidate sets in parallel. 
+	 * The threads read a snapshot of the graph, the trees are post processed afterwards by the caller.
+	 * @param graph the graph of the graph builder
+	 * @param steinerNodeSets the candidate sets of steiner nodes
+	 * @param executor the threads that compute the trees, null to compute them one by one on the calling thread
+	 * @return the steiner tree of each candidate set, in the order of the candidate sets, null if it could not be computed
+	 */
+	static List<WeightedMultigraph<Node, DefaultLink>> computeSteinerTrees(DirectedWeightedMultigraph<Node, DefaultLink> graph, 
+			List<Set<Node>> steinerNodeSets, ExecutorService executor) {
+		
+		List<WeightedMultigraph<Node, DefaultLink>> steinerTrees = new ArrayList<WeightedMultigraph<Node, DefaultLink>>();
+		// the candidate sets share most of their steiner nodes, so they share the shortest path trees of these nodes
+		final ShortestPaths shortestPaths = new ShortestPaths(new UndirectedGraphSnapshot(graph));
+
+		if (executor == null || steinerNodeSets.size() == 1) {
+			for (Set<Node> steinerNodes : steinerNodeSets)
+				steinerTrees.add(computeSteinerTree(shortestPaths, steinerNodes));
+			return steinerTrees;
+		}
+		
+		List<Future<WeightedMultigraph<Node, DefaultLink>>> futures = 
+				new ArrayList<Future<WeightedMultigraph<Node, DefaultLink>>>(steinerNodeSets.size());
+		for (final Set<Node> steinerNodes : steinerNodeSets) {
+			futures.add(executor.submit(new Callable<WeightedMultigraph<Node, DefaultLink>>() {
+				@Override
+				public WeightedMultigraph<Node, DefaultLink> call() {
+					return computeSteinerTree(shortestPaths, steinerNodes);
+				}
+			}));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			WeightedMultigraph<Node, DefaultLink> steinerTree = null;
+			try {
+				steinerTree = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<WeightedMultigraph<Node, DefaultLink>> future : futures)
+					future.cancel(true);
+				logger.error("computing the steiner trees was interrupted.");
+				while (steinerTrees.size() < futures.size())
+					steinerTrees.add(null);
+				return steinerTrees;
+			} catch (ExecutionException e) {
+				logger.error("error in computing the steiner tree for steiner nodes set " + (i + 1), e.getCause());
+			}
+			steinerTrees.add(steinerTree);
+		}
+		return steinerTrees;
+	}
+	
+	private static WeightedMultigraph<Node, DefaultLink> computeSteinerTree(ShortestPaths shortestPaths, Set<Node> steinerNodes) {
 		
 		if (steinerNodes == null || steinerNodes.size() == 0) {
 			logger.error("There is no steiner node.");
@@ -214,19 +306,28 @@ public class ModelLearner {
 		List<Node> steinerNodeList = new ArrayList<Node>(steinerNodes); 
 		
 		long start = System.currentTimeMillis();
-		UndirectedGraph<Node, DefaultLink> undirectedGraph = new AsUndirectedGraph<Node, DefaultLink>(this.graphBuilder.getGraph());
 
 		logger.debug("computing steiner tree ...");
-		SteinerTree steinerTree = new SteinerTree(undirectedGraph, steinerNodeList);
-		DirectedWeightedMultigraph<Node, LabeledLink> tree = new TreePostProcess(this.graphBuilder, steinerTree.getDefaultSteinerTree(), null, false).getTree();
+		SteinerTree steinerTree = new SteinerTree(shortestPaths, steinerNodeList);
+		
+		long steinerTreeElapsedTimeMillis = System.currentTimeMillis() - start;
+		logger.debug("time to compute steiner tree: " + (steinerTreeElapsedTimeMillis/1000F));
+		
+		return steinerTree.getDefaultSteinerTree();
+	}
+	
+	private DirectedWeightedMultigraph<Node, LabeledLink> postProcessSteinerTree(WeightedMultigraph<Node, DefaultLink> steinerTree) {
+		
+		if (steinerTree == null)
+			return null;
+		
+		DirectedWeightedMultigraph<Node, LabeledLink> tree = new TreePostProcess(this.graphBuilder, steinerTree, null, false).getTree();
 				//(DirectedWeightedMultigraph<Node, LabeledLink>)GraphUtil.asDirectedGraph(steinerTree.getDefaultSteinerTree());
 		
 		logger.debug(GraphUtil.labeledGraphToString(tree));
 		
-		long steinerTreeElapsedTimeMillis = System.currentTimeMillis() - start;
 		logger.debug("total number of nodes in steiner tree: " + tree.vertexSet().size());
 		logger.debug("total number of edges in steiner tree: " + tree.edgeSet().size());
-		logger.debug("time to compute steiner tree: " + (steinerTreeElapsedTimeMillis/1000F));
 		
 		return tree;
 		
@@ -237,8 +338,7 @@ public class ModelLearner {
 //		GraphUtil.printGraph(finalTree);
 //		return finalTree; 
 
-	}
-	
+	}	
 	private CandidateSteinerSets getCandidateSteinerSets(List<ColumnNode> columnNodes, boolean useCorrectTypes, int numberOfCRFCandidates, Set<Node> addedNodes) {
 
 		if (columnNodes == null || columnNodes.isEmpty())
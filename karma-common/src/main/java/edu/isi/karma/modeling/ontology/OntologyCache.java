@@ -34,6 +34,8 @@ import edu.isi.karma.rep.alignment.Label;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -201,6 +203,294 @@ public class OntologyCache {
 		logger.info("time to build the ontology cache: " + elapsedTimeSec);
 	}
 
+	/**
+	 * Fills the cache from an index that was written by writeIndex for the same ontology files,
+	 * instead of building it from the ontology model.
+	 * @param indexFile the index file
+	 * @return false if the index cannot be read, the cache is then empty and init() has to be called.
+	 */
+	public boolean initFromIndex(File indexFile) {
+
+		logger.debug("start reading the ontology cache from " + indexFile.getAbsolutePath() + " ...");
+		
+		long start = System.currentTimeMillis();
+		
+		try {
+			OntologyCacheIndex.read(indexFile, this);
+		} catch (Exception e) {
+			logger.error("Error reading the ontology cache index " + indexFile.getAbsolutePath(), e);
+			allocateDataStructures();
+			return false;
+		}
+		
+		this.buildSubClassChecks();
+		this.buildSubPropertyChecks();
+		
+		List<String> uris = new ArrayList<String>();
+		uris.add(Uris.RDFS_LABEL_URI);
+		uris.add(Uris.RDFS_COMMENT_URI);
+		uris.add(Uris.RDFS_VALUE_URI);
+		this.addRDFVocabularyToModel(uris);
+
+		logger.info("number of classes:" + classes.size());
+		logger.info("number of all properties:" + properties.size());
+		
+		float elapsedTimeSec = (System.currentTimeMillis() - start)/1000F;
+		logger.info("time to read the ontology cache index: " + elapsedTimeSec);
+		return true;
+	}
+	
+	/**
+	 * Writes the index of the cache, so that initFromIndex can read it when the same ontology files are loaded again.
+	 * @param indexFile the index file
+	 * @throws IOException
+	 */
+	public void writeIndex(File indexFile) throws IOException {
+		long start = System.currentTimeMillis();
+		OntologyCacheIndex.write(this, indexFile);
+		float elapsedTimeSec = (System.currentTimeMillis() - start)/1000F;
+		logger.info("time to write the ontology cache index: " + elapsedTimeSec);
+	}
+
+	/**
+	 * Updates the cache after the statements of another ontology file were added to the ontology model,
+	 * instead of building it again from the whole model.
+	 * Only the entries of the classes and properties that the new statements mention, of their sub and super classes 
+	 * and properties, and of the properties whose domain or range is one of these classes are computed again.
+	 * The hierarchies and the subclass/subproperty checks are then rebuilt from the updated maps.
+	 * @param newUris the uris of the subjects and objects of the new statements
+	 * @return the uris of the classes and properties whose entries changed, and the domains and ranges of the changed properties
+	 */
+	public Set<String> update(Set<String> newUris) {
+
+		logger.debug("start updating the ontology cache ...");
+		
+		long start = System.currentTimeMillis();
+		
+		Set<String> changedUris = new HashSet<String>();
+		
+		// reload the classes and properties mentioned in the new statements, their labels or types may have changed
+		HashSet<String> oldClasses = new HashSet<String>();
+		HashSet<String> oldDataProperties = new HashSet<String>();
+		HashSet<String> oldObjectProperties = new HashSet<String>();
+		for (String uri : newUris) {
+			if (this.classes.remove(uri) != null) oldClasses.add(uri);
+			if (this.dataProperties.remove(uri) != null) oldDataProperties.add(uri);
+			if (this.objectProperties.remove(uri) != null) oldObjectProperties.add(uri);
+			this.properties.remove(uri);
+		}
+		this.loadClasses();
+		this.loadProperties();
+		
+		HashSet<String> newClasses = new HashSet<String>();
+		HashSet<String> newProperties = new HashSet<String>();
+		for (String uri : newUris) {
+			if (this.classes.containsKey(uri)) {
+				newClasses.add(uri);
+				if (!oldClasses.contains(uri)) changedUris.add(uri);
+			}
+			if (this.properties.containsKey(uri)) {
+				newProperties.add(uri);
+				if (oldDataProperties.contains(uri) != this.dataProperties.containsKey(uri) ||
+						oldObjectProperties.contains(uri) != this.objectProperties.containsKey(uri))
+					changedUris.add(uri);
+			}
+		}
+		// classes and properties that were declared in the model after the cache was built, e.g. the RDF vocabulary
+		for (String c : this.classes.keySet()) {
+			if (!this.directSubClasses.containsKey(c) && newClasses.add(c))
+				changedUris.add(c);
+		}
+		for (String p : this.properties.keySet()) {
+			if (!this.directSubProperties.containsKey(p) && newProperties.add(p))
+				changedUris.add(p);
+		}
+		for (String p : this.dataProperties.keySet()) {
+			if (!this.propertyDirectDomains.containsKey(p) && newProperties.add(p))
+				changedUris.add(p);
+		}
+		for (String p : this.objectProperties.keySet()) {
+			if (!this.propertyDirectDomains.containsKey(p) && newProperties.add(p))
+				changedUris.add(p);
+		}
+
+		// classes whose sub or super classes may have changed
+		HashSet<String> classesToUpdate = new HashSet<String>();
+		for (String c : newClasses) {
+			classesToUpdate.add(c);
+			classesToUpdate.addAll(this.ontHandler.getSubClasses(c, true).keySet());
+			classesToUpdate.addAll(this.ontHandler.getSuperClasses(c, true).keySet());
+			addKeys(classesToUpdate, this.directSubClasses.get(c));
+			addKeys(classesToUpdate, this.indirectSubClasses.get(c));
+			addKeys(classesToUpdate, this.directSuperClasses.get(c));
+			addKeys(classesToUpdate, this.indirectSuperClasses.get(c));
+		}
+		classesToUpdate.retainAll(this.classes.keySet());
+		// Thing is the superclass of all the classes
+		if (!classesToUpdate.isEmpty())
+			classesToUpdate.add(Uris.THING_URI);
+		
+		// properties whose domains or ranges may have changed
+		HashSet<String> propertiesToUpdate = new HashSet<String>(newProperties);
+		// a domain or range that was not declared as a class yet was skipped when the property was added to the cache
+		Property domainProperty = this.ontHandler.getOntModel().createProperty(Namespaces.RDFS + "domain");
+		Property rangeProperty = this.ontHandler.getOntModel().createProperty(Namespaces.RDFS + "range");
+		for (String c : newClasses) {
+			if (oldClasses.contains(c)) continue;
+			Resource classNode = this.ontHandler.getOntModel().createResource(c);
+			ResIterator itr = this.ontHandler.getOntModel().listSubjectsWithProperty(domainProperty, classNode);
+			while (itr.hasNext()) {
+				Resource r = itr.next();
+				if (r.isURIResource()) propertiesToUpdate.add(r.getURI());
+			}
+			itr = this.ontHandler.getOntModel().listSubjectsWithProperty(rangeProperty, classNode);
+			while (itr.hasNext()) {
+				Resource r = itr.next();
+				if (r.isURIResource()) propertiesToUpdate.add(r.getURI());
+			}
+		}
+		propertiesToUpdate.retainAll(this.properties.keySet());
+		for (String c : classesToUpdate) {
+			addAll(propertiesToUpdate, this.directOutDataProperties.get(c));
+			addAll(propertiesToUpdate, this.directOutObjectProperties.get(c));
+			addAll(propertiesToUpdate, this.directInObjectProperties.get(c));
+		}
+		for (String p : this.properties.keySet()) {
+			HashSet<String> domains = this.propertyDirectDomains.get(p);
+			HashSet<String> ranges = this.propertyDirectRanges.get(p);
+			if ((domains != null && !Collections.disjoint(domains, classesToUpdate)) ||
+					(ranges != null && !Collections.disjoint(ranges, classesToUpdate)))
+				propertiesToUpdate.add(p);
+		}
+		// a property adds its super properties to the maps of its domains and ranges, 
+		// so all the properties of the same property hierarchy are updated together
+		LinkedList<String> queue = new LinkedList<String>(propertiesToUpdate);
+		while (!queue.isEmpty()) {
+			String p = queue.poll();
+			HashSet<String> related = new HashSet<String>();
+			addKeys(related, this.directSubProperties.get(p));
+			addKeys(related, this.indirectSubProperties.get(p));
+			addKeys(related, this.directSuperProperties.get(p));
+			addKeys(related, this.indirectSuperProperties.get(p));
+			if (newProperties.contains(p)) {
+				related.addAll(this.ontHandler.getSubProperties(p, true).keySet());
+				related.addAll(this.ontHandler.getSuperProperties(p, true).keySet());
+			}
+			for (String r : related)
+				if (this.properties.containsKey(r) && propertiesToUpdate.add(r))
+					queue.add(r);
+		}
+		
+		logger.info("number of classes to update:" + classesToUpdate.size());
+		logger.info("number of properties to update:" + propertiesToUpdate.size());
+
+		if (!classesToUpdate.isEmpty()) {
+			
+			HashMap<String, List<HashMap<String, Label>>> oldClassEntries = new HashMap<String, List<HashMap<String, Label>>>();
+			for (String c : classesToUpdate)
+				oldClassEntries.put(c, Arrays.asList(this.directSubClasses.remove(c), this.indirectSubClasses.remove(c),
+						this.directSuperClasses.remove(c), this.indirectSuperClasses.remove(c)));
+
+			for (String c : classesToUpdate) {
+				if (c.equals(Uris.THING_URI)) continue;
+				this.buildSubClassesMaps(c);
+				this.buildSuperClassesMaps(c);
+			}
+			// the subclasses of Thing are the top level classes of the hierarchy
+			this.buildClassHierarchy(classHierarchy);
+			this.buildSubClassesMaps(Uris.THING_URI);
+			this.buildSuperClassesMaps(Uris.THING_URI);
+			this.buildSubClassChecks();
+			
+			for (String c : classesToUpdate) {
+				List<HashMap<String, Label>> oldEntries = oldClassEntries.get(c);
+				if (!sameKeys(oldEntries.get(0), this.directSubClasses.get(c)) ||
+						!sameKeys(oldEntries.get(1), this.indirectSubClasses.get(c)) ||
+						!sameKeys(oldEntries.get(2), this.directSuperClasses.get(c)) ||
+						!sameKeys(oldEntries.get(3), this.indirectSuperClasses.get(c)))
+					changedUris.add(c);
+			}
+		}
+		
+		if (!propertiesToUpdate.isEmpty()) {
+
+			HashMap<String, List<HashMap<String, Label>>> oldPropertyEntries = new HashMap<String, List<HashMap<String, Label>>>();
+			HashMap<String, List<HashSet<String>>> oldDomainsAndRanges = new HashMap<String, List<HashSet<String>>>();
+			for (String p : propertiesToUpdate) {
+				oldPropertyEntries.put(p, Arrays.asList(this.directSubProperties.remove(p), this.indirectSubProperties.remove(p),
+						this.directSuperProperties.remove(p), this.indirectSuperProperties.remove(p)));
+				oldDomainsAndRanges.put(p, Arrays.asList(this.propertyDirectDomains.remove(p), this.propertyIndirectDomains.remove(p),
+						this.propertyDirectRanges.remove(p), this.propertyIndirectRanges.remove(p)));
+				this.propertyInverse.remove(p);
+				this.propertyInverseOf.remove(p);
+				this.dataPropertiesWithoutDomain.remove(p);
+				this.objectPropertiesWithOnlyDomain.remove(p);
+				this.objectPropertiesWithOnlyRange.remove(p);
+				this.objectPropertiesWithoutDomainAndRange.remove(p);
+			}
+			
+			// the values of these maps are only added by the properties being updated and by the properties of the same hierarchy
+			removeValues(this.directOutDataProperties, propertiesToUpdate);
+			removeValues(this.indirectOutDataProperties, propertiesToUpdate);
+			removeValues(this.directOutObjectProperties, propertiesToUpdate);
+			removeValues(this.indirectOutObjectProperties, propertiesToUpdate);
+			removeValues(this.directInObjectProperties, propertiesToUpdate);
+			removeValues(this.indirectInObjectProperties, propertiesToUpdate);
+			removeValues(this.domainRangeToDirectProperties, propertiesToUpdate);
+			removeValues(this.domainRangeToIndirectProperties, propertiesToUpdate);
+			
+			for (String p : propertiesToUpdate) {
+				this.buildSubPropertiesMaps(p);
+				this.buildSuperPropertiesMaps(p);
+			}
+			this.buildSubPropertyChecks();
+			for (String p : propertiesToUpdate) 
+				if (this.dataProperties.containsKey(p)) 
+					this.buildDataPropertiesMaps(p);
+			for (String p : propertiesToUpdate) {
+				if (this.objectProperties.containsKey(p)) {
+					this.buildInverseProperties(p);
+					this.buildObjectPropertiesMaps(p);
+				}
+			}
+			for (String p : propertiesToUpdate) 
+				this.updateMapsWithSubpropertyDefinitions(p);
+			for (String p : propertiesToUpdate) {
+				if (this.dataProperties.containsKey(p)) this.classifyDataProperty(p);
+				if (this.objectProperties.containsKey(p)) this.classifyObjectProperty(p);
+			}
+			
+			this.buildDataPropertyHierarchy(dataPropertyHierarchy);
+			this.buildObjectPropertyHierarchy(objectPropertyHierarchy);
+			
+			for (String p : propertiesToUpdate) {
+				List<HashMap<String, Label>> oldEntries = oldPropertyEntries.get(p);
+				List<HashSet<String>> oldSets = oldDomainsAndRanges.get(p);
+				List<HashSet<String>> newSets = Arrays.asList(this.propertyDirectDomains.get(p), this.propertyIndirectDomains.get(p),
+						this.propertyDirectRanges.get(p), this.propertyIndirectRanges.get(p));
+				if (!changedUris.contains(p) && 
+						sameKeys(oldEntries.get(0), this.directSubProperties.get(p)) &&
+						sameKeys(oldEntries.get(1), this.indirectSubProperties.get(p)) &&
+						sameKeys(oldEntries.get(2), this.directSuperProperties.get(p)) &&
+						sameKeys(oldEntries.get(3), this.indirectSuperProperties.get(p)) &&
+						oldSets.equals(newSets))
+					continue;
+				// the closures of the domains and ranges of a changed property change too
+				changedUris.add(p);
+				for (HashSet<String> uris : oldSets) addAll(changedUris, uris);
+				for (HashSet<String> uris : newSets) addAll(changedUris, uris);
+			}
+		}
+
+		if (!classesToUpdate.isEmpty() || !propertiesToUpdate.isEmpty())
+			this.addPropertiesOfRDFVocabulary();
+		
+		logger.info("number of changed uris:" + changedUris.size());
+		float elapsedTimeSec = (System.currentTimeMillis() - start)/1000F;
+		logger.info("time to update the ontology cache: " + elapsedTimeSec);
+		return changedUris;
+	}
+	
 	private void allocateDataStructures() {
 		this.classes = new HashMap<String, Label>();
 		this.properties = new HashMap<String, Label>();
@@ -472,6 +762,33 @@ public class OntologyCache {
 	
 	// private methods 
 	
+	private static void addKeys(Set<String> uris, HashMap<String, Label> map) {
+		if (map != null)
+			uris.addAll(map.keySet());
+	}
+	
+	private static void addAll(Set<String> uris, HashSet<String> set) {
+		if (set != null)
+			uris.addAll(set);
+	}
+	
+	private static boolean sameKeys(HashMap<String, Label> map1, HashMap<String, Label> map2) {
+		if (map1 == null || map2 == null)
+			return map1 == map2;
+		return map1.keySet().equals(map2.keySet());
+	}
+	
+	private static void removeValues(HashMap<String, HashSet<String>> map, Set<String> values) {
+		Iterator<Entry<String, HashSet<String>>> itr = map.entrySet().iterator();
+		while (itr.hasNext()) {
+			HashSet<String> set = itr.next().getValue();
+			if (set == null) continue;
+			set.removeAll(values);
+			if (set.isEmpty())
+				itr.remove();
+		}
+	}
+	
 	private void loadClasses() {
 		
 		this.classes.put(Uris.THING_URI, new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL));
@@ -552,9 +869,30 @@ public class OntologyCache {
 		}
 	}
 	
+	// the hierarchies are built before the sub and super maps, and they are rebuilt from these maps when the cache is updated
+	private HashMap<String, Label> directSubClassesOf(String c) {
+		HashMap<String, Label> subClasses = this.directSubClasses.get(c);
+		return subClasses != null ? subClasses : this.ontHandler.getSubClasses(c, false);
+	}
+	
+	private HashMap<String, Label> directSuperClassesOf(String c) {
+		HashMap<String, Label> superClasses = this.directSuperClasses.get(c);
+		return superClasses != null ? superClasses : this.ontHandler.getSuperClasses(c, false);
+	}
+	
+	private HashMap<String, Label> directSubPropertiesOf(String p) {
+		HashMap<String, Label> subProperties = this.directSubProperties.get(p);
+		return subProperties != null ? subProperties : this.ontHandler.getSubProperties(p, false);
+	}
+	
+	private HashMap<String, Label> directSuperPropertiesOf(String p) {
+		HashMap<String, Label> superProperties = this.directSuperProperties.get(p);
+		return superProperties != null ? superProperties : this.ontHandler.getSuperProperties(p, false);
+	}
+	
 	private boolean isTopLevelClass(String c) {
 		
-		Set<String> superClasses = this.ontHandler.getSuperClasses(c, false).keySet();
+		Set<String> superClasses = this.directSuperClassesOf(c).keySet();
 
 		if (superClasses == null || superClasses.isEmpty())
 			return true;
@@ -581,7 +919,7 @@ public class OntologyCache {
 			}
 		} else {
 			HashMap<String, Label> subClasses = 
-					this.ontHandler.getSubClasses(node.getLabel().getUri(), false);
+					this.directSubClassesOf(node.getLabel().getUri());
 
 			for (String s : subClasses.keySet()) {
 				Label label = subClasses.get(s);
@@ -596,7 +934,7 @@ public class OntologyCache {
 	
 	private boolean isTopLevelProperty(String property) {
 		
-		Set<String> superProperties = this.ontHandler.getSuperProperties(property, false).keySet();
+		Set<String> superProperties = this.directSuperPropertiesOf(property).keySet();
 
 		if (superProperties == null || superProperties.isEmpty())
 			return true;
@@ -622,7 +960,7 @@ public class OntologyCache {
 			}
 		} else {
 			HashMap<String, Label> subProperties = 
-					this.ontHandler.getSubProperties(node.getLabel().getUri(), false);
+					this.directSubPropertiesOf(node.getLabel().getUri());
 
 			if (subProperties != null)
 				for (String s : subProperties.keySet()) {
@@ -650,7 +988,7 @@ public class OntologyCache {
 			}
 		} else {
 			HashMap<String, Label> subProperties = 
-					this.ontHandler.getSubProperties(node.getLabel().getUri(), false);
+					this.directSubPropertiesOf(node.getLabel().getUri());
 
 			if (subProperties != null)
 				for (String s : subProperties.keySet()) {
@@ -666,44 +1004,59 @@ public class OntologyCache {
 
 	private void buildSubClassesMaps() {
 		
-		HashMap<String, Label> allClassesExceptThing = new HashMap<String, Label>();
-		for (Entry<String, Label> entry : this.classes.entrySet())
-			if (!entry.getKey().equalsIgnoreCase(Uris.THING_URI))
-				allClassesExceptThing.put(entry.getKey(), entry.getValue());
-
+		for (String c : this.classes.keySet())
+			this.buildSubClassesMaps(c);
+		
+		this.buildSubClassChecks();
+	}
+	
+	private void buildSubClassesMaps(String c) {
+		
 		HashMap<String, Label> directSubClassesLocal;
 		HashMap<String, Label> indirectSubClassesLocal;
 		HashMap<String, Label> allSubClassesLocal;
 		
-		for (String c : this.classes.keySet()) {
-			
-			directSubClassesLocal = this.ontHandler.getSubClasses(c, false);
-			allSubClassesLocal = this.ontHandler.getSubClasses(c, true);
-			indirectSubClassesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSubClassesLocal.entrySet())
-				if (!directSubClassesLocal.containsKey(entry.getKey()))
-					indirectSubClassesLocal.put(entry.getKey(), entry.getValue());
-			
-			// Thing node
-			if (c.equalsIgnoreCase(Uris.THING_URI)) {
-				List<OntologyTreeNode> thingDirectChildren = this.classHierarchy.getChildren();
-				if (thingDirectChildren != null) 
-					for (OntologyTreeNode node : thingDirectChildren) 
-						if (node.getLabel() != null && node.getLabel().getUri() != null)
-							directSubClassesLocal.put(node.getLabel().getUri(), node.getLabel());
-				
-				indirectSubClassesLocal = allClassesExceptThing;
-			}
-			
-			this.directSubClasses.put(c, directSubClassesLocal);
-			this.indirectSubClasses.put(c, indirectSubClassesLocal);
-
-			for (String s : directSubClassesLocal.keySet())
+		directSubClassesLocal = this.ontHandler.getSubClasses(c, false);
+		allSubClassesLocal = this.ontHandler.getSubClasses(c, true);
+		indirectSubClassesLocal = new HashMap<String, Label>();
+		for (Entry<String, Label> entry : allSubClassesLocal.entrySet())
+			if (!directSubClassesLocal.containsKey(entry.getKey()))
+				indirectSubClassesLocal.put(entry.getKey(), entry.getValue());
+		
+		// Thing node
+		if (c.equalsIgnoreCase(Uris.THING_URI)) {
+			List<OntologyTreeNode> thingDirectChildren = this.classHierarchy.getChildren();
+			if (thingDirectChildren != null) 
+				for (OntologyTreeNode node : thingDirectChildren) 
+					if (node.getLabel() != null && node.getLabel().getUri() != null)
+						directSubClassesLocal.put(node.getLabel().getUri(), node.getLabel());
+			
+			HashMap<String, Label> allClassesExceptThing = new HashMap<String, Label>();
+			for (Entry<String, Label> entry : this.classes.entrySet())
+				if (!entry.getKey().equalsIgnoreCase(Uris.THING_URI))
+					allClassesExceptThing.put(entry.getKey(), entry.getValue());
+			
+			indirectSubClassesLocal = allClassesExceptThing;
+		}
+		
+		this.directSubClasses.put(c, directSubClassesLocal);
+		this.indirectSubClasses.put(c, indirectSubClassesLocal);
+	}
+	
+	private void buildSubClassChecks() {
+		
+		this.directSubClassCheck.clear();
+		this.indirectSubClassCheck.clear();
+		this.directSubclassSuperclassPairs.clear();
+		this.indirectSubclassSuperclassPairs.clear();
+		
+		for (String c : this.directSubClasses.keySet())
+			for (String s : this.directSubClasses.get(c).keySet())
 				this.directSubClassCheck.add(s + c);
-			
-			for (String s : indirectSubClassesLocal.keySet())
+		
+		for (String c : this.indirectSubClasses.keySet())
+			for (String s : this.indirectSubClasses.get(c).keySet())
 				this.indirectSubClassCheck.add(s + c);
-		}
 		
 		for (String superclass : this.directSubClasses.keySet()) {
 			Set<String> subClasses = this.directSubClasses.get(superclass).keySet();
@@ -720,92 +1073,115 @@ public class OntologyCache {
 	
 	private void buildSuperClassesMaps() {
 		
+		for (String c : this.classes.keySet())
+			this.buildSuperClassesMaps(c);
+	}
+	
+	private void buildSuperClassesMaps(String c) {
+		
 		HashMap<String, Label> directSuperClassesLocal;
 		HashMap<String, Label> indirectSuperClassesLocal;
 		HashMap<String, Label> allSuperClassesLocal;
 		
-		for (String c : this.classes.keySet()) {
-			
-			directSuperClassesLocal = this.ontHandler.getSuperClasses(c, false);
-			
-			this.directSuperClasses.put(c, directSuperClassesLocal);
-			
-			allSuperClassesLocal = this.ontHandler.getSuperClasses(c, true);
-			indirectSuperClassesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSuperClassesLocal.entrySet())
-				if (!directSuperClassesLocal.containsKey(entry.getKey()))
-					indirectSuperClassesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.indirectSuperClasses.put(c, indirectSuperClassesLocal);
-		}		
+		directSuperClassesLocal = this.ontHandler.getSuperClasses(c, false);
 		
-		for (String c : this.indirectSuperClasses.keySet()) {
-			
-			HashMap<String, Label> superClasses = this.indirectSuperClasses.get(c);
-			if (superClasses != null && !superClasses.containsKey(Uris.THING_URI))
-				superClasses.put(Uris.THING_URI, new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL));
-		}
+		this.directSuperClasses.put(c, directSuperClassesLocal);
+		
+		allSuperClassesLocal = this.ontHandler.getSuperClasses(c, true);
+		indirectSuperClassesLocal = new HashMap<String, Label>();
+		for (Entry<String, Label> entry : allSuperClassesLocal.entrySet())
+			if (!directSuperClassesLocal.containsKey(entry.getKey()))
+				indirectSuperClassesLocal.put(entry.getKey(), entry.getValue());
 		
+		if (!indirectSuperClassesLocal.containsKey(Uris.THING_URI))
+			indirectSuperClassesLocal.put(Uris.THING_URI, new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL));
+		
+		this.indirectSuperClasses.put(c, indirectSuperClassesLocal);
 	}
 	
 	private void buildSubPropertiesMaps() {
 
+		for (String p : this.properties.keySet()) 
+			this.buildSubPropertiesMaps(p);
+		
+		this.buildSubPropertyChecks();
+	}
+	
+	private void buildSubPropertiesMaps(String p) {
+
 		HashMap<String, Label> directSubPropertiesLocal; 
 		HashMap<String, Label> indirectSubPropertiesLocal;
 		HashMap<String, Label> allSubPropertiesLocal;
 		
-		for (String p : this.properties.keySet()) { 
-
-			directSubPropertiesLocal = this.ontHandler.getSubProperties(p, false);
-			
-			allSubPropertiesLocal = this.ontHandler.getSubProperties(p, true);
-			indirectSubPropertiesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSubPropertiesLocal.entrySet())
-				if (!directSubPropertiesLocal.containsKey(entry.getKey()))
-					indirectSubPropertiesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.directSubProperties.put(p, directSubPropertiesLocal);
-			this.indirectSubProperties.put(p, indirectSubPropertiesLocal);
-
-			for (String s : directSubPropertiesLocal.keySet())
+		directSubPropertiesLocal = this.ontHandler.getSubProperties(p, false);
+		
+		allSubPropertiesLocal = this.ontHandler.getSubProperties(p, true);
+		indirectSubPropertiesLocal = new HashMap<String, Label>();
+		for (Entry<String, Label> entry : allSubPropertiesLocal.entrySet())
+			if (!directSubPropertiesLocal.containsKey(entry.getKey()))
+				indirectSubPropertiesLocal.put(entry.getKey(), entry.getValue());
+		
+		this.directSubProperties.put(p, directSubPropertiesLocal);
+		this.indirectSubProperties.put(p, indirectSubPropertiesLocal);
+	}
+	
+	private void buildSubPropertyChecks() {
+		
+		this.directSubPropertyCheck.clear();
+		this.indirectSubPropertyCheck.clear();
+		
+		for (String p : this.directSubProperties.keySet())
+			for (String s : this.directSubProperties.get(p).keySet())
 				this.directSubPropertyCheck.add(s + p);
 
-			for (String s : indirectSubPropertiesLocal.keySet())
+		for (String p : this.indirectSubProperties.keySet())
+			for (String s : this.indirectSubProperties.get(p).keySet())
 				this.indirectSubPropertyCheck.add(s + p);
-		}
 	}
 
 	private void buildSuperPropertiesMaps() {
 
+		for (String p : this.properties.keySet()) 
+			this.buildSuperPropertiesMaps(p);
+	}
+	
+	private void buildSuperPropertiesMaps(String p) {
+
 		HashMap<String, Label> directSuperPropertiesLocal;
 		HashMap<String, Label> indirectSuperPropertiesLocal;
 		HashMap<String, Label> allSuperPropertiesLocal;
 		
-		for (String p : this.properties.keySet()) { 
-
-			directSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, false);
-			
-			this.directSuperProperties.put(p, directSuperPropertiesLocal);
-			
-			allSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, true);
-			indirectSuperPropertiesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSuperPropertiesLocal.entrySet())
-				if (!directSuperPropertiesLocal.containsKey(entry.getKey()))
-					indirectSuperPropertiesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.indirectSuperProperties.put(p, indirectSuperPropertiesLocal);
-		}		
+		directSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, false);
+		
+		this.directSuperProperties.put(p, directSuperPropertiesLocal);
+		
+		allSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, true);
+		indirectSuperPropertiesLocal = new HashMap<String, Label>();
+		for (Entry<String, Label> entry : allSuperPropertiesLocal.entrySet())
+			if (!directSuperPropertiesLocal.containsKey(entry.getKey()))
+				indirectSuperPropertiesLocal.put(entry.getKey(), entry.getValue());
+		
+		this.indirectSuperProperties.put(p, indirectSuperPropertiesLocal);
 	}
 	
 	private void buildInverseProperties() {
-		for (String op : this.objectProperties.keySet()) {
-			this.propertyInverse.put(op, this.ontHandler.getInverseProperty(op));
-			this.propertyInverseOf.put(op, this.ontHandler.getInverseOfProperty(op));
-		}
+		for (String op : this.objectProperties.keySet()) 
+			this.buildInverseProperties(op);
+	}
+	
+	private void buildInverseProperties(String op) {
+		this.propertyInverse.put(op, this.ontHandler.getInverseProperty(op));
+		this.propertyInverseOf.put(op, this.ontHandler.getInverseOfProperty(op));
 	}
 	
 	private void buildDataPropertiesMaps() {
 		
+		for (String propertyUri : this.dataProperties.keySet())
+			this.buildDataPropertiesMaps(propertyUri);
+	}
+	
+	private void buildDataPropertiesMaps(String propertyUri) {
+		
 		HashSet<OntResource> directDomains;
 		HashSet<String> directDomainsUris;
 		HashSet<String> indirectDomainsUris;
@@ -821,116 +1197,118 @@ public class OntologyCache {
 		OntResource d;
 		OntResource r;
 		
-		for (String propertyUri : this.dataProperties.keySet()) {
-			
-			directDomains = new HashSet<OntResource>();
-			directDomainsUris = new HashSet<String>();
-			indirectDomainsUris = new HashSet<String>();
-			allDomains = new HashSet<OntResource>();
-			allDomainsUris = new HashSet<String>();
-			directRanges = new HashSet<OntResource>();
-			directRangesUris = new HashSet<String>();
-			indirectRangesUris = new HashSet<String>();
-			allRanges = new HashSet<OntResource>();
-			allRangesUris = new HashSet<String>();
-			
-			OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
-			if (!property.isURIResource())
-				continue;
-			
-			// direct domain
-			ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
-			while (itrDomains.hasNext()) {
-				d = itrDomains.next();
-				ontHandler.getMembers(d, directDomains, false);
-			}
-			directDomainsUris = ontHandler.getResourcesUris(directDomains);
-			
-			temp  = propertyDirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyDirectDomains.put(property.getURI(), directDomainsUris);
-			else 
-				temp.addAll(directDomainsUris);
-			
-			for (OntResource domain : directDomains) {
-				temp = directOutDataProperties.get(domain.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directOutDataProperties.put(domain.getURI(), temp);
-				}
-				temp.add(property.getURI());
+		directDomains = new HashSet<OntResource>();
+		directDomainsUris = new HashSet<String>();
+		indirectDomainsUris = new HashSet<String>();
+		allDomains = new HashSet<OntResource>();
+		allDomainsUris = new HashSet<String>();
+		directRanges = new HashSet<OntResource>();
+		directRangesUris = new HashSet<String>();
+		indirectRangesUris = new HashSet<String>();
+		allRanges = new HashSet<OntResource>();
+		allRangesUris = new HashSet<String>();
+		
+		OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
+		if (!property.isURIResource())
+			return;
+		
+		// direct domain
+		ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
+		while (itrDomains.hasNext()) {
+			d = itrDomains.next();
+			ontHandler.getMembers(d, directDomains, false);
+		}
+		directDomainsUris = ontHandler.getResourcesUris(directDomains);
+		
+		temp  = propertyDirectDomains.get(property.getURI());
+		if (temp == null)
+			propertyDirectDomains.put(property.getURI(), directDomainsUris);
+		else 
+			temp.addAll(directDomainsUris);
+		
+		for (OntResource domain : directDomains) {
+			temp = directOutDataProperties.get(domain.getURI());
+			if (temp == null) {
+				temp = new HashSet<String>();
+				directOutDataProperties.put(domain.getURI(), temp);
 			}
+			temp.add(property.getURI());
+		}
 
-			// all domains
-			if (directDomainsUris.contains(Uris.THING_URI))
-				allDomainsUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource domain : directDomains) {
-					allDomains.add(domain);
-					ontHandler.getChildren(domain, allDomains, true);
-				}
-				allDomainsUris = ontHandler.getResourcesUris(allDomains);
+		// all domains
+		if (directDomainsUris.contains(Uris.THING_URI))
+			allDomainsUris = new HashSet<String>(this.classes.keySet());
+		else {
+			for (OntResource domain : directDomains) {
+				allDomains.add(domain);
+				ontHandler.getChildren(domain, allDomains, true);
 			}
+			allDomainsUris = ontHandler.getResourcesUris(allDomains);
+		}
 
-			// indirect domains
-			for (String domainUri : allDomainsUris) {
-				if (!directDomainsUris.contains(domainUri))
-					indirectDomainsUris.add(domainUri);
-			}
+		// indirect domains
+		for (String domainUri : allDomainsUris) {
+			if (!directDomainsUris.contains(domainUri))
+				indirectDomainsUris.add(domainUri);
+		}
 
-			temp  = propertyIndirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
-			else 
-				temp.addAll(indirectDomainsUris);
-			
-			for (String domainUri : indirectDomainsUris) {
-				temp = indirectOutDataProperties.get(domainUri);
-				if (temp == null) { 
-					temp = new HashSet<String>();
-					indirectOutDataProperties.put(domainUri, temp);
-				}
-				temp.add(property.getURI());
-			}
-			
-			// direct ranges
-			ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
-			while (itrRanges.hasNext()) {
-				r = itrRanges.next();
-				ontHandler.getMembers(r, directRanges, false);
+		temp  = propertyIndirectDomains.get(property.getURI());
+		if (temp == null)
+			propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
+		else 
+			temp.addAll(indirectDomainsUris);
+		
+		for (String domainUri : indirectDomainsUris) {
+			temp = indirectOutDataProperties.get(domainUri);
+			if (temp == null) { 
+				temp = new HashSet<String>();
+				indirectOutDataProperties.put(domainUri, temp);
 			}
-			directRangesUris = ontHandler.getResourcesUris(directRanges);
+			temp.add(property.getURI());
+		}
+		
+		// direct ranges
+		ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
+		while (itrRanges.hasNext()) {
+			r = itrRanges.next();
+			ontHandler.getMembers(r, directRanges, false);
+		}
+		directRangesUris = ontHandler.getResourcesUris(directRanges);
 
-			temp  = propertyDirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyDirectRanges.put(property.getURI(), directRangesUris);
-			else 
-				temp.addAll(directRangesUris);
-			
-			// all ranges
-			for (OntResource range : directRanges) {
-				allRanges.add(range);
-				ontHandler.getChildren(range, allRanges, true);
-			}
-			allRangesUris = ontHandler.getResourcesUris(allRanges);
-			
-			// indirect ranges
-			for (String rangeUri : allRangesUris) {
-				if (!directRangesUris.contains(rangeUri))
-					indirectRangesUris.add(rangeUri);
-			}
-			
-			temp  = propertyIndirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
-			else 
-				temp.addAll(indirectRangesUris);
-			
-		}	
+		temp  = propertyDirectRanges.get(property.getURI());
+		if (temp == null)
+			propertyDirectRanges.put(property.getURI(), directRangesUris);
+		else 
+			temp.addAll(directRangesUris);
+		
+		// all ranges
+		for (OntResource range : directRanges) {
+			allRanges.add(range);
+			ontHandler.getChildren(range, allRanges, true);
+		}
+		allRangesUris = ontHandler.getResourcesUris(allRanges);
+		
+		// indirect ranges
+		for (String rangeUri : allRangesUris) {
+			if (!directRangesUris.contains(rangeUri))
+				indirectRangesUris.add(rangeUri);
+		}
+		
+		temp  = propertyIndirectRanges.get(property.getURI());
+		if (temp == null)
+			propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
+		else 
+			temp.addAll(indirectRangesUris);
 	}
 	
 	private void buildObjectPropertiesMaps() {
 		
+		for (String propertyUri : this.objectProperties.keySet())
+			this.buildObjectPropertiesMaps(propertyUri);
+	}
+	
+	private void buildObjectPropertiesMaps(String propertyUri) {
+		
 		HashSet<OntResource> directDomains;
 		HashSet<String> directDomainsUris;
 		HashSet<String> indirectDomainsUris;
@@ -947,170 +1325,167 @@ public class OntologyCache {
 		OntResource r;
 		
 //		int count = 0;
-		for (String propertyUri : this.objectProperties.keySet()) {
+		
 
-			OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
-			if (!property.isURIResource())
-				continue;
-						
-			directDomains = new HashSet<OntResource>();
-			directDomainsUris = new HashSet<String>();
-			indirectDomainsUris = new HashSet<String>();
-			allDomains = new HashSet<OntResource>();
-			allDomainsUris = new HashSet<String>();
-			directRanges = new HashSet<OntResource>();
-			directRangesUris = new HashSet<String>();
-			indirectRangesUris = new HashSet<String>();
-			allRanges = new HashSet<OntResource>();
-			allRangesUris = new HashSet<String>();
-			
+		OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
+		if (!property.isURIResource())
+			return;
+					
+		directDomains = new HashSet<OntResource>();
+		directDomainsUris = new HashSet<String>();
+		indirectDomainsUris = new HashSet<String>();
+		allDomains = new HashSet<OntResource>();
+		allDomainsUris = new HashSet<String>();
+		directRanges = new HashSet<OntResource>();
+		directRangesUris = new HashSet<String>();
+		indirectRangesUris = new HashSet<String>();
+		allRanges = new HashSet<OntResource>();
+		allRangesUris = new HashSet<String>();
+		
 //			count ++;
 //			if (count % 1000 == 0)
 //				System.gc();
 
-			
-			// direct domain
-			ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
-			while (itrDomains.hasNext()) {
-				d = itrDomains.next();
-				ontHandler.getMembers(d, directDomains, false);
-			}
-			directDomainsUris = ontHandler.getResourcesUris(directDomains);
-			
-			if (directDomainsUris != null && directDomainsUris.contains(Uris.THING_URI))
-				directDomainsUris.remove(Uris.THING_URI);
-			
-			temp  = propertyDirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyDirectDomains.put(property.getURI(), directDomainsUris);
-			else 
-				temp.addAll(directDomainsUris);
-			
-			for (OntResource domain : directDomains) {
-				temp = directOutObjectProperties.get(domain.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directOutObjectProperties.put(domain.getURI(), temp);
-				}
-				temp.add(property.getURI());
+		
+		// direct domain
+		ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
+		while (itrDomains.hasNext()) {
+			d = itrDomains.next();
+			ontHandler.getMembers(d, directDomains, false);
+		}
+		directDomainsUris = ontHandler.getResourcesUris(directDomains);
+		
+		if (directDomainsUris != null && directDomainsUris.contains(Uris.THING_URI))
+			directDomainsUris.remove(Uris.THING_URI);
+		
+		temp  = propertyDirectDomains.get(property.getURI());
+		if (temp == null)
+			propertyDirectDomains.put(property.getURI(), directDomainsUris);
+		else 
+			temp.addAll(directDomainsUris);
+		
+		for (OntResource domain : directDomains) {
+			temp = directOutObjectProperties.get(domain.getURI());
+			if (temp == null) {
+				temp = new HashSet<String>();
+				directOutObjectProperties.put(domain.getURI(), temp);
 			}
+			temp.add(property.getURI());
+		}
 
-			// all domains
-			if (directDomainsUris.contains(Uris.THING_URI))
-				allDomainsUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource domain : directDomains) {
-					allDomains.add(domain);
-					ontHandler.getChildren(domain, allDomains, true);
-				}
-				allDomainsUris = ontHandler.getResourcesUris(allDomains);
+		// all domains
+		if (directDomainsUris.contains(Uris.THING_URI))
+			allDomainsUris = new HashSet<String>(this.classes.keySet());
+		else {
+			for (OntResource domain : directDomains) {
+				allDomains.add(domain);
+				ontHandler.getChildren(domain, allDomains, true);
 			}
+			allDomainsUris = ontHandler.getResourcesUris(allDomains);
+		}
 
-			// indirect domains
-			for (String domainUri : allDomainsUris) {
-				if (!directDomainsUris.contains(domainUri))
-					indirectDomainsUris.add(domainUri);
-			}
+		// indirect domains
+		for (String domainUri : allDomainsUris) {
+			if (!directDomainsUris.contains(domainUri))
+				indirectDomainsUris.add(domainUri);
+		}
 
-			temp  = propertyIndirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
-			else 
-				temp.addAll(indirectDomainsUris);
-			
-			for (String domainUri : indirectDomainsUris) {
-				temp = indirectOutObjectProperties.get(domainUri);
-				if (temp == null) { 
-					temp = new HashSet<String>();
-					indirectOutObjectProperties.put(domainUri, temp);
-				}
-				temp.add(property.getURI());
+		temp  = propertyIndirectDomains.get(property.getURI());
+		if (temp == null)
+			propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
+		else 
+			temp.addAll(indirectDomainsUris);
+		
+		for (String domainUri : indirectDomainsUris) {
+			temp = indirectOutObjectProperties.get(domainUri);
+			if (temp == null) { 
+				temp = new HashSet<String>();
+				indirectOutObjectProperties.put(domainUri, temp);
 			}
-			
-			// direct ranges
-			ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
-			while (itrRanges.hasNext()) {
-				r = itrRanges.next();
-				ontHandler.getMembers(r, directRanges, false);
+			temp.add(property.getURI());
+		}
+		
+		// direct ranges
+		ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
+		while (itrRanges.hasNext()) {
+			r = itrRanges.next();
+			ontHandler.getMembers(r, directRanges, false);
+		}
+		directRangesUris = ontHandler.getResourcesUris(directRanges);
+		
+		if (directRangesUris != null && directRangesUris.contains(Uris.THING_URI))
+			directRangesUris.remove(Uris.THING_URI);
+
+		temp  = propertyDirectRanges.get(property.getURI());
+		if (temp == null)
+			propertyDirectRanges.put(property.getURI(), directRangesUris);
+		else 
+			temp.addAll(directRangesUris);
+		
+		for (OntResource range : directRanges) {
+			temp = directInObjectProperties.get(range.getURI());
+			if (temp == null) {
+				temp = new HashSet<String>();
+				directInObjectProperties.put(range.getURI(), temp);
 			}
-			directRangesUris = ontHandler.getResourcesUris(directRanges);
-			
-			if (directRangesUris != null && directRangesUris.contains(Uris.THING_URI))
-				directRangesUris.remove(Uris.THING_URI);
-
-			temp  = propertyDirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyDirectRanges.put(property.getURI(), directRangesUris);
-			else 
-				temp.addAll(directRangesUris);
-			
+			temp.add(property.getURI());
+		}
+		
+		// all ranges
+		if (directRangesUris.contains(Uris.THING_URI))
+			allRangesUris = new HashSet<String>(this.classes.keySet());
+		else {
 			for (OntResource range : directRanges) {
-				temp = directInObjectProperties.get(range.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directInObjectProperties.put(range.getURI(), temp);
-				}
-				temp.add(property.getURI());
-			}
-			
-			// all ranges
-			if (directRangesUris.contains(Uris.THING_URI))
-				allRangesUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource range : directRanges) {
-					allRanges.add(range);
-					ontHandler.getChildren(range, allRanges, true);
-				}
-				allRangesUris = ontHandler.getResourcesUris(allRanges);
+				allRanges.add(range);
+				ontHandler.getChildren(range, allRanges, true);
 			}
-			
-			// indirect ranges
-			for (String rangeUri : allRangesUris) {
-				if (!directRangesUris.contains(rangeUri))
-					indirectRangesUris.add(rangeUri);
+			allRangesUris = ontHandler.getResourcesUris(allRanges);
+		}
+		
+		// indirect ranges
+		for (String rangeUri : allRangesUris) {
+			if (!directRangesUris.contains(rangeUri))
+				indirectRangesUris.add(rangeUri);
+		}
+		
+		temp  = propertyIndirectRanges.get(property.getURI());
+		if (temp == null)
+			propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
+		else 
+			temp.addAll(indirectRangesUris);
+		
+		for (String rangeUri : indirectRangesUris) {
+			temp = indirectInObjectProperties.get(rangeUri);
+			if (temp == null) {
+				temp = new HashSet<String>();
+				indirectInObjectProperties.put(rangeUri, temp);
 			}
+			temp.add(property.getURI());
+		}
 			
-			temp  = propertyIndirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
-			else 
-				temp.addAll(indirectRangesUris);
-			
-			for (String rangeUri : indirectRangesUris) {
-				temp = indirectInObjectProperties.get(rangeUri);
+		for (String domain : directDomainsUris) {
+			for (String range : directRangesUris) {
+				temp = 
+					domainRangeToDirectProperties.get(domain + range);
 				if (temp == null) {
 					temp = new HashSet<String>();
-					indirectInObjectProperties.put(rangeUri, temp);
+					domainRangeToDirectProperties.put(domain + range, temp);
 				}
 				temp.add(property.getURI());
 			}
-				
-			for (String domain : directDomainsUris) {
-				for (String range : directRangesUris) {
-					temp = 
-						domainRangeToDirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToDirectProperties.put(domain + range, temp);
-					}
-					temp.add(property.getURI());
-				}
-			}
+		}
 
-			for (String domain : allDomainsUris) {
-				for (String range : allRangesUris) {
-					if (directDomainsUris.contains(domain) && directRangesUris.contains(range)) continue;
-					temp = domainRangeToIndirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToIndirectProperties.put(domain + range, temp);
-					}
-					temp.add(property.getURI());
+		for (String domain : allDomainsUris) {
+			for (String range : allRangesUris) {
+				if (directDomainsUris.contains(domain) && directRangesUris.contains(range)) continue;
+				temp = domainRangeToIndirectProperties.get(domain + range);
+				if (temp == null) {
+					temp = new HashSet<String>();
+					domainRangeToIndirectProperties.put(domain + range, temp);
 				}
+				temp.add(property.getURI());
 			}
-
-		}	
-
+		}
 	}
 	
 //	private void buildObjectPropertyDomainRangeMap() {
@@ -1158,12 +1533,7 @@ public class OntologyCache {
 		
 		HashSet<String> temp;
 		
-		ontHandler.getOntModel().setNsPrefix(Prefixes.RDF, Namespaces.RDF);
-		ontHandler.getOntModel().setNsPrefix(Prefixes.RDFS, Namespaces.RDFS);
-		
-		for (String uri : uris) 
-			ontHandler.getOntModel().createDatatypeProperty(uri);
-
+		this.addRDFVocabularyToModel(uris);
 		
 		// add label, value, comment property to the properties of all the classes
 		for (String s : this.classes.keySet()) {
@@ -1189,74 +1559,83 @@ public class OntologyCache {
 		
 	}
 	
+	private void addRDFVocabularyToModel(List<String> uris) {
+		
+		ontHandler.getOntModel().setNsPrefix(Prefixes.RDF, Namespaces.RDF);
+		ontHandler.getOntModel().setNsPrefix(Prefixes.RDFS, Namespaces.RDFS);
+		
+		for (String uri : uris) 
+			ontHandler.getOntModel().createDatatypeProperty(uri);
+	}
+	
 	private void updateMapsWithSubpropertyDefinitions() {
 		
+		for (String p : this.properties.keySet())
+			this.updateMapsWithSubpropertyDefinitions(p);
+	}
+	
+	private void updateMapsWithSubpropertyDefinitions(String p) {
 		
 		Set<String> allSuperPropertiesLocal;
 
-		// iterate over all properties
-		for (String p : this.properties.keySet()) {
-			
-			allSuperPropertiesLocal = new HashSet<String>();
-			
-			Set<String> directSuperPropertiesLocal = this.directSuperProperties.get(p).keySet();
-			Set<String> indirectSuperPropertiesLocal = this.indirectSuperProperties.get(p).keySet();
-			if (directSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(directSuperPropertiesLocal);
-			if (indirectSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(indirectSuperPropertiesLocal);
-			
-			if (allSuperPropertiesLocal.size() == 0) continue;
-			
-			HashSet<String> temp = null;
-			
-			HashSet<String> directDomains = this.propertyDirectDomains.get(p);
-			HashSet<String> indirectDomains = this.propertyIndirectDomains.get(p);
-			HashSet<String> allDomains = new HashSet<String>();
-			if (directDomains != null) allDomains.addAll(directDomains);
-			if (indirectDomains != null) allDomains.addAll(indirectDomains);
-
-			HashSet<String> directRanges = this.propertyDirectRanges.get(p);
-			HashSet<String> indirectRanges = this.propertyIndirectRanges.get(p);
-			HashSet<String> allRanges = new HashSet<String>();
-			if (directRanges != null) allRanges.addAll(directRanges);
-			if (indirectRanges != null) allRanges.addAll(indirectRanges);
-
-			for (String d : allDomains) {
-				temp = indirectOutObjectProperties.get(d);
-				if (temp == null) {
-					temp = new HashSet<String>();
-					indirectOutObjectProperties.put(d,  temp);
-				}
-				for (String superP : allSuperPropertiesLocal) {
-					temp.add(superP);
-				}
+		allSuperPropertiesLocal = new HashSet<String>();
+		
+		Set<String> directSuperPropertiesLocal = this.directSuperProperties.get(p).keySet();
+		Set<String> indirectSuperPropertiesLocal = this.indirectSuperProperties.get(p).keySet();
+		if (directSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(directSuperPropertiesLocal);
+		if (indirectSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(indirectSuperPropertiesLocal);
+		
+		if (allSuperPropertiesLocal.size() == 0) return;
+		
+		HashSet<String> temp = null;
+		
+		HashSet<String> directDomains = this.propertyDirectDomains.get(p);
+		HashSet<String> indirectDomains = this.propertyIndirectDomains.get(p);
+		HashSet<String> allDomains = new HashSet<String>();
+		if (directDomains != null) allDomains.addAll(directDomains);
+		if (indirectDomains != null) allDomains.addAll(indirectDomains);
+
+		HashSet<String> directRanges = this.propertyDirectRanges.get(p);
+		HashSet<String> indirectRanges = this.propertyIndirectRanges.get(p);
+		HashSet<String> allRanges = new HashSet<String>();
+		if (directRanges != null) allRanges.addAll(directRanges);
+		if (indirectRanges != null) allRanges.addAll(indirectRanges);
+
+		for (String d : allDomains) {
+			temp = indirectOutObjectProperties.get(d);
+			if (temp == null) {
+				temp = new HashSet<String>();
+				indirectOutObjectProperties.put(d,  temp);
+			}
+			for (String superP : allSuperPropertiesLocal) {
+				temp.add(superP);
+			}
+		}
+
+		for (String r : allRanges) {
+			temp = indirectInObjectProperties.get(r);
+			if (temp == null) {
+				temp = new HashSet<String>();
+				indirectInObjectProperties.put(r,  temp);
+			}
+			for (String superP : allSuperPropertiesLocal) {
+				temp.add(superP);
 			}
+		}
 
-			for (String r : allRanges) {
-				temp = indirectInObjectProperties.get(r);
+		for (String domain : allDomains) {
+			for (String range : allRanges) {
+				temp = domainRangeToIndirectProperties.get(domain + range);
 				if (temp == null) {
 					temp = new HashSet<String>();
-					indirectInObjectProperties.put(r,  temp);
+					domainRangeToIndirectProperties.put(domain + range, temp);
 				}
 				for (String superP : allSuperPropertiesLocal) {
-					temp.add(superP);
-				}
-			}
-
-			for (String domain : allDomains) {
-				for (String range : allRanges) {
-					temp = domainRangeToIndirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToIndirectProperties.put(domain + range, temp);
-					}
-					for (String superP : allSuperPropertiesLocal) {
-						if (superP.compareTo(p) != 0)
-							temp.add(superP);
-					}
+					if (superP.compareTo(p) != 0)
+						temp.add(superP);
 				}
 			}
 		}
-
 	}
 	
 // 	Please don't remove this commented method. We had this before to implement SubProperty inference, but later we changed our interpretation of SubProperty.
@@ -1280,7 +1659,7 @@ public class OntologyCache {
 //			if (directSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(directSuperPropertiesLocal);
 //			if (indirectSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(indirectSuperPropertiesLocal);
 //			
-//			if (allSuperPropertiesLocal.size() == 0) continue;
+//			if (allSuperPropertiesLocal.size() == 0) return;
 //			
 //			HashSet<String> temp = null;
 //			
@@ -1377,6 +1756,42 @@ public class OntologyCache {
 
 	private void classifyProperties() {
 
+		for (String p : this.dataProperties.keySet()) 
+			this.classifyDataProperty(p);
+		
+		for (String p : this.objectProperties.keySet()) 
+			this.classifyObjectProperty(p);
+	}
+	
+	private void classifyDataProperty(String p) {
+
+		boolean haveDomain;
+		Label label;
+		
+		HashSet<String> directDomains;
+		HashSet<String> indirectDomains;
+		
+		label = this.dataProperties.get(p);
+		
+		directDomains = propertyDirectDomains.get(p);
+		indirectDomains = propertyIndirectDomains.get(p);
+
+		haveDomain = true;
+		
+		if ((directDomains == null || directDomains.size() == 0) &&
+				(indirectDomains == null || indirectDomains.size() == 0))
+			haveDomain = false;
+		
+		if (directDomains != null && directDomains.size() == 1 &&
+				directDomains.iterator().next().equalsIgnoreCase(Uris.THING_URI))
+			haveDomain = false;
+		
+		if (!haveDomain)
+			this.dataPropertiesWithoutDomain.put(p, label);
+	}
+	
+	private void classifyObjectProperty(String p) {
+
 		boolean haveDomain;
 		boolean haveRange;
 		Label label;
@@ -1386,57 +1801,33 @@ public class OntologyCache {
 		HashSet<String> directRanges;
 		HashSet<String> indirectRanges;
 		
-		for (String p : this.dataProperties.keySet()) {
-			
-			label = this.dataProperties.get(p);
-			
-			directDomains = propertyDirectDomains.get(p);
-			indirectDomains = propertyIndirectDomains.get(p);
-
-			haveDomain = true;
-			
-			if ((directDomains == null || directDomains.size() == 0) &&
-					(indirectDomains == null || indirectDomains.size() == 0))
-				haveDomain = false;
-			
-			if (directDomains != null && directDomains.size() == 1 &&
-					directDomains.iterator().next().equalsIgnoreCase(Uris.THING_URI))
-				haveDomain = false;
-			
-			if (!haveDomain)
-				this.dataPropertiesWithoutDomain.put(p, label);
-		}
+		label = this.objectProperties.get(p);
 		
-		for (String p : this.objectProperties.keySet()) {
-			
-			label = this.objectProperties.get(p);
-			
-			directDomains = propertyDirectDomains.get(p);
-			directRanges = propertyDirectRanges.get(p);
+		directDomains = propertyDirectDomains.get(p);
+		directRanges = propertyDirectRanges.get(p);
 
-			indirectDomains = propertyIndirectDomains.get(p);
-			indirectRanges = propertyIndirectRanges.get(p);
+		indirectDomains = propertyIndirectDomains.get(p);
+		indirectRanges = propertyIndirectRanges.get(p);
 
-			haveDomain = true;
-			haveRange = true;
-			
-			if ((directDomains == null || directDomains.size() == 0) &&
-					(indirectDomains == null || indirectDomains.size() == 0))
-				haveDomain = false;
-			
-			if ((directRanges == null || directRanges.size() == 0) &&
-					(indirectRanges == null || indirectRanges.size() == 0))
-				haveRange = false;
-			
-			if (haveDomain && !haveRange) 
-				this.objectPropertiesWithOnlyDomain.put(p, label);
-			else if (!haveDomain && haveRange) {
-				this.objectPropertiesWithOnlyRange.put(p, label);
-			}
-			else if (!haveDomain && !haveRange) 
-				this.objectPropertiesWithoutDomainAndRange.put(p, label);
+		haveDomain = true;
+		haveRange = true;
+		
+		if ((directDomains == null || directDomains.size() == 0) &&
+				(indirectDomains == null || indirectDomains.size() == 0))
+			haveDomain = false;
+		
+		if ((directRanges == null || directRanges.size() == 0) &&
+				(indirectRanges == null || indirectRanges.size() == 0))
+			haveRange = false;
+		
+		if (haveDomain && !haveRange) 
+			this.objectPropertiesWithOnlyDomain.put(p, label);
+		else if (!haveDomain && haveRange) {
+			this.objectPropertiesWithOnlyRange.put(p, label);
 		}
-}
+		else if (!haveDomain && !haveRange) 
+			this.objectPropertiesWithoutDomainAndRange.put(p, label);
+	}
 	
 //	private void buildConnectivityMaps() {
 //		
@@ -0,0 +1,472 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+import edu.isi.karma.rep.alignment.Label;
+
+/**
+ * This class reads and writes the precomputed index of an ontology cache,
+ * so that the cache does not have to be built from the ontology model again
+ * when the same ontology files are loaded.
+ *
+ * The index is named after a SHA-1 hash of the paths of the ontology files, which identifies the set of files,
+ * followed by a SHA-1 hash of their contents, in the order they were imported. When the files of a set change,
+ * the index of their previous contents is removed, the indexes of other sets in the same directory are kept.
+ * Every string (uris, namespaces, prefixes, rdfs labels and comments and the domain+range keys) is stored once
+ * and referred to by its id, and every distinct label is stored once as the ids of its five strings.
+ * The maps of the cache are then stored as adjacency lists of ids:
+ * for each key its id, the number of its values (-1 if the value is null) and the ids of the values.
+ * The class and property hierarchies are stored in preorder as (label id, number of children) pairs.
+ *
+ * The subclass/subproperty check sets and the subclass-superclass pairs are not stored,
+ * they are derived from the subclass and subproperty maps when the index is read.
+ *
+ * Layout, all numbers big endian, strings as their number of UTF-8 bytes followed by the bytes:
+ * magic, version, number of strings and the strings, number of labels and the labels,
+ * and then the maps in the order they are written in write().
+ */
+public class OntologyCacheIndex {
+
+	static final int MAGIC = 0x4B4F4E54; // "KONT"
+	static final int VERSION = 2;
+	static final String EXTENSION = ".idx";
+	// separates the hash of the set of files from the hash of their contents in the name of an index
+	static final String SET_SEPARATOR = "-";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int NULL_ID = -1;
+
+	private OntologyCacheIndex() {
+	}
+
+	/**
+	 * @param directory The directory of the indexes
+	 * @param ontologyFiles The imported ontology files, in the order they were imported
+	 * @return The index file of the ontology files
+	 * @throws IOException If one of the ontology files cannot be read
+	 */
+	public static File indexFileFor(File directory, List<File> ontologyFiles) throws IOException {
+		MessageDigest setDigest = sha1();
+		for (File f : ontologyFiles)
+			setDigest.update((f.getCanonicalPath() + "\n").getBytes(UTF8));
+		MessageDigest digest = sha1();
+		digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+		byte[] buffer = new byte[65536];
+		for (File f : ontologyFiles) {
+			digest.update(ByteBuffer.allocate(8).putLong(f.length()).array());
+			InputStream in = new FileInputStream(f);
+			try {
+				int n;
+				while ((n = in.read(buffer)) != -1)
+					digest.update(buffer, 0, n);
+			} finally {
+				in.close();
+			}
+		}
+		return new File(directory, hex(setDigest.digest()) + SET_SEPARATOR + hex(digest.digest()) + EXTENSION);
+	}
+
+	private static MessageDigest sha1() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("SHA-1 is not available", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder s = new StringBuilder();
+		for (byte b : bytes)
+			s.append(String.format("%02x", b));
+		return s.toString();
+	}
+
+	/**
+	 * Writes the index of a cache that has been built.
+	 * The index is written to a temporary file first, so a reader never sees a partly written index,
+	 * and the index that was written before for other contents of the same ontology files is removed.
+	 *
+	 * @param cache The cache
+	 * @param indexFile The index file
+	 * @throws IOException If the index cannot be written
+	 */
+	public static void write(OntologyCache cache, File indexFile) throws IOException {
+
+		Writer w = new Writer();
+
+		w.writeLabelMap(cache.getClasses());
+		w.writeLabelMap(cache.getProperties());
+		w.writeLabelMap(cache.getDataProperties());
+		w.writeLabelMap(cache.getObjectProperties());
+		w.writeLabelMap(cache.getDataPropertiesWithoutDomain());
+		w.writeLabelMap(cache.getObjectPropertiesWithOnlyDomain());
+		w.writeLabelMap(cache.getObjectPropertiesWithOnlyRange());
+		w.writeLabelMap(cache.getObjectPropertiesWithoutDomainAndRange());
+
+		w.writeTree(cache.getClassHierarchy());
+		w.writeTree(cache.getObjectPropertyHierarchy());
+		w.writeTree(cache.getDataPropertyHierarchy());
+
+		w.writeNestedLabelMap(cache.getDirectSubClasses());
+		w.writeNestedLabelMap(cache.getIndirectSubClasses());
+		w.writeNestedLabelMap(cache.getDirectSuperClasses());
+		w.writeNestedLabelMap(cache.getIndirectSuperClasses());
+		w.writeNestedLabelMap(cache.getDirectSubProperties());
+		w.writeNestedLabelMap(cache.getIndirectSubProperties());
+		w.writeNestedLabelMap(cache.getDirectSuperProperties());
+		w.writeNestedLabelMap(cache.getIndirectSuperProperties());
+
+		w.writeLabelMap(cache.getPropertyInverse());
+		w.writeLabelMap(cache.getPropertyInverseOf());
+
+		w.writeSetMap(cache.getPropertyDirectDomains());
+		w.writeSetMap(cache.getPropertyIndirectDomains());
+		w.writeSetMap(cache.getPropertyDirectRanges());
+		w.writeSetMap(cache.getPropertyIndirectRanges());
+		w.writeSetMap(cache.getDirectOutDataProperties());
+		w.writeSetMap(cache.getIndirectOutDataProperties());
+		w.writeSetMap(cache.getDirectOutObjectProperties());
+		w.writeSetMap(cache.getIndirectOutObjectProperties());
+		w.writeSetMap(cache.getDirectInObjectProperties());
+		w.writeSetMap(cache.getIndirectInObjectProperties());
+		w.writeSetMap(cache.getDomainRangeToDirectProperties());
+		w.writeSetMap(cache.getDomainRangeToIndirectProperties());
+
+		File directory = indexFile.getAbsoluteFile().getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create the directory " + directory);
+
+		File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", directory);
+		try {
+			w.writeTo(tmpFile);
+			Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tmpFile.delete();
+		}
+
+		int separator = indexFile.getName().indexOf(SET_SEPARATOR);
+		if (separator <= 0)
+			return;
+		String setPrefix = indexFile.getName().substring(0, separator + SET_SEPARATOR.length());
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File f : files)
+				if (f.getName().startsWith(setPrefix) && f.getName().endsWith(EXTENSION)
+						&& !f.getName().equals(indexFile.getName()))
+					f.delete();
+	}
+
+	/**
+	 * Reads an index into the maps and hierarchies of an empty cache.
+	 *
+	 * @param indexFile The index file
+	 * @param cache The cache to fill
+	 * @throws IOException If the index cannot be read
+	 */
+	public static void read(File indexFile, OntologyCache cache) throws IOException {
+
+		Reader r = new Reader(ByteBuffer.wrap(Files.readAllBytes(indexFile.toPath())), indexFile);
+
+		r.readLabelMap(cache.getClasses());
+		r.readLabelMap(cache.getProperties());
+		r.readLabelMap(cache.getDataProperties());
+		r.readLabelMap(cache.getObjectProperties());
+		r.readLabelMap(cache.getDataPropertiesWithoutDomain());
+		r.readLabelMap(cache.getObjectPropertiesWithOnlyDomain());
+		r.readLabelMap(cache.getObjectPropertiesWithOnlyRange());
+		r.readLabelMap(cache.getObjectPropertiesWithoutDomainAndRange());
+
+		r.readTree(cache.getClassHierarchy());
+		r.readTree(cache.getObjectPropertyHierarchy());
+		r.readTree(cache.getDataPropertyHierarchy());
+
+		r.readNestedLabelMap(cache.getDirectSubClasses());
+		r.readNestedLabelMap(cache.getIndirectSubClasses());
+		r.readNestedLabelMap(cache.getDirectSuperClasses());
+		r.readNestedLabelMap(cache.getIndirectSuperClasses());
+		r.readNestedLabelMap(cache.getDirectSubProperties());
+		r.readNestedLabelMap(cache.getIndirectSubProperties());
+		r.readNestedLabelMap(cache.getDirectSuperProperties());
+		r.readNestedLabelMap(cache.getIndirectSuperProperties());
+
+		r.readLabelMap(cache.getPropertyInverse());
+		r.readLabelMap(cache.getPropertyInverseOf());
+
+		r.readSetMap(cache.getPropertyDirectDomains());
+		r.readSetMap(cache.getPropertyIndirectDomains());
+		r.readSetMap(cache.getPropertyDirectRanges());
+		r.readSetMap(cache.getPropertyIndirectRanges());
+		r.readSetMap(cache.getDirectOutDataProperties());
+		r.readSetMap(cache.getIndirectOutDataProperties());
+		r.readSetMap(cache.getDirectOutObjectProperties());
+		r.readSetMap(cache.getIndirectOutObjectProperties());
+		r.readSetMap(cache.getDirectInObjectProperties());
+		r.readSetMap(cache.getIndirectInObjectProperties());
+		r.readSetMap(cache.getDomainRangeToDirectProperties());
+		r.readSetMap(cache.getDomainRangeToIndirectProperties());
+
+		if (r.buffer.hasRemaining())
+			throw new IOException("Unexpected data at the end of the ontology cache index " + indexFile);
+	}
+
+	/**
+	 * Interns the strings and labels of the cache while the maps are written,
+	 * because the string and label tables have to be written before the maps that refer to them.
+	 */
+	private static class Writer {
+
+		private HashMap<String, Integer> stringIds = new HashMap<String, Integer>();
+		private List<String> strings = new ArrayList<String>();
+		private HashMap<List<Integer>, Integer> labelIds = new HashMap<List<Integer>, Integer>();
+		private List<List<Integer>> labels = new ArrayList<List<Integer>>();
+		private ByteArrayOutputStream mapBytes = new ByteArrayOutputStream();
+		private DataOutputStream maps = new DataOutputStream(mapBytes);
+
+		private int stringId(String s) {
+			if (s == null)
+				return NULL_ID;
+			Integer id = stringIds.get(s);
+			if (id == null) {
+				id = strings.size();
+				stringIds.put(s, id);
+				strings.add(s);
+			}
+			return id;
+		}
+
+		private int labelId(Label label) {
+			if (label == null)
+				return NULL_ID;
+			List<Integer> key = Arrays.asList(stringId(label.getUri()), stringId(label.getNs()),
+					stringId(label.getPrefix()), stringId(label.getRdfsLabel()), stringId(label.getRdfsComment()));
+			Integer id = labelIds.get(key);
+			if (id == null) {
+				id = labels.size();
+				labelIds.put(key, id);
+				labels.add(key);
+			}
+			return id;
+		}
+
+		void writeLabelMap(HashMap<String, Label> map) throws IOException {
+			maps.writeInt(map.size());
+			for (Entry<String, Label> entry : map.entrySet()) {
+				maps.writeInt(stringId(entry.getKey()));
+				maps.writeInt(labelId(entry.getValue()));
+			}
+		}
+
+		void writeNestedLabelMap(HashMap<String, HashMap<String, Label>> map) throws IOException {
+			maps.writeInt(map.size());
+			for (Entry<String, HashMap<String, Label>> entry : map.entrySet()) {
+				maps.writeInt(stringId(entry.getKey()));
+				if (entry.getValue() == null) {
+					maps.writeInt(NULL_ID);
+					continue;
+				}
+				maps.writeInt(entry.getValue().size());
+				for (Entry<String, Label> inner : entry.getValue().entrySet()) {
+					maps.writeInt(stringId(inner.getKey()));
+					maps.writeInt(labelId(inner.getValue()));
+				}
+			}
+		}
+
+		void writeSetMap(HashMap<String, HashSet<String>> map) throws IOException {
+			maps.writeInt(map.size());
+			for (Entry<String, HashSet<String>> entry : map.entrySet()) {
+				maps.writeInt(stringId(entry.getKey()));
+				if (entry.getValue() == null) {
+					maps.writeInt(NULL_ID);
+					continue;
+				}
+				maps.writeInt(entry.getValue().size());
+				for (String s : entry.getValue())
+					maps.writeInt(stringId(s));
+			}
+		}
+
+		/**
+		 * Writes the children of the root of a hierarchy, the root itself is created by the cache.
+		 */
+		void writeTree(OntologyTreeNode root) throws IOException {
+			List<OntologyTreeNode> children = root.getChildren();
+			maps.writeInt(children == null ? 0 : children.size());
+			if (children != null)
+				for (OntologyTreeNode child : children)
+					writeSubTree(child);
+		}
+
+		private void writeSubTree(OntologyTreeNode node) throws IOException {
+			List<OntologyTreeNode> children = node.getChildren();
+			maps.writeInt(labelId(node.getLabel()));
+			maps.writeInt(children == null ? NULL_ID : children.size());
+			if (children != null)
+				for (OntologyTreeNode child : children)
+					writeSubTree(child);
+		}
+
+		void writeTo(File file) throws IOException {
+			maps.flush();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(strings.size());
+				for (String s : strings) {
+					byte[] bytes = s.getBytes(UTF8);
+					out.writeInt(bytes.length);
+					out.write(bytes);
+				}
+				out.writeInt(labels.size());
+				for (List<Integer> label : labels)
+					for (Integer id : label)
+						out.writeInt(id);
+				mapBytes.writeTo(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the string and label tables, and then the maps on demand.
+	 * All the labels with the same strings are a single Label object, as are all the occurrences of a string.
+	 */
+	private static class Reader {
+
+		private final ByteBuffer buffer;
+		private final String[] strings;
+		private final Label[] labels;
+
+		Reader(ByteBuffer buffer, File indexFile) throws IOException {
+			this.buffer = buffer;
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				throw new IOException("Unsupported ontology cache index " + indexFile);
+			strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; i++) {
+				byte[] bytes = new byte[buffer.getInt()];
+				buffer.get(bytes);
+				strings[i] = new String(bytes, UTF8);
+			}
+			labels = new Label[buffer.getInt()];
+			for (int i = 0; i < labels.length; i++) {
+				String uri = string(buffer.getInt());
+				String ns = string(buffer.getInt());
+				String prefix = string(buffer.getInt());
+				String rdfsLabel = string(buffer.getInt());
+				String rdfsComment = string(buffer.getInt());
+				labels[i] = new Label(uri, ns, prefix, rdfsLabel, rdfsComment);
+			}
+		}
+
+		private String string(int id) {
+			return id == NULL_ID ? null : strings[id];
+		}
+
+		private Label label(int id) {
+			return id == NULL_ID ? null : labels[id];
+		}
+
+		void readLabelMap(HashMap<String, Label> map) {
+			int size = buffer.getInt();
+			for (int i = 0; i < size; i++) {
+				String key = string(buffer.getInt());
+				map.put(key, label(buffer.getInt()));
+			}
+		}
+
+		void readNestedLabelMap(HashMap<String, HashMap<String, Label>> map) {
+			int size = buffer.getInt();
+			for (int i = 0; i < size; i++) {
+				String key = string(buffer.getInt());
+				int innerSize = buffer.getInt();
+				if (innerSize == NULL_ID) {
+					map.put(key, null);
+					continue;
+				}
+				HashMap<String, Label> inner = new HashMap<String, Label>(Math.max(16, innerSize * 4 / 3 + 1));
+				for (int j = 0; j < innerSize; j++) {
+					String innerKey = string(buffer.getInt());
+					inner.put(innerKey, label(buffer.getInt()));
+				}
+				map.put(key, inner);
+			}
+		}
+
+		void readSetMap(HashMap<String, HashSet<String>> map) {
+			int size = buffer.getInt();
+			for (int i = 0; i < size; i++) {
+				String key = string(buffer.getInt());
+				int setSize = buffer.getInt();
+				if (setSize == NULL_ID) {
+					map.put(key, null);
+					continue;
+				}
+				HashSet<String> set = new HashSet<String>(Math.max(16, setSize * 4 / 3 + 1));
+				for (int j = 0; j < setSize; j++)
+					set.add(string(buffer.getInt()));
+				map.put(key, set);
+			}
+		}
+
+		void readTree(OntologyTreeNode root) {
+			int numChildren = buffer.getInt();
+			List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>(numChildren);
+			for (int i = 0; i < numChildren; i++)
+				children.add(readSubTree(root));
+			root.setChildren(children);
+		}
+
+		private OntologyTreeNode readSubTree(OntologyTreeNode parent) {
+			OntologyTreeNode node = new OntologyTreeNode(label(buffer.getInt()), parent, null);
+			int numChildren = buffer.getInt();
+			if (numChildren != NULL_ID) {
+				List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>(numChildren);
+				for (int i = 0; i < numChildren; i++)
+					children.add(readSubTree(node));
+				node.setChildren(children);
+			}
+			return node;
+		}
+	}
+}
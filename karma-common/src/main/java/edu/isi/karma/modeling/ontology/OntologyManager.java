@@ -21,17 +21,24 @@
 package edu.isi.karma.modeling.ontology;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Sets;
+import com.hp.hpl.jena.ontology.OntModel;
+import com.hp.hpl.jena.rdf.listeners.StatementListener;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
 
 import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.rep.alignment.Label;
@@ -45,11 +52,25 @@ public class OntologyManager  {
 	private OntologyHandler ontHandler = null;
 	private OntologyCache ontCache = null;
 	private List<OntologyUpdateListener> ontUpdateListeners; 
+	// the files read into the ontology model, in the order they were imported
+	private List<File> importedFiles;
+	private File cacheIndexDirectory = null;
 	
 	public OntologyManager() {
 		ontHandler = new OntologyHandler();
 		ontCache = new OntologyCache(ontHandler);
 		ontUpdateListeners = new ArrayList<OntologyUpdateListener>();	
+		importedFiles = new ArrayList<File>();
+	}
+	
+	/**
+	 * Sets the directory where the index of the ontology cache is kept.
+	 * When it is set, the cache is read from the index of the imported files if there is one,
+	 * and otherwise it is built from the ontology model and its index is written.
+	 * @param cacheIndexDirectory the directory, or null to always build the cache from the ontology model
+	 */
+	public void setCacheIndexDirectory(File cacheIndexDirectory) {
+		this.cacheIndexDirectory = cacheIndexDirectory;
 	}
 
 	public boolean isEmpty() {
@@ -89,6 +110,15 @@ public class OntologyManager  {
 			o.ontologyModelUpdated();
 	}
 	
+	private void notifyListeners(Set<String> changedUris) {
+		for (OntologyUpdateListener o : ontUpdateListeners) {
+			if (o instanceof IncrementalOntologyUpdateListener)
+				((IncrementalOntologyUpdateListener) o).ontologyModelUpdated(changedUris);
+			else
+				o.ontologyModelUpdated();
+		}
+	}
+	
 	public boolean doImportAndUpdateCache(File sourceFile, String encoding) {
 
 		if (sourceFile == null) {
@@ -103,25 +133,65 @@ public class OntologyManager  {
 			return false;
 		}
 		
+		// the statements read into the ontology model, and those of the ontologies it imports, tell which resources changed
+		OntModel ontModel = ontHandler.getOntModel();
+		final Set<String> newUris = new HashSet<String>();
+		StatementListener listener = new StatementListener() {
+			@Override
+			public void addedStatement(Statement st) {
+				addUris(st, newUris);
+			}
+		};
+		Set<String> importedOntologies = ontModel.listImportedOntologyURIs(true);
+		ontModel.register(listener);
 		try {
 			InputStreamReader s = EncodingDetector.getInputStreamReader(sourceFile, encoding);
-			ontHandler.getOntModel().read(s, null);
+			ontModel.read(s, null);
+			importedFiles.add(sourceFile);
 		} catch (Throwable t) {
 			logger.error("Error reading the OWL ontology file!", t);
 			return false;
+		} finally {
+			ontModel.unregister(listener);
+		}
+		for (String uri : ontModel.listImportedOntologyURIs(true)) {
+			if (!importedOntologies.contains(uri)) {
+				Model importedModel = ontModel.getImportedModel(uri);
+				if (importedModel != null)
+					newUris.addAll(getUris(importedModel));
+			}
 		}
 		
-		// update the cache
-		ontCache = new OntologyCache(ontHandler);
-		ontCache.init();
-		
-		// notify listeners
-		this.notifyListeners();
+		// the cache is empty if it has never been built, it always has owl:Thing otherwise
+		if (ontCache.getClasses().isEmpty()) {
+			this.updateCache();
+			this.notifyListeners();
+		} else {
+			// only update the entries that the new statements can change
+			// the index of the imported files is not written from an incremental update, it is written by the next full build
+			Set<String> changedUris = ontCache.update(newUris);
+			this.notifyListeners(changedUris);
+		}
 		
 		logger.debug("done.");
 		return true;
 	}
 	
+	private static Set<String> getUris(Model model) {
+		Set<String> uris = new HashSet<String>();
+		StmtIterator itr = model.listStatements();
+		while (itr.hasNext())
+			addUris(itr.next(), uris);
+		return uris;
+	}
+	
+	private static void addUris(Statement st, Set<String> uris) {
+		if (st.getSubject().isURIResource())
+			uris.add(st.getSubject().getURI());
+		if (st.getObject().isURIResource())
+			uris.add(st.getObject().asResource().getURI());
+	}
+	
 	public boolean doImport(File sourceFile, String encoding) {
 
 		if (sourceFile == null) {
@@ -139,6 +209,7 @@ public class OntologyManager  {
 		try {
 			InputStreamReader s = EncodingDetector.getInputStreamReader(sourceFile, encoding);
 			ontHandler.getOntModel().read(s, null);
+			importedFiles.add(sourceFile);
 		} catch (Throwable t) {
 			logger.error("Error reading the OWL ontology file!", t);
 			return false;
@@ -152,8 +223,41 @@ public class OntologyManager  {
 	}
 	
 	public void updateCache() {
-		ontCache = new OntologyCache(ontHandler);
-		ontCache.init();
+		
+		File indexFile = getCacheIndexFile();
+		
+		OntologyCache cache = new OntologyCache(ontHandler);
+		if (indexFile != null && indexFile.isFile() && cache.initFromIndex(indexFile)) {
+			ontCache = cache;
+			return;
+		}
+		
+		cache.init();
+		ontCache = cache;
+		
+		this.writeCacheIndex(cache);
+	}
+	
+	private File getCacheIndexFile() {
+		if (cacheIndexDirectory == null || importedFiles.isEmpty())
+			return null;
+		try {
+			return OntologyCacheIndex.indexFileFor(cacheIndexDirectory, importedFiles);
+		} catch (IOException e) {
+			logger.error("Error computing the name of the ontology cache index!", e);
+			return null;
+		}
+	}
+	
+	private void writeCacheIndex(OntologyCache cache) {
+		File indexFile = getCacheIndexFile();
+		if (indexFile == null)
+			return;
+		try {
+			cache.writeIndex(indexFile);
+		} catch (IOException e) {
+			logger.error("Error writing the ontology cache index!", e);
+		}
 	}
 	
 	public HashMap<String, Label> getClasses() {
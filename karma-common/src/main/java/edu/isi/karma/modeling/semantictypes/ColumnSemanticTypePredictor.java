@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler;
+import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler.ColumnFeature;
+import edu.isi.karma.rep.HNodePath;
+import edu.isi.karma.rep.Worksheet;
+
+/**
+ * Predicts the semantic types of several columns of a worksheet at the same
+ * time. The CRF model handler predicts from a read-only snapshot of the model,
+ * so the columns are handed to a bounded pool shared by all worksheets. The
+ * predictions are returned in the order of the columns; callers apply them to
+ * the worksheet on their own thread, after all columns are done.
+ */
+public class ColumnSemanticTypePredictor {
+
+	private static Logger logger = LoggerFactory.getLogger(ColumnSemanticTypePredictor.class);
+
+	private static final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "semantic-type-prediction-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	/**
+	 * The result of predicting the semantic type of one column.
+	 */
+	public static class ColumnPrediction {
+		private final HNodePath path;
+		private final ArrayList<String> examples;
+		private final Map<ColumnFeature, Collection<String>> columnFeatures;
+		private final ArrayList<String> labels = new ArrayList<String>();
+		private final ArrayList<Double> scores = new ArrayList<Double>();
+		private boolean predicted;
+
+		ColumnPrediction(HNodePath path, ArrayList<String> examples,
+				Map<ColumnFeature, Collection<String>> columnFeatures) {
+			this.path = path;
+			this.examples = examples;
+			this.columnFeatures = columnFeatures;
+		}
+
+		public HNodePath getPath() {
+			return path;
+		}
+
+		public ArrayList<String> getExamples() {
+			return examples;
+		}
+
+		public Map<ColumnFeature, Collection<String>> getColumnFeatures() {
+			return columnFeatures;
+		}
+
+		/**
+		 * @return The predicted labels, most likely first
+		 */
+		public ArrayList<String> getLabels() {
+			return labels;
+		}
+
+		/**
+		 * @return The scores of the labels returned by getLabels()
+		 */
+		public ArrayList<Double> getScores() {
+			return scores;
+		}
+
+		/**
+		 * @return True if the CRF model could make a prediction for the column
+		 */
+		public boolean isPredicted() {
+			return predicted;
+		}
+	}
+
+	private ColumnSemanticTypePredictor() {
+	}
+
+	/**
+	 * Predicts the semantic types of the given columns in parallel.
+	 *
+	 * @param worksheet
+	 *            The worksheet of the columns. It is only read.
+	 * @param paths
+	 *            Paths to the columns
+	 * @param crfModelHandler
+	 *            The CRF Model Handler to use
+	 * @param numPredictions
+	 *            Number of labels to predict for each column
+	 * @return One prediction per path, in the order of paths
+	 */
+	public static List<ColumnPrediction> predict(final Worksheet worksheet, List<HNodePath> paths,
+			final CRFModelHandler crfModelHandler, final int numPredictions) {
+		List<ColumnPrediction> predictions = new ArrayList<ColumnPrediction>(paths.size());
+		if (paths.size() == 1) {
+			predictions.add(predictColumn(worksheet, paths.get(0), crfModelHandler, numPredictions));
+			return predictions;
+		}
+
+		List<Future<ColumnPrediction>> futures = new ArrayList<Future<ColumnPrediction>>(paths.size());
+		for (final HNodePath path : paths) {
+			futures.add(executor.submit(new Callable<ColumnPrediction>() {
+				@Override
+				public ColumnPrediction call() {
+					return predictColumn(worksheet, path, crfModelHandler, numPredictions);
+				}
+			}));
+		}
+		for (int i = 0; i < paths.size(); i++) {
+			ColumnPrediction prediction;
+			try {
+				prediction = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<ColumnPrediction> future : futures) {
+					future.cancel(true);
+				}
+				prediction = new ColumnPrediction(paths.get(i), new ArrayList<String>(),
+						columnNameFeature(paths.get(i)));
+			} catch (ExecutionException e) {
+				logger.error("Error occured while predicting semantic type of column "
+						+ paths.get(i).getLeaf().getColumnName(), e.getCause());
+				prediction = new ColumnPrediction(paths.get(i), new ArrayList<String>(),
+						columnNameFeature(paths.get(i)));
+			}
+			predictions.add(prediction);
+		}
+		return predictions;
+	}
+
+	/**
+	 * Predicts the semantic type of a single column on the calling thread.
+	 */
+	public static ColumnPrediction predictColumn(Worksheet worksheet, HNodePath path,
+			CRFModelHandler crfModelHandler, int numPredictions) {
+		logger.debug("predict labels for the column " + path.getLeaf().getColumnName());
+		ArrayList<String> examples = SemanticTypeUtil.getTrainingExamples(worksheet, path);
+		ColumnPrediction prediction = new ColumnPrediction(path, examples, columnNameFeature(path));
+		if (examples.size() == 0) {
+			return prediction;
+		}
+		prediction.predicted = crfModelHandler.predictLabelForExamples(examples, numPredictions,
+				prediction.labels, prediction.scores, null, prediction.columnFeatures);
+		if (!prediction.predicted) {
+			logger.debug("Error occured while predicting semantic type.");
+		} else {
+			logger.debug("Examples: " + examples + " Type: " + prediction.labels + " ProbL " + prediction.scores);
+		}
+		return prediction;
+	}
+
+	private static Map<ColumnFeature, Collection<String>> columnNameFeature(HNodePath path) {
+		Map<ColumnFeature, Collection<String>> columnFeatures = new HashMap<ColumnFeature, Collection<String>>();
+
+		// Prepare the column name feature
+		Collection<String> columnNameList = new ArrayList<String>();
+		columnNameList.add(path.getLeaf().getColumnName());
+		columnFeatures.put(ColumnFeature.ColumnHeaderName, columnNameList);
+		return columnFeatures;
+	}
+}
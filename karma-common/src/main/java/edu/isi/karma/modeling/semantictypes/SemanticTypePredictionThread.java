@@ -3,7 +3,6 @@ package edu.isi.karma.modeling.semantictypes;
 import edu.isi.karma.modeling.alignment.Alignment;
 import edu.isi.karma.modeling.ontology.OntologyManager;
 import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler;
-import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler.ColumnFeature;
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.HNodePath;
 import edu.isi.karma.rep.Worksheet;
@@ -47,47 +46,19 @@ public class SemanticTypePredictionThread implements Runnable {
 		if (hNodePaths == null)
 			return;
 		
-		for (HNodePath path : this.hNodePaths) {
+		// the columns are predicted in parallel. The results are applied here, in column order.
+		List<ColumnSemanticTypePredictor.ColumnPrediction> predictions = ColumnSemanticTypePredictor.predict(
+				worksheet, hNodePaths, crfModelHandler, 4);
+		for (ColumnSemanticTypePredictor.ColumnPrediction prediction : predictions) {
 				
 			try {
-				logger.debug("predict labels for the column " + path.getLeaf().getColumnName());
-	
-				ArrayList<String> trainingExamples = SemanticTypeUtil.getTrainingExamples(worksheet,
-						path);
-				if (trainingExamples.size() == 0)
-					continue;
-	
-				Map<ColumnFeature, Collection<String>> columnFeatures = new HashMap<ColumnFeature, Collection<String>>();
-	
-				// Prepare the column name feature
-				String columnName = path.getLeaf().getColumnName();
-				Collection<String> columnNameList = new ArrayList<String>();
-				columnNameList.add(columnName);
-				columnFeatures.put(ColumnFeature.ColumnHeaderName, columnNameList);
-				
-				// // Prepare the table name feature
-				// String tableName = worksheetName;
-				// Collection<String> tableNameList = new ArrayList<String>();
-				// tableNameList.add(tableName);
-				// columnFeatures.put(ColumnFeature.TableName, tableNameList);
-	
-				// Stores the probability scores
-				ArrayList<Double> scores = new ArrayList<Double>();
-				// Stores the predicted labels
-				ArrayList<String> labels = new ArrayList<String>();
-				boolean predictResult = crfModelHandler.predictLabelForExamples(
-						trainingExamples, 4, labels, scores, null, columnFeatures);
-				if (!predictResult) {
-					logger.debug("Error occured while predicting semantic type.");
-					continue;
-				}
-				if (labels.size() == 0) {
+				HNodePath path = prediction.getPath();
+				ArrayList<String> labels = prediction.getLabels();
+				ArrayList<Double> scores = prediction.getScores();
+				if (!prediction.isPredicted() || labels.size() == 0) {
 					continue;
 				}
 	
-				logger.debug("Examples: " + trainingExamples + " Type: " + labels
-						+ " ProbL " + scores);
-				
 				/** Remove the labels that are not in the ontology or are already used as the semantic type **/
 				List<String> removeLabels = new ArrayList<String>();
 				String domainUri, typeUri;
@@ -146,43 +146,17 @@ public class SemanticTypeUtil {
 
 		List<HNodePath> paths = worksheet.getHeaders().getAllPaths();
 
-		for (HNodePath path : paths) {
+		// predict all columns in parallel, then apply the predictions column by column
+		for (ColumnSemanticTypePredictor.ColumnPrediction prediction : ColumnSemanticTypePredictor
+				.predict(worksheet, paths, crfModelHandler, 4)) {
 			boolean semanticTypeAdded = false;
-			ArrayList<String> trainingExamples = getTrainingExamples(worksheet,
-					path);
-			if (trainingExamples.size() == 0)
-				continue;
-
-			Map<ColumnFeature, Collection<String>> columnFeatures = new HashMap<ColumnFeature, Collection<String>>();
-
-			// Prepare the column name feature
-			String columnName = path.getLeaf().getColumnName();
-			Collection<String> columnNameList = new ArrayList<String>();
-			columnNameList.add(columnName);
-			columnFeatures.put(ColumnFeature.ColumnHeaderName, columnNameList);
-			
-			// // Prepare the table name feature
-			// String tableName = worksheetName;
-			// Collection<String> tableNameList = new ArrayList<String>();
-			// tableNameList.add(tableName);
-			// columnFeatures.put(ColumnFeature.TableName, tableNameList);
-
-			// Stores the probability scores
-			ArrayList<Double> scores = new ArrayList<Double>();
-			// Stores the predicted labels
-			ArrayList<String> labels = new ArrayList<String>();
-			boolean predictResult = crfModelHandler.predictLabelForExamples(
-					trainingExamples, 4, labels, scores, null, columnFeatures);
-			if (!predictResult) {
-				logger.debug("Error occured while predicting semantic type.");
-				continue;
-			}
-			if (labels.size() == 0) {
+			if (!prediction.isPredicted() || prediction.getLabels().size() == 0) {
 				continue;
 			}
-
-			logger.debug("Examples: " + trainingExamples + " Type: " + labels
-					+ " ProbL " + scores);
+			HNodePath path = prediction.getPath();
+			Map<ColumnFeature, Collection<String>> columnFeatures = prediction.getColumnFeatures();
+			ArrayList<String> labels = prediction.getLabels();
+			ArrayList<Double> scores = prediction.getScores();
 
 			// Create and add the semantic type to the semantic types set of the
 			// worksheet
@@ -338,8 +312,10 @@ public class SemanticTypeUtil {
 			return;
 		}
 		List<HNodePath> paths = worksheet.getHeaders().getAllPaths();
-		for (HNodePath path : paths) {
-			computeSemanticTypesSuggestion(worksheet, crfModelHandler, ontMgr, path);
+		// predict all columns in parallel, then add the suggestions column by column
+		for (ColumnSemanticTypePredictor.ColumnPrediction prediction : ColumnSemanticTypePredictor
+				.predict(worksheet, paths, crfModelHandler, 4)) {
+			addSemanticTypesSuggestion(worksheet, ontMgr, prediction);
 		}
 	}
 	
@@ -350,25 +326,19 @@ public class SemanticTypeUtil {
 		{
 			return;
 		}
-		ArrayList<String> trainingExamples = getTrainingExamples(worksheet, path);
-
-		Map<ColumnFeature, Collection<String>> columnFeatures = new HashMap<ColumnFeature, Collection<String>>();
+		addSemanticTypesSuggestion(worksheet, ontMgr,
+				ColumnSemanticTypePredictor.predictColumn(worksheet, path, crfModelHandler, 4));
+	}
 
-		// Prepare the column name feature
-		String columnName = path.getLeaf().getColumnName();
-		Collection<String> columnNameList = new ArrayList<String>();
-		columnNameList.add(columnName);
-		columnFeatures.put(ColumnFeature.ColumnHeaderName, columnNameList);
-		
-		// Stores the probability scores
-		ArrayList<Double> scores = new ArrayList<Double>();
-		// Stores the predicted labels
-		ArrayList<String> labels = new ArrayList<String>();
-		boolean predictResult = crfModelHandler.predictLabelForExamples(trainingExamples, 4, labels, scores, null, columnFeatures);
-		if (!predictResult) {
-			logger.debug("Error occured while predicting semantic type.");
+	private static void addSemanticTypesSuggestion(Worksheet worksheet, OntologyManager ontMgr,
+			ColumnSemanticTypePredictor.ColumnPrediction prediction)
+	{
+		if (!prediction.isPredicted()) {
 			return;
 		}
+		HNodePath path = prediction.getPath();
+		ArrayList<String> labels = prediction.getLabels();
+		ArrayList<Double> scores = prediction.getScores();
 		if (labels.size() == 0) {
 			return;
 		}
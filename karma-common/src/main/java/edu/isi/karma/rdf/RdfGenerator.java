@@ -24,7 +24,14 @@ package edu.isi.karma.rdf;
 import edu.isi.karma.controller.command.CommandException;
 import edu.isi.karma.controller.command.ICommand.CommandTag;
 import edu.isi.karma.controller.history.WorksheetCommandHistoryExecutor;
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
+import edu.isi.karma.kr2rml.RDFOutputFormat;
+import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
+import edu.isi.karma.kr2rml.planning.BatchTriplesMapPlanExecutor;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
 import edu.isi.karma.modeling.ModelingConfiguration;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
@@ -32,26 +39,108 @@ import edu.isi.karma.rep.WorkspaceManager;
 import edu.isi.karma.webserver.ExecutionController;
 import edu.isi.karma.webserver.KarmaException;
 import edu.isi.karma.webserver.WorkspaceRegistry;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
 public abstract class RdfGenerator {
 
 	private static Logger logger = LoggerFactory.getLogger(RdfGenerator.class);
+	protected int executionParallelism = 0;
+	protected RDFOutputFormat outputFormat = RDFOutputFormat.N3;
+	protected boolean deduplicateTriples = false;
+	protected KR2RMLRDFWriter rdfWriter = null;
+	protected boolean columnarStorage = false;
+	private BatchTriplesMapPlanExecutor batchExecutor = null;
+	private static boolean modelingConfigurationLoaded = false;
 	
+	/**
+	 * Number of threads used to generate the RDF of a worksheet in batches of
+	 * rows. 0 uses the per row executor.
+	 */
+	public void setExecutionParallelism(int executionParallelism) {
+		this.executionParallelism = executionParallelism;
+	}
+
+	/**
+	 * The binary formats can only be written to an OutputStream: they need a
+	 * writer created with RDFOutputFormat.createWriter(URIFormatter,
+	 * OutputStream, boolean) and given to setRDFWriter, otherwise the
+	 * generation fails with a KarmaException before any RDF is written.
+	 */
+	public void setOutputFormat(RDFOutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	/**
+	 * Remove the duplicate triples of every row for the output formats that
+	 * do not always do it
+	 */
+	public void setDeduplicateTriples(boolean deduplicateTriples) {
+		this.deduplicateTriples = deduplicateTriples;
+	}
+
+	/**
+	 * Write the RDF of every worksheet to rdfWriter instead of the PrintWriter
+	 * given to the generator, e.g. for the binary output formats. The writer is
+	 * shared by all the worksheets and is left open.
+	 */
+	public void setRDFWriter(KR2RMLRDFWriter rdfWriter) {
+		this.rdfWriter = rdfWriter;
+	}
+
+	/**
+	 * Store the cells of the worksheets by column, see
+	 * RepFactory.setColumnarStorage
+	 */
+	public void setColumnarStorage(boolean columnarStorage) {
+		this.columnarStorage = columnarStorage;
+	}
+
+	/**
+	 * Fails if the output format cannot be written to the PrintWriter given to
+	 * the generator
+	 */
+	protected void checkOutputFormat() throws KarmaException {
+		if (rdfWriter == null && outputFormat.isBinary()) {
+			throw new KarmaException("The " + outputFormat + " output has to be written to an OutputStream, see setRDFWriter");
+		}
+	}
+
+	protected KR2RMLRDFWriter createRDFWriter(Workspace workspace, PrintWriter pw, ErrorReport errorReport) throws KarmaException {
+		if (rdfWriter != null) {
+			return rdfWriter;
+		}
+		checkOutputFormat();
+		URIFormatter uriFormatter = new URIFormatter(workspace.getOntologyManager(), errorReport);
+		return outputFormat.createWriter(uriFormatter, pw, deduplicateTriples);
+	}
+
 	protected Workspace initializeWorkspace() {
 		
 		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		workspace.getFactory().setColumnarStorage(columnarStorage);
         WorkspaceRegistry.getInstance().register(new ExecutionController(workspace));
-        ModelingConfiguration.load();
-        ModelingConfiguration.setManualAlignment(true);
+        loadModelingConfiguration();
 		return workspace;
 	}
 
+	// The configuration is read once: reloading it while other generators run
+	// in parallel would reset the manual alignment they rely on
+	private static synchronized void loadModelingConfiguration() {
+		if (!modelingConfigurationLoaded) {
+			ModelingConfiguration.load();
+			modelingConfigurationLoaded = true;
+		}
+		ModelingConfiguration.setManualAlignment(true);
+	}
+
 	protected void removeWorkspace(Workspace workspace) {
 		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
 	    WorkspaceRegistry.getInstance().deregister(workspace.getId());
@@ -59,17 +148,82 @@ public abstract class RdfGenerator {
 
 	protected void applyHistoryToWorksheet(Workspace workspace, Worksheet worksheet,
 			KR2RMLMapping mapping) throws JSONException {
+		applyHistoryToWorksheet(workspace, worksheet, mapping.getWorksheetHistory());
+	}
+
+	protected void applyHistoryToWorksheet(Workspace workspace, Worksheet worksheet,
+			CompiledKR2RMLMapping compiledMapping) throws JSONException {
+		applyHistoryToWorksheet(workspace, worksheet, compiledMapping.getWorksheetHistory());
+	}
+
+	private void applyHistoryToWorksheet(Workspace workspace, Worksheet worksheet,
+			JSONArray history) throws JSONException {
 		WorksheetCommandHistoryExecutor wchr = new WorksheetCommandHistoryExecutor(worksheet.getId(), workspace);
 		try
 		{
 			List<CommandTag> tags = new ArrayList<CommandTag>();
 			tags.add(CommandTag.Transformation);
-			wchr.executeCommandsByTags(tags, mapping.getWorksheetHistory());
+			wchr.executeCommandsByTags(tags, history);
 		}
 		catch (CommandException | KarmaException e)
 		{
 			logger.error("Unable to execute column transformations", e);
 		}
 	}
+
+	/**
+	 * Generates the RDF for one chunk of a source that is read a piece at a time.
+	 * The worksheet only holds the rows of the current chunk, so the writer is
+	 * left open for the following chunks. The compiled mapping is shared by all
+	 * the chunks so the model is parsed and planned only once.
+	 */
+	protected void generateRDFFromWorksheet(Worksheet wk, 
+			Workspace workspace, CompiledKR2RMLMapping compiledMapping, PrintWriter pw) 
+					throws IOException, JSONException, KarmaException {
+		// Gets all the errors generated during the RDF generation
+		ErrorReport errorReport = new ErrorReport();
+		
+		this.applyHistoryToWorksheet(workspace, wk, compiledMapping);
+
+		// RDF generation object initialization
+		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(wk,
+				workspace.getFactory(), workspace.getOntologyManager(), 
+				createRDFWriter(workspace, pw, errorReport), compiledMapping, 
+				errorReport, false);
+		rdfGen.setExecutionParallelism(executionParallelism);
+		rdfGen.setBatchExecutor(getBatchExecutor());
+
+		// Generate the rdf
+		rdfGen.generateRDF(false);
+	}
+
+	/**
+	 * @return the executor shared by the chunks of the source being generated,
+	 * or null when the rows are not generated in batches
+	 */
+	private synchronized BatchTriplesMapPlanExecutor getBatchExecutor() {
+		if (executionParallelism <= 0) {
+			return null;
+		}
+		if (batchExecutor == null || batchExecutor.getParallelism() != executionParallelism) {
+			if (batchExecutor != null) {
+				batchExecutor.shutdown();
+			}
+			batchExecutor = new BatchTriplesMapPlanExecutor(executionParallelism);
+		}
+		return batchExecutor;
+	}
+
+	/**
+	 * Stops the threads of the executor shared by the chunks, once all the
+	 * chunks of a source are generated. A new one is started if the generator
+	 * is used again.
+	 */
+	protected synchronized void shutdownBatchExecutor() {
+		if (batchExecutor != null) {
+			batchExecutor.shutdown();
+			batchExecutor = null;
+		}
+	}
 	
 }
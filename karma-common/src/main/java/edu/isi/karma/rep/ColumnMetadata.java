@@ -32,6 +32,7 @@ public class ColumnMetadata {
 //	private Map<String, COLUMN_TYPE>	columnTypes;
 //	private Map<String, List<String>>	invalidNodeIds;
 	private Map<String, JSONObject>		columnHistogramData;
+	private Map<String, ColumnProfile>	columnProfiles;
 	private Map<String, String>			columnPythonTransform;
 	private Map<String, String>			columnPreviousCommandId;
 	private Map<String, String>			columnDerivedFrom;
@@ -43,6 +44,7 @@ public class ColumnMetadata {
 //		this.columnTypes 			= new HashMap<String, ColumnMetadata.COLUMN_TYPE>();
 //		this.invalidNodeIds 		= new HashMap<String, List<String>>();
 		this.columnHistogramData	= new HashMap<String, JSONObject>();
+		this.columnProfiles			= new HashMap<String, ColumnProfile>();
 		this.columnPythonTransform  = new HashMap<String, String>();
 		this.columnPreviousCommandId = new HashMap<String, String>();
 		this.columnDerivedFrom = new HashMap<String, String>();
@@ -74,6 +76,14 @@ public class ColumnMetadata {
 		columnHistogramData.put(hNodeId, data);
 	}
 	
+	public ColumnProfile getColumnProfile(String hNodeId) {
+		return columnProfiles.get(hNodeId);
+	}
+	
+	public void addColumnProfile(String hNodeId, ColumnProfile profile) {
+		columnProfiles.put(hNodeId, profile);
+	}
+	
 	public String getColumnPython(String hNodeId)
 	{
 		return columnPythonTransform.get(hNodeId);
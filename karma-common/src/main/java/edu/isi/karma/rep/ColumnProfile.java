@@ -0,0 +1,666 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import edu.isi.karma.util.Fingerprint;
+
+/**
+ * Statistics of the values of one column: the detected data type, a histogram
+ * of the values, an estimate of the number of distinct values and the
+ * distribution of the lengths of the values. It is computed in one pass over
+ * the nodes of the column, and the JSON it produces has the keys that the
+ * cleaning charts of the worksheet expect. The types, the histogram bars and
+ * the preferred length follow the rules of the IdentifyData cleaning service,
+ * except where that service was wrong (minutes parsed as months, widths of
+ * dates one day too long and negative invalid counts for empty columns).
+ *
+ * Every profile keeps the signature of the column it was computed from, so
+ * that a column is only profiled again when its values have changed.
+ */
+public class ColumnProfile {
+
+	public enum DataType {
+		Boolean, Date, Integer, Double, DayOfWeek, String, Empty_String
+	}
+
+	private enum JsonKeys {
+		histogram, histogram_Colwidth, xLabel, yLabel, Value, Frequency,
+		Total_ID_Count, Valid_ID_Count, Invalid_ID_Count, Distinct_Count,
+		Min_Token_Length, Max_Token_Length, Preferred_Length
+	}
+
+	public static final String REMAINING = "Remaining";
+	public static final String MISSING = "MISSING";
+	public static final String INVALID = "INVALID";
+
+	// Number of bars of the histogram, not counting the remaining, missing and invalid ones
+	private static final int MAX_COLUMNS = 10;
+	private static final int MAX_DATE_COLUMNS = 5;
+	// Percentile of the lengths of the values used as the preferred length of the column
+	private static final double LENGTH_PERCENTILE = 0.8;
+	// Distinct values whose frequencies are kept, the others only go to the distinct count sketch
+	private static final int MAX_TRACKED_VALUES = 10000;
+	private static final int MAX_LENGTH = 256;
+	private static final int SKETCH_BITS = 10;
+
+	private static final long DAY = 86400000L;
+	private static final long MONTH = 2592000000L;
+
+	// Tried in this order, a value is a date if one of them parses a prefix of it
+	private static final String[] DATE_FORMATS = {
+		"yyyy-MM-dd HH:mm:ss,z", "yyyy-MM-dd HH:mm:ss.z", "yyyy-MM-dd HH:mm:ss",
+		"yyyy-MM-dd'T'HH:mm:ssz", "dd-MMM-yy", "yyyy.MM.dd G 'at' HH:mm:ss z", "EEE, MMM d, ''yy",
+		"h:mm a", "hh 'o''clock' a, zzzz", "K:mm a, z", "yyyyy.MMMMM.dd GGG hh:mm aaa",
+		"EEE, d MMM yyyy HH:mm:ss Z", "dd.MM.yy", "yyyy.MM.dd G 'at' hh:mm:ss z", "EEE d MMM yy",
+		"yyyy-MM-dd", "yyyy/MM/dd", "MM/yyyy", "yyyy"
+	};
+	private static final String YEAR_FORMAT = "yyyy";
+	private static final int MAX_YEAR = 2100;
+
+	private static final String[] DAYS_OF_WEEK = {
+		"MONDAY", "TUESDAY", "WEDNESDAY", "THURSDAY", "FRIDAY", "SATURDAY", "SUNDAY"
+	};
+
+	private final long signature;
+	private final DataType dataType;
+	private final int totalCount;
+	private final int missingCount;
+	private final int invalidCount;
+	private final long distinctCount;
+	private final int minLength;
+	private final int maxLength;
+	private final int preferredLength;
+	private final List<Bucket> histogram;
+	private final String histogramColumnWidth;
+
+	private ColumnProfile(long signature, DataType dataType, int totalCount, int missingCount,
+			int invalidCount, long distinctCount, int minLength, int maxLength, int preferredLength,
+			List<Bucket> histogram, String histogramColumnWidth) {
+		this.signature = signature;
+		this.dataType = dataType;
+		this.totalCount = totalCount;
+		this.missingCount = missingCount;
+		this.invalidCount = invalidCount;
+		this.distinctCount = distinctCount;
+		this.minLength = minLength;
+		this.maxLength = maxLength;
+		this.preferredLength = preferredLength;
+		this.histogram = histogram;
+		this.histogramColumnWidth = histogramColumnWidth;
+	}
+
+	/**
+	 * Computes the signature of the values of a column. Two columns with the
+	 * same nodes and the same values have the same signature; it does not
+	 * depend on the order of the nodes. The values are hashed on 64 bits, so
+	 * that an edited column keeps the signature of its old values only by a
+	 * 64 bit collision.
+	 */
+	public static long signature(Collection<Node> nodes) {
+		long signature = nodes.size();
+		for (Node node : nodes) {
+			String value = node.getValue().asString();
+			long h = hash64(value == null ? "" : value) + node.getNumericId() * 0x9e3779b97f4a7c15L;
+			signature += mix(h);
+		}
+		return signature;
+	}
+
+	/**
+	 * Computes the profile of the values of a column.
+	 */
+	public static ColumnProfile compute(Collection<Node> nodes) {
+		return compute(nodes, signature(nodes));
+	}
+
+	public static ColumnProfile compute(Collection<Node> nodes, long signature) {
+		List<String> values = new ArrayList<String>(nodes.size());
+		for (Node node : nodes) {
+			String value = node.getValue().asString();
+			values.add(value == null ? "" : value);
+		}
+		return new Builder().build(values, signature);
+	}
+
+	public long getSignature() {
+		return signature;
+	}
+
+	public DataType getDataType() {
+		return dataType;
+	}
+
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	public int getMissingCount() {
+		return missingCount;
+	}
+
+	public int getInvalidCount() {
+		return invalidCount;
+	}
+
+	public int getValidCount() {
+		return totalCount - missingCount - invalidCount;
+	}
+
+	/**
+	 * @return the label of the values of the column in the charts
+	 */
+	public String getLabel() {
+		return dataType == DataType.DayOfWeek ? "Weekdays" : dataType.name();
+	}
+
+	/**
+	 * @return the number of distinct non empty values, estimated when the column has too many of them to be counted
+	 */
+	public long getDistinctCount() {
+		return distinctCount;
+	}
+
+	/**
+	 * @return the smallest length of the values, or of their longest words when the column has strings
+	 */
+	public int getMinLength() {
+		return minLength;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * @return the preferred length of the column in characters, 0 if the column has no values
+	 */
+	public int getPreferredLength() {
+		return preferredLength;
+	}
+
+	public JSONObject toJSON() throws JSONException {
+		JSONArray histogramArray = new JSONArray();
+		for (Bucket bucket : histogram) {
+			JSONObject bar = new JSONObject();
+			bar.put(JsonKeys.Value.name(), bucket.value);
+			bar.put(JsonKeys.Frequency.name(), bucket.frequency);
+			histogramArray.put(bar);
+		}
+		JSONObject json = new JSONObject();
+		json.put(JsonKeys.histogram.name(), histogramArray.toString());
+		if (histogramColumnWidth != null)
+			json.put(JsonKeys.histogram_Colwidth.name(), histogramColumnWidth);
+		json.put(JsonKeys.xLabel.name(), getLabel());
+		json.put(JsonKeys.yLabel.name(), "Count");
+		json.put(JsonKeys.Total_ID_Count.name(), totalCount);
+		json.put(JsonKeys.Valid_ID_Count.name(), getValidCount());
+		json.put(JsonKeys.Invalid_ID_Count.name(), invalidCount);
+		json.put(JsonKeys.Distinct_Count.name(), distinctCount);
+		json.put(JsonKeys.Min_Token_Length.name(), minLength);
+		json.put(JsonKeys.Max_Token_Length.name(), maxLength);
+		json.put(JsonKeys.Preferred_Length.name(), preferredLength);
+		return json;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static long hash64(String value) {
+		return mix(Fingerprint.of(value));
+	}
+
+	private static final class Bucket {
+		private final String value;
+		private final int frequency;
+
+		private Bucket(String value, int frequency) {
+			this.value = value;
+			this.frequency = frequency;
+		}
+	}
+
+	/**
+	 * Estimates the number of distinct values with a HyperLogLog sketch.
+	 */
+	private static final class DistinctCountSketch {
+		private final byte[] registers = new byte[1 << SKETCH_BITS];
+
+		void add(String value) {
+			long h = hash64(value);
+			int index = (int) (h >>> (64 - SKETCH_BITS));
+			long rest = h << SKETCH_BITS;
+			byte rank = (byte) (rest == 0 ? 64 - SKETCH_BITS + 1 : Long.numberOfLeadingZeros(rest) + 1);
+			if (rank > registers[index])
+				registers[index] = rank;
+		}
+
+		long estimate() {
+			int m = registers.length;
+			double sum = 0;
+			int zeros = 0;
+			for (byte r : registers) {
+				sum += 1.0 / (1L << r);
+				if (r == 0)
+					zeros++;
+			}
+			double alpha = 0.7213 / (1 + 1.079 / m);
+			double estimate = alpha * m * m / sum;
+			if (estimate <= 2.5 * m && zeros > 0)
+				estimate = m * Math.log((double) m / zeros);
+			return Math.round(estimate);
+		}
+	}
+
+	
+	/**
+	 * Classifies the values and accumulates the counts of one column.
+	 * The date formats are not thread safe, so every profile gets its own builder.
+	 */
+	private static final class Builder {
+
+		private final SimpleDateFormat[] dateFormats = new SimpleDateFormat[DATE_FORMATS.length];
+		private final SimpleDateFormat dateLabelFormat = new SimpleDateFormat("MM-dd-yyyy", Locale.US);
+
+		private final int[] typeCounts = new int[DataType.values().length];
+		private final double[] minValues = new double[DataType.values().length];
+		private final double[] maxValues = new double[DataType.values().length];
+		// Number of occurrences and ordinal of the type of every tracked value
+		private final Map<String, int[]> frequencies = new HashMap<String, int[]>();
+		private final int[] untrackedCounts = new int[DataType.values().length];
+		private final DistinctCountSketch sketch = new DistinctCountSketch();
+		private final int[] lengthCounts = new int[MAX_LENGTH + 1];
+		private final int[] wordLengthCounts = new int[MAX_LENGTH + 1];
+		private boolean tracking = true;
+		// The number, or the time of the date, of the last value detectType classified as one
+		private double parsed;
+
+		Builder() {
+			for (int i = 0; i < DATE_FORMATS.length; i++) {
+				dateFormats[i] = new SimpleDateFormat(DATE_FORMATS[i], Locale.US);
+				dateFormats[i].setLenient(false);
+			}
+			Arrays.fill(minValues, Double.MAX_VALUE);
+			Arrays.fill(maxValues, -Double.MAX_VALUE);
+		}
+
+		ColumnProfile build(List<String> values, long signature) {
+			int minLength = Integer.MAX_VALUE;
+			int maxLength = 0;
+			int minWordLength = Integer.MAX_VALUE;
+			int maxWordLength = 0;
+			DataType[] types = new DataType[values.size()];
+			double[] numbers = new double[values.size()];
+
+			for (int i = 0; i < values.size(); i++) {
+				String value = values.get(i);
+				DataType type = detectType(value);
+				types[i] = type;
+				typeCounts[type.ordinal()]++;
+				if (type == DataType.Integer || type == DataType.Double || type == DataType.Date) {
+					numbers[i] = parsed;
+					minValues[type.ordinal()] = Math.min(minValues[type.ordinal()], parsed);
+					maxValues[type.ordinal()] = Math.max(maxValues[type.ordinal()], parsed);
+				}
+				if (type != DataType.Empty_String)
+					count(value, type);
+
+				int length = value.length();
+				minLength = Math.min(minLength, length);
+				maxLength = Math.max(maxLength, length);
+				lengthCounts[Math.min(length, MAX_LENGTH)]++;
+				int wordLength = maxWordLength(value);
+				minWordLength = Math.min(minWordLength, wordLength);
+				maxWordLength = Math.max(maxWordLength, wordLength);
+				wordLengthCounts[Math.min(wordLength, MAX_LENGTH)]++;
+			}
+
+			DataType columnType = columnType();
+			if (columnType == DataType.Integer)
+				yearsAsIntegers(values, types, numbers);
+			int missingCount = typeCounts[DataType.Empty_String.ordinal()];
+			int validCount = columnType == DataType.Empty_String ? 0 : typeCounts[columnType.ordinal()];
+			int invalidCount = values.size() - missingCount - validCount;
+
+			List<Bucket> histogram = new ArrayList<Bucket>();
+			String columnWidth = null;
+			switch (columnType) {
+			case Integer:
+			case Double:
+			case Date:
+				columnWidth = rangeHistogram(types, numbers, columnType, validCount, histogram);
+				break;
+			case Empty_String:
+				break;
+			default:
+				frequencyHistogram(columnType, histogram);
+			}
+			if (missingCount > 0)
+				histogram.add(new Bucket(MISSING, missingCount));
+			if (invalidCount > 0)
+				histogram.add(new Bucket(INVALID, invalidCount));
+
+			// The length of a string column is the one of its words, as long values wrap at the spaces
+			boolean strings = columnType == DataType.String || columnType == DataType.Empty_String;
+			if (strings) {
+				minLength = minWordLength;
+				maxLength = maxWordLength;
+			}
+			if (values.isEmpty())
+				minLength = 0;
+			int preferredLength = percentile(strings ? wordLengthCounts : lengthCounts,
+					values.size(), LENGTH_PERCENTILE);
+			long distinctCount = tracking ? frequencies.size() : sketch.estimate();
+
+			return new ColumnProfile(signature, columnType, values.size(), missingCount, invalidCount,
+					distinctCount, minLength, maxLength, preferredLength, histogram, columnWidth);
+		}
+
+		private void count(String value, DataType type) {
+			sketch.add(value);
+			int[] frequency = frequencies.get(value);
+			if (frequency != null) {
+				frequency[0]++;
+			} else if (frequencies.size() < MAX_TRACKED_VALUES) {
+				frequencies.put(value, new int[] {1, type.ordinal()});
+			} else {
+				tracking = false;
+				untrackedCounts[type.ordinal()]++;
+			}
+		}
+
+		private DataType detectType(String value) {
+			if (value.isEmpty())
+				return DataType.Empty_String;
+			if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false"))
+				return DataType.Boolean;
+			Date date = parseDate(value);
+			if (date != null) {
+				parsed = date.getTime();
+				return DataType.Date;
+			}
+			try {
+				parsed = Integer.parseInt(value);
+				return DataType.Integer;
+			} catch (NumberFormatException e) {
+				// Not an integer
+			}
+			try {
+				double d = Double.parseDouble(value);
+				if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+					parsed = d;
+					return DataType.Double;
+				}
+			} catch (NumberFormatException e) {
+				// Not a number
+			}
+			for (String day : DAYS_OF_WEEK)
+				if (value.equalsIgnoreCase(day))
+					return DataType.DayOfWeek;
+			return DataType.String;
+		}
+
+		private Date parseDate(String value) {
+			// Every date format has a numeric field
+			boolean hasDigit = false;
+			for (int i = 0; i < value.length() && !hasDigit; i++)
+				hasDigit = Character.isDigit(value.charAt(i));
+			if (!hasDigit)
+				return null;
+			for (int i = 0; i < dateFormats.length; i++) {
+				if (DATE_FORMATS[i].equals(YEAR_FORMAT) && !isYear(value))
+					continue;
+				Date date = dateFormats[i].parse(value, new ParsePosition(0));
+				if (date != null)
+					return date;
+			}
+			return null;
+		}
+
+		private boolean isYear(String value) {
+			if (value.length() != 4)
+				return false;
+			try {
+				return Integer.parseInt(value) <= MAX_YEAR;
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * @return the type of the most values, the first one of the enum on a tie
+		 */
+		private DataType columnType() {
+			DataType best = DataType.Empty_String;
+			int bestCount = 0;
+			for (DataType type : DataType.values()) {
+				if (typeCounts[type.ordinal()] > bestCount) {
+					best = type;
+					bestCount = typeCounts[type.ordinal()];
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * A year alone is also an integer, so the years of an integer column are valid values.
+		 */
+		private void yearsAsIntegers(List<String> values, DataType[] types, double[] numbers) {
+			int integer = DataType.Integer.ordinal();
+			for (int i = 0; i < types.length; i++) {
+				if (types[i] != DataType.Date || !isYear(values.get(i)))
+					continue;
+				types[i] = DataType.Integer;
+				numbers[i] = Integer.parseInt(values.get(i));
+				typeCounts[DataType.Date.ordinal()]--;
+				typeCounts[integer]++;
+				minValues[integer] = Math.min(minValues[integer], numbers[i]);
+				maxValues[integer] = Math.max(maxValues[integer], numbers[i]);
+			}
+		}
+
+		private void frequencyHistogram(final DataType columnType, List<Bucket> histogram) {
+			// The values that only differ by their case go to the same bar
+			Map<String, int[]> bars = new HashMap<String, int[]>();
+			for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+				if (entry.getValue()[1] != columnType.ordinal())
+					continue;
+				String bar = capitalize(entry.getKey());
+				int[] frequency = bars.get(bar);
+				if (frequency == null)
+					bars.put(bar, new int[] {entry.getValue()[0]});
+				else
+					frequency[0] += entry.getValue()[0];
+			}
+			List<Map.Entry<String, int[]>> entries = new ArrayList<Map.Entry<String, int[]>>(bars.entrySet());
+			Collections.sort(entries, new Comparator<Map.Entry<String, int[]>>() {
+				@Override
+				public int compare(Map.Entry<String, int[]> e1, Map.Entry<String, int[]> e2) {
+					int c = columnType == DataType.String ? e2.getValue()[0] - e1.getValue()[0]
+							: order(columnType, e1.getKey()) - order(columnType, e2.getKey());
+					return c != 0 ? c : e1.getKey().compareTo(e2.getKey());
+				}
+			});
+
+			int remainingCount = untrackedCounts[columnType.ordinal()];
+			for (int i = 0; i < entries.size(); i++) {
+				if (columnType == DataType.String && i >= MAX_COLUMNS)
+					remainingCount += entries.get(i).getValue()[0];
+				else
+					histogram.add(new Bucket(entries.get(i).getKey(), entries.get(i).getValue()[0]));
+			}
+			if (remainingCount > 0)
+				histogram.add(new Bucket(REMAINING, remainingCount));
+		}
+
+		private int order(DataType columnType, String bar) {
+			if (columnType == DataType.Boolean)
+				return bar.equals("True") ? 0 : 1;
+			for (int i = 0; i < DAYS_OF_WEEK.length; i++)
+				if (bar.equalsIgnoreCase(DAYS_OF_WEEK[i]))
+					return i;
+			return DAYS_OF_WEEK.length;
+		}
+
+		private String capitalize(String value) {
+			String lowerCase = value.toLowerCase();
+			return lowerCase.substring(0, 1).toUpperCase() + lowerCase.substring(1);
+		}
+
+		/**
+		 * Adds the bars of equal width from the smallest value of the column type to the histogram
+		 * and returns the width of a bar. Integer columns get every bar up to the largest value,
+		 * the other ones only the bars that have values.
+		 */
+		private String rangeHistogram(DataType[] types, double[] numbers, DataType columnType,
+				int validCount, List<Bucket> histogram) {
+			double min = minValues[columnType.ordinal()];
+			double max = maxValues[columnType.ordinal()];
+			double width;
+			String widthLabel;
+			if (columnType == DataType.Integer) {
+				width = Math.max(1, Math.ceil((max - min) / Math.min(MAX_COLUMNS, validCount)));
+				widthLabel = Long.toString((long) width);
+			} else if (columnType == DataType.Double) {
+				width = (max - min) / Math.min(MAX_COLUMNS, validCount);
+				if (width == 0)
+					width = 1;
+				widthLabel = Double.toString(width);
+			} else {
+				long w = (long) (max - min) / Math.min(MAX_DATE_COLUMNS, validCount);
+				// Bars between a day and a month are a whole number of days
+				if (w > DAY && w < MONTH)
+					w -= w % DAY;
+				width = Math.max(1, w);
+				widthLabel = dateWidthLabel((long) width);
+			}
+
+			TreeMap<Long, int[]> counts = new TreeMap<Long, int[]>();
+			if (columnType == DataType.Integer) {
+				for (long bar = 0; bar <= ((long) max - (long) min) / (long) width; bar++)
+					counts.put(bar, new int[1]);
+			}
+			for (int i = 0; i < types.length; i++) {
+				if (types[i] != columnType)
+					continue;
+				long bar = columnType == DataType.Double ? (long) ((numbers[i] - min) / width)
+						: ((long) numbers[i] - (long) min) / (long) width;
+				int[] count = counts.get(bar);
+				if (count == null)
+					counts.put(bar, new int[] {1});
+				else
+					count[0]++;
+			}
+
+			// Bars whose labels are the same, as the days of short date bars, are merged
+			Map<String, int[]> bars = new LinkedHashMap<String, int[]>();
+			for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+				String label = label(min, width, entry.getKey(), columnType);
+				int[] count = bars.get(label);
+				if (count == null)
+					bars.put(label, entry.getValue());
+				else
+					count[0] += entry.getValue()[0];
+			}
+			for (Map.Entry<String, int[]> bar : bars.entrySet())
+				histogram.add(new Bucket(bar.getKey(), bar.getValue()[0]));
+			return widthLabel;
+		}
+
+		private String label(double min, double width, long bar, DataType columnType) {
+			if (columnType == DataType.Integer)
+				return Long.toString((long) min + (long) width * bar);
+			if (columnType == DataType.Double)
+				return Float.toString((float) (min + width * bar));
+			return dateLabelFormat.format(new Date((long) min + (long) width * bar));
+		}
+
+		private String dateWidthLabel(long width) {
+			Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+			calendar.setTimeInMillis(width);
+			int years = calendar.get(Calendar.YEAR) - 1970;
+			int months = calendar.get(Calendar.MONTH);
+			int days = calendar.get(Calendar.DAY_OF_MONTH) - 1;
+			StringBuilder label = new StringBuilder();
+			if (years > 0)
+				label.append(years).append(" years ");
+			if (months > 0)
+				label.append(months).append(" months ");
+			return label.append(days).append(" days").toString();
+		}
+
+		private int maxWordLength(String value) {
+			int max = 0;
+			int current = 0;
+			for (int i = 0; i < value.length(); i++) {
+				if (value.charAt(i) == ' ') {
+					current = 0;
+				} else {
+					current++;
+					max = Math.max(max, current);
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * @return the length at the given percentile of the sorted lengths, 0 if there are no values
+		 */
+		private int percentile(int[] counts, int total, double percentile) {
+			if (total == 0)
+				return 0;
+			int index = (int) (percentile * total);
+			int seen = 0;
+			for (int length = 0; length < counts.length; length++) {
+				seen += counts[length];
+				if (seen > index)
+					return length;
+			}
+			return counts.length - 1;
+		}
+	}
+}
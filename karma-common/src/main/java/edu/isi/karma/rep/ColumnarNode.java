@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.ColumnarTableStore.Column;
+
+/**
+ * A Node of a Table with columnar storage. It is a view over one cell of the
+ * ColumnarTableStore of the table, so there can be several ColumnarNodes for
+ * the same cell; they are equal to each other.
+ */
+final class ColumnarNode extends Node {
+
+	private static Logger logger = LoggerFactory.getLogger(ColumnarNode.class);
+
+	private final ColumnarRow row;
+	private final Column column;
+
+	ColumnarNode(ColumnarRow row, Column column) {
+		super(-1, column.getHNodeId());
+		this.row = row;
+		this.column = column;
+	}
+
+	@Override
+	public int getNumericId() {
+		return row.getStore().getNodeId(row.getIndex(), column);
+	}
+
+	@Override
+	public void setBelongsToRow(Row row) {
+		// The row of a cell does not change
+	}
+
+	@Override
+	public Row getBelongsToRow() {
+		return row;
+	}
+
+	@Override
+	public NodeStatus getStatus() {
+		return row.getStore().getStatus(row.getIndex(), column);
+	}
+
+	/**
+	 * Node does not record an original value either, it is always empty.
+	 */
+	@Override
+	public CellValue getOriginalValue() {
+		return CellValue.getEmptyValue();
+	}
+
+	@Override
+	public CellValue getValue() {
+		return row.getStore().getValue(row.getIndex(), column);
+	}
+
+	@Override
+	public void setValue(CellValue value, NodeStatus status, RepFactory factory) {
+		Table nestedTable = getNestedTable();
+		if (nestedTable != null) {
+			logger.info("Node in column '"
+					+ factory.getColumnName(getHNodeId())
+					+ "' contains a nested table and we are trying to set a value: '"
+					+ value.asString() + "'. Adding as orphan in nested table");
+			nestedTable.addOrphanValue(value, getHNodeId(), factory);
+		} else {
+			row.getStore().setValue(row.getIndex(), column, value, status);
+		}
+	}
+
+	@Override
+	public void clearValue(NodeStatus status) {
+		row.getStore().setValue(row.getIndex(), column, CellValue.getEmptyValue(), status);
+	}
+
+	@Override
+	public Table getNestedTable() {
+		return row.getStore().getNestedTable(row.getIndex(), column);
+	}
+
+	@Override
+	public void setNestedTable(Table nestedTable, RepFactory factory) {
+		ColumnarTableStore store = row.getStore();
+		store.setNestedTable(row.getIndex(), column, nestedTable);
+		if (nestedTable != null) {
+			nestedTable.setNestedTableInNode(this);
+			CellValue value = getValue();
+			if (!value.isEmptyValue()) {
+				logger.info("Adding nested table to node in column '"
+						+ factory.getColumnName(getHNodeId())
+						+ "' already contains a value: '"
+						+ value.asString()
+						+ "'. Clearing value and adding as orphan in nested table. ");
+				store.setValue(row.getIndex(), column, CellValue.getEmptyValue(), getStatus());
+				nestedTable.addOrphanValue(value, getHNodeId(), factory);
+			}
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ColumnarNode) {
+			ColumnarNode other = (ColumnarNode) o;
+			return row == other.row && column == other.column;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * System.identityHashCode(row) + System.identityHashCode(column);
+	}
+}
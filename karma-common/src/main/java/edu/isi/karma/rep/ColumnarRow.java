@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A Row of a Table with columnar storage. Its nodes are created on demand as
+ * views over the ColumnarTableStore of the table, except for the nodes added
+ * with addNode, which the store keeps as they are.
+ */
+final class ColumnarRow extends Row {
+
+	private final ColumnarTableStore store;
+	private final int index;
+
+	ColumnarRow(ColumnarTableStore store, int index) {
+		super(-1, null);
+		this.store = store;
+		this.index = index;
+	}
+
+	ColumnarTableStore getStore() {
+		return store;
+	}
+
+	int getIndex() {
+		return index;
+	}
+
+	@Override
+	public int getNumericId() {
+		return store.getRowId(index);
+	}
+
+	@Override
+	public Node getNode(String hNodeId) {
+		return store.getNode(this, hNodeId);
+	}
+
+	@Override
+	public void removeNode(String hNodeId) {
+		store.removeColumn(hNodeId);
+		for (Node n : getNodes()) {
+			Table nestedTable = n.getNestedTable();
+			if (nestedTable != null) {
+				nestedTable.removeNodeFromDataTable(hNodeId);
+			}
+		}
+	}
+
+	@Override
+	public Collection<Node> getNodes() {
+		return store.getNodes(this);
+	}
+
+	/**
+	 * @return a new map from HNode ids to the nodes of the row. Changes to the
+	 *         map are not reflected in the row.
+	 */
+	@Override
+	public Map<String, Node> getNodesMap() {
+		Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+		for (Node n : getNodes()) {
+			nodes.put(n.getHNodeId(), n);
+		}
+		return nodes;
+	}
+
+	@Override
+	void addNode(Node node) {
+		store.addNode(this, node);
+	}
+
+	@Override
+	void addNodeToDataTable(HNode newHNode, Table table, RepFactory factory) {
+		HTable ht = factory.getHTable(table.getHTableId());
+		if (ht.contains(newHNode)) {
+			store.addColumnToDataTable(newHNode.getId(), factory);
+		} else {
+			for (Node n : getNodes()) {
+				Table nestedTable = n.getNestedTable();
+				if (nestedTable != null) {
+					nestedTable.addNodeToDataTable(newHNode, factory);
+				}
+			}
+		}
+	}
+}
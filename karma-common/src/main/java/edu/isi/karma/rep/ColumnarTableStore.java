@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.isi.karma.rep.Node.NodeStatus;
+
+/**
+ * Column oriented storage for the cells of a Table, used when the RepFactory
+ * is set to use columnar storage. The values of every HNode are kept in one
+ * array indexed by row number, and the Rows and Nodes of the table are views
+ * (ColumnarRow, ColumnarNode) over these arrays, so that a cell costs a
+ * reference in an array instead of a Node, its ids, its values and an entry in
+ * the map of its Row and in the maps of the RepFactory.
+ *
+ * Every row reserves a block of ids in the RepFactory when it is added: the id
+ * of the row followed by the ids of the nodes of the columns that exist at
+ * that time, which are the same ids as the ones of a regular Row. The nodes of
+ * a column added later get a block of ids for the rows that already exist.
+ *
+ * A Node created elsewhere and added to a row with Row.addNode is kept as it
+ * is, with its own id, and replaces the cell of its column in that row.
+ */
+final class ColumnarTableStore {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Table table;
+	private final List<Column> columns = new ArrayList<Column>();
+	private final Map<String, Column> columnsByHNodeId = new HashMap<String, Column>();
+
+	private int numRows = 0;
+	private int[] rowIds = new int[INITIAL_CAPACITY];
+	private ColumnarRow[] rows = new ColumnarRow[INITIAL_CAPACITY];
+
+	static final class Column {
+		private final int index;
+		private final String hNodeId;
+		// Rows before firstRow were added before the column; they only have a
+		// node if the column was added to the data table (lateIdBase >= 0)
+		private final int firstRow;
+		private final int lateIdBase;
+		private boolean removed = false;
+		// null is the empty value, a String is a StringCellValue and any
+		// other CellValue is kept as it is
+		private Object[] values;
+		private final BitSet edited = new BitSet();
+		private Table[] nestedTables;
+		// Nodes added with Row.addNode, by row
+		private Map<Integer, Node> addedNodes;
+
+		private Column(int index, String hNodeId, int firstRow, int lateIdBase, int capacity) {
+			this.index = index;
+			this.hNodeId = hNodeId;
+			this.firstRow = firstRow;
+			this.lateIdBase = lateIdBase;
+			this.values = new Object[capacity];
+		}
+
+		String getHNodeId() {
+			return hNodeId;
+		}
+
+		private boolean hasNode(int row) {
+			return !removed && (row >= firstRow || lateIdBase >= 0 || getAddedNode(row) != null);
+		}
+
+		private Node getAddedNode(int row) {
+			return addedNodes == null ? null : addedNodes.get(row);
+		}
+	}
+
+	ColumnarTableStore(Table table) {
+		this.table = table;
+	}
+
+	ColumnarRow addRow(RepFactory factory) {
+		HTable ht = factory.getHTable(table.getHTableId());
+		for (String hNodeId : ht.getHNodeIds()) {
+			Column column = columnsByHNodeId.get(hNodeId);
+			if (column == null || column.removed) {
+				addColumn(hNodeId, -1);
+			}
+		}
+		if (numRows == rowIds.length) {
+			grow();
+		}
+		int row = numRows++;
+		rowIds[row] = factory.reserveColumnarIds(1 + columns.size(), this);
+		ColumnarRow r = new ColumnarRow(this, row);
+		rows[row] = r;
+		for (Column column : columns) {
+			if (!column.removed) {
+				addNestedTable(r, column, factory);
+			}
+		}
+		return r;
+	}
+
+	/**
+	 * Adds a node for hNodeId to all the rows, if it is not already there.
+	 */
+	void addColumnToDataTable(String hNodeId, RepFactory factory) {
+		Column column = columnsByHNodeId.get(hNodeId);
+		if (column != null && !column.removed) {
+			return;
+		}
+		int lateIdBase = numRows == 0 ? -1 : factory.reserveColumnarIds(numRows, this);
+		column = addColumn(hNodeId, lateIdBase);
+		for (int row = 0; row < numRows; row++) {
+			addNestedTable(rows[row], column, factory);
+		}
+	}
+
+	/**
+	 * Puts node in its column of row, instead of the cell of the store. The
+	 * column is added to the store if it is not there yet.
+	 */
+	void addNode(ColumnarRow row, Node node) {
+		Column column = columnsByHNodeId.get(node.getHNodeId());
+		if (column == null || column.removed) {
+			column = addColumn(node.getHNodeId(), -1);
+		}
+		if (column.addedNodes == null) {
+			column.addedNodes = new HashMap<Integer, Node>();
+		}
+		column.addedNodes.put(row.getIndex(), node);
+		column.values[row.getIndex()] = null;
+		if (column.nestedTables != null) {
+			column.nestedTables[row.getIndex()] = null;
+		}
+		node.setBelongsToRow(row);
+	}
+
+	void removeColumn(String hNodeId) {
+		Column column = columnsByHNodeId.get(hNodeId);
+		if (column != null && !column.removed) {
+			column.removed = true;
+			column.values = null;
+			column.nestedTables = null;
+			column.addedNodes = null;
+		}
+	}
+
+	private Column addColumn(String hNodeId, int lateIdBase) {
+		Column column = new Column(columns.size(), hNodeId, numRows, lateIdBase, rowIds.length);
+		columns.add(column);
+		columnsByHNodeId.put(hNodeId, column);
+		return column;
+	}
+
+	private void addNestedTable(ColumnarRow row, Column column, RepFactory factory) {
+		HNode hn = factory.getHNode(column.hNodeId);
+		HTable nestedHTable = hn.getNestedTable();
+		if (nestedHTable != null) {
+			new ColumnarNode(row, column).setNestedTable(
+					factory.createTable(nestedHTable.getId(), table.getWorksheetId()), factory);
+		}
+	}
+
+	private void grow() {
+		int capacity = rowIds.length * 2;
+		rowIds = Arrays.copyOf(rowIds, capacity);
+		rows = Arrays.copyOf(rows, capacity);
+		for (Column column : columns) {
+			if (column.removed) {
+				continue;
+			}
+			column.values = Arrays.copyOf(column.values, capacity);
+			if (column.nestedTables != null) {
+				column.nestedTables = Arrays.copyOf(column.nestedTables, capacity);
+			}
+		}
+	}
+
+	// ///////////////
+
+	int getRowId(int row) {
+		return rowIds[row];
+	}
+
+	int getNodeId(int row, Column column) {
+		if (row >= column.firstRow) {
+			return rowIds[row] + 1 + column.index;
+		}
+		return column.lateIdBase + row;
+	}
+
+	Node getNode(ColumnarRow row, String hNodeId) {
+		Column column = columnsByHNodeId.get(hNodeId);
+		if (column == null || !column.hasNode(row.getIndex())) {
+			return null;
+		}
+		return getNode(row, column);
+	}
+
+	List<Node> getNodes(ColumnarRow row) {
+		List<Node> nodes = new ArrayList<Node>(columns.size());
+		for (Column column : columns) {
+			if (column.hasNode(row.getIndex())) {
+				nodes.add(getNode(row, column));
+			}
+		}
+		return nodes;
+	}
+
+	private Node getNode(ColumnarRow row, Column column) {
+		Node added = column.getAddedNode(row.getIndex());
+		return added != null ? added : new ColumnarNode(row, column);
+	}
+
+	CellValue getValue(int row, Column column) {
+		Object value = column.removed ? null : column.values[row];
+		if (value == null) {
+			return CellValue.getEmptyValue();
+		}
+		return value instanceof String ? new StringCellValue((String) value) : (CellValue) value;
+	}
+
+	NodeStatus getStatus(int row, Column column) {
+		return column.edited.get(row) ? NodeStatus.edited : NodeStatus.original;
+	}
+
+	void setValue(int row, Column column, CellValue value, NodeStatus status) {
+		if (column.removed) {
+			return;
+		}
+		if (value.isEmptyValue()) {
+			column.values[row] = null;
+		} else if (value instanceof StringCellValue) {
+			column.values[row] = value.asString();
+		} else {
+			column.values[row] = value;
+		}
+		column.edited.set(row, status == NodeStatus.edited);
+	}
+
+	Table getNestedTable(int row, Column column) {
+		return column.nestedTables == null ? null : column.nestedTables[row];
+	}
+
+	void setNestedTable(int row, Column column, Table nestedTable) {
+		if (column.removed) {
+			return;
+		}
+		if (column.nestedTables == null) {
+			if (nestedTable == null) {
+				return;
+			}
+			column.nestedTables = new Table[column.values.length];
+		}
+		column.nestedTables[row] = nestedTable;
+	}
+
+	// ///////////////
+
+	/**
+	 * @return the row with the given id, if it is one of the ids reserved by
+	 *         this store.
+	 */
+	Row getRowById(int id) {
+		int row = findRow(id);
+		if (row >= 0 && rowIds[row] == id) {
+			return rows[row];
+		}
+		return null;
+	}
+
+	/**
+	 * @return the node with the given id, if it is one of the ids reserved by
+	 *         this store.
+	 */
+	Node getNodeById(int id) {
+		for (Column column : columns) {
+			if (column.lateIdBase >= 0 && id >= column.lateIdBase
+					&& id < column.lateIdBase + column.firstRow) {
+				int row = id - column.lateIdBase;
+				return column.removed || column.getAddedNode(row) != null ? null
+						: new ColumnarNode(rows[row], column);
+			}
+		}
+		int row = findRow(id);
+		if (row < 0) {
+			return null;
+		}
+		int index = id - rowIds[row] - 1;
+		if (index < 0 || index >= columns.size()) {
+			return null;
+		}
+		Column column = columns.get(index);
+		if (column.removed || row < column.firstRow || column.getAddedNode(row) != null) {
+			return null;
+		}
+		return new ColumnarNode(rows[row], column);
+	}
+
+	// The last row whose id is not larger than id; rows get increasing ids.
+	private int findRow(int id) {
+		int low = 0;
+		int high = numRows - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (rowIds[mid] <= id) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found;
+	}
+}
@@ -69,11 +69,27 @@ public class Node extends RepEntity implements Neighbor {
 	 */
 	private Row belongsToRow;
 
-	Node(String id, String hNodeId) {
-		super(id);
+	private final int numericId;
+
+	Node(int numericId, String hNodeId) {
+		super(null);
+		this.numericId = numericId;
 		this.hNodeId = hNodeId;
 	}
 
+	@Override
+	public String getId() {
+		return RepFactory.NODE_ID_PREFIX + getNumericId();
+	}
+
+	/**
+	 * @return the number in the id of the node, to look it up with
+	 *         RepFactory.getNode(int) without building the id.
+	 */
+	public int getNumericId() {
+		return numericId;
+	}
+
 	// mariam
 	public void setBelongsToRow(Row row) {
 		belongsToRow = row;
@@ -89,7 +105,7 @@ public class Node extends RepEntity implements Neighbor {
 	 * @return the table that this node belongs to.
 	 */
 	public Table getParentTable() {
-		return belongsToRow.getBelongsToTable();
+		return getBelongsToRow().getBelongsToTable();
 	}
 
 	// /////////////
@@ -159,7 +175,7 @@ public class Node extends RepEntity implements Neighbor {
 	}
 
 	public boolean hasNestedTable() {
-		return nestedTable != null;
+		return getNestedTable() != null;
 	}
 
 	public String toString() {
@@ -167,11 +183,12 @@ public class Node extends RepEntity implements Neighbor {
 		b.append("N(");
 		b.append(getId() + ",");
 		b.append(hNodeId + ",");
+		Table nestedTable = getNestedTable();
 		if (nestedTable != null) {
 			b.append("*" + nestedTable.getId() + "/"
 					+ nestedTable.getHTableId() + ")");
 		} else {
-			b.append(value.asString() + ")");
+			b.append(getValue().asString() + ")");
 		}
 		return b.toString();
 	}
@@ -179,28 +196,29 @@ public class Node extends RepEntity implements Neighbor {
 	@Override
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix + "  - ");
-		pw.print(factory.getHNode(hNodeId).getColumnName() + "/" + id + "/"
+		pw.print(factory.getHNode(hNodeId).getColumnName() + "/" + getId() + "/"
 				+ hNodeId + ":");
+		Table nestedTable = getNestedTable();
 		if (nestedTable != null) {
 			pw.println();
 			nestedTable.prettyPrint(prefix + "      ", pw, factory);
 		} else {
-			pw.println("<" + value.asString() + ">");
+			pw.println("<" + getValue().asString() + ">");
 		}
 	}
 
 	@Override
 	public boolean canReachNeighbor(String hNodeId) {
-		return belongsToRow.canReachNeighbor(hNodeId);
+		return getBelongsToRow().canReachNeighbor(hNodeId);
 	}
 
 	@Override
 	public Node getNeighbor(String hNodeId) {
-		return belongsToRow.getNeighbor(hNodeId);
+		return getBelongsToRow().getNeighbor(hNodeId);
 	}
 
 	@Override
 	public Node getNeighborByColumnName(String columnName, RepFactory factory) {
-		return belongsToRow.getNeighborByColumnName(columnName, factory);
+		return getBelongsToRow().getNeighborByColumnName(columnName, factory);
 	}
 }
@@ -20,6 +20,7 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,14 +31,42 @@ import java.util.Map;
  */
 public class RepFactory {
 
+	static final String ROW_ID_PREFIX = "R";
+	static final String NODE_ID_PREFIX = "N";
 
 	private final Map<String, HNode> hNodes = new HashMap<String, HNode>(100);
 	private final Map<String, HTable> hTables = new HashMap<String, HTable>(10);
 	private final Map<String, Worksheet> worksheets = new HashMap<String, Worksheet>(10);
 	private final Map<String, Table> tables = new HashMap<String, Table>(10);
-	private final Map<String, Row> rows = new HashMap<String, Row>(1000);
-	private final Map<String, Node> nodes = new HashMap<String, Node>(10000);
+	// Rows and nodes are by far the most numerous entities, so they are
+	// stored by the number of their id instead of in maps keyed by the id
+	// strings, which are only built when they are requested (e.g. for the UI).
+	private RepEntity[] rowsAndNodes = new RepEntity[1024];
 	private int id = 0;
+
+	// With columnar storage the rows and nodes are not registered one by one:
+	// each table store reserves blocks of ids, from columnarIdStarts[i] to
+	// columnarIdEnds[i], that it resolves itself.
+	private boolean columnarStorage = false;
+	private int numColumnarIdBlocks = 0;
+	private int[] columnarIdStarts = new int[16];
+	private int[] columnarIdEnds = new int[16];
+	private ColumnarTableStore[] columnarIdOwners = new ColumnarTableStore[16];
+
+	/**
+	 * Store the cells of the tables created from now on by column, instead of
+	 * with a Node object per cell. It uses much less memory for large
+	 * worksheets that are imported and then only read, e.g. to generate RDF
+	 * offline. The rows and nodes are views that are created when they are
+	 * requested, so they should be compared with equals().
+	 */
+	public void setColumnarStorage(boolean columnarStorage) {
+		this.columnarStorage = columnarStorage;
+	}
+
+	public boolean isColumnarStorage() {
+		return columnarStorage;
+	}
 	
 	public Worksheet createWorksheet(String tableName, Workspace workspace, String encoding) {
 		String id = getNewId("WS");
@@ -104,7 +133,25 @@ public class RepFactory {
 	}
 
 	public Node getNode(String id) {
-		return nodes.get(id);
+		return getNode(parseId(NODE_ID_PREFIX, id));
+	}
+
+	/**
+	 * @param id
+	 *            the number in the id of the node, see Node.getNumericId()
+	 */
+	public Node getNode(int id) {
+		if (id < 0) {
+			return null;
+		}
+		if (id < rowsAndNodes.length) {
+			RepEntity e = rowsAndNodes[id];
+			if (e instanceof Node) {
+				return (Node) e;
+			}
+		}
+		ColumnarTableStore store = findColumnarStore(id);
+		return store != null ? store.getNodeById(id) : null;
 	}
 
 	public Worksheet getWorksheet(String id) {
@@ -116,7 +163,25 @@ public class RepFactory {
 	}
 	
 	public Row getRow(String id) {
-		return rows.get(id);
+		return getRow(parseId(ROW_ID_PREFIX, id));
+	}
+
+	/**
+	 * @param id
+	 *            the number in the id of the row, see Row.getNumericId()
+	 */
+	public Row getRow(int id) {
+		if (id < 0) {
+			return null;
+		}
+		if (id < rowsAndNodes.length) {
+			RepEntity e = rowsAndNodes[id];
+			if (e instanceof Row) {
+				return (Row) e;
+			}
+		}
+		ColumnarTableStore store = findColumnarStore(id);
+		return store != null ? store.getRowById(id) : null;
 	}
 
 	HTable createHTable(String id, String tableName) {
@@ -132,6 +197,9 @@ public class RepFactory {
 
 	Table createTable(String id, String hTableId, String worksheetId) {
 		Table t = new Table(worksheetId, id, hTableId);
+		if (columnarStorage) {
+			t.useColumnarStorage();
+		}
 		tables.put(id, t);
 		return t;
 	}
@@ -141,9 +209,9 @@ public class RepFactory {
 		return createTable(id, hTableId, worksheetId);
 	}
 
-	Row createRow(String id, String hTableId, String worksheetId) {
-		Row r = new Row(id);
-		rows.put(id, r);
+	Row createRow(String hTableId, String worksheetId) {
+		Row r = new Row(id++);
+		register(r.getNumericId(), r);
 
 		HTable ht = hTables.get(hTableId);
 		for (String hNodeId : ht.getHNodeIds()) {
@@ -153,14 +221,10 @@ public class RepFactory {
 
 		return r;
 	}
-	Row createRow(String hTableId, String worksheetId) {
-		String id = getNewId("R");
-		return createRow(id, hTableId, worksheetId);
-	}
 	
-	Node createNode(String id, String hNodeId, String worksheetId) {
-		Node n = new Node(id, hNodeId);
-		nodes.put(id, n);
+	Node createNode(String hNodeId, String worksheetId) {
+		Node n = new Node(id++, hNodeId);
+		register(n.getNumericId(), n);
 		HNode hn = hNodes.get(hNodeId);
 		HTable nestedHTable = hn.getNestedTable();
 		if (nestedHTable != null) {
@@ -168,10 +232,62 @@ public class RepFactory {
 		}
 		return n;
 	}
-	
-	Node createNode(String hNodeId, String worksheetId) {
-		String id = getNewId("N");
-		return createNode(id, hNodeId, worksheetId);
+
+	private void register(int id, RepEntity e) {
+		if (id >= rowsAndNodes.length) {
+			rowsAndNodes = Arrays.copyOf(rowsAndNodes,
+					Math.max(rowsAndNodes.length * 2, id + 1));
+		}
+		rowsAndNodes[id] = e;
 	}
 
+	/**
+	 * Reserves count consecutive ids for the rows and nodes of a table with
+	 * columnar storage.
+	 * 
+	 * @return the first id
+	 */
+	int reserveColumnarIds(int count, ColumnarTableStore store) {
+		int start = id;
+		id += count;
+		int last = numColumnarIdBlocks - 1;
+		if (last >= 0 && columnarIdOwners[last] == store
+				&& columnarIdEnds[last] == start) {
+			columnarIdEnds[last] = id;
+			return start;
+		}
+		if (numColumnarIdBlocks == columnarIdStarts.length) {
+			int capacity = numColumnarIdBlocks * 2;
+			columnarIdStarts = Arrays.copyOf(columnarIdStarts, capacity);
+			columnarIdEnds = Arrays.copyOf(columnarIdEnds, capacity);
+			columnarIdOwners = Arrays.copyOf(columnarIdOwners, capacity);
+		}
+		columnarIdStarts[numColumnarIdBlocks] = start;
+		columnarIdEnds[numColumnarIdBlocks] = id;
+		columnarIdOwners[numColumnarIdBlocks] = store;
+		numColumnarIdBlocks++;
+		return start;
+	}
+
+	private ColumnarTableStore findColumnarStore(int id) {
+		int i = Arrays.binarySearch(columnarIdStarts, 0, numColumnarIdBlocks, id);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		if (i >= 0 && id < columnarIdEnds[i]) {
+			return columnarIdOwners[i];
+		}
+		return null;
+	}
+
+	private static int parseId(String prefix, String id) {
+		if (id == null || !id.startsWith(prefix)) {
+			return -1;
+		}
+		try {
+			return Integer.parseInt(id.substring(prefix.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
 }
@@ -43,7 +43,7 @@ public class Row extends RepEntity implements Neighbor {
 
 	// My nodes, columns containing cells or nested tables, a map from HNode ids
 	// to Node.
-	private final Map<String, Node> nodes = new HashMap<String, Node>();
+	private final Map<String, Node> nodes;
 
 	// mariam
 	/**
@@ -51,8 +51,30 @@ public class Row extends RepEntity implements Neighbor {
 	 */
 	private Table belongsToTable;
 
-	Row(String id) {
-		super(id);
+	// The id is only built as a String when it is requested
+	private final int numericId;
+
+	Row(int numericId) {
+		this(numericId, new HashMap<String, Node>());
+	}
+
+	Row(int numericId, Map<String, Node> nodes) {
+		super(null);
+		this.numericId = numericId;
+		this.nodes = nodes;
+	}
+
+	@Override
+	public String getId() {
+		return RepFactory.ROW_ID_PREFIX + getNumericId();
+	}
+
+	/**
+	 * @return the number in the id of the row, to look it up with
+	 *         RepFactory.getRow(int) without building the id.
+	 */
+	public int getNumericId() {
+		return numericId;
 	}
 
 	public Node getNode(String hNodeId) {
@@ -62,7 +84,7 @@ public class Row extends RepEntity implements Neighbor {
 	// mariam
 	public void removeNode(String hNodeId) {
 		nodes.remove(hNodeId);
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			Table nestedTable = n.getNestedTable();
 			if (nestedTable != null) {
 				nestedTable.removeNodeFromDataTable(hNodeId);
@@ -157,8 +179,8 @@ public class Row extends RepEntity implements Neighbor {
 	@Override
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix + "__");
-		pw.println("/" + id);
-		for (Node n : nodes.values()) {
+		pw.println("/" + getId());
+		for (Node n : getNodes()) {
 			n.prettyPrint(prefix, pw, factory);
 		}
 	}
@@ -166,7 +188,7 @@ public class Row extends RepEntity implements Neighbor {
 	// mariam
 	public String toString() {
 		String s = "ROW:\n";
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			s += n.toString();
 		}
 		return s;
@@ -181,7 +203,7 @@ public class Row extends RepEntity implements Neighbor {
 		} else {
 			// We don't know where the nested table is, so we have to
 			// try all of them.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNodeToDataTable(newHNode, factory);
@@ -212,7 +234,7 @@ public class Row extends RepEntity implements Neighbor {
 		} else {
 			// The node may be in one of the nested tables. We have to look for
 			// it.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNestedTableToDataTable(hNode, factory);
@@ -224,15 +246,16 @@ public class Row extends RepEntity implements Neighbor {
 	@Override
 	public boolean canReachNeighbor(String hNodeId) {
 
-		return nodes.containsKey(hNodeId)
+		return getNode(hNodeId) != null
 				|| (belongsToTable.getNestedTableInNode() != null && belongsToTable
 						.getNestedTableInNode().canReachNeighbor(hNodeId));
 	}
 
 	@Override
 	public Node getNeighbor(String hNodeId) {
-		if (nodes.containsKey(hNodeId)) {
-			return nodes.get(hNodeId);
+		Node node = getNode(hNodeId);
+		if (node != null) {
+			return node;
 		} else if (belongsToTable.getNestedTableInNode() != null) {
 			return belongsToTable.getNestedTableInNode().getNeighbor(hNodeId);
 		}
@@ -56,6 +56,10 @@ public class Table extends RepEntity {
 	 */
 	private Node nestedTableInNode;
 
+	// Where the cells are stored when the factory uses columnar storage,
+	// null if every row has its own nodes
+	private ColumnarTableStore columnarStore;
+
 	Table(String myWorksheetId, String id, String hTableId) {
 		super(id);
 		this.worksheetId = myWorksheetId;
@@ -79,8 +83,13 @@ public class Table extends RepEntity {
 		return worksheetId;
 	}
 
+	void useColumnarStorage() {
+		columnarStore = new ColumnarTableStore(this);
+	}
+
 	public Row addRow(RepFactory factory) {
-		Row r = factory.createRow(hTableId, worksheetId);
+		Row r = columnarStore != null ? columnarStore.addRow(factory) : factory
+				.createRow(hTableId, worksheetId);
 		rows.add(r);
 		// mariam
 		r.setBelongsToTable(this);
@@ -20,8 +20,8 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -32,7 +32,9 @@ public class WorkspaceManager {
 	
 	private int nextId = 1;
 	
-	private final Map<String, Workspace> workspaces = new HashMap<String, Workspace>();
+	// Workspaces are created and looked up from several threads, e.g. by the
+	// offline batch RDF generation and the Python transformations
+	private final Map<String, Workspace> workspaces = new ConcurrentHashMap<String, Workspace>();
 	
 	private static WorkspaceManager singleton = new WorkspaceManager();
 	
@@ -58,7 +60,7 @@ public class WorkspaceManager {
 		return wsp;
 	}
 	
-	public String getNewId(String prefix) {
+	public synchronized String getNewId(String prefix) {
 		return prefix + (nextId++);
 	}
 	
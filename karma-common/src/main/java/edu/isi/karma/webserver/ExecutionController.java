@@ -55,12 +55,23 @@ public class ExecutionController {
 	    dynamicallyBuildCommandFactoryMap();
     }
 
-	private void dynamicallyBuildCommandFactoryMap()
+	// Scanning the classpath is slow and its result does not change, so it is
+	// done once for all the workspaces
+	private static Set<Class<? extends CommandFactory>> commandFactoryClasses;
+
+	private static synchronized Set<Class<? extends CommandFactory>> getCommandFactoryClasses()
 	{
-		Reflections reflections = new Reflections("edu.isi.karma");
+		if (commandFactoryClasses == null)
+		{
+			Reflections reflections = new Reflections("edu.isi.karma");
+			commandFactoryClasses = reflections.getSubTypesOf(CommandFactory.class);
+		}
+		return commandFactoryClasses;
+	}
 
-		Set<Class<? extends CommandFactory>> subTypes =
-				reflections.getSubTypesOf(CommandFactory.class);
+	private void dynamicallyBuildCommandFactoryMap()
+	{
+		Set<Class<? extends CommandFactory>> subTypes = getCommandFactoryClasses();
 
 		for (Class<? extends CommandFactory> subType : subTypes)
 		{
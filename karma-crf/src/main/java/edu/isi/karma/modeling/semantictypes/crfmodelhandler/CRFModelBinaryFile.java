@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler.ColumnFeature;
+import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler.Example;
+import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+import edu.isi.karma.util.Fingerprint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class reads and writes the binary snapshot of a CRF model,
+ * which is kept next to the text model file so that the model can be loaded quickly at startup.
+ * The text file stays the authoritative copy. The snapshot records the length and a 64-bit fingerprint
+ * of the contents of the text file it was written with, and it is only used while the text file still has them.
+ *
+ * The labels, the features of the feature functions and the weights are read into memory when the snapshot
+ * is opened, which is all a prediction needs. The file is not kept open or mapped, so it can be replaced
+ * while the model is in use.
+ * The examples of the labels are stored at the end of the file and are only read
+ * when they are needed, i.e. when the model is trained or its examples are requested.
+ *
+ * Layout, all numbers big endian, strings as their number of UTF-8 bytes followed by the bytes:
+ * magic, version, text file length, fingerprint of the text file, offset of the examples,
+ * number of labels and the labels, number of features and the features,
+ * number of feature functions and for each its label index, feature index and weight,
+ * and then, for each label, the number of examples and for each example its string,
+ * the number of its column features and for each the name of the column feature and its value.
+ */
+class CRFModelBinaryFile {
+
+	static final int MAGIC = 0x4B43524D; // "KCRM"
+	static final int VERSION = 2;
+	// magic, version, text file length, text file fingerprint, examples offset
+	static final int HEADER_LENGTH = 32;
+	static final String EXTENSION = ".bin";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	final File binaryFile;
+	final long textLength;
+	final long textFingerprint;
+	final long examplesOffset;
+	final ArrayList<String> labels;
+	final ArrayList<LblFtrPair> ffs;
+	final double[] weights;
+
+	private CRFModelBinaryFile(File binaryFile, ByteBuffer buffer) throws IOException {
+		String[] features;
+		this.binaryFile = binaryFile;
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Unsupported CRF model snapshot " + binaryFile);
+		}
+		textLength = buffer.getLong();
+		textFingerprint = buffer.getLong();
+		examplesOffset = buffer.getLong();
+		int numLabels = buffer.getInt();
+		labels = new ArrayList<String>(numLabels);
+		for(int i=0;i<numLabels;i++) {
+			labels.add(getString(buffer));
+		}
+		features = new String[buffer.getInt()];
+		for(int i=0;i<features.length;i++) {
+			features[i] = getString(buffer);
+		}
+		int numFFs = buffer.getInt();
+		ffs = new ArrayList<LblFtrPair>(numFFs);
+		weights = new double[numFFs];
+		for(int i=0;i<numFFs;i++) {
+			int labelIndex = buffer.getInt();
+			ffs.add(new LblFtrPair(labelIndex, features[buffer.getInt()]));
+			weights[i] = buffer.getDouble();
+		}
+	}
+
+	/**
+	 * @param modelFile Path of the text model file
+	 * @return The snapshot file of the model file
+	 */
+	static File binaryFileFor(String modelFile) {
+		return new File(modelFile + EXTENSION);
+	}
+
+	/**
+	 * Opens the snapshot of a model file and reads everything except the examples.
+	 *
+	 * @param modelFile Path of the text model file
+	 * @return The snapshot, or null if there is no snapshot or it was not written with the current text file.
+	 * @throws IOException If the snapshot cannot be read
+	 */
+	static CRFModelBinaryFile open(String modelFile) throws IOException {
+		File textFile = new File(modelFile);
+		File binaryFile = binaryFileFor(modelFile);
+		if (!binaryFile.isFile() || !textFile.isFile()) {
+			return null;
+		}
+		RandomAccessFile raf = new RandomAccessFile(binaryFile, "r");
+		try {
+			if (raf.length() < HEADER_LENGTH) {
+				return null;
+			}
+			ByteBuffer header = read(raf, 0, HEADER_LENGTH);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != textFile.length()) {
+				return null;
+			}
+			if (header.getLong(16) != fingerprint(textFile)) {
+				return null;
+			}
+			long examplesOffset = header.getLong(24);
+			if (examplesOffset < HEADER_LENGTH || examplesOffset > raf.length()) {
+				throw new IOException("Invalid CRF model snapshot " + binaryFile);
+			}
+			return new CRFModelBinaryFile(binaryFile, read(raf, 0, (int) examplesOffset));
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the examples of the labels, which open() skips.
+	 *
+	 * @return Map from each label to its examples
+	 * @throws IOException If the snapshot cannot be read or has been replaced since it was opened
+	 */
+	HashMap<String, ArrayList<Example>> readExamples() throws IOException {
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(binaryFile, "r");
+		try {
+			ByteBuffer header = read(raf, 0, HEADER_LENGTH);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getLong(8) != textLength
+					|| header.getLong(16) != textFingerprint || header.getLong(24) != examplesOffset) {
+				throw new IOException("The CRF model snapshot " + binaryFile + " was changed after it was opened.");
+			}
+			buffer = read(raf, examplesOffset, (int) (raf.length() - examplesOffset));
+		}
+		finally {
+			raf.close();
+		}
+		HashMap<String, ArrayList<Example>> labelToExamplesMap = new HashMap<String, ArrayList<Example>>();
+		for(String label : labels) {
+			int numExamples = buffer.getInt();
+			ArrayList<Example> examples = new ArrayList<Example>(numExamples);
+			for(int i=0;i<numExamples;i++) {
+				Example example = new Example(getString(buffer));
+				int numColumnFeatures = buffer.getInt();
+				for(int j=0;j<numColumnFeatures;j++) {
+					ColumnFeature columnFeature = ColumnFeature.valueOf(getString(buffer));
+					example.addColumnFeature(columnFeature, getString(buffer));
+				}
+				examples.add(example);
+			}
+			labelToExamplesMap.put(label, examples);
+		}
+		return labelToExamplesMap;
+	}
+
+	/**
+	 * Writes the snapshot of a model that has just been written to its text file.
+	 * The snapshot is written to a temporary file first, so a reader never sees a partly written snapshot.
+	 *
+	 * @param modelFile Path of the text model file
+	 * @param labels The labels of the model
+	 * @param ffs The feature functions of the model
+	 * @param weights The weights of the feature functions
+	 * @param labelToExamplesMap The examples of each label, as written to the text file
+	 * @throws IOException If the snapshot cannot be written
+	 */
+	static void write(String modelFile, List<String> labels, List<LblFtrPair> ffs, double[] weights,
+			Map<String, ? extends List<Example>> labelToExamplesMap) throws IOException {
+		File textFile = new File(modelFile);
+		File binaryFile = binaryFileFor(modelFile);
+		File tmpFile = new File(binaryFile.getPath() + ".tmp");
+		HashMap<String, Integer> featureIds = new HashMap<String, Integer>();
+		ArrayList<String> features = new ArrayList<String>();
+		for(LblFtrPair ff : ffs) {
+			if (!featureIds.containsKey(ff.feature)) {
+				featureIds.put(ff.feature, features.size());
+				features.add(ff.feature);
+			}
+		}
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(textFile.length());
+			out.writeLong(fingerprint(textFile));
+			// the offset of the examples is filled in once it is known
+			out.writeLong(0);
+			out.writeInt(labels.size());
+			for(String label : labels) {
+				writeString(out, label);
+			}
+			out.writeInt(features.size());
+			for(String feature : features) {
+				writeString(out, feature);
+			}
+			out.writeInt(ffs.size());
+			for(int i=0;i<ffs.size();i++) {
+				out.writeInt(ffs.get(i).labelIndex);
+				out.writeInt(featureIds.get(ffs.get(i).feature));
+				out.writeDouble(weights[i]);
+			}
+			long examplesOffset = out.size();
+			for(String label : labels) {
+				List<Example> examples = labelToExamplesMap.get(label);
+				out.writeInt(examples.size());
+				for(Example example : examples) {
+					writeString(out, example.exampleString);
+					out.writeInt(example.columnFeatures.size());
+					for(Map.Entry<ColumnFeature, String> entry : example.columnFeatures.entrySet()) {
+						writeString(out, entry.getKey().name());
+						writeString(out, entry.getValue());
+					}
+				}
+			}
+			out.close();
+			RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+			try {
+				raf.seek(24);
+				raf.writeLong(examplesOffset);
+			}
+			finally {
+				raf.close();
+			}
+		}
+		finally {
+			out.close();
+		}
+		Files.move(tmpFile.toPath(), binaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads a part of the file into a heap buffer. A mapped buffer would keep the file
+	 * mapped until it is garbage collected, and on Windows a mapped file cannot be replaced.
+	 */
+	private static ByteBuffer read(RandomAccessFile raf, long offset, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		raf.seek(offset);
+		raf.readFully(bytes);
+		return ByteBuffer.wrap(bytes);
+	}
+
+	private static long fingerprint(File textFile) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(textFile));
+		try {
+			return Fingerprint.of(in);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(DataOutputStream out, String str) throws IOException {
+		byte[] bytes = str.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -22,19 +22,16 @@
 package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
 
 import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelSnapshot;
 import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
 import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphInterface;
-import edu.isi.karma.modeling.semantictypes.mycrf.map.MAPFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.math.Matrix;
 import edu.isi.karma.modeling.semantictypes.mycrf.optimization.OptimizeFieldOnly;
 import edu.isi.karma.modeling.semantictypes.myutils.ListOps;
 import edu.isi.karma.modeling.semantictypes.myutils.Prnt;
 import edu.isi.karma.modeling.semantictypes.myutils.RandOps;
-import edu.isi.karma.modeling.semantictypes.sl.Lexer;
-import edu.isi.karma.modeling.semantictypes.sl.Part;
-import edu.isi.karma.modeling.semantictypes.sl.RegexFeatureExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +40,11 @@ import java.io.BufferedWriter;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -143,14 +145,53 @@ public class CRFModelHandler {
 
 	// ***********************************************************************************************
 	// instance variables
-	String file;
+	volatile String file;
 	HashMap<String, ArrayList<Example>> labelToExamplesMap;
 	GlobalDataFieldOnly globalData;
+	// read-only copy of the model in globalData that predictions use. It is replaced after every change of the model.
+	volatile CRFModelSnapshot snapshot;
 	ArrayList<String> allowedCharacters;
+	boolean[] isAllowedCharacter;
+	// if true, adding or updating a label only retrains the weights of that label
+	volatile boolean incrementalTraining;
+	// if true, changes are written to the model file in the background, else before the change returns
+	volatile boolean deferredSave;
+	// the save of the model file that has been scheduled but has not run yet, or null
+	ScheduledFuture<?> pendingSave;
+	// the binary snapshot the model was loaded from, while its examples and training graphs have not been loaded yet
+	CRFModelBinaryFile unloadedExamples;
+	// the syntactic features of a value do not depend on the model, so all handlers share one cache
+	static final FeatureCache featureCache = new FeatureCache();
 	static Logger logger = LoggerFactory.getLogger(CRFModelHandler.class.getSimpleName()) ;
 	static final int MAX_FFs_PER_LABEL = 50;
 	static final int MAX_EXAMPLES_PER_LABEL = 50;
 	static final int MAX_EXAMPLES_SAVED_PER_LABEL = 200;
+	// changes made within this time after a change are written to the model file together
+	static final long SAVE_DELAY_MILLIS = 2000;
+	static final ScheduledExecutorService saveExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "crf-model-save");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+	// handlers whose latest changes have not been written yet. They are written when the JVM exits.
+	static final Set<CRFModelHandler> handlersWithPendingSave = Collections.synchronizedSet(new HashSet<CRFModelHandler>());
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("crf-model-flush") {
+			@Override
+			public void run() {
+				ArrayList<CRFModelHandler> handlers;
+				synchronized (handlersWithPendingSave) {
+					handlers = new ArrayList<CRFModelHandler>(handlersWithPendingSave);
+				}
+				for(CRFModelHandler handler : handlers) {
+					handler.flushModel();
+				}
+			}
+		});
+	}
 
 	/**
 	 * Making the empty constructor private to prevent instantiation of this class.
@@ -160,7 +201,24 @@ public class CRFModelHandler {
 		file = null ;
 		labelToExamplesMap = null ;
 		globalData = null ;
+		snapshot = null ;
+		incrementalTraining = true ;
+		deferredSave = true ;
+		pendingSave = null ;
+		unloadedExamples = null ;
 		allowedCharacters = allowedCharacters();
+		isAllowedCharacter = new boolean[128];
+		for(String allowed : allowedCharacters) {
+			isAllowedCharacter[allowed.charAt(0)] = true;
+		}
+	}
+
+	/**
+	 * @return The cache of the syntactic features of field values, which is used for both training and prediction.
+	 * Its hit rate and the time it saved are logged after each prediction at debug level.
+	 */
+	public static FeatureCache getFeatureCache() {
+		return featureCache;
 	}
 
 	/**
@@ -171,6 +229,34 @@ public class CRFModelHandler {
 		return file;
 	}
 
+	/**
+	 * @param incrementalTraining If true, addOrUpdateLabel only retrains the weights of the label that was added or updated,
+	 * starting from the current weights. If false, it retrains the weights of all labels.
+	 */
+	public void setIncrementalTraining(boolean incrementalTraining) {
+		this.incrementalTraining = incrementalTraining;
+	}
+
+	public boolean isIncrementalTraining() {
+		return incrementalTraining;
+	}
+
+	/**
+	 * @param deferredSave If true, addOrUpdateLabel and removeLabel write the model file in the background shortly after the change,
+	 * and a failure to write it is only reported by the next flushModel() and by the calls after it, which return false.
+	 * If false, they write the model file before they return, and return false if writing it fails.
+	 */
+	public synchronized void setDeferredSave(boolean deferredSave) {
+		this.deferredSave = deferredSave;
+		if (!deferredSave) {
+			flushModel();
+		}
+	}
+
+	public boolean isDeferredSave() {
+		return deferredSave;
+	}
+
 
 	/**
 	 * Adds the passed list of examples to the model. 
@@ -180,7 +266,8 @@ public class CRFModelHandler {
 	 * @param label True label for the list of example.
 	 * @param examples List of example strings.
 	 * @param columnFeatures Map of column features.
-	 * @return True if success, else False
+	 * @return True if success, else False.
+	 * The model file is written in the background shortly after the change, unless deferred saving is off, see setDeferredSave().
 	 */
 	public synchronized boolean addOrUpdateLabel(String label, List<String> examples, Map<ColumnFeature, Collection<String>> columnFeatures) {
 		ArrayList<String> cleanedExamples, allFeatures;
@@ -188,11 +275,13 @@ public class CRFModelHandler {
 		HashSet<String> selectedFeatures, tmpFeatures;
 		ArrayList<Example> selectedExamples;
 		OptimizeFieldOnly optimizationObject;
-		boolean savingSuccessful ;
 		if (file == null) {
 			Prnt.prn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
+		if (!loadExamples()) {
+			return false ;
+		}
 		// running basic sanity checks in the input arguments
 		if (label == null || label.trim().length() == 0 || examples.size() == 0) {
 			Prnt.prn("@label argument cannot be null or an empty string and the @examples list cannot be empty.") ;
@@ -248,13 +337,15 @@ public class CRFModelHandler {
 		reselectFFs(labelIndex, selectedFeatures);
 		// optimize the model to adjust to the new label/examples/ffs
 		optimizationObject = new OptimizeFieldOnly(globalData.crfModel, globalData) ;
-		optimizationObject.optimize(3) ;
-		// save the model to file with the new weights
-		savingSuccessful = saveModel() ;
-		if (!savingSuccessful) {
-			file = null ;
+		if (incrementalTraining) {
+			optimizationObject.optimizeLabel(labelIndex, 3) ;
 		}
-		return savingSuccessful ;
+		else {
+			optimizationObject.optimize(3) ;
+		}
+		publishSnapshot() ;
+		// save the model to file with the new weights
+		return saveChanges() ;
 	}
 
 
@@ -263,12 +354,15 @@ public class CRFModelHandler {
 	 * @param examples The list argument that will be used to return the list of examples in the model for the supplied label.
 	 * @return True, if successful, else False
 	 */
-	public boolean getExamplesForLabel(String label, ArrayList<String> examples) {
+	public synchronized boolean getExamplesForLabel(String label, ArrayList<String> examples) {
 		ArrayList<Example> examplesOfLabel;
 		if (file == null) {
 			Prnt.prn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
+		if (!loadExamples()) {
+			return false ;
+		}
 		if (label == null || label.trim().length() == 0 || examples == null) {
 			Prnt.prn("CRFModelHandler.getExamplesForLabel: Either the label is null, or it is an empty string or examples is null") ;
 			return false ;
@@ -292,7 +386,8 @@ public class CRFModelHandler {
 	 * @return True, if successful, else False
 	 */
 	public boolean getLabels(List<String> labels) {
-		if (file == null) {
+		CRFModelSnapshot model = snapshot ;
+		if (file == null || model == null) {
 			Prnt.prn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
@@ -301,12 +396,15 @@ public class CRFModelHandler {
 			return false ;
 		}
 		labels.clear() ;
-		labels.addAll(globalData.labels);
+		labels.addAll(model.getLabels());
 		return true ;
 	}
 
 
 	/**
+	 * This method only reads a snapshot of the model, so it can be called from several threads at the same time,
+	 * also while a label is being trained. The snapshot is replaced once the training is complete.
+	 * 
 	 * @param examples - list of examples of an unknown type
 	 * @param numPredictions - required number of predictions in descending order
 	 * @param predictedLabels - the argument in which the ordered list of labels is returned. the size of this list could be smaller than numPredictions
@@ -331,12 +429,13 @@ public class CRFModelHandler {
 			return false;
 		}
 		ArrayList<ArrayList<Double>> exampleProbabilitiesFullList ;
-		MAPFieldOnly MAPPredictor ;
+		CRFModelSnapshot model ;
 		double[] columnProbabilities ;
 		ArrayList<String> labels ;
 		ArrayList<Double> columnProbabilitiesList ;
 		HashSet<String> features;
-		if (file == null) {
+		model = snapshot ;
+		if (file == null || model == null) {
 			logger.warn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
@@ -346,19 +445,17 @@ public class CRFModelHandler {
 			return false ;
 		}
 		// Making sure that there exists a model.
-		if(globalData.labels.size() == 0) {
+		if(model.numLabels() == 0) {
 			logger.warn("The model does have not any semantic types. Please add some labels with their examples before attempting to predict using this model.") ;
 			return false ;
 		}
 		exampleProbabilitiesFullList = new ArrayList<ArrayList<Double>>() ;
-		MAPPredictor = new MAPFieldOnly(globalData) ;
-		columnProbabilities = new double[globalData.labels.size()] ;
+		columnProbabilities = new double[model.numLabels()] ;
 		features = new HashSet<String>();
 		// for each example, get the probability of each label.
 		// add the probabilities to an accumulator probabilities array
 		// the label that gets highest accumulated probability, is the most likely label for all examples combined
 		for(String example : examples) {
-			GraphFieldOnly exampleGraph ;
 			String sanitizedExample;
 			double[] probabilitiesForExample ;
 			sanitizedExample = getSanitizedString(example);
@@ -366,8 +463,7 @@ public class CRFModelHandler {
 				sanitizedExample = ".";
 			}
 			featureSet(sanitizedExample, columnFeatures, features);
-			exampleGraph = new GraphFieldOnly(sanitizedExample, null, new ArrayList<String>(features), globalData) ;
-			probabilitiesForExample = MAPPredictor.probabilitiesForLabels(exampleGraph) ;
+			probabilitiesForExample = model.probabilitiesForLabels(features) ;
 			Matrix.plusEquals(columnProbabilities, probabilitiesForExample, 1.0) ;
 			if (exampleProbabilities != null) {
 				exampleProbabilitiesFullList.add(newListFromDoubleArray(probabilitiesForExample)) ;
@@ -375,13 +471,13 @@ public class CRFModelHandler {
 		}
 		// the sum of all values in the probabilies array is going to be examples.size()
 		// normalize to get values that have a probabilistic interpretation
-		for(int i=0;i<globalData.labels.size();i++) {
+		for(int i=0;i<model.numLabels();i++) {
 			columnProbabilities[i]/=examples.size() ;
 		}
 		// Sort both lists such that labels are listed according to their descending order of probability
 		// and probabilityList has the probabilities in the descending order 
 		// The label at index i has the probability at index i
-		labels = new ArrayList<String>(globalData.labels) ;
+		labels = new ArrayList<String>(model.getLabels()) ;
 		columnProbabilitiesList = newListFromDoubleArray(columnProbabilities) ;
 		ListOps.sortListOnValues(labels, columnProbabilitiesList) ;
 		// Preparing to return values now
@@ -389,21 +485,24 @@ public class CRFModelHandler {
 		confidenceScores.clear() ;
 		if (exampleProbabilities != null) {
 			exampleProbabilities.clear() ;
-			int minPreds = Math.min(numPredictions, globalData.labels.size()) ;
+			int minPreds = Math.min(numPredictions, model.numLabels()) ;
 			for(int i=0;i<examples.size();i++) {
 				exampleProbabilities.add(new double[minPreds]) ;
 			}
 		}
-		for(int index=0;index < globalData.labels.size() && index < numPredictions;index++) {
+		for(int index=0;index < model.numLabels() && index < numPredictions;index++) {
 			predictedLabels.add(labels.get(index)) ;
 			confidenceScores.add(columnProbabilitiesList.get(index)) ;
 			if (exampleProbabilities != null) {
-				int li = globalData.labels.indexOf(labels.get(index)) ;
+				int li = model.getLabels().indexOf(labels.get(index)) ;
 				for(int i=0;i<examples.size();i++) {
 					exampleProbabilities.get(i)[index] = exampleProbabilitiesFullList.get(i).get(li) ;
 				}
 			}
 		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Feature cache after prediction: " + featureCache);
+		}
 		return true ;
 	}
 
@@ -417,21 +516,44 @@ public class CRFModelHandler {
 	 * creates an environment that consists of globalData, crfModel, list of examples of each label, etc.
 	 * It reads an empty file also.
 	 */
-	public boolean readModelFromFile(String modelFile) {
+	public synchronized boolean readModelFromFile(String modelFile) {
 		BufferedReader br ;
 		String line ;
 		int numLabels ;
 		boolean emptyFile ;
 		int numFFs  ;
 		ArrayList<LblFtrPair> ffs ;
-		HashSet<String> features;
 		double[] weights ;
 		CRFModelFieldOnly crfModel  ;
+		// write the changes of the model that is being replaced before reading the file, which could be the same file
+		flushModel() ;
 		if (modelFile == null) {
 			Prnt.prn("Invalid argument value. Argument @file is null.") ;
 			file = null ;
 			return false ;
 		}
+		unloadedExamples = null ;
+		// use the binary snapshot of the model, if it was written with the current model file
+		try {
+			CRFModelBinaryFile binaryFile = CRFModelBinaryFile.open(modelFile) ;
+			if (binaryFile != null) {
+				globalData = new GlobalDataFieldOnly() ;
+				globalData.labels.addAll(binaryFile.labels) ;
+				crfModel = new CRFModelFieldOnly(globalData) ;
+				crfModel.ffs = binaryFile.ffs ;
+				crfModel.weights = binaryFile.weights ;
+				globalData.crfModel = crfModel ;
+				// the examples and the training graphs are only needed for training. They are loaded by loadExamples().
+				labelToExamplesMap = null ;
+				unloadedExamples = binaryFile ;
+				publishSnapshot() ;
+				file = modelFile ;
+				return true ;
+			}
+		}
+		catch(Exception e) {
+			logger.warn("Error reading the binary snapshot of model file " + modelFile + ". Reading the model file instead.", e) ;
+		}
 		// beginning execution
 		br = null ;
 		line = null ;
@@ -460,12 +582,11 @@ public class CRFModelHandler {
 			crfModel.ffs = new ArrayList<LblFtrPair>() ;
 			crfModel.weights = new double[0] ;
 			globalData.crfModel = crfModel ;
+			publishSnapshot() ;
 			file = modelFile ;
 			return true ;
 		}
 		else {
-			ArrayList<Example> selectedExamples;
-			features = new HashSet<String>();
 			globalData = new GlobalDataFieldOnly() ;
 			labelToExamplesMap = new HashMap<String, ArrayList<Example>>() ;
 			try {
@@ -506,24 +627,7 @@ public class CRFModelHandler {
 					labelToExamplesMap.put(newLabel, examples) ;
 					br.readLine() ; // consuming the empty line after each list of label and its examples
 				}
-				// Creating trainingGraphs for MAX_EXAMPLES_PER_LABEL num of examples
-				globalData.trainingGraphs = new ArrayList<GraphInterface>() ;
-				selectedExamples = new ArrayList<CRFModelHandler.Example>();
-				for(String lbl : globalData.labels) {
-					ArrayList<Example> allExamples;
-					allExamples = labelToExamplesMap.get(lbl);
-					selectedExamples.clear();
-					if (allExamples.size() <= MAX_EXAMPLES_PER_LABEL) {
-						selectedExamples.addAll(allExamples);
-					}
-					else {
-						RandOps.getRandomlySelectedItemsFromList(allExamples, selectedExamples, MAX_EXAMPLES_PER_LABEL);
-					}
-					for(Example example : selectedExamples) {
-						featureSet(example, features);
-						globalData.trainingGraphs.add(new GraphFieldOnly(example.exampleString, lbl, new ArrayList<String>(features), globalData)) ;
-					}
-				}
+				createTrainingGraphs() ;
 				// starting to read in feature-functions and their weights. the first line is the number of such ffs. 
 				numFFs = Integer.parseInt(br.readLine().trim()) ;
 				ffs = new ArrayList<LblFtrPair>() ;
@@ -547,7 +651,10 @@ public class CRFModelHandler {
 				crfModel.weights = weights ;
 				globalData.crfModel = crfModel ;
 				br.close() ;
+				publishSnapshot() ;
 				file = modelFile ;
+				// so that the next time the model is read, the binary snapshot can be used
+				saveBinaryFile(labelToExamplesMap) ;
 				return true ;
 			}
 			catch(Exception e) {
@@ -570,13 +677,16 @@ public class CRFModelHandler {
 	 * model file.
 	 * 
 	 */
-	public boolean removeAllLabels() {
+	public synchronized boolean removeAllLabels() {
 		BufferedWriter bw;
 		CRFModelFieldOnly crfModel;
 		if (file == null) {
 			Prnt.prn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
+		cancelPendingSave() ;
+		unloadedExamples = null ;
+		CRFModelBinaryFile.binaryFileFor(file).delete() ;
 		try {
 			bw = new BufferedWriter(new FileWriter(file)) ;
 			bw.write("") ;
@@ -594,22 +704,25 @@ public class CRFModelHandler {
 		crfModel.ffs = new ArrayList<LblFtrPair>() ;
 		crfModel.weights = new double[0] ;
 		globalData.crfModel = crfModel ;
+		publishSnapshot() ;
 		return true ;
 	}
 
 
 
-	public boolean removeLabel(String label) {
+	public synchronized boolean removeLabel(String label) {
 		int labelIndex;
 		ArrayList<Double> weightsList;
 		ArrayList<LblFtrPair> otherFFs ;
 		double[] newWeights ;
 		OptimizeFieldOnly optimizationObject;
-		boolean savingSuccessful;
 		if (file == null) {
 			Prnt.prn("CRF Model is not ready, either because it was never read or an error happened while reading it previously. Please try reading the model file again.");
 			return false ;
 		}
+		if (!loadExamples()) {
+			return false ;
+		}
 		if (label == null) {
 			Prnt.prn("Illegal value, null, passed for argument @label") ;
 			return false ;
@@ -656,14 +769,26 @@ public class CRFModelHandler {
 			newWeights[i] = weightsList.get(i) ;
 		}
 		globalData.crfModel.ffs = otherFFs ;
+		globalData.crfModel.ffsChanged() ;
 		globalData.crfModel.weights = newWeights ;
 		optimizationObject = new OptimizeFieldOnly(globalData.crfModel, globalData) ;
 		optimizationObject.optimize(10) ;
-		savingSuccessful = saveModel() ;
-		if (!savingSuccessful) {
-			file = null ;
+		publishSnapshot() ;
+		return saveChanges() ;
+	}
+
+
+	/**
+	 * Writes the model to its file now, if a change of the model has not been written yet.
+	 * Changes are otherwise written in the background shortly after they are made.
+	 * @return True, if the model file is up to date with the model in memory, else False
+	 */
+	public synchronized boolean flushModel() {
+		if (pendingSave == null) {
+			return file != null ;
 		}
-		return savingSuccessful ;
+		cancelPendingSave() ;
+		return saveScheduledChanges() ;
 	}
 
 
@@ -773,12 +898,8 @@ public class CRFModelHandler {
 	 * @param features The arg used to return those features.
 	 */
 	private void featureSet(String field, HashSet<String> features) {
-		ArrayList<Part> tokens;
-		tokens = Lexer.tokenizeField(field);
 		features.clear();
-		for(Part token : tokens) {
-			features.addAll(RegexFeatureExtractor.getTokenFeatures(token)) ;
-		}
+		featureCache.addFeatures(field, features);
 	}
 
 
@@ -836,16 +957,16 @@ public class CRFModelHandler {
 	
 	
 	private String getSanitizedString(String unsanitizedString) {
-		String sanitizedString ;
-		sanitizedString = "" ;
+		StringBuilder sanitizedString ;
+		sanitizedString = new StringBuilder(unsanitizedString.length()) ;
 		for(int i=0;i<unsanitizedString.length();i++) {
-			String charAtIndex;
-			charAtIndex = unsanitizedString.substring(i,i+1) ;
-			if (allowedCharacters.contains(charAtIndex)) {
-				sanitizedString+=charAtIndex ;
+			char charAtIndex;
+			charAtIndex = unsanitizedString.charAt(i) ;
+			if (charAtIndex < isAllowedCharacter.length && isAllowedCharacter[charAtIndex]) {
+				sanitizedString.append(charAtIndex) ;
 			}
 		}
-		return sanitizedString;
+		return sanitizedString.toString();
 	}
 
 	
@@ -1025,6 +1146,7 @@ public class CRFModelHandler {
 		}
 		// reset the ffs and the weights array
 		globalData.crfModel.ffs = otherFFs ;
+		globalData.crfModel.ffsChanged() ;
 		globalData.crfModel.weights = new double[otherFFs.size()];
 		for(int i=0;i<otherFFs.size();i++) {
 			globalData.crfModel.weights[i] = weightsOfOtherFFs.get(i) ;
@@ -1049,11 +1171,87 @@ public class CRFModelHandler {
 	}
 	
 
+	/**
+	 * Replaces the snapshot used by predictions with a copy of the current model.
+	 * It must be called by the methods that change the model once the change is complete.
+	 */
+	private void publishSnapshot() {
+		snapshot = new CRFModelSnapshot(globalData) ;
+	}
+
+
+	/**
+	 * Writes a change of the model to its file, in the background if deferredSave is set.
+	 * It must be called while holding the lock of this handler.
+	 * @return False, if the model file was written now and writing it failed
+	 */
+	private boolean saveChanges() {
+		if (deferredSave) {
+			scheduleSave() ;
+			return true ;
+		}
+		cancelPendingSave() ;
+		return saveScheduledChanges() ;
+	}
+
+
+	/**
+	 * Schedules the model to be written to its file after SAVE_DELAY_MILLIS,
+	 * unless a save is already scheduled, in which case that save will also write the latest change.
+	 * It must be called while holding the lock of this handler.
+	 */
+	private void scheduleSave() {
+		if (pendingSave != null) {
+			return ;
+		}
+		pendingSave = saveExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (CRFModelHandler.this) {
+					if (pendingSave == null) {
+						// cancelled or already flushed
+						return ;
+					}
+					pendingSave = null ;
+					handlersWithPendingSave.remove(CRFModelHandler.this) ;
+					String modelFile = file ;
+					if (!saveScheduledChanges()) {
+						logger.error("Writing the model file " + modelFile + " in the background failed. The model has to be read again before it can be changed.") ;
+					}
+				}
+			}
+		}, SAVE_DELAY_MILLIS, TimeUnit.MILLISECONDS) ;
+		handlersWithPendingSave.add(this) ;
+	}
+
+
+	private void cancelPendingSave() {
+		if (pendingSave != null) {
+			pendingSave.cancel(false) ;
+			pendingSave = null ;
+			handlersWithPendingSave.remove(this) ;
+		}
+	}
+
+
+	private boolean saveScheduledChanges() {
+		if (file == null) {
+			return false ;
+		}
+		if (!saveModel()) {
+			file = null ;
+			return false ;
+		}
+		return true ;
+	}
+
+
 	/**
 	 * This method writes the model in memory to the file that it was read from.
 	 * @return true, if writing is successful, else return, false
 	 */
 	private boolean saveModel() {
+		HashMap<String, ArrayList<Example>> savedExamplesMap = new HashMap<String, ArrayList<Example>>() ;
 		try {
 			BufferedWriter bw;
 			bw = new BufferedWriter(new FileWriter(file)) ;
@@ -1076,6 +1274,7 @@ public class CRFModelHandler {
 					}
 					examples = subsetOfExamples;
 				}
+				savedExamplesMap.put(label, examples) ;
 				
 				bw.write(examples.size() + "\n") ;
 				for(Example example : examples) {
@@ -1099,12 +1298,79 @@ public class CRFModelHandler {
 				bw.write(globalData.labels.get(ff.labelIndex) + " " + ff.feature + " " + globalData.crfModel.weights[ffIndex] + "\n") ;
 			}
 			bw.close() ;
-			return true ;
 		}
 		catch(Exception e) {
 			Prnt.prn("Writing the model to file " + file + " failed. The file can be inconsistent with the model in memory until it is successfully written.") ;
 			return false ;
 		}
+		saveBinaryFile(savedExamplesMap) ;
+		return true ;
+	}
+
+
+	/**
+	 * Writes the binary snapshot of the model, after the model has been written to or read from its file.
+	 * The model file is complete without it, so a failure is only logged.
+	 * @param savedExamplesMap The examples of each label, as they are in the model file
+	 */
+	private void saveBinaryFile(HashMap<String, ArrayList<Example>> savedExamplesMap) {
+		try {
+			CRFModelBinaryFile.write(file, globalData.labels, globalData.crfModel.ffs, globalData.crfModel.weights, savedExamplesMap) ;
+		}
+		catch(Exception e) {
+			logger.warn("Writing the binary snapshot of model file " + file + " failed. The model file will be read the next time.", e) ;
+			CRFModelBinaryFile.binaryFileFor(file).delete() ;
+		}
+	}
+
+
+	/**
+	 * Loads the examples of the labels and creates the training graphs,
+	 * if the model was read from its binary snapshot and they have not been loaded yet.
+	 * @return True, if the examples and training graphs are loaded, else False
+	 */
+	private boolean loadExamples() {
+		if (unloadedExamples == null) {
+			return true ;
+		}
+		try {
+			labelToExamplesMap = unloadedExamples.readExamples() ;
+		}
+		catch(Exception e) {
+			logger.error("Error reading the examples from the binary snapshot of model file " + file + ". Please try reading the model file again.", e) ;
+			file = null ;
+			return false ;
+		}
+		unloadedExamples = null ;
+		createTrainingGraphs() ;
+		return true ;
+	}
+
+
+	/**
+	 * Creates the training graphs for at most MAX_EXAMPLES_PER_LABEL examples of each label.
+	 */
+	private void createTrainingGraphs() {
+		ArrayList<Example> selectedExamples;
+		HashSet<String> features;
+		features = new HashSet<String>();
+		globalData.trainingGraphs = new ArrayList<GraphInterface>() ;
+		selectedExamples = new ArrayList<CRFModelHandler.Example>();
+		for(String lbl : globalData.labels) {
+			ArrayList<Example> allExamples;
+			allExamples = labelToExamplesMap.get(lbl);
+			selectedExamples.clear();
+			if (allExamples.size() <= MAX_EXAMPLES_PER_LABEL) {
+				selectedExamples.addAll(allExamples);
+			}
+			else {
+				RandOps.getRandomlySelectedItemsFromList(allExamples, selectedExamples, MAX_EXAMPLES_PER_LABEL);
+			}
+			for(Example example : selectedExamples) {
+				featureSet(example, features);
+				globalData.trainingGraphs.add(new GraphFieldOnly(example.exampleString, lbl, new ArrayList<String>(features), globalData)) ;
+			}
+		}
 	}
 
 
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import edu.isi.karma.modeling.semantictypes.sl.Lexer;
+import edu.isi.karma.modeling.semantictypes.sl.Part;
+import edu.isi.karma.modeling.semantictypes.sl.RegexFeatureExtractor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class caches the syntactic features of field values.
+ * Columns repeat the same values a lot (states, codes, years),
+ * and tokenizing a value and building its regex features is the most expensive part of
+ * both training and prediction.
+ * The cache keeps the features of the most recently used values, up to a fixed number of values.
+ * It can be used by several threads at the same time.
+ */
+public class FeatureCache {
+
+	static final int DEFAULT_CAPACITY = 10000;
+
+	private final int capacity;
+	private final LinkedHashMap<String, String[]> cache;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong missNanos = new AtomicLong();
+
+	public FeatureCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity The maximum number of values whose features are kept
+	 */
+	public FeatureCache(final int capacity) {
+		this.capacity = capacity;
+		// access order, so that the least recently used value is removed first
+		cache = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+				return size() > FeatureCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * @param field A sanitized field value
+	 * @param features The set to which the syntactic features of the field are added.
+	 */
+	public void addFeatures(String field, HashSet<String> features) {
+		String[] cachedFeatures;
+		synchronized (cache) {
+			cachedFeatures = cache.get(field);
+		}
+		if (cachedFeatures != null) {
+			hits.incrementAndGet();
+		}
+		else {
+			long start = System.nanoTime();
+			cachedFeatures = extractFeatures(field);
+			missNanos.addAndGet(System.nanoTime() - start);
+			misses.incrementAndGet();
+			synchronized (cache) {
+				cache.put(field, cachedFeatures);
+			}
+		}
+		Collections.addAll(features, cachedFeatures);
+	}
+
+	private static String[] extractFeatures(String field) {
+		HashSet<String> features;
+		ArrayList<Part> tokens;
+		tokens = Lexer.tokenizeField(field);
+		features = new HashSet<String>();
+		for(Part token : tokens) {
+			features.addAll(RegexFeatureExtractor.getTokenFeatures(token)) ;
+		}
+		return features.toArray(new String[features.size()]);
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return The fraction of lookups that were answered from the cache, or 0 if there was no lookup yet.
+	 */
+	public double getHitRate() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0.0 : (double) h / total;
+	}
+
+	/**
+	 * @return An estimate of the time the cache saved:
+	 * the number of hits times the average time it took to extract the features of a value that was not in the cache.
+	 */
+	public long getEstimatedTimeSavedMillis() {
+		long m = misses.get();
+		if (m == 0) {
+			return 0;
+		}
+		return (long) (hits.get() * ((double) missNanos.get() / m) / 1000000);
+	}
+
+	@Override
+	public String toString() {
+		return "FeatureCache(size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", hitRate=" + getHitRate() + ", timeSavedMillis=" + getEstimatedTimeSavedMillis() + ")";
+	}
+
+}
@@ -42,6 +42,8 @@ public class CRFModelFieldOnly extends CRFModelAbstract {
 	
 	GlobalDataFieldOnly globalData ;
 	public ArrayList<LblFtrPair> ffs ;
+	volatile CompiledCRFModelFieldOnly compiledModel ;
+	volatile int ffsVersion ;
 	
 	public CRFModelFieldOnly(GlobalDataFieldOnly globalData) {
 		this.globalData = globalData ;
@@ -62,6 +64,30 @@ public class CRFModelFieldOnly extends CRFModelAbstract {
 			}
 		}
 		weights = new double[ffs.size()] ;
+		ffsChanged() ;
+	}
+	
+	/**
+	 * Must be called after the feature functions in ffs are changed in place,
+	 * so that the next call to compiled() rebuilds the index.
+	 * Assigning a new list to ffs is noticed without it.
+	 */
+	public synchronized void ffsChanged() {
+		ffsVersion++ ;
+	}
+	
+	/**
+	 * @return The index over the current list of feature functions.
+	 * It is rebuilt when ffs has been replaced by a new list, or ffsChanged() has been called, since the last call.
+	 */
+	public CompiledCRFModelFieldOnly compiled() {
+		CompiledCRFModelFieldOnly compiled = compiledModel ;
+		int version = ffsVersion ;
+		if (compiled == null || !compiled.isCompiledFrom(ffs, version)) {
+			compiled = new CompiledCRFModelFieldOnly(ffs, version) ;
+			compiledModel = compiled ;
+		}
+		return compiled ;
 	}
 	
 	
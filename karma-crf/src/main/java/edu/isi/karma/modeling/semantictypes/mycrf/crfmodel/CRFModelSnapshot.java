@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.crfmodel ;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.math.LogSpace;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This class is a read-only copy of a trained CRFModelFieldOnly that is used for prediction.
+ * Training changes the labels, the feature functions and the weights of the model in place,
+ * so predictions made while a label is being trained would see a half updated model.
+ * A snapshot copies the labels and the weights and shares the index of the feature functions,
+ * which is never changed once it is built.
+ * It can therefore be used by any number of threads at the same time.
+ */
+public class CRFModelSnapshot {
+
+	final List<String> labels ;
+	final CompiledCRFModelFieldOnly compiled ;
+	final double[] weights ;
+
+	/**
+	 * @param globalData The model to copy. It must not be changed while the copy is made.
+	 */
+	public CRFModelSnapshot(GlobalDataFieldOnly globalData) {
+		labels = Collections.unmodifiableList(new ArrayList<String>(globalData.labels)) ;
+		compiled = globalData.crfModel.compiled() ;
+		weights = globalData.crfModel.weights.clone() ;
+	}
+
+	/**
+	 * @return The labels of the model, in the order of their label index.
+	 */
+	public List<String> getLabels() {
+		return labels ;
+	}
+
+	public int numLabels() {
+		return labels.size() ;
+	}
+
+	/**
+	 * @param features The features of an example
+	 * @return The probability of each label for the example, indexed by label index.
+	 */
+	public double[] probabilitiesForLabels(Collection<String> features) {
+		int numLabels = labels.size() ;
+		double[] exps = LogSpace.threadBuffer(numLabels) ;
+		double[] prob = new double[numLabels] ;
+		compiled.potentialExps(compiled.activeFFs(features), weights, exps, numLabels) ;
+		LogSpace.normalize(exps, numLabels, prob) ;
+		return prob ;
+	}
+
+}
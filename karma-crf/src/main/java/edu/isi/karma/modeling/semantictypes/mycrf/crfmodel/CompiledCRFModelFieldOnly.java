@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.crfmodel ;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+
+/**
+ * This class is an index over the feature functions of a CRFModelFieldOnly.
+ * Every feature used by a feature function gets an int id, and for every id
+ * it stores the indices of the feature functions that use that feature.
+ * This lets a graph find the feature functions that fire on it once,
+ * as a sorted int[] of feature function indices,
+ * instead of scanning all feature functions with String comparisons
+ * every time a potential is computed.
+ *
+ * The index is built for one list of feature functions and is never changed afterwards.
+ * The weights are not part of it, so it stays valid while the optimizer changes them.
+ */
+public class CompiledCRFModelFieldOnly {
+
+	final ArrayList<LblFtrPair> ffs ;
+	final int ffsVersion ;
+	final int numFFs ;
+	final HashMap<String, Integer> featureIds ;
+	final int[][] ffsOfFeature ;
+	final int[] ffLabels ;
+
+	CompiledCRFModelFieldOnly(ArrayList<LblFtrPair> ffs, int ffsVersion) {
+		ArrayList<int[]> ffsOfFeatureList ;
+		int[] numFFsOfFeature ;
+		this.ffs = ffs ;
+		this.ffsVersion = ffsVersion ;
+		numFFs = ffs.size() ;
+		featureIds = new HashMap<String, Integer>() ;
+		ffLabels = new int[numFFs] ;
+		// intern the features and count the feature functions of each feature
+		int[] ffFeatureIds = new int[numFFs] ;
+		for(int f=0;f<numFFs;f++) {
+			LblFtrPair ff = ffs.get(f) ;
+			Integer id = featureIds.get(ff.feature) ;
+			if (id == null) {
+				id = featureIds.size() ;
+				featureIds.put(ff.feature, id) ;
+			}
+			ffFeatureIds[f] = id ;
+			ffLabels[f] = ff.labelIndex ;
+		}
+		numFFsOfFeature = new int[featureIds.size()] ;
+		for(int f=0;f<numFFs;f++) {
+			numFFsOfFeature[ffFeatureIds[f]]++ ;
+		}
+		// build the inverted index. ffs are added in increasing order of their index.
+		ffsOfFeatureList = new ArrayList<int[]>() ;
+		for(int id=0;id<numFFsOfFeature.length;id++) {
+			ffsOfFeatureList.add(new int[numFFsOfFeature[id]]) ;
+		}
+		Arrays.fill(numFFsOfFeature, 0) ;
+		for(int f=0;f<numFFs;f++) {
+			int id = ffFeatureIds[f] ;
+			ffsOfFeatureList.get(id)[numFFsOfFeature[id]++] = f ;
+		}
+		ffsOfFeature = ffsOfFeatureList.toArray(new int[ffsOfFeatureList.size()][]) ;
+	}
+
+	/**
+	 * @param ffs A list of feature functions
+	 * @param ffsVersion The number of changes made to the list, see CRFModelFieldOnly.ffsChanged()
+	 * @return True, if this index was built for this list of feature functions, as it is now.
+	 */
+	public boolean isCompiledFrom(ArrayList<LblFtrPair> ffs, int ffsVersion) {
+		return this.ffs == ffs && this.ffsVersion == ffsVersion && numFFs == ffs.size() ;
+	}
+
+	/**
+	 * @param feature A feature string
+	 * @return The id of the feature, or -1 if no feature function uses it.
+	 */
+	public int featureId(String feature) {
+		Integer id = featureIds.get(feature) ;
+		return id == null ? -1 : id ;
+	}
+
+	public int numFeatures() {
+		return ffsOfFeature.length ;
+	}
+
+	/**
+	 * @param ffIndex Index of a feature function
+	 * @return The label index of that feature function
+	 */
+	public int labelOfFF(int ffIndex) {
+		return ffLabels[ffIndex] ;
+	}
+
+	/**
+	 * @param features The features of a node
+	 * @return Indices of all the feature functions whose feature is in features, in increasing order and without duplicates.
+	 */
+	public int[] activeFFs(Collection<String> features) {
+		int[] active = new int[16] ;
+		int numActive = 0 ;
+		for(String feature : features) {
+			Integer id = featureIds.get(feature) ;
+			if (id == null) {
+				continue ;
+			}
+			int[] ffsOfThisFeature = ffsOfFeature[id] ;
+			if (numActive + ffsOfThisFeature.length > active.length) {
+				active = Arrays.copyOf(active, Math.max(2 * active.length, numActive + ffsOfThisFeature.length)) ;
+			}
+			System.arraycopy(ffsOfThisFeature, 0, active, numActive, ffsOfThisFeature.length) ;
+			numActive+=ffsOfThisFeature.length ;
+		}
+		Arrays.sort(active, 0, numActive) ;
+		// a feature listed twice in features would add its ffs twice
+		int numUnique = 0 ;
+		for(int i=0;i<numActive;i++) {
+			if (numUnique == 0 || active[numUnique-1] != active[i]) {
+				active[numUnique++] = active[i] ;
+			}
+		}
+		return Arrays.copyOf(active, numUnique) ;
+	}
+
+	/**
+	 * Computes, for every label, the sum of the weights of the feature functions of that label that fire on the passed features,
+	 * without building the sorted array of active feature functions.
+	 * The weights are added in the order of the features, so the sums can differ from
+	 * the ones of potentialExps(int[], double[], double[]) in the last bits.
+	 *
+	 * @param features The distinct features of a node
+	 * @param weights The weights of the feature functions
+	 * @param exps The array in which the sums are returned
+	 * @param numLabels Number of entries of exps to use
+	 */
+	public void potentialExps(Collection<String> features, double[] weights, double[] exps, int numLabels) {
+		Arrays.fill(exps, 0, numLabels, 0.0) ;
+		for(String feature : features) {
+			Integer id = featureIds.get(feature) ;
+			if (id == null) {
+				continue ;
+			}
+			for(int ff : ffsOfFeature[id]) {
+				exps[ffLabels[ff]]+=weights[ff] ;
+			}
+		}
+	}
+
+	/**
+	 * Computes, for every label, the sum of the weights of the active feature functions of that label.
+	 * The weights are added in increasing order of the feature function index,
+	 * which is the order in which a scan over all feature functions adds them.
+	 *
+	 * @param activeFFs Sorted indices of the feature functions that fire, as returned by activeFFs()
+	 * @param weights The weights of the feature functions
+	 * @param exps The array in which the sums are returned. It must have one entry per label.
+	 */
+	public void potentialExps(int[] activeFFs, double[] weights, double[] exps) {
+		potentialExps(activeFFs, weights, exps, exps.length) ;
+	}
+
+	/**
+	 * Same as potentialExps(int[], double[], double[]), for an exps array that may be longer than the number of labels.
+	 * Only the first numLabels entries of exps are used.
+	 */
+	public void potentialExps(int[] activeFFs, double[] weights, double[] exps, int numLabels) {
+		Arrays.fill(exps, 0, numLabels, 0.0) ;
+		for(int ff : activeFFs) {
+			exps[ffLabels[ff]]+=weights[ff] ;
+		}
+	}
+
+}
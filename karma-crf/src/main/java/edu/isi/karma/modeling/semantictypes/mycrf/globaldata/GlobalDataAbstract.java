@@ -41,4 +41,12 @@ public abstract class GlobalDataAbstract {
 	
 	public abstract void errorGradient(double[] gradient) ;
 	
+	/**
+	 * Called by the optimizer after it has changed the weights being optimized,
+	 * before the potentials of the training graphs are recomputed.
+	 * Data that optimizes a copy of some of the weights uses it to copy them back into the model.
+	 */
+	public void weightsChanged() {
+	}
+	
 }
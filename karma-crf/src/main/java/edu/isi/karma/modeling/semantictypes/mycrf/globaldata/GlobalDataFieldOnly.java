@@ -80,12 +80,10 @@ public class GlobalDataFieldOnly extends GlobalDataAbstract {
 			gradient[i] = 0.0 ;
 		}
 		
-		double[] tmpGradient = new double[gradient.length] ;
-		
+		// each graph only adds to the entries of the feature functions that fire on it
 		for(GraphInterface graphI : trainingGraphs) {
 			GraphFieldOnly graph = (GraphFieldOnly) graphI ;
-			graph.logLikelihoodGradient(tmpGradient) ;
-			Matrix.plusEquals(gradient, tmpGradient, 1) ;
+			graph.addLogLikelihoodGradient(gradient) ;
 		}
 		
 		for(int i=0;i<gradient.length;i++) {
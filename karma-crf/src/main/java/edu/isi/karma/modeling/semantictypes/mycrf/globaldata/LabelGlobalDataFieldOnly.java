@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.globaldata ;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.common.Constants;
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelAbstract;
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CompiledCRFModelFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphInterface;
+import edu.isi.karma.modeling.semantictypes.mycrf.math.LogSpace;
+import edu.isi.karma.modeling.semantictypes.mycrf.math.Matrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+
+/**
+ * This class represents the part of the training problem that depends on the weights of a single label.
+ * It is used to retrain one label without optimizing the weights of all other labels again.
+ *
+ * The weights of the label's feature functions are copied into a model of their own,
+ * which is the one the optimizer changes. weightsChanged() copies them back into the full model.
+ * Only the training graphs on which a feature function of the label fires are kept,
+ * as the likelihood of every other graph does not depend on the label's weights.
+ * The error value therefore differs from the error of the full model by a constant,
+ * and the gradient is the gradient of the full error restricted to the label's weights.
+ *
+ * While the other weights are fixed, the potentials of the other labels of a graph do not change.
+ * Each training graph is therefore replaced by a LabelGraph that computes the sum of the
+ * potentials of the other labels once, and afterwards only sums the weights of the label's feature functions.
+ */
+public class LabelGlobalDataFieldOnly extends GlobalDataAbstract {
+
+	GlobalDataFieldOnly globalData ;
+	int[] ffIndices ;
+	CRFModelAbstract labelModel ;
+
+	/**
+	 * @param globalData The full training problem
+	 * @param labelIndex The label whose weights will be optimized
+	 */
+	public LabelGlobalDataFieldOnly(GlobalDataFieldOnly globalData, int labelIndex) {
+		CompiledCRFModelFieldOnly compiled ;
+		HashMap<String, Integer> labelFFOfFeature ;
+		double[] exps ;
+		int numLabels ;
+		this.globalData = globalData ;
+		compiled = globalData.crfModel.compiled() ;
+		labelFFOfFeature = new HashMap<String, Integer>() ;
+		for(int f=0;f<globalData.crfModel.weights.length;f++) {
+			if (compiled.labelOfFF(f) == labelIndex) {
+				labelFFOfFeature.put(globalData.crfModel.ffs.get(f).feature, labelFFOfFeature.size()) ;
+			}
+		}
+		ffIndices = new int[labelFFOfFeature.size()] ;
+		labelModel = new CRFModelAbstract() {} ;
+		labelModel.weights = new double[ffIndices.length] ;
+		for(int f=0;f<globalData.crfModel.weights.length;f++) {
+			if (compiled.labelOfFF(f) == labelIndex) {
+				int i = labelFFOfFeature.get(globalData.crfModel.ffs.get(f).feature) ;
+				ffIndices[i] = f ;
+				labelModel.weights[i] = globalData.crfModel.weights[f] ;
+			}
+		}
+		numLabels = globalData.labels.size() ;
+		exps = new double[numLabels] ;
+		trainingGraphs = new ArrayList<GraphInterface>() ;
+		for(GraphInterface graphI : globalData.trainingGraphs) {
+			GraphFieldOnly graph = (GraphFieldOnly) graphI ;
+			int[] labelFFs = new int[graph.node.features.size()] ;
+			int numLabelFFs = 0 ;
+			for(String feature : graph.node.features) {
+				Integer i = labelFFOfFeature.get(feature) ;
+				if (i != null) {
+					labelFFs[numLabelFFs++] = i ;
+				}
+			}
+			if (numLabelFFs == 0) {
+				continue ;
+			}
+			// the potentials of the other labels, with the current weights
+			compiled.potentialExps(graph.node.features, globalData.crfModel.weights, exps, numLabels) ;
+			double otherPotential = graph.node.labelIndex == labelIndex ? 0.0 : exps[graph.node.labelIndex] ;
+			exps[labelIndex] = Double.NEGATIVE_INFINITY ;
+			trainingGraphs.add(new LabelGraph(Arrays.copyOf(labelFFs, numLabelFFs), graph.node.labelIndex == labelIndex,
+					otherPotential, LogSpace.logSumExp(exps, numLabels), labelModel.weights)) ;
+		}
+	}
+
+	/**
+	 * @return The model that holds the weights of the label's feature functions.
+	 */
+	public CRFModelAbstract getLabelModel() {
+		return labelModel ;
+	}
+
+	public int dimension() {
+		return ffIndices.length ;
+	}
+
+	@Override
+	public void weightsChanged() {
+		for(int i=0;i<ffIndices.length;i++) {
+			globalData.crfModel.weights[ffIndices[i]] = labelModel.weights[i] ;
+		}
+	}
+
+	public void errorGradient(double[] gradient) {
+		double invSD = 1.0 / (Constants.STANDARD_DEVIATION * Constants.STANDARD_DEVIATION) ;
+
+		Arrays.fill(gradient, 0.0) ;
+		for(GraphInterface graphI : trainingGraphs) {
+			LabelGraph graph = (LabelGraph) graphI ;
+			double lhsMinusRhs = (graph.isOfLabel ? 1.0 : 0.0) - graph.labelMarginal ;
+			for(int i : graph.labelFFs) {
+				gradient[i]-=lhsMinusRhs ;
+			}
+		}
+
+		Matrix.plusEquals(gradient, labelModel.weights, invSD) ;
+	}
+
+	public double errorValue() {
+		double error = 0 ;
+
+		for(GraphInterface graphI : trainingGraphs) {
+			LabelGraph graph = (LabelGraph) graphI ;
+			error+=graph.logLikelihood() ;
+		}
+
+		error = - error + Matrix.dotProduct(labelModel.weights, labelModel.weights) / (2 * Constants.STANDARD_DEVIATION * Constants.STANDARD_DEVIATION) ;
+
+		return error ;
+	}
+
+
+	/**
+	 * A training graph, seen as a function of the weights of one label only.
+	 */
+	static class LabelGraph implements GraphInterface {
+
+		// indices, into the weights of the label model, of the label's feature functions that fire on the graph
+		final int[] labelFFs ;
+		final boolean isOfLabel ;
+		// the potential of the graph's own label, if it is not the label being optimized
+		final double otherPotential ;
+		// log of the sum of the potentials of all the other labels
+		final double logZOthers ;
+		final double[] weights ;
+		double labelPotential ;
+		double logZ ;
+		double labelMarginal ;
+
+		LabelGraph(int[] labelFFs, boolean isOfLabel, double otherPotential, double logZOthers, double[] weights) {
+			this.labelFFs = labelFFs ;
+			this.isOfLabel = isOfLabel ;
+			this.otherPotential = otherPotential ;
+			this.logZOthers = logZOthers ;
+			this.weights = weights ;
+		}
+
+		public void computeGraphPotentialAndZ() {
+			labelPotential = 0.0 ;
+			for(int i : labelFFs) {
+				labelPotential+=weights[i] ;
+			}
+			logZ = LogSpace.logAddExp(logZOthers, labelPotential) ;
+		}
+
+		public void computeGraphPotentialAndZAndMarginals() {
+			computeGraphPotentialAndZ() ;
+			labelMarginal = Math.exp(labelPotential - logZ) ;
+		}
+
+		double logLikelihood() {
+			return (isOfLabel ? labelPotential : otherPotential) - logZ ;
+		}
+
+	}
+
+}
@@ -22,14 +22,15 @@ package edu.isi.karma.modeling.semantictypes.mycrf.graph ;
 
 import edu.isi.karma.modeling.semantictypes.mycrf.common.Constants;
 import edu.isi.karma.modeling.semantictypes.mycrf.common.Node;
-import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CompiledCRFModelFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
-import edu.isi.karma.modeling.semantictypes.mycrf.math.LargeNumber;
+import edu.isi.karma.modeling.semantictypes.mycrf.math.LogSpace;
 import edu.isi.karma.modeling.semantictypes.myutils.Prnt;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /**
@@ -37,6 +38,7 @@ import java.util.ArrayList;
  * It also stores its computed partition function value,
  * potential, and
  * marginals.
+ * The partition function and the potential are kept as natural logs.
  * 
  * @author amangoel
  *
@@ -45,9 +47,12 @@ public class GraphFieldOnly implements GraphInterface {
 
 	GlobalDataFieldOnly globalData ;
 	public Node node ;
-	LargeNumber Z ;
-	LargeNumber graphPotential ;
+	double logZ ;
+	double logGraphPotential ;
 	double[] nodeMarginals ;
+	double[] potentialExps ;
+	int[] activeFFs ;
+	CompiledCRFModelFieldOnly activeFFsModel ;
 
 	public GraphFieldOnly(String file, boolean labeled, GlobalDataFieldOnly globalData) {
 		this.globalData = globalData ;
@@ -103,55 +108,92 @@ public class GraphFieldOnly implements GraphInterface {
 	}
 
 	public void compute_Z() {
-		LargeNumber tmp = new LargeNumber(0.0, 0) ;
-		for(int i=0;i<globalData.labels.size();i++) {	
-			tmp.plusEquals(LargeNumber.makeLargeNumberUsingExponent(potentialExpForLabelIndex(i))) ;
-		}
-		Z = tmp ;
+		computePotentialExps() ;
+		compute_ZFromPotentialExps() ;
 	}
 
 	public void compute_graphPotential() {
-		this.graphPotential = LargeNumber.makeLargeNumberUsingExponent(potentialExpForLabelIndex(node.labelIndex)) ;
+		computePotentialExps() ;
+		compute_graphPotentialFromPotentialExps() ;
 	}
 	
 	public void computeNodeMarginals() {
 		if (globalData.labels.size() != nodeMarginals.length) {
 			nodeMarginals = new double[globalData.labels.size()] ;
 		}
+		computePotentialExps() ;
 		for(int i=0;i<globalData.labels.size();i++) {
-			nodeMarginals[i] = LargeNumber.divide(LargeNumber.makeLargeNumberUsingExponent(potentialExpForLabelIndex(i)), this.Z) ;
+			nodeMarginals[i] = Math.exp(potentialExps[i] - logZ) ;
 		}
 	}
 
 	public double potentialExpForLabelIndex(int labelIndex) {
-		double exp = 0.0 ;
-		for(int f=0;f<globalData.crfModel.ffs.size();f++) {
-			LblFtrPair ff = globalData.crfModel.ffs.get(f) ;
-			if (ff.labelIndex == labelIndex && this.node.features.contains(ff.feature)) {
-				exp+=globalData.crfModel.weights[f] ;
-			}
+		if (labelIndex < 0) {
+			return 0.0 ;
+		}
+		computePotentialExps() ;
+		return potentialExps[labelIndex] ;
+	}
+	
+	/**
+	 * @return Sorted indices of the feature functions of the model that fire on this graph's node.
+	 * The array is computed once per list of feature functions and must not be modified.
+	 */
+	public int[] activeFFs() {
+		CompiledCRFModelFieldOnly compiled = globalData.crfModel.compiled() ;
+		if (compiled != activeFFsModel) {
+			activeFFs = compiled.activeFFs(node.features) ;
+			activeFFsModel = compiled ;
+		}
+		return activeFFs ;
+	}
+	
+	private void computePotentialExps() {
+		if (potentialExps == null || potentialExps.length != globalData.labels.size()) {
+			potentialExps = new double[globalData.labels.size()] ;
 		}
-		return exp ;
+		int[] active = activeFFs() ;
+		activeFFsModel.potentialExps(active, globalData.crfModel.weights, potentialExps) ;
+	}
+	
+	private void compute_ZFromPotentialExps() {
+		logZ = LogSpace.logSumExp(potentialExps, globalData.labels.size()) ;
+	}
+	
+	private void compute_graphPotentialFromPotentialExps() {
+		logGraphPotential = node.labelIndex < 0 ? 0.0 : potentialExps[node.labelIndex] ;
 	}
 	
 	public double logLikelihood() {
-		double likelihood = LargeNumber.divide(graphPotential, Z) ;
-		return Math.log(likelihood);
+		return logGraphPotential - logZ ;
 	}
 	
 	public void logLikelihoodGradient(double[] gradient) {
-		double lhs = 0, rhs = 0 ;
-		for(int f=0;f<globalData.crfModel.ffs.size();f++) {
-			LblFtrPair ff = globalData.crfModel.ffs.get(f) ;
-			lhs = (this.node.labelIndex == ff.labelIndex && this.node.features.contains(ff.feature)) ? 1.0 : 0.0 ;
-			rhs = (node.features.contains(ff.feature)) ? this.nodeMarginals[ff.labelIndex] : 0.0 ;
-			gradient[f] = lhs - rhs ;
+		Arrays.fill(gradient, 0.0) ;
+		addLogLikelihoodGradient(gradient) ;
+	}
+	
+	/**
+	 * Adds the gradient of the log likelihood of this graph to the passed array.
+	 * Only the entries of the feature functions that fire on this graph are non-zero,
+	 * so only those entries are touched.
+	 * 
+	 * @param gradient The array, with one entry per feature function, to which the gradient is added.
+	 */
+	public void addLogLikelihoodGradient(double[] gradient) {
+		int[] active = activeFFs() ;
+		for(int ff : active) {
+			int ffLabelIndex = activeFFsModel.labelOfFF(ff) ;
+			double lhs = (this.node.labelIndex == ffLabelIndex) ? 1.0 : 0.0 ;
+			double rhs = this.nodeMarginals[ffLabelIndex] ;
+			gradient[ff]+=lhs - rhs ;
 		}
 	}
 	
 	public void computeGraphPotentialAndZ() {
-		compute_graphPotential() ;
-		compute_Z() ;
+		computePotentialExps() ;
+		compute_graphPotentialFromPotentialExps() ;
+		compute_ZFromPotentialExps() ;
 	}
 	
 	public void computeGraphPotentialAndZAndMarginals() {
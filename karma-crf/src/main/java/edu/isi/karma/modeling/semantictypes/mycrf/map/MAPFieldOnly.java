@@ -21,10 +21,9 @@
 package edu.isi.karma.modeling.semantictypes.mycrf.map ;
 
 import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelFieldOnly;
-import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
 import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
-import edu.isi.karma.modeling.semantictypes.mycrf.math.LargeNumber;
+import edu.isi.karma.modeling.semantictypes.mycrf.math.LogSpace;
 import edu.isi.karma.modeling.semantictypes.myutils.Prnt;
 
 /**
@@ -42,22 +41,15 @@ public class MAPFieldOnly {
 	}
 	
 	public void findMap(String file) {
-		CRFModelFieldOnly crfModel = globalData.crfModel ;
 		GraphFieldOnly graph = new GraphFieldOnly(file, false, globalData) ;
 		
 		double largestExp = -1000000 ;
 		int mostLikelyLabelIndex = -1 ;
+		double[] exps = weightedFeatureFunctionSums(graph) ;
 		
 		for(int l=0;l<globalData.labels.size();l++) {
-			double exp = 0 ;
-			for(int f=0;f<crfModel.ffs.size();f++) {
-				LblFtrPair ff = crfModel.ffs.get(f) ;
-				if (ff.labelIndex == l && graph.node.features.contains(ff.feature)) {
-					exp = exp + crfModel.weights[f] ;
-				}
-			}
-			if (exp > largestExp) {
-				largestExp = exp ;
+			if (exps[l] > largestExp) {
+				largestExp = exps[l] ;
 				mostLikelyLabelIndex = l ;
 			}
 		}
@@ -65,20 +57,16 @@ public class MAPFieldOnly {
 	}
 	
 	public double[] probabilitiesForLabels(GraphFieldOnly graph) {
+		CRFModelFieldOnly crfModel;
 		double[] exps, prob;
-		LargeNumber[] potentials;
-		LargeNumber totalPotential ;
-		exps = weightedFeatureFunctionSums(graph);
-		potentials = new LargeNumber[globalData.labels.size()] ;
-		totalPotential = new LargeNumber(0.0, 0) ;
-		for(int i=0;i<exps.length;i++) {
-			potentials[i] = LargeNumber.makeLargeNumberUsingExponent(exps[i]) ;
-			totalPotential.plusEquals(potentials[i]) ;
-		}
-		prob = new double[exps.length] ;
-		for(int i=0;i<exps.length;i++) {
-			prob[i] = LargeNumber.divide(potentials[i], totalPotential) ;
-		}
+		int numLabels ;
+		crfModel = globalData.crfModel ;
+		numLabels = globalData.labels.size() ;
+		// the exponents are only needed until they are normalized, so a per thread buffer is used for them
+		exps = LogSpace.threadBuffer(numLabels) ;
+		crfModel.compiled().potentialExps(graph.activeFFs(), crfModel.weights, exps, numLabels) ;
+		prob = new double[numLabels] ;
+		LogSpace.normalize(exps, numLabels, prob) ;
 		return prob ;
 	}
 	
@@ -87,13 +75,7 @@ public class MAPFieldOnly {
 		double[] exps;
 		crfModel = globalData.crfModel ;
 		exps = new double[globalData.labels.size()] ;
-		for(int ffIndex = 0 ; ffIndex < crfModel.ffs.size(); ffIndex++) {
-			LblFtrPair ff;
-			ff = crfModel.ffs.get(ffIndex) ;
-			if (graph.node.features.contains(ff.feature)) {
-				exps[ff.labelIndex]+=crfModel.weights[ffIndex] ;
-			}
-		}
+		crfModel.compiled().potentialExps(graph.activeFFs(), crfModel.weights, exps) ;
 		return exps;
 	}
 	
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.math ;
+
+
+/**
+ * This class computes sums and ratios of exponentials in log space.
+ * A potential e^x is represented by its exponent x,
+ * so no LargeNumber has to be created for it.
+ * The sums are computed with the log-sum-exp trick,
+ * which subtracts the largest exponent before exponentiating
+ * and therefore neither overflows nor loses the largest terms.
+ */
+public class LogSpace {
+
+	private static final ThreadLocal<double[]> buffers = new ThreadLocal<double[]>() ;
+
+	/**
+	 * @param exps Exponents x_0 .. x_n-1
+	 * @param n Number of exponents to use from exps
+	 * @return log(e^x_0 + ... + e^x_n-1), or negative infinity if n is 0
+	 */
+	public static double logSumExp(double[] exps, int n) {
+		double max = Double.NEGATIVE_INFINITY ;
+		for(int i=0;i<n;i++) {
+			if (exps[i] > max) {
+				max = exps[i] ;
+			}
+		}
+		if (Double.isInfinite(max)) {
+			return max ;
+		}
+		double sum = 0.0 ;
+		for(int i=0;i<n;i++) {
+			sum+=Math.exp(exps[i] - max) ;
+		}
+		return max + Math.log(sum) ;
+	}
+
+	/**
+	 * @return log(e^a + e^b)
+	 */
+	public static double logAddExp(double a, double b) {
+		double max = Math.max(a, b) ;
+		if (Double.isInfinite(max)) {
+			return max ;
+		}
+		return max + Math.log(Math.exp(a - max) + Math.exp(b - max)) ;
+	}
+
+	/**
+	 * @param exps Exponents x_0 .. x_n-1
+	 * @param n Number of exponents to use from exps
+	 * @param probs The array in which e^x_i / (e^x_0 + ... + e^x_n-1) is returned for each i
+	 * @return The log of the normalizing sum, as returned by logSumExp
+	 */
+	public static double normalize(double[] exps, int n, double[] probs) {
+		double logZ = logSumExp(exps, n) ;
+		for(int i=0;i<n;i++) {
+			probs[i] = Math.exp(exps[i] - logZ) ;
+		}
+		return logZ ;
+	}
+
+	/**
+	 * @param size Minimum size of the buffer
+	 * @return A double array of at least the passed size that belongs to the calling thread.
+	 * It is reused by later calls from the same thread, so it must not be kept or returned to callers.
+	 */
+	public static double[] threadBuffer(int size) {
+		double[] buffer = buffers.get() ;
+		if (buffer == null || buffer.length < size) {
+			buffer = new double[Math.max(size, 64)] ;
+			buffers.set(buffer) ;
+		}
+		return buffer ;
+	}
+
+}
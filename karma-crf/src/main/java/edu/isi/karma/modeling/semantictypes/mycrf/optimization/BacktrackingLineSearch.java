@@ -78,6 +78,7 @@ public class BacktrackingLineSearch {
 			
 			for(int i=0;i<dim;i++) 
 				crfModel.weights[i] = currWeights[i] + lam1 * searchDir[i] ; 
+			globalData.weightsChanged() ;
 
 			for(GraphInterface graph : globalData.trainingGraphs) {
 				graph.computeGraphPotentialAndZ() ;
@@ -113,6 +114,7 @@ public class BacktrackingLineSearch {
 
 			if(tmplam < lammin) {       // lambda too small. can't move forward
 				System.arraycopy(currWeights, 0, crfModel.weights, 0, dim) ;
+				globalData.weightsChanged() ;
 				Prnt.prn("Returning because tmplam = " + tmplam + " < lammin = "+ lammin) ;
 				return 0.0 ; 
 			}
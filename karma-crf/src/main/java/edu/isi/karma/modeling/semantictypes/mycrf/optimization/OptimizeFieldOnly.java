@@ -21,9 +21,11 @@
 package edu.isi.karma.modeling.semantictypes.mycrf.optimization ;
 
 import edu.isi.karma.modeling.semantictypes.mycrf.common.Constants;
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelAbstract;
 import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataAbstract;
 import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
-import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.LabelGlobalDataFieldOnly;
 import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphInterface;
 import edu.isi.karma.modeling.semantictypes.mycrf.math.Matrix;
 
@@ -48,29 +50,48 @@ public class OptimizeFieldOnly {
 	}
 	
 	public void optimize(int maxIters) {
-		int dim = crfModel.ffs.size() ;
+		optimize(crfModel, globalData, maxIters) ;
+	}
+	
+	/**
+	 * Optimizes only the weights of the feature functions of one label, starting from their current values.
+	 * The weights of all other labels are kept as they are.
+	 * This is much cheaper than optimize() when a single label has been added or updated,
+	 * since the work only depends on the number of training graphs that the label's feature functions fire on.
+	 * 
+	 * @param labelIndex The label whose weights are optimized
+	 * @param maxIters Maximum number of iterations
+	 */
+	public void optimizeLabel(int labelIndex, int maxIters) {
+		LabelGlobalDataFieldOnly labelData = new LabelGlobalDataFieldOnly(globalData, labelIndex) ;
+		if (labelData.dimension() == 0) {
+			return ;
+		}
+		optimize(labelData.getLabelModel(), labelData, maxIters) ;
+	}
+	
+	private static void optimize(CRFModelAbstract model, GlobalDataAbstract data, int maxIters) {
+		int dim = model.weights.length ;
 		LBFGS lfbgs = new LBFGS(dim) ;
-		BacktrackingLineSearch lineSearch = new BacktrackingLineSearch(crfModel, globalData) ;
+		BacktrackingLineSearch lineSearch = new BacktrackingLineSearch(model, data) ;
 		double[] gradient = new double[dim] ;
 		double[] searchDir = new double[dim] ;
 		double errorValue = 0.0 ;
 		
-		for(GraphInterface graphI : globalData.trainingGraphs) {
-			GraphFieldOnly graph = (GraphFieldOnly) graphI ;
+		for(GraphInterface graph : data.trainingGraphs) {
 			graph.computeGraphPotentialAndZ() ;
 		}
 		for(int iter=1;iter<=maxIters;iter++) {
 //			Prnt.prn("Optimization iteration = " + iter) ;
-			errorValue = globalData.errorValue() ;
-			for(GraphInterface graphI : globalData.trainingGraphs) {
-				GraphFieldOnly graph = (GraphFieldOnly) graphI ;
-				graph.computeNodeMarginals() ;
+			errorValue = data.errorValue() ;
+			for(GraphInterface graph : data.trainingGraphs) {
+				graph.computeGraphPotentialAndZAndMarginals() ;
 			}
-			globalData.errorGradient(gradient) ;
+			data.errorGradient(gradient) ;
 			if (Matrix.norm(gradient) < Constants.EPSILON_GRADIENT) {
 				break ;
 			}
-			lfbgs.searchDir(crfModel.weights, gradient, searchDir) ;
+			lfbgs.searchDir(model.weights, gradient, searchDir) ;
 			double step = lineSearch.findStep(searchDir, gradient, errorValue) ;
 			if(step == 0) {
 				break ;
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler.ColumnFeature;
+
+/**
+ * Checks that a model read from its binary snapshot is the model that was
+ * written to the text file.
+ */
+public class TestCRFModelBinaryFile {
+
+	private File modelFile;
+	private File binaryFile;
+
+	@Before
+	public void setUp() throws Exception {
+		CRFModelHandler.setCRFModelHandlerEnabled(true);
+		modelFile = File.createTempFile("crf_model", ".txt");
+		binaryFile = CRFModelBinaryFile.binaryFileFor(modelFile.getPath());
+	}
+
+	@After
+	public void tearDown() {
+		modelFile.delete();
+		binaryFile.delete();
+	}
+
+	@Test
+	public void testBinaryFileHasSameModel() {
+		trainModel(12, 10);
+		assertTrue(binaryFile.isFile());
+
+		CRFModelHandler fromBinary = new CRFModelHandler();
+		assertTrue(fromBinary.readModelFromFile(modelFile.getPath()));
+		assertNotNull(fromBinary.unloadedExamples);
+		assertNull(fromBinary.globalData.trainingGraphs);
+
+		binaryFile.delete();
+		CRFModelHandler fromText = new CRFModelHandler();
+		assertTrue(fromText.readModelFromFile(modelFile.getPath()));
+		assertNull(fromText.unloadedExamples);
+		// reading the text file writes the binary snapshot again
+		assertTrue(binaryFile.isFile());
+
+		List<String> binaryLabels = new ArrayList<String>();
+		List<String> textLabels = new ArrayList<String>();
+		fromBinary.getLabels(binaryLabels);
+		fromText.getLabels(textLabels);
+		assertEquals(textLabels, binaryLabels);
+		assertEquals(fromText.globalData.crfModel.ffs.size(), fromBinary.globalData.crfModel.ffs.size());
+		for (int i = 0; i < fromText.globalData.crfModel.ffs.size(); i++) {
+			assertEquals(fromText.globalData.crfModel.ffs.get(i).labelIndex, fromBinary.globalData.crfModel.ffs.get(i).labelIndex);
+			assertEquals(fromText.globalData.crfModel.ffs.get(i).feature, fromBinary.globalData.crfModel.ffs.get(i).feature);
+			assertEquals(fromText.globalData.crfModel.weights[i], fromBinary.globalData.crfModel.weights[i], 0.0);
+		}
+
+		for (String label : textLabels) {
+			ArrayList<String> binaryExamples = new ArrayList<String>();
+			ArrayList<String> textExamples = new ArrayList<String>();
+			assertTrue(fromBinary.getExamplesForLabel(label, binaryExamples));
+			assertTrue(fromText.getExamplesForLabel(label, textExamples));
+			assertEquals(textExamples, binaryExamples);
+		}
+		// the examples were needed, so the training graphs have been created
+		assertNull(fromBinary.unloadedExamples);
+		assertEquals(fromText.globalData.trainingGraphs.size(), fromBinary.globalData.trainingGraphs.size());
+		assertEquals(fromText.labelToExamplesMap.get(textLabels.get(0)).get(0).columnFeatures,
+				fromBinary.labelToExamplesMap.get(textLabels.get(0)).get(0).columnFeatures);
+	}
+
+	@Test
+	public void testOutdatedBinaryFileIsNotUsed() throws Exception {
+		trainModel(3, 5);
+		assertTrue(binaryFile.isFile());
+		FileWriter writer = new FileWriter(modelFile, true);
+		writer.write("\n");
+		writer.close();
+
+		CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		assertNull(handler.unloadedExamples);
+		assertNotNull(handler.globalData.trainingGraphs);
+	}
+
+	@Test
+	public void testChangedContentWithSameLengthAndTimeIsDetected() throws Exception {
+		trainModel(3, 5);
+		assertTrue(binaryFile.isFile());
+		long lastModified = modelFile.lastModified();
+		String model = new String(Files.readAllBytes(modelFile.toPath()), "UTF-8");
+		// change the last digit of the last weight
+		int last = model.trim().length() - 1;
+		char digit = model.charAt(last);
+		assertTrue(Character.isDigit(digit));
+		String changed = model.substring(0, last) + (digit == '1' ? '2' : '1') + model.substring(last + 1);
+		Files.write(modelFile.toPath(), changed.getBytes("UTF-8"));
+		assertTrue(modelFile.setLastModified(lastModified));
+		assertEquals(model.length(), modelFile.length());
+		assertNull(CRFModelBinaryFile.open(modelFile.getPath()));
+
+		CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		assertNull(handler.unloadedExamples);
+	}
+
+	@Test
+	public void testOpenBinaryFileCanBeReplaced() throws Exception {
+		trainModel(3, 5);
+		CRFModelBinaryFile opened = CRFModelBinaryFile.open(modelFile.getPath());
+		assertNotNull(opened);
+		// the handler replaces the snapshot when it saves the model again
+		trainModel(4, 5);
+		assertNotNull(CRFModelBinaryFile.open(modelFile.getPath()));
+		try {
+			opened.readExamples();
+			fail("The examples of a replaced snapshot were read");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testModelReadFromBinaryFileCanBeTrained() {
+		trainModel(4, 5);
+		CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		assertNotNull(handler.unloadedExamples);
+
+		List<String> examples = new ArrayList<String>();
+		examples.add("abc-123");
+		examples.add("abd-456");
+		assertTrue(handler.addOrUpdateLabel("newLabel", examples, null));
+		assertTrue(handler.flushModel());
+
+		CRFModelHandler reread = new CRFModelHandler();
+		assertTrue(reread.readModelFromFile(modelFile.getPath()));
+		assertNotNull(reread.unloadedExamples);
+		List<String> labels = new ArrayList<String>();
+		reread.getLabels(labels);
+		assertEquals(5, labels.size());
+		assertTrue(labels.contains("newLabel"));
+	}
+
+	private void trainModel(int numLabels, int numExamples) {
+		CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		Random random = new Random(numLabels);
+		for (int l = 0; l < numLabels; l++) {
+			List<String> examples = new ArrayList<String>();
+			String prefix = Integer.toString(l * 7919, 36);
+			for (int i = 0; i < numExamples; i++) {
+				examples.add(prefix + (l % 2 == 0 ? "-" : " ") + random.nextInt(1000));
+			}
+			Map<ColumnFeature, Collection<String>> columnFeatures = new HashMap<ColumnFeature, Collection<String>>();
+			List<String> columnName = new ArrayList<String>();
+			columnName.add("column " + l);
+			columnFeatures.put(ColumnFeature.ColumnHeaderName, columnName);
+			assertTrue(handler.addOrUpdateLabel("label" + l, examples, columnFeatures));
+		}
+		assertTrue(handler.flushModel());
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a model file that cannot be written is reported to the caller,
+ * whether the model is saved in the background or before the change returns.
+ */
+public class TestCRFModelSave {
+
+	private File modelFile;
+
+	@Before
+	public void setUp() throws Exception {
+		CRFModelHandler.setCRFModelHandlerEnabled(true);
+		modelFile = File.createTempFile("crf_model", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		modelFile.delete();
+		CRFModelBinaryFile.binaryFileFor(modelFile.getPath()).delete();
+	}
+
+	@Test
+	public void testSynchronousSaveFailureIsReturned() {
+		CRFModelHandler handler = new CRFModelHandler();
+		handler.setDeferredSave(false);
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		assertTrue(handler.addOrUpdateLabel("label0", examples("a"), null));
+		assertTrue(handler.addOrUpdateLabel("label1", examples("b"), null));
+
+		makeUnwritable();
+		assertFalse(handler.removeLabel("label0"));
+		// like before the saves were deferred, the model has to be read again
+		assertNull(handler.getModelFilePath());
+		assertFalse(handler.addOrUpdateLabel("label2", examples("c"), null));
+	}
+
+	@Test
+	public void testDeferredSaveFailureIsReportedByFlush() {
+		CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		assertTrue(handler.addOrUpdateLabel("label0", examples("a"), null));
+		assertTrue(handler.flushModel());
+
+		makeUnwritable();
+		assertTrue(handler.addOrUpdateLabel("label1", examples("b"), null));
+		assertFalse(handler.flushModel());
+		assertFalse(handler.addOrUpdateLabel("label2", examples("c"), null));
+	}
+
+	// A directory cannot be opened as the model file, also by a user that can write anywhere
+	private void makeUnwritable() {
+		assertTrue(modelFile.delete());
+		assertTrue(modelFile.mkdir());
+	}
+
+	private static List<String> examples(String prefix) {
+		List<String> examples = new ArrayList<String>();
+		for (int i = 0; i < 5; i++) {
+			examples.add(prefix + "-" + (i * 37));
+		}
+		return examples;
+	}
+}
@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelSnapshot;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphInterface;
+
+/**
+ * Checks that predictions made while labels are trained each see one whole
+ * snapshot of the model, never a model that is half updated.
+ */
+public class TestCRFModelSnapshot {
+
+	private static final int NUM_PREDICTORS = 4;
+	private static final int NUM_LABELS = 6;
+
+	private File modelFile;
+
+	@Before
+	public void setUp() throws Exception {
+		CRFModelHandler.setCRFModelHandlerEnabled(true);
+		modelFile = File.createTempFile("crf_model", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		modelFile.delete();
+		CRFModelBinaryFile.binaryFileFor(modelFile.getPath()).delete();
+	}
+
+	@Test
+	public void testPredictionsDuringTrainingSeeOneSnapshot() throws Exception {
+		final CRFModelHandler handler = new CRFModelHandler();
+		assertTrue(handler.readModelFromFile(modelFile.getPath()));
+		for (int l = 0; l < NUM_LABELS; l++) {
+			assertTrue(handler.addOrUpdateLabel("label" + l, examples(l, 0), null));
+		}
+		final List<Collection<String>> featureSets = new ArrayList<Collection<String>>();
+		for (GraphInterface graph : handler.globalData.trainingGraphs) {
+			featureSets.add(new ArrayList<String>(((GraphFieldOnly) graph).node.features));
+		}
+		final List<String> queries = examples(0, 1);
+
+		final AtomicBoolean training = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_PREDICTORS);
+		try {
+			List<Future<Integer>> predictors = new ArrayList<Future<Integer>>();
+			for (int p = 0; p < NUM_PREDICTORS; p++) {
+				predictors.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						int numChecks = 0;
+						do {
+							// A snapshot gives the same probabilities while the model is trained
+							CRFModelSnapshot model = handler.snapshot;
+							double[][] probabilities = new double[featureSets.size()][];
+							for (int i = 0; i < featureSets.size(); i++) {
+								probabilities[i] = model.probabilitiesForLabels(featureSets.get(i));
+								assertEquals(model.numLabels(), probabilities[i].length);
+								assertEquals(1.0, sum(probabilities[i]), 1e-9);
+							}
+							for (int i = 0; i < featureSets.size(); i++) {
+								assertArrayEquals(probabilities[i], model.probabilitiesForLabels(featureSets.get(i)), 0.0);
+							}
+
+							List<String> predictedLabels = new ArrayList<String>();
+							List<Double> confidenceScores = new ArrayList<Double>();
+							assertTrue(handler.predictLabelForExamples(queries, Integer.MAX_VALUE,
+									predictedLabels, confidenceScores, null, null));
+							assertTrue(predictedLabels.size() >= NUM_LABELS);
+							assertEquals(predictedLabels.size(), new HashSet<String>(predictedLabels).size());
+							double total = 0.0;
+							for (double score : confidenceScores) {
+								total += score;
+							}
+							assertEquals(1.0, total, 1e-9);
+							numChecks++;
+						} while (training.get());
+						return numChecks;
+					}
+				}));
+			}
+
+			// New labels, and more examples for the existing ones
+			for (int l = 0; l < 2 * NUM_LABELS; l++) {
+				assertTrue(handler.addOrUpdateLabel("label" + l, examples(l, 2), null));
+			}
+			training.set(false);
+			for (Future<Integer> predictor : predictors) {
+				assertTrue(predictor.get() > 0);
+			}
+		} finally {
+			training.set(false);
+			executor.shutdownNow();
+		}
+		assertTrue(handler.flushModel());
+		List<String> labels = new ArrayList<String>();
+		handler.getLabels(labels);
+		assertEquals(2 * NUM_LABELS, labels.size());
+	}
+
+	private static double sum(double[] values) {
+		double total = 0.0;
+		for (double value : values) {
+			total += value;
+		}
+		return total;
+	}
+
+	private static List<String> examples(int label, int round) {
+		List<String> examples = new ArrayList<String>();
+		String prefix = Integer.toString(label * 7919, 36);
+		for (int i = 0; i < 8; i++) {
+			examples.add(prefix + (label % 2 == 0 ? "-" : " ") + (round * 100 + i * 13));
+		}
+		return examples;
+	}
+}
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.crfmodelhandler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.sl.Lexer;
+import edu.isi.karma.modeling.semantictypes.sl.Part;
+import edu.isi.karma.modeling.semantictypes.sl.RegexFeatureExtractor;
+
+/**
+ * Checks that the feature cache returns the features the lexer and the regex
+ * feature extractor produce, and that it counts and evicts as expected.
+ */
+public class TestFeatureCache {
+
+	@Test
+	public void testSameFeaturesAsExtractor() {
+		FeatureCache cache = new FeatureCache();
+		String[] values = { "CA", "90292", "213-555-1234", "john.doe@isi.edu", "12.50", "Jan 5 2001", "." };
+		for (int pass = 0; pass < 2; pass++) {
+			for (String value : values) {
+				HashSet<String> expected = new HashSet<String>();
+				for (Part token : Lexer.tokenizeField(value)) {
+					expected.addAll(RegexFeatureExtractor.getTokenFeatures(token));
+				}
+				HashSet<String> actual = new HashSet<String>();
+				cache.addFeatures(value, actual);
+				assertEquals(expected, actual);
+			}
+		}
+		assertEquals(values.length, cache.getMissCount());
+		assertEquals(values.length, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRate(), 0.0);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedValueIsEvicted() {
+		FeatureCache cache = new FeatureCache(2);
+		HashSet<String> features = new HashSet<String>();
+		cache.addFeatures("a", features);
+		cache.addFeatures("b", features);
+		// use "a" again, so that "b" is the least recently used value
+		cache.addFeatures("a", features);
+		cache.addFeatures("c", features);
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getMissCount());
+
+		cache.addFeatures("a", features);
+		assertEquals(2, cache.getHitCount());
+		cache.addFeatures("b", features);
+		assertEquals(4, cache.getMissCount());
+	}
+}
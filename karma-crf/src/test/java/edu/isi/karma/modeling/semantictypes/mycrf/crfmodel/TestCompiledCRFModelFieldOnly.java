@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.crfmodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.map.MAPFieldOnly;
+
+/**
+ * Checks that the inverted index gives the same sums and predictions as the
+ * scan over all feature functions that it replaced.
+ */
+public class TestCompiledCRFModelFieldOnly {
+
+	private static final int NUM_LABELS = 8;
+
+	@Test
+	public void testIndexMatchesLinearScan() {
+		Random random = new Random(23);
+		GlobalDataFieldOnly globalData = randomModel(random);
+		CRFModelFieldOnly crfModel = globalData.crfModel;
+		MAPFieldOnly map = new MAPFieldOnly(globalData);
+		for (int g = 0; g < 200; g++) {
+			GraphFieldOnly graph = new GraphFieldOnly("value" + g, null, randomFeatures(random), globalData);
+			double[] expected = linearScan(crfModel, graph);
+			double[] indexed = map.weightedFeatureFunctionSums(graph);
+			for (int l = 0; l < NUM_LABELS; l++) {
+				// The weights are added in the same order, so the sums are the same
+				assertEquals(expected[l], indexed[l], 0.0);
+			}
+			assertEquals(mostLikelyLabel(expected), mostLikelyLabel(indexed));
+
+			double[] byFeature = new double[NUM_LABELS];
+			crfModel.compiled().potentialExps(graph.node.features, crfModel.weights, byFeature, NUM_LABELS);
+			assertEquals(mostLikelyLabel(expected), mostLikelyLabel(byFeature));
+		}
+	}
+
+	@Test
+	public void testChangedFeatureFunctionsAreRecompiled() {
+		Random random = new Random(29);
+		GlobalDataFieldOnly globalData = randomModel(random);
+		CRFModelFieldOnly crfModel = globalData.crfModel;
+		CompiledCRFModelFieldOnly compiled = crfModel.compiled();
+		assertSame(compiled, crfModel.compiled());
+
+		// Same list and same size, but the first feature function now has another label
+		LblFtrPair first = crfModel.ffs.get(0);
+		crfModel.ffs.set(0, new LblFtrPair((first.labelIndex + 1) % NUM_LABELS, first.feature));
+		crfModel.ffsChanged();
+		CompiledCRFModelFieldOnly recompiled = crfModel.compiled();
+		assertNotSame(compiled, recompiled);
+		assertEquals((first.labelIndex + 1) % NUM_LABELS, recompiled.labelOfFF(0));
+
+		GraphFieldOnly graph = new GraphFieldOnly("value", null, randomFeatures(random), globalData);
+		double[] expected = linearScan(crfModel, graph);
+		double[] indexed = new MAPFieldOnly(globalData).weightedFeatureFunctionSums(graph);
+		for (int l = 0; l < NUM_LABELS; l++) {
+			assertEquals(expected[l], indexed[l], 0.0);
+		}
+	}
+
+	// The computation of MAPFieldOnly before the index
+	private static double[] linearScan(CRFModelFieldOnly crfModel, GraphFieldOnly graph) {
+		double[] exps = new double[NUM_LABELS];
+		for (int f = 0; f < crfModel.ffs.size(); f++) {
+			LblFtrPair ff = crfModel.ffs.get(f);
+			if (graph.node.features.contains(ff.feature)) {
+				exps[ff.labelIndex] += crfModel.weights[f];
+			}
+		}
+		return exps;
+	}
+
+	private static int mostLikelyLabel(double[] exps) {
+		int mostLikely = 0;
+		for (int l = 1; l < NUM_LABELS; l++) {
+			if (exps[l] > exps[mostLikely]) {
+				mostLikely = l;
+			}
+		}
+		return mostLikely;
+	}
+
+	private static ArrayList<String> randomFeatures(Random random) {
+		ArrayList<String> features = new ArrayList<String>();
+		for (int f = 0; f < 100; f++) {
+			if (random.nextInt(6) == 0) {
+				features.add("feature" + f);
+			}
+		}
+		features.add("unused" + random.nextInt(10));
+		return features;
+	}
+
+	private static GlobalDataFieldOnly randomModel(Random random) {
+		GlobalDataFieldOnly globalData = new GlobalDataFieldOnly();
+		for (int l = 0; l < NUM_LABELS; l++) {
+			globalData.labels.add("label" + l);
+		}
+		CRFModelFieldOnly crfModel = new CRFModelFieldOnly(globalData);
+		crfModel.ffs = new ArrayList<LblFtrPair>();
+		for (int l = 0; l < NUM_LABELS; l++) {
+			for (int f = 0; f < 100; f += 1 + random.nextInt(3)) {
+				crfModel.ffs.add(new LblFtrPair(l, "feature" + f));
+			}
+		}
+		crfModel.weights = new double[crfModel.ffs.size()];
+		for (int f = 0; f < crfModel.weights.length; f++) {
+			crfModel.weights[f] = random.nextGaussian();
+		}
+		globalData.crfModel = crfModel;
+		return globalData;
+	}
+}
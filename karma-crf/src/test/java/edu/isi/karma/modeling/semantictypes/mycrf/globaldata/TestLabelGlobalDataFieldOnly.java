@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.globaldata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphInterface;
+import edu.isi.karma.modeling.semantictypes.mycrf.optimization.OptimizeFieldOnly;
+
+/**
+ * Checks that the single label training problem is the full training problem
+ * with the weights of all other labels fixed.
+ */
+public class TestLabelGlobalDataFieldOnly {
+
+	private static final int NUM_LABELS = 8;
+	private static final double TOLERANCE = 1e-9;
+
+	@Test
+	public void testGradientIsFullGradientOfLabelWeights() {
+		GlobalDataFieldOnly globalData = randomModel(new Random(5));
+		int labelIndex = 3;
+		LabelGlobalDataFieldOnly labelData = new LabelGlobalDataFieldOnly(globalData, labelIndex);
+		assertTrue(labelData.dimension() > 0);
+
+		double[] fullGradient = new double[globalData.crfModel.weights.length];
+		for (GraphInterface graph : globalData.trainingGraphs) {
+			graph.computeGraphPotentialAndZAndMarginals();
+		}
+		globalData.errorGradient(fullGradient);
+
+		double[] labelGradient = new double[labelData.dimension()];
+		for (GraphInterface graph : labelData.trainingGraphs) {
+			graph.computeGraphPotentialAndZAndMarginals();
+		}
+		labelData.errorGradient(labelGradient);
+
+		for (int i = 0; i < labelData.dimension(); i++) {
+			assertEquals(fullGradient[labelData.ffIndices[i]], labelGradient[i], TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testErrorDiffersFromFullErrorByAConstant() {
+		Random random = new Random(11);
+		GlobalDataFieldOnly globalData = randomModel(random);
+		int labelIndex = 5;
+		LabelGlobalDataFieldOnly labelData = new LabelGlobalDataFieldOnly(globalData, labelIndex);
+
+		double offset = fullError(globalData) - labelError(labelData);
+		for (int trial = 0; trial < 5; trial++) {
+			for (int i = 0; i < labelData.dimension(); i++) {
+				labelData.getLabelModel().weights[i] += random.nextGaussian();
+			}
+			labelData.weightsChanged();
+			assertEquals(offset, fullError(globalData) - labelError(labelData), TOLERANCE);
+		}
+	}
+
+	@Test
+	public void testOptimizeLabelOnlyChangesWeightsOfLabel() {
+		GlobalDataFieldOnly globalData = randomModel(new Random(17));
+		int labelIndex = 2;
+		double[] before = globalData.crfModel.weights.clone();
+		double errorBefore = fullError(globalData);
+
+		new OptimizeFieldOnly(globalData.crfModel, globalData).optimizeLabel(labelIndex, 5);
+
+		boolean changed = false;
+		for (int f = 0; f < before.length; f++) {
+			if (globalData.crfModel.ffs.get(f).labelIndex != labelIndex) {
+				assertEquals(before[f], globalData.crfModel.weights[f], 0.0);
+			} else if (before[f] != globalData.crfModel.weights[f]) {
+				changed = true;
+			}
+		}
+		assertTrue(changed);
+		assertTrue(fullError(globalData) < errorBefore);
+	}
+
+	private static double fullError(GlobalDataFieldOnly globalData) {
+		for (GraphInterface graph : globalData.trainingGraphs) {
+			graph.computeGraphPotentialAndZ();
+		}
+		return globalData.errorValue();
+	}
+
+	private static double labelError(LabelGlobalDataFieldOnly labelData) {
+		for (GraphInterface graph : labelData.trainingGraphs) {
+			graph.computeGraphPotentialAndZ();
+		}
+		return labelData.errorValue();
+	}
+
+	private static GlobalDataFieldOnly randomModel(Random random) {
+		GlobalDataFieldOnly globalData = new GlobalDataFieldOnly();
+		for (int l = 0; l < NUM_LABELS; l++) {
+			globalData.labels.add("label" + l);
+		}
+		CRFModelFieldOnly crfModel = new CRFModelFieldOnly(globalData);
+		crfModel.ffs = new ArrayList<LblFtrPair>();
+		for (int l = 0; l < NUM_LABELS; l++) {
+			for (int f = 0; f < 40; f += 1 + random.nextInt(3)) {
+				crfModel.ffs.add(new LblFtrPair(l, "feature" + f));
+			}
+		}
+		crfModel.weights = new double[crfModel.ffs.size()];
+		for (int f = 0; f < crfModel.weights.length; f++) {
+			crfModel.weights[f] = random.nextGaussian();
+		}
+		globalData.crfModel = crfModel;
+		globalData.trainingGraphs = new ArrayList<GraphInterface>();
+		for (int g = 0; g < 60; g++) {
+			ArrayList<String> features = new ArrayList<String>();
+			for (int f = 0; f < 40; f++) {
+				if (random.nextInt(5) == 0) {
+					features.add("feature" + f);
+				}
+			}
+			features.add("unused" + g);
+			globalData.trainingGraphs.add(new GraphFieldOnly("example" + g, "label" + (g % NUM_LABELS), features,
+					globalData));
+		}
+		return globalData;
+	}
+}
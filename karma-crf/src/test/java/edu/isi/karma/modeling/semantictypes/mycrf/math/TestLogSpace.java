@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.semantictypes.mycrf.math;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.isi.karma.modeling.semantictypes.mycrf.crfmodel.CRFModelFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.fieldonly.LblFtrPair;
+import edu.isi.karma.modeling.semantictypes.mycrf.globaldata.GlobalDataFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.graph.GraphFieldOnly;
+import edu.isi.karma.modeling.semantictypes.mycrf.map.MAPFieldOnly;
+
+/**
+ * Checks that the log space computation of the partition function and the
+ * marginals gives the same numbers as the LargeNumber computation it replaced.
+ */
+public class TestLogSpace {
+
+	private static final double RELATIVE_TOLERANCE = 1e-9;
+
+	@Test
+	public void testLogSumExpMatchesLargeNumber() {
+		Random random = new Random(42);
+		// small exponents, exponents of trained weights and exponents beyond the range of a double
+		double[] scales = { 1.0, 50.0, 2000.0 };
+		for (double scale : scales) {
+			for (int trial = 0; trial < 200; trial++) {
+				double[] exps = randomExps(random, 1 + random.nextInt(40), scale);
+				double expected = LargeNumber.log(largeNumberZ(exps));
+				double actual = LogSpace.logSumExp(exps, exps.length);
+				assertClose(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testNormalizeMatchesLargeNumber() {
+		Random random = new Random(7);
+		double[] scales = { 1.0, 50.0, 2000.0 };
+		for (double scale : scales) {
+			for (int trial = 0; trial < 200; trial++) {
+				double[] exps = randomExps(random, 1 + random.nextInt(40), scale);
+				LargeNumber z = largeNumberZ(exps);
+				double[] probs = new double[exps.length];
+				LogSpace.normalize(exps, exps.length, probs);
+				double total = 0.0;
+				for (int i = 0; i < exps.length; i++) {
+					double expected = LargeNumber.divide(LargeNumber.makeLargeNumberUsingExponent(exps[i]), z);
+					// LargeNumber gives up on ratios below 10^-300, log space keeps them until they underflow
+					if (expected != 0.0) {
+						assertClose(expected, probs[i]);
+					}
+					else {
+						assertTrue(probs[i] < 1e-290);
+					}
+					total += probs[i];
+				}
+				assertEquals(1.0, total, 1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testLogSumExpOfNoTerms() {
+		assertEquals(Double.NEGATIVE_INFINITY, LogSpace.logSumExp(new double[0], 0), 0.0);
+	}
+
+	@Test
+	public void testThreadBufferIsReused() {
+		double[] buffer = LogSpace.threadBuffer(10);
+		assertTrue(buffer.length >= 10);
+		assertTrue(buffer == LogSpace.threadBuffer(5));
+		assertTrue(LogSpace.threadBuffer(buffer.length + 1).length > buffer.length);
+	}
+
+	@Test
+	public void testGraphMatchesLargeNumber() {
+		Random random = new Random(3);
+		GlobalDataFieldOnly globalData = new GlobalDataFieldOnly();
+		int numLabels = 12;
+		for (int l = 0; l < numLabels; l++) {
+			globalData.labels.add("label" + l);
+		}
+		CRFModelFieldOnly crfModel = new CRFModelFieldOnly(globalData);
+		crfModel.ffs = new ArrayList<LblFtrPair>();
+		for (int l = 0; l < numLabels; l++) {
+			for (int f = 0; f < 30; f++) {
+				crfModel.ffs.add(new LblFtrPair(l, "feature" + random.nextInt(60)));
+			}
+		}
+		crfModel.weights = randomExps(random, crfModel.ffs.size(), 20.0);
+		globalData.crfModel = crfModel;
+		MAPFieldOnly map = new MAPFieldOnly(globalData);
+
+		for (int trial = 0; trial < 100; trial++) {
+			ArrayList<String> features = new ArrayList<String>();
+			for (int f = 0; f < 10; f++) {
+				features.add("feature" + random.nextInt(60));
+			}
+			int labelIndex = random.nextInt(numLabels);
+			GraphFieldOnly graph = new GraphFieldOnly("example", "label" + labelIndex, features, globalData);
+			graph.computeGraphPotentialAndZAndMarginals();
+
+			double[] exps = new double[numLabels];
+			for (int l = 0; l < numLabels; l++) {
+				exps[l] = graph.potentialExpForLabelIndex(l);
+			}
+			LargeNumber z = largeNumberZ(exps);
+			LargeNumber potential = LargeNumber.makeLargeNumberUsingExponent(exps[labelIndex]);
+			assertClose(Math.log(LargeNumber.divide(potential, z)), graph.logLikelihood());
+
+			double[] probs = map.probabilitiesForLabels(graph);
+			for (int l = 0; l < numLabels; l++) {
+				double expected = LargeNumber.divide(LargeNumber.makeLargeNumberUsingExponent(exps[l]), z);
+				assertClose(expected, probs[l]);
+			}
+		}
+	}
+
+	private static double[] randomExps(Random random, int n, double scale) {
+		double[] exps = new double[n];
+		for (int i = 0; i < n; i++) {
+			exps[i] = (2 * random.nextDouble() - 1) * scale;
+		}
+		return exps;
+	}
+
+	private static LargeNumber largeNumberZ(double[] exps) {
+		LargeNumber z = new LargeNumber(0.0, 0);
+		for (double exp : exps) {
+			z.plusEquals(LargeNumber.makeLargeNumberUsingExponent(exp));
+		}
+		return z;
+	}
+
+	private static void assertClose(double expected, double actual) {
+		double tolerance = RELATIVE_TOLERANCE * Math.max(1.0, Math.abs(expected));
+		assertEquals(expected, actual, tolerance);
+	}
+}
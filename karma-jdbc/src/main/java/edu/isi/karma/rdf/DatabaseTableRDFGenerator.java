@@ -21,24 +21,40 @@
 
 package edu.isi.karma.rdf;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import edu.isi.karma.kr2rml.ErrorReport;
-import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
 import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
 import edu.isi.karma.kr2rml.mapping.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.HTable;
 import edu.isi.karma.rep.RepFactory;
@@ -64,6 +80,25 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 	private String tablename;
 	private String encoding;
 	private static int DATABASE_TABLE_FETCH_SIZE = 10000;
+	private int rowsPerChunk = DATABASE_TABLE_FETCH_SIZE;
+
+	/**
+	 * How the rows of a table are split between the connections reading it
+	 */
+	public enum PartitionMethod {
+		/**
+		 * Ranges of the same width between the smallest and largest key
+		 */
+		RANGE,
+		/**
+		 * Remainder of the division of the key by the number of partitions
+		 */
+		MODULO
+	}
+
+	private String partitionColumn;
+	private int numPartitions = 1;
+	private PartitionMethod partitionMethod = PartitionMethod.RANGE;
 	
 	public DatabaseTableRDFGenerator(DBType dbType, String hostname,
 			int portnumber, String username, String password,
@@ -78,6 +113,30 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		this.tablename = tablename;
 		this.encoding = encoding;
 	}
+
+	/**
+	 * Read the table over numPartitions connections in parallel, each one
+	 * selecting the rows of one partition of the values of an integer column,
+	 * and generate the RDF of the rows as they are fetched. The RDF of every
+	 * partition is written after the RDF of the previous one, in the order
+	 * its rows were fetched.
+	 */
+	public void setPartitioning(String partitionColumn, int numPartitions, PartitionMethod partitionMethod) {
+		this.partitionColumn = partitionColumn;
+		this.numPartitions = numPartitions;
+		this.partitionMethod = partitionMethod;
+	}
+
+	/**
+	 * Number of rows in every worksheet the RDF is generated from
+	 */
+	public void setRowsPerChunk(int rowsPerChunk) {
+		this.rowsPerChunk = rowsPerChunk;
+	}
+
+	protected AbstractJDBCUtil getJDBCUtil() {
+		return JDBCUtilFactory.getInstance(dbType);
+	}
 	
 	/*
 	 * Only warn about SQL exception once. //Pedro //TODO: this whole code is copy-pasted
@@ -87,16 +146,39 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 			throws IOException, JSONException, KarmaException, SQLException, ClassNotFoundException {
 		logger.debug("Generating RDF...");
 
+		// Parse and plan the model once for all the chunks
 		WorksheetR2RMLJenaModelParser parserTest = new WorksheetR2RMLJenaModelParser(id);
 		KR2RMLMapping mapping = parserTest.parse();
-		
-		AbstractJDBCUtil dbUtil = JDBCUtilFactory.getInstance(dbType);
+		generateRDF(pw, new CompiledKR2RMLMapping(mapping));
+	}
+
+	/**
+	 * Generates the RDF of the table with a mapping that has already been
+	 * parsed, e.g. one that is shared by several tables.
+	 */
+	public void generateRDF(PrintWriter pw, CompiledKR2RMLMapping compiledMapping)
+			throws IOException, JSONException, KarmaException, SQLException, ClassNotFoundException {
+		checkOutputFormat();
+		try {
+			generateTableRDF(pw, compiledMapping);
+		} finally {
+			shutdownBatchExecutor();
+		}
+	}
+
+	private void generateTableRDF(PrintWriter pw, CompiledKR2RMLMapping compiledMapping)
+			throws IOException, JSONException, KarmaException, SQLException, ClassNotFoundException {
+		AbstractJDBCUtil dbUtil = getJDBCUtil();
+		if (partitionColumn != null && numPartitions > 1) {
+			generatePartitionedRDF(pw, compiledMapping, dbUtil);
+			return;
+		}
 		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
 		conn.setAutoCommit(false);
 		String query = "Select * FROM " + dbUtil.escapeTablename(tablename);
 		java.sql.Statement stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY,
 				java.sql.ResultSet.CONCUR_READ_ONLY);
-		stmt.setFetchSize(DATABASE_TABLE_FETCH_SIZE);
+		stmt.setFetchSize(rowsPerChunk);
 		
 		ResultSet r = stmt.executeQuery(query);
 		ResultSetMetaData meta = r.getMetaData();;
@@ -115,14 +197,12 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		int counter = 0;
 		
 		while (r.next()) {
-			// Generate RDF and create a new worksheet for every DATABASE_TABLE_FETCH_SIZE rows
-			if(counter%DATABASE_TABLE_FETCH_SIZE == 0 && counter != 0) {
-				generateRDFFromWorksheet(wk, workspace, mapping, pw);
+			// Generate RDF and create a new worksheet for every rowsPerChunk rows
+			if(counter%rowsPerChunk == 0 && counter != 0) {
+				generateRDFFromWorksheet(wk, workspace, compiledMapping, pw);
 				logger.debug("Done for " + counter + " rows ..." );
 			    removeWorkspace(workspace);
 			    
-			    parserTest = new WorksheetR2RMLJenaModelParser(id);
-				mapping = parserTest.parse();
 			    workspace = initializeWorkspace();
 			    factory = workspace.getFactory();
 				wk = factory.createWorksheet(tablename, workspace, encoding);
@@ -134,26 +214,13 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 	        Table dataTable = wk.getDataTable();
 	        Row row = dataTable.addRow(factory);
 			for (int i = 1; i <= meta.getColumnCount(); i++) {
-				String val;
-				try {
-					val = r.getString(i);
-				} catch (SQLException e) {
-					if (!warnedSqlException) {
-						//logger.warn(e.getMessage());
-						warnedSqlException = true;
-					}
-					val = "SQLException";
-				}
-				if(null == val)
-				{
-					val = "";
-				}
-				row.setValue(headersList.get(i-1), val, factory);
+				row.setValue(headersList.get(i-1), getValue(r, i), factory);
 			}
 			counter++;
 		}
 		
-		generateRDFFromWorksheet(wk, workspace, mapping, pw);
+		generateRDFFromWorksheet(wk, workspace, compiledMapping, pw);
+		removeWorkspace(workspace);
 		
 		// Releasing all the resources
 		r.close();
@@ -162,24 +229,271 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		logger.debug("done");
 	}
 
-	private void generateRDFFromWorksheet(Worksheet wk, 
-			Workspace workspace, KR2RMLMapping mapping, PrintWriter pw) 
-					throws IOException, JSONException, KarmaException {
-		// Generate RDF for the remaining rows
-		// Gets all the errors generated during the RDF generation
-		ErrorReport errorReport = new ErrorReport();
-		
-		this.applyHistoryToWorksheet(workspace, wk, mapping);
+	private static String getValue(ResultSet r, int column) {
+		String val;
+		try {
+			val = r.getString(column);
+		} catch (SQLException e) {
+			if (!warnedSqlException) {
+				//logger.warn(e.getMessage());
+				warnedSqlException = true;
+			}
+			val = "SQLException";
+		}
+		if(null == val)
+		{
+			val = "";
+		}
+		return val;
+	}
+
+	/**
+	 * The rows of a partition are read by one thread per partition and put in
+	 * a bounded queue as chunks of rowsPerChunk rows; a pool of as many threads
+	 * takes them and generates their RDF, so that fetching the rows and
+	 * generating the RDF overlap. The RDF of the first partition is written to
+	 * pw as it is generated, the RDF of the other ones is kept in temporary
+	 * files until the previous partitions are done.
+	 */
+	private void generatePartitionedRDF(PrintWriter pw, final CompiledKR2RMLMapping compiledMapping,
+			final AbstractJDBCUtil dbUtil) throws IOException, KarmaException, SQLException, ClassNotFoundException {
+		if (rdfWriter != null) {
+			throw new KarmaException("The RDF of a partitioned table can only be written to a PrintWriter");
+		}
+		final List<String> columnNames;
+		List<String> conditions = new ArrayList<String>(numPartitions);
+		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
+		try {
+			columnNames = dbUtil.getColumnNames(dBorSIDName, tablename, conn);
+			if (partitionMethod == PartitionMethod.MODULO) {
+				for (int i = 0; i < numPartitions; i++) {
+					conditions.add(dbUtil.getModuloPartitionCondition(partitionColumn, i, numPartitions));
+				}
+			} else {
+				long[] range = dbUtil.getKeyRange(tablename, partitionColumn, conn);
+				long min = range != null ? range[0] : 0;
+				long max = range != null ? range[1] : 0;
+				// Ceiling of the width so that the partitions cover [min, max]
+				long width = Math.max(1, (max - min) / numPartitions + 1);
+				for (int i = 0; i < numPartitions; i++) {
+					conditions.add(dbUtil.getRangePartitionCondition(partitionColumn,
+							min + i * width, min + (i + 1) * width, i == 0, i == numPartitions - 1));
+				}
+			}
+		} finally {
+			conn.close();
+		}
+		logger.info("Generating RDF of " + tablename + " over " + numPartitions + " connections");
+
+		final BlockingQueue<RowChunk> queue = new ArrayBlockingQueue<RowChunk>(numPartitions);
+		final PartitionOutput[] outputs = new PartitionOutput[numPartitions];
+		final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+		ExecutorService readers = Executors.newFixedThreadPool(numPartitions);
+		ExecutorService workers = Executors.newFixedThreadPool(numPartitions);
+		try {
+			for (int i = 0; i < numPartitions; i++) {
+				outputs[i] = i == 0 ? new PartitionOutput(pw) : new PartitionOutput(File.createTempFile("karma-partition", ".rdf"));
+			}
+			for (int i = 0; i < numPartitions; i++) {
+				final int partition = i;
+				final String query = dbUtil.getPartitionQuery(tablename, conditions.get(i));
+				readers.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						try {
+							readPartition(dbUtil, query, partition, queue, failure);
+						} catch (Exception e) {
+							failure.compareAndSet(null, e);
+						}
+						return null;
+					}
+				});
+			}
+			for (int i = 0; i < numPartitions; i++) {
+				workers.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						RowChunk chunk;
+						while ((chunk = queue.take()) != RowChunk.END) {
+							if (failure.get() != null) {
+								continue;
+							}
+							try {
+								outputs[chunk.partition].write(chunk.index,
+										generateRDF(chunk.rows, columnNames, compiledMapping));
+							} catch (Exception e) {
+								failure.compareAndSet(null, e);
+							}
+						}
+						return null;
+					}
+				});
+			}
+
+			readers.shutdown();
+			while (!readers.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.debug("Waiting for the rows of " + tablename + " ...");
+			}
+			for (int i = 0; i < numPartitions; i++) {
+				queue.put(RowChunk.END);
+			}
+			workers.shutdown();
+			while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.debug("Waiting for the RDF generation to finish ...");
+			}
 
-		// RDF generation object initialization
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(wk,
-				workspace.getFactory(), workspace.getOntologyManager(), pw, 
-				mapping, errorReport, false);
+			if (failure.get() != null) {
+				Exception e = failure.get();
+				logger.error("Error occured while generating RDF for " + tablename, e);
+				if (e instanceof SQLException) {
+					throw (SQLException) e;
+				}
+				throw new KarmaException("Unable to generate RDF for " + tablename + ": " + e.getMessage());
+			}
+			for (PartitionOutput output : outputs) {
+				output.appendTo(pw);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KarmaException("Interrupted while generating RDF for " + tablename);
+		} finally {
+			readers.shutdownNow();
+			workers.shutdownNow();
+			for (PartitionOutput output : outputs) {
+				if (output != null) {
+					output.delete();
+				}
+			}
+		}
+		logger.debug("done");
+	}
 
-		// Generate the rdf
-		rdfGen.generateRDF(false);
+	private void readPartition(AbstractJDBCUtil dbUtil, String query, int partition,
+			BlockingQueue<RowChunk> queue, AtomicReference<Exception> failure)
+			throws SQLException, ClassNotFoundException, InterruptedException {
+		Connection conn = dbUtil.getConnection(hostname, portnumber, username, password, dBorSIDName);
+		try {
+			conn.setAutoCommit(false);
+			java.sql.Statement stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY,
+					java.sql.ResultSet.CONCUR_READ_ONLY);
+			stmt.setFetchSize(rowsPerChunk);
+			ResultSet r = stmt.executeQuery(query);
+			int columnCount = r.getMetaData().getColumnCount();
+			int index = 0;
+			List<String[]> rows = new ArrayList<String[]>();
+			while (r.next() && failure.get() == null) {
+				String[] values = new String[columnCount];
+				for (int i = 1; i <= columnCount; i++) {
+					values[i-1] = getValue(r, i);
+				}
+				rows.add(values);
+				if (rows.size() == rowsPerChunk) {
+					queue.put(new RowChunk(partition, index++, rows));
+					rows = new ArrayList<String[]>();
+				}
+			}
+			if (!rows.isEmpty()) {
+				queue.put(new RowChunk(partition, index++, rows));
+			}
+			r.close();
+			stmt.close();
+			logger.debug("Read " + index + " chunks of partition " + partition);
+		} finally {
+			conn.close();
+		}
 	}
-	
+
+	private String generateRDF(List<String[]> rows, List<String> columnNames,
+			CompiledKR2RMLMapping compiledMapping) throws IOException, JSONException, KarmaException {
+		Workspace workspace = initializeWorkspace();
+		try {
+			RepFactory factory = workspace.getFactory();
+			Worksheet wk = factory.createWorksheet(tablename, workspace, encoding);
+			List<String> headersList = addHeaders(wk, columnNames, factory);
+			Table dataTable = wk.getDataTable();
+			for (String[] values : rows) {
+				Row row = dataTable.addRow(factory);
+				for (int i = 0; i < values.length; i++) {
+					row.setValue(headersList.get(i), values[i], factory);
+				}
+			}
+			StringWriter sw = new StringWriter();
+			PrintWriter chunkWriter = new PrintWriter(sw);
+			generateRDFFromWorksheet(wk, workspace, compiledMapping, chunkWriter);
+			chunkWriter.flush();
+			return sw.toString();
+		} finally {
+			removeWorkspace(workspace);
+		}
+	}
+
+	private static class RowChunk {
+		private static final RowChunk END = new RowChunk(-1, -1, null);
+
+		private final int partition;
+		private final int index;
+		private final List<String[]> rows;
+
+		private RowChunk(int partition, int index, List<String[]> rows) {
+			this.partition = partition;
+			this.index = index;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * Writes the RDF of the chunks of a partition in the order of the chunks,
+	 * whatever the order in which the workers are done with them.
+	 */
+	private static class PartitionOutput {
+		private final PrintWriter pw;
+		private final File file;
+		private final Map<Integer, String> pending = new HashMap<Integer, String>();
+		private int nextIndex = 0;
+
+		private PartitionOutput(PrintWriter pw) {
+			this.pw = pw;
+			this.file = null;
+		}
+
+		private PartitionOutput(File file) throws IOException {
+			this.pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+			this.file = file;
+		}
+
+		private synchronized void write(int index, String rdf) {
+			pending.put(index, rdf);
+			while (pending.containsKey(nextIndex)) {
+				pw.write(pending.remove(nextIndex));
+				nextIndex++;
+			}
+		}
+
+		private void appendTo(PrintWriter out) throws IOException {
+			if (file == null) {
+				return;
+			}
+			pw.close();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				char[] buffer = new char[64 * 1024];
+				int n;
+				while ((n = reader.read(buffer)) != -1) {
+					out.write(buffer, 0, n);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		private void delete() {
+			if (file != null) {
+				pw.close();
+				file.delete();
+			}
+		}
+	}
+
 	private List<String> addHeaders (Worksheet wk, List<String> columnNames,
 			RepFactory factory) {
 		HTable headers = wk.getHeaders();
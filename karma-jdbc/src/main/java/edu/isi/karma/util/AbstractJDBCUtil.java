@@ -210,6 +210,102 @@ public abstract class AbstractJDBCUtil {
 		return columnTypes;
 	}
 	
+	/**
+	 * Encloses a column name between the escape chars of the DB.
+	 * @param name
+	 * @return
+	 */
+	public String escapeColumnName(String name) {
+		return escapeTablename(name);
+	}
+
+	/**
+	 * Returns the query selecting the rows of one partition of a table.
+	 * @param tableName
+	 * @param partitionCondition
+	 * 		condition returned by getRangePartitionCondition or getModuloPartitionCondition
+	 * @return
+	 */
+	public String getPartitionQuery(String tableName, String partitionCondition) {
+		return "Select * FROM " + escapeTablename(tableName) + " WHERE " + partitionCondition;
+	}
+
+	/**
+	 * Returns the smallest and the largest value of an integer column, or
+	 * null if the column has no values.
+	 * @param tableName
+	 * @param columnName
+	 * @param conn
+	 * @return
+	 * @throws SQLException
+	 */
+	public long[] getKeyRange(String tableName, String columnName, Connection conn) throws SQLException {
+		String column = escapeColumnName(columnName);
+		String query = "SELECT MIN(" + column + "), MAX(" + column + ") FROM " + escapeTablename(tableName);
+		Statement s = conn.createStatement();
+		try {
+			ResultSet r = s.executeQuery(query);
+			if (!r.next()) {
+				return null;
+			}
+			long min = r.getLong(1);
+			if (r.wasNull()) {
+				return null;
+			}
+			return new long[] {min, r.getLong(2)};
+		} finally {
+			s.close();
+		}
+	}
+
+	/**
+	 * Returns the condition selecting the rows whose key is in [lowerBound,
+	 * upperBound). The first partition also gets the rows without a key, the
+	 * last one has no upper bound.
+	 * @param columnName
+	 * @param lowerBound
+	 * @param upperBound
+	 * @param first
+	 * @param last
+	 * @return
+	 */
+	public String getRangePartitionCondition(String columnName, long lowerBound, long upperBound,
+			boolean first, boolean last) {
+		String column = escapeColumnName(columnName);
+		String lower = column + " >= " + lowerBound;
+		String upper = column + " < " + upperBound;
+		if (first && last) {
+			return "1 = 1";
+		} else if (first) {
+			return "(" + column + " IS NULL OR " + upper + ")";
+		} else if (last) {
+			return lower;
+		}
+		return lower + " AND " + upper;
+	}
+
+	/**
+	 * Returns the condition selecting the rows whose integer key has the
+	 * given remainder, for the tables whose keys are not spread evenly over
+	 * their range. The first partition also gets the rows without a key.
+	 * @param columnName
+	 * @param partition
+	 * @param numPartitions
+	 * @return
+	 */
+	public String getModuloPartitionCondition(String columnName, int partition, int numPartitions) {
+		String column = escapeColumnName(columnName);
+		String condition = "ABS(" + getModuloExpression(column, numPartitions) + ") = " + partition;
+		if (partition == 0) {
+			condition = "(" + column + " IS NULL OR " + condition + ")";
+		}
+		return condition;
+	}
+
+	protected String getModuloExpression(String column, int divisor) {
+		return "MOD(" + column + ", " + divisor + ")";
+	}
+
 	/**
 	 * 	Executes a SQL query.
 	 * @param conn
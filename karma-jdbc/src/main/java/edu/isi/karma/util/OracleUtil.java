@@ -87,6 +87,11 @@ public class OracleUtil extends AbstractJDBCUtil {
 	public String escapeTablename(String name) {
 		return "`" + name + "`";
 	}
+
+	@Override
+	public String escapeColumnName(String name) {
+		return "\"" + name + "\"";
+	}
 	
 	@Override
 	protected String getDriver() {
@@ -161,4 +161,14 @@ public class SQLServerUtil extends AbstractJDBCUtil {
 		}
 		return columnTypes;
 	}
+
+	@Override
+	public String escapeColumnName(String name) {
+		return "[" + name + "]";
+	}
+
+	@Override
+	protected String getModuloExpression(String column, int divisor) {
+		return column + " % " + divisor;
+	}
 }
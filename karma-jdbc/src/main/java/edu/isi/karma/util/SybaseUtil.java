@@ -99,4 +99,8 @@ public class SybaseUtil extends AbstractJDBCUtil {
 		return "`" + name + "`";
 	}
 
+	@Override
+	protected String getModuloExpression(String column, int divisor) {
+		return column + " % " + divisor;
+	}
 }
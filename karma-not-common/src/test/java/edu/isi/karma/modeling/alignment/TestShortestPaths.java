@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.BellmanFordShortestPath;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.jgrapht.graph.WeightedMultigraph;
+import org.junit.Test;
+
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * Compares the costs of the shortest path trees with the shortest paths of
+ * jgrapht on random multigraphs, and checks that the shortest paths over a
+ * snapshot do not see the changes made to the graph after it was taken.
+ */
+public class TestShortestPaths {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testCostsMatchJgrapht() {
+		for (int seed = 0; seed < 20; seed++) {
+			Random random = new Random(seed);
+			WeightedMultigraph<Node, DefaultLink> graph = new WeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+			List<Node> nodes = addNodes(graph, 5 + random.nextInt(40));
+			int numLinks = random.nextInt(nodes.size() * 3);
+			for (int i = 0; i < numLinks; i++) {
+				Node source = nodes.get(random.nextInt(nodes.size()));
+				Node target = nodes.get(random.nextInt(nodes.size()));
+				if (source.equals(target))
+					continue;
+				DefaultLink link = new DefaultLink("l" + i);
+				graph.addEdge(source, target, link);
+				// some parallel links have the same weight
+				graph.setEdgeWeight(link, random.nextInt(4) == 0 ? 1.0 : random.nextDouble() * 10);
+			}
+
+			ShortestPaths shortestPaths = new ShortestPaths(graph);
+			for (Node source : nodes) {
+				ShortestPaths.ShortestPathTree tree = shortestPaths.getShortestPathTree(source);
+				assertEquals(0.0, tree.getCost(source), DELTA);
+				BellmanFordShortestPath<Node, DefaultLink> bellmanFord = 
+						new BellmanFordShortestPath<Node, DefaultLink>(graph, source);
+				for (Node target : nodes) {
+					if (source.equals(target))
+						continue;
+					double expected = new DijkstraShortestPath<Node, DefaultLink>(graph, source, target).getPathLength();
+					String message = "seed " + seed + ", " + source.getId() + " to " + target.getId();
+					assertEquals(message, expected, tree.getCost(target), DELTA);
+					assertEquals(message, bellmanFord.getCost(target), tree.getCost(target), DELTA);
+
+					List<DefaultLink> path = tree.getPathEdgeList(target);
+					if (Double.isInfinite(expected)) {
+						assertNull(message, path);
+						continue;
+					}
+					// the links of the path go from the source to the target, and their weights add up to the cost
+					double cost = 0;
+					Node n = source;
+					for (DefaultLink link : path) {
+						assertTrue(message, link.getSource().equals(n) || link.getTarget().equals(n));
+						n = link.getSource().equals(n) ? link.getTarget() : link.getSource();
+						cost += graph.getEdgeWeight(link);
+					}
+					assertEquals(message, target, n);
+					assertEquals(message, expected, cost, DELTA);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotKeepsTheWeights() {
+		DirectedWeightedMultigraph<Node, DefaultLink> graph = new DirectedWeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+		List<Node> nodes = addNodes(graph, 3);
+		DefaultLink direct = new DefaultLink("direct");
+		graph.addEdge(nodes.get(0), nodes.get(2), direct);
+		graph.setEdgeWeight(direct, 5.0);
+		DefaultLink first = new DefaultLink("first");
+		graph.addEdge(nodes.get(0), nodes.get(1), first);
+		graph.setEdgeWeight(first, 1.0);
+		DefaultLink second = new DefaultLink("second");
+		graph.addEdge(nodes.get(2), nodes.get(1), second);
+		graph.setEdgeWeight(second, 1.0);
+
+		ShortestPaths shortestPaths = new ShortestPaths(new UndirectedGraphSnapshot(graph));
+		graph.setEdgeWeight(direct, 0.5);
+		graph.removeEdge(second);
+		assertEquals(2.0, shortestPaths.getShortestPathTree(nodes.get(0)).getCost(nodes.get(2)), DELTA);
+
+		ShortestPaths changed = new ShortestPaths(new UndirectedGraphSnapshot(graph));
+		assertEquals(0.5, changed.getShortestPathTree(nodes.get(0)).getCost(nodes.get(2)), DELTA);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSnapshotCannotBeChanged() {
+		DirectedWeightedMultigraph<Node, DefaultLink> graph = new DirectedWeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+		List<Node> nodes = addNodes(graph, 2);
+		new UndirectedGraphSnapshot(graph).addEdge(nodes.get(0), nodes.get(1), new DefaultLink("link"));
+	}
+
+	private static List<Node> addNodes(Graph<Node, DefaultLink> graph, int numNodes) {
+		List<Node> nodes = new ArrayList<Node>();
+		for (int i = 0; i < numNodes; i++) {
+			Node n = new InternalNode("n" + i, new Label("http://example.org/Class" + i));
+			graph.addVertex(n);
+			nodes.add(n);
+		}
+		return nodes;
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment.learner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.jgrapht.graph.WeightedMultigraph;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.alignment.ColumnNode;
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * Checks that the steiner trees of the candidate sets computed in parallel by
+ * ModelLearner are the same as the ones computed one by one, on a random
+ * graph with 50 columns, and logs the time of both.
+ */
+public class TestSteinerTrees {
+	private static Logger logger = LoggerFactory.getLogger(TestSteinerTrees.class);
+
+	private static final int NUM_INTERNAL_NODES = 400;
+	private static final int NUM_COLUMNS = 50;
+	private static final int NUM_CANDIDATE_SETS = 20;
+	private static final int NUM_THREADS = 4;
+
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		Random random = new Random(1);
+		DirectedWeightedMultigraph<Node, DefaultLink> graph = new DirectedWeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+		List<Node> internalNodes = new ArrayList<Node>();
+		for (int i = 0; i < NUM_INTERNAL_NODES; i++) {
+			Node n = new InternalNode("n" + i, new Label("http://example.org/Class" + (i % 40)));
+			graph.addVertex(n);
+			internalNodes.add(n);
+		}
+		int linkCount = 0;
+		// a chain, so that all the nodes are connected, and random links
+		for (int i = 1; i < NUM_INTERNAL_NODES; i++)
+			addLink(graph, internalNodes.get(i - 1), internalNodes.get(i), linkCount++, random);
+		for (int i = 0; i < NUM_INTERNAL_NODES * 3; i++)
+			addLink(graph, internalNodes.get(random.nextInt(NUM_INTERNAL_NODES)),
+					internalNodes.get(random.nextInt(NUM_INTERNAL_NODES)), linkCount++, random);
+		List<Node> columnNodes = new ArrayList<Node>();
+		for (int i = 0; i < NUM_COLUMNS; i++) {
+			Node c = new ColumnNode("c" + i, "h" + i, "column" + i, null);
+			graph.addVertex(c);
+			columnNodes.add(c);
+			for (int j = 0; j < 3; j++)
+				addLink(graph, internalNodes.get(random.nextInt(NUM_INTERNAL_NODES)), c, linkCount++, random);
+		}
+
+		// the candidate sets have all the columns and a few internal nodes
+		List<Set<Node>> steinerNodeSets = new ArrayList<Set<Node>>();
+		for (int i = 0; i < NUM_CANDIDATE_SETS; i++) {
+			Set<Node> steinerNodes = new HashSet<Node>(columnNodes);
+			for (int j = 0; j < 5; j++)
+				steinerNodes.add(internalNodes.get(random.nextInt(NUM_INTERNAL_NODES)));
+			steinerNodeSets.add(steinerNodes);
+		}
+
+		long start = System.currentTimeMillis();
+		List<WeightedMultigraph<Node, DefaultLink>> sequential = ModelLearner.computeSteinerTrees(graph, steinerNodeSets, null);
+		long sequentialMillis = System.currentTimeMillis() - start;
+
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		List<WeightedMultigraph<Node, DefaultLink>> parallel;
+		long parallelMillis;
+		try {
+			start = System.currentTimeMillis();
+			parallel = ModelLearner.computeSteinerTrees(graph, steinerNodeSets, executor);
+			parallelMillis = System.currentTimeMillis() - start;
+		} finally {
+			executor.shutdownNow();
+		}
+		logger.info(NUM_CANDIDATE_SETS + " steiner trees of " + NUM_COLUMNS + " columns, sequential: " 
+				+ sequentialMillis + " ms, parallel on " + NUM_THREADS + " threads: " + parallelMillis + " ms");
+
+		assertEquals(NUM_CANDIDATE_SETS, sequential.size());
+		assertEquals(NUM_CANDIDATE_SETS, parallel.size());
+		for (int i = 0; i < NUM_CANDIDATE_SETS; i++) {
+			assertNotNull(sequential.get(i));
+			assertTrue(sequential.get(i).vertexSet().containsAll(steinerNodeSets.get(i)));
+			assertEquals("candidate set " + i, sequential.get(i).vertexSet(), parallel.get(i).vertexSet());
+			assertEquals("candidate set " + i, sequential.get(i).edgeSet(), parallel.get(i).edgeSet());
+		}
+	}
+
+	private static void addLink(DirectedWeightedMultigraph<Node, DefaultLink> graph, Node source, Node target, 
+			int id, Random random) {
+		if (source.equals(target))
+			return;
+		DefaultLink link = new DefaultLink("l" + id);
+		graph.addEdge(source, target, link);
+		graph.setEdgeWeight(link, 0.5 + random.nextDouble());
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import edu.isi.karma.rep.alignment.Label;
+
+/**
+ * The maps, hierarchies and checks of an OntologyCache as sorted strings, so
+ * that two caches can be compared with assertEquals whatever the order in
+ * which their entries were added.
+ */
+class OntologyCacheContents {
+
+	private OntologyCacheContents() {
+	}
+
+	/**
+	 * @return the name of every map of the cache and its contents
+	 */
+	static TreeMap<String, Object> of(OntologyCache cache) {
+		TreeMap<String, Object> contents = new TreeMap<String, Object>();
+		contents.put("classes", labelMap(cache.getClasses()));
+		contents.put("properties", labelMap(cache.getProperties()));
+		contents.put("dataProperties", labelMap(cache.getDataProperties()));
+		contents.put("objectProperties", labelMap(cache.getObjectProperties()));
+		contents.put("dataPropertiesWithoutDomain", labelMap(cache.getDataPropertiesWithoutDomain()));
+		contents.put("objectPropertiesWithOnlyDomain", labelMap(cache.getObjectPropertiesWithOnlyDomain()));
+		contents.put("objectPropertiesWithOnlyRange", labelMap(cache.getObjectPropertiesWithOnlyRange()));
+		contents.put("objectPropertiesWithoutDomainAndRange", labelMap(cache.getObjectPropertiesWithoutDomainAndRange()));
+
+		contents.put("classHierarchy", tree(cache.getClassHierarchy()));
+		contents.put("objectPropertyHierarchy", tree(cache.getObjectPropertyHierarchy()));
+		contents.put("dataPropertyHierarchy", tree(cache.getDataPropertyHierarchy()));
+
+		contents.put("directSubClasses", nestedLabelMap(cache.getDirectSubClasses()));
+		contents.put("indirectSubClasses", nestedLabelMap(cache.getIndirectSubClasses()));
+		contents.put("directSuperClasses", nestedLabelMap(cache.getDirectSuperClasses()));
+		contents.put("indirectSuperClasses", nestedLabelMap(cache.getIndirectSuperClasses()));
+		contents.put("directSubProperties", nestedLabelMap(cache.getDirectSubProperties()));
+		contents.put("indirectSubProperties", nestedLabelMap(cache.getIndirectSubProperties()));
+		contents.put("directSuperProperties", nestedLabelMap(cache.getDirectSuperProperties()));
+		contents.put("indirectSuperProperties", nestedLabelMap(cache.getIndirectSuperProperties()));
+
+		contents.put("directSubClassCheck", new TreeSet<String>(cache.getDirectSubClassCheck()));
+		contents.put("indirectSubClassCheck", new TreeSet<String>(cache.getIndirectSubClassCheck()));
+		contents.put("directSubPropertyCheck", new TreeSet<String>(cache.getDirectSubPropertyCheck()));
+		contents.put("indirectSubPropertyCheck", new TreeSet<String>(cache.getIndirectSubPropertyCheck()));
+		contents.put("directSubclassSuperclassPairs", pairs(cache.getDirectSubclassSuperclassPairs()));
+		contents.put("indirectSubclassSuperclassPairs", pairs(cache.getIndirectSubclassSuperclassPairs()));
+
+		contents.put("propertyInverse", labelMap(cache.getPropertyInverse()));
+		contents.put("propertyInverseOf", labelMap(cache.getPropertyInverseOf()));
+
+		contents.put("propertyDirectDomains", setMap(cache.getPropertyDirectDomains()));
+		contents.put("propertyIndirectDomains", setMap(cache.getPropertyIndirectDomains()));
+		contents.put("propertyDirectRanges", setMap(cache.getPropertyDirectRanges()));
+		contents.put("propertyIndirectRanges", setMap(cache.getPropertyIndirectRanges()));
+		contents.put("directOutDataProperties", setMap(cache.getDirectOutDataProperties()));
+		contents.put("indirectOutDataProperties", setMap(cache.getIndirectOutDataProperties()));
+		contents.put("directOutObjectProperties", setMap(cache.getDirectOutObjectProperties()));
+		contents.put("indirectOutObjectProperties", setMap(cache.getIndirectOutObjectProperties()));
+		contents.put("directInObjectProperties", setMap(cache.getDirectInObjectProperties()));
+		contents.put("indirectInObjectProperties", setMap(cache.getIndirectInObjectProperties()));
+		contents.put("domainRangeToDirectProperties", setMap(cache.getDomainRangeToDirectProperties()));
+		contents.put("domainRangeToIndirectProperties", setMap(cache.getDomainRangeToIndirectProperties()));
+		return contents;
+	}
+
+	private static String label(Label label) {
+		if (label == null)
+			return null;
+		return label.getUri() + "|" + label.getNs() + "|" + label.getPrefix() + "|"
+				+ label.getRdfsLabel() + "|" + label.getRdfsComment();
+	}
+
+	private static Map<String, String> labelMap(HashMap<String, Label> map) {
+		TreeMap<String, String> sorted = new TreeMap<String, String>();
+		for (Entry<String, Label> entry : map.entrySet())
+			sorted.put(entry.getKey(), label(entry.getValue()));
+		return sorted;
+	}
+
+	private static Map<String, Map<String, String>> nestedLabelMap(HashMap<String, HashMap<String, Label>> map) {
+		TreeMap<String, Map<String, String>> sorted = new TreeMap<String, Map<String, String>>();
+		for (Entry<String, HashMap<String, Label>> entry : map.entrySet())
+			sorted.put(entry.getKey(), entry.getValue() == null ? null : labelMap(entry.getValue()));
+		return sorted;
+	}
+
+	private static Map<String, TreeSet<String>> setMap(HashMap<String, HashSet<String>> map) {
+		TreeMap<String, TreeSet<String>> sorted = new TreeMap<String, TreeSet<String>>();
+		for (Entry<String, HashSet<String>> entry : map.entrySet())
+			sorted.put(entry.getKey(), entry.getValue() == null ? null : new TreeSet<String>(entry.getValue()));
+		return sorted;
+	}
+
+	private static TreeSet<String> pairs(List<SubclassSuperclassPair> pairs) {
+		TreeSet<String> sorted = new TreeSet<String>();
+		for (SubclassSuperclassPair pair : pairs)
+			sorted.add(pair.getSubclass() + " < " + pair.getSuperclass());
+		return sorted;
+	}
+
+	/**
+	 * @return every path from the root of the hierarchy, the children of a node are not ordered
+	 */
+	private static TreeSet<String> tree(OntologyTreeNode root) {
+		TreeSet<String> paths = new TreeSet<String>();
+		addPaths(root, "", paths);
+		return paths;
+	}
+
+	private static void addPaths(OntologyTreeNode node, String path, TreeSet<String> paths) {
+		if (node.getChildren() == null)
+			return;
+		for (OntologyTreeNode child : node.getChildren()) {
+			String childPath = path + "/" + label(child.getLabel());
+			paths.add(childPath);
+			addPaths(child, childPath, paths);
+		}
+	}
+}
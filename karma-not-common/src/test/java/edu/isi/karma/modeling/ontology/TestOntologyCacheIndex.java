@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that a cache read from its index has the same contents as the cache
+ * that was built from the ontology, and that writing an index only removes
+ * the previous index of the same ontology files.
+ */
+public class TestOntologyCacheIndex {
+
+	private File directory;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("ontology-cache").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		File[] files = directory.listFiles();
+		if (files != null)
+			for (File f : files)
+				f.delete();
+		directory.delete();
+	}
+
+	@Test
+	public void testIndexHasSameContentsAsInit() throws Exception {
+		File ontology = new File(getClass().getClassLoader().getResource("karma-data/Wiki.owl").toURI());
+		OntologyHandler handler = new OntologyHandler();
+		read(handler, ontology);
+		OntologyCache built = new OntologyCache(handler);
+		built.init();
+		assertFalse(built.getClasses().isEmpty());
+
+		File indexFile = OntologyCacheIndex.indexFileFor(directory, Collections.singletonList(ontology));
+		built.writeIndex(indexFile);
+		OntologyCache read = new OntologyCache(handler);
+		assertTrue(read.initFromIndex(indexFile));
+
+		assertSameContents(OntologyCacheContents.of(built), OntologyCacheContents.of(read));
+	}
+
+	@Test
+	public void testOnlyThePreviousIndexOfTheSameFilesIsRemoved() throws Exception {
+		File ontology = new File(getClass().getClassLoader().getResource("karma-data/Wiki.owl").toURI());
+		File first = new File(directory, "first.owl");
+		File second = new File(directory, "second.owl");
+		Files.copy(ontology.toPath(), first.toPath());
+		Files.copy(ontology.toPath(), second.toPath());
+		OntologyHandler handler = new OntologyHandler();
+		read(handler, ontology);
+		OntologyCache cache = new OntologyCache(handler);
+		cache.init();
+
+		File firstIndex = OntologyCacheIndex.indexFileFor(directory, Collections.singletonList(first));
+		File secondIndex = OntologyCacheIndex.indexFileFor(directory, Collections.singletonList(second));
+		assertNotEquals(firstIndex, secondIndex);
+		cache.writeIndex(firstIndex);
+		cache.writeIndex(secondIndex);
+		assertTrue(firstIndex.isFile());
+		assertTrue(secondIndex.isFile());
+
+		// the first file now has other contents
+		List<String> lines = new ArrayList<String>(Files.readAllLines(first.toPath(), Charset.forName("UTF-8")));
+		lines.add("");
+		Files.write(first.toPath(), lines, Charset.forName("UTF-8"));
+		File changedIndex = OntologyCacheIndex.indexFileFor(directory, Collections.singletonList(first));
+		assertNotEquals(firstIndex, changedIndex);
+		cache.writeIndex(changedIndex);
+
+		assertTrue(changedIndex.isFile());
+		assertFalse(firstIndex.isFile());
+		assertTrue(secondIndex.isFile());
+	}
+
+	static void read(OntologyHandler handler, File ontology) throws Exception {
+		InputStream in = new FileInputStream(ontology);
+		try {
+			handler.getOntModel().read(in, null);
+		} finally {
+			in.close();
+		}
+	}
+
+	static void assertSameContents(TreeMap<String, Object> expected, TreeMap<String, Object> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for (Entry<String, Object> entry : expected.entrySet())
+			assertEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import static org.junit.Assert.assertFalse;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+
+/**
+ * Splits an ontology at random into several parts, as if they were separate
+ * files, and checks that a cache built from the first part and updated with
+ * update() after each other part is added has the same contents as a cache
+ * built from the whole ontology with init().
+ */
+public class TestOntologyCacheUpdate {
+
+	private static final int NUM_SPLITS = 10;
+
+	@Test
+	public void testUpdateMatchesInit() throws Exception {
+		Model ontology = ModelFactory.createDefaultModel();
+		InputStream in = getClass().getClassLoader().getResourceAsStream("karma-data/Wiki.owl");
+		try {
+			ontology.read(in, null);
+		} finally {
+			in.close();
+		}
+		assertFalse(ontology.isEmpty());
+
+		for (int seed = 0; seed < NUM_SPLITS; seed++) {
+			Random random = new Random(seed);
+			List<Model> parts = split(ontology, 2 + seed % 3, random);
+
+			OntologyHandler handler = new OntologyHandler();
+			handler.getOntModel().setNsPrefixes(ontology.getNsPrefixMap());
+			handler.getOntModel().add(parts.get(0));
+			OntologyCache updated = new OntologyCache(handler);
+			updated.init();
+			for (int i = 1; i < parts.size(); i++) {
+				handler.getOntModel().add(parts.get(i));
+				updated.update(getUris(parts.get(i)));
+			}
+
+			OntologyCache built = new OntologyCache(handler);
+			built.init();
+			TestOntologyCacheIndex.assertSameContents(OntologyCacheContents.of(built),
+					OntologyCacheContents.of(updated));
+		}
+	}
+
+	/**
+	 * Puts every statement about a uri in a random part. The statements about
+	 * a blank node go in the part of the statement that refers to it, a blank
+	 * node is always in one file.
+	 */
+	private static List<Model> split(Model ontology, int numParts, Random random) {
+		List<Model> parts = new ArrayList<Model>();
+		for (int i = 0; i < numParts; i++)
+			parts.add(ModelFactory.createDefaultModel());
+		Map<Resource, Integer> blankNodeParts = new HashMap<Resource, Integer>();
+
+		StmtIterator itr = ontology.listStatements();
+		List<Statement> statements = itr.toList();
+		for (Statement st : statements) {
+			if (st.getSubject().isAnon())
+				continue;
+			int part = random.nextInt(numParts);
+			parts.get(part).add(st);
+			addBlankNode(ontology, st.getObject(), part, parts, blankNodeParts);
+		}
+		// blank nodes that no uri refers to
+		for (Statement st : statements) {
+			if (st.getSubject().isAnon())
+				addBlankNode(ontology, st.getSubject(), random.nextInt(numParts), parts, blankNodeParts);
+		}
+		return parts;
+	}
+
+	private static void addBlankNode(Model ontology, RDFNode node, int part, List<Model> parts,
+			Map<Resource, Integer> blankNodeParts) {
+		if (!node.isAnon() || blankNodeParts.containsKey(node.asResource()))
+			return;
+		blankNodeParts.put(node.asResource(), part);
+		StmtIterator itr = ontology.listStatements(node.asResource(), null, (RDFNode) null);
+		List<Statement> statements = itr.toList();
+		for (Statement st : statements) {
+			parts.get(part).add(st);
+			addBlankNode(ontology, st.getObject(), part, parts, blankNodeParts);
+		}
+	}
+
+	/**
+	 * The uris that OntologyManager hands to update() for a new file
+	 */
+	private static Set<String> getUris(Model model) {
+		Set<String> uris = new HashSet<String>();
+		StmtIterator itr = model.listStatements();
+		while (itr.hasNext()) {
+			Statement st = itr.next();
+			if (st.getSubject().isURIResource())
+				uris.add(st.getSubject().getURI());
+			if (st.getObject().isURIResource())
+				uris.add(st.getObject().asResource().getURI());
+		}
+		return uris;
+	}
+}
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import edu.isi.karma.rep.Node.NodeStatus;
+
+/**
+ * Checks the profiles of columns against the JSON that the IdentifyData
+ * cleaning service returned for the same values. Where the service was wrong,
+ * the expected values are the corrected ones and the comment says what the
+ * service returned.
+ */
+public class TestColumnProfile {
+
+	@Test
+	public void testIntegerColumn() throws JSONException {
+		JSONObject json = profile("10", "20", "abc", "").toJSON();
+		assertEquals("Integer", json.getString("xLabel"));
+		assertEquals("5", json.getString("histogram_Colwidth"));
+		assertEquals("10:1, 15:0, 20:1, MISSING:1, INVALID:1", histogram(json));
+		assertEquals(4, json.getInt("Total_ID_Count"));
+		assertEquals(2, json.getInt("Valid_ID_Count"));
+		assertEquals(1, json.getInt("Invalid_ID_Count"));
+		assertEquals(3, json.getInt("Preferred_Length"));
+		assertEquals(0, json.getInt("Min_Token_Length"));
+		assertEquals(3, json.getInt("Max_Token_Length"));
+	}
+
+	@Test
+	public void testIntegerBuckets() throws JSONException {
+		String[] values = new String[100];
+		for (int i = 0; i < values.length; i++)
+			values[i] = Integer.toString(i + 1);
+		JSONObject json = profile(values).toJSON();
+		assertEquals("10", json.getString("histogram_Colwidth"));
+		assertEquals("1:10, 11:10, 21:10, 31:10, 41:10, 51:10, 61:10, 71:10, 81:10, 91:10", histogram(json));
+		assertEquals(2, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testYearsOfIntegerColumn() throws JSONException {
+		JSONObject json = profile("5", "1234", "6").toJSON();
+		assertEquals("Integer", json.getString("xLabel"));
+		assertEquals("410", json.getString("histogram_Colwidth"));
+		assertEquals("5:2, 415:0, 825:1", histogram(json));
+		assertEquals(3, json.getInt("Valid_ID_Count"));
+	}
+
+	@Test
+	public void testDoubleColumn() throws JSONException {
+		JSONObject json = profile("1.5", "2.25", "3.75", "10.0", "x").toJSON();
+		assertEquals("Double", json.getString("xLabel"));
+		assertEquals("2.125", json.getString("histogram_Colwidth"));
+		assertEquals("1.5:2, 3.625:1, 10.0:1, INVALID:1", histogram(json));
+		assertEquals(4, json.getInt("Valid_ID_Count"));
+		assertEquals(4, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testBooleanColumn() throws JSONException {
+		JSONObject json = profile("true", "false", "TRUE", "yes").toJSON();
+		assertEquals("Boolean", json.getString("xLabel"));
+		assertEquals("True:2, False:1, INVALID:1", histogram(json));
+		assertEquals(5, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testDayOfWeekColumn() throws JSONException {
+		// Only the full names of the days are days of the week
+		JSONObject json = profile("Monday", "tuesday", "Sun", "Fri").toJSON();
+		assertEquals("Weekdays", json.getString("xLabel"));
+		assertEquals("Monday:1, Tuesday:1, INVALID:2", histogram(json));
+		assertEquals(2, json.getInt("Valid_ID_Count"));
+		assertEquals(2, json.getInt("Invalid_ID_Count"));
+		assertEquals(7, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testDateColumn() throws JSONException {
+		// The service parsed the months of yyyy-MM-dd as minutes, and gave
+		// 01-31-2012:1, 07-24-2012:2, 01-01-2014:1 for a width of "5 months 25 days"
+		ColumnProfile profile = profile("2013-01-05", "2013-03-10", "2014-07-01", "2012-12-31");
+		JSONObject json = profile.toJSON();
+		assertEquals(ColumnProfile.DataType.Date, profile.getDataType());
+		assertEquals("4 months 16 days", json.getString("histogram_Colwidth"));
+		assertEquals("12-31-2012:3, 07-01-2014:1", histogram(json));
+		assertEquals(10, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testYearColumn() throws JSONException {
+		JSONObject json = profile("1999", "2005", "2010", "1850", "abc").toJSON();
+		assertEquals("Date", json.getString("xLabel"));
+		assertEquals("01-01-1850:1, 01-01-1970:2, 01-01-2010:1, INVALID:1", histogram(json));
+		assertEquals(4, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testStringColumn() throws JSONException {
+		JSONObject json = profile("apple", "apple", "banana pie", "").toJSON();
+		assertEquals("String", json.getString("xLabel"));
+		assertEquals("Apple:2, Banana pie:1, MISSING:1", histogram(json));
+		assertEquals(3, json.getInt("Valid_ID_Count"));
+		assertEquals(6, json.getInt("Preferred_Length"));
+		assertEquals(6, json.getInt("Max_Token_Length"));
+	}
+
+	@Test
+	public void testRemainingStrings() throws JSONException {
+		JSONObject json = profile("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "a", "B").toJSON();
+		// The service kept eight of the ten values seen once, in the order of its hash table
+		JSONArray bars = new JSONArray(json.getString("histogram"));
+		assertEquals(11, bars.length());
+		Set<String> mostFrequent = new HashSet<String>();
+		List<Integer> frequencies = new ArrayList<Integer>();
+		for (int i = 0; i < bars.length(); i++) {
+			if (i < 2)
+				mostFrequent.add(bars.getJSONObject(i).getString("Value"));
+			frequencies.add(bars.getJSONObject(i).getInt("Frequency"));
+		}
+		assertEquals(new HashSet<String>(Arrays.asList("A", "B")), mostFrequent);
+		assertEquals(Arrays.asList(2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 2), frequencies);
+		assertEquals("Remaining", bars.getJSONObject(10).getString("Value"));
+		assertEquals(1, json.getInt("Preferred_Length"));
+	}
+
+	@Test
+	public void testPreferredLengthOfStrings() throws JSONException {
+		// The length of a string is the one of its longest word
+		JSONObject json = profile("the quick brown fox", "jumps over", "the lazy dog", "hello").toJSON();
+		assertEquals(5, json.getInt("Preferred_Length"));
+		assertEquals(5, json.getInt("Max_Token_Length"));
+	}
+
+	@Test
+	public void testEmptyColumn() throws JSONException {
+		// The service counted the empty values as valid, and gave -3 invalid values
+		JSONObject json = profile("", "", "").toJSON();
+		assertEquals("Empty_String", json.getString("xLabel"));
+		assertEquals("MISSING:3", histogram(json));
+		assertEquals(0, json.getInt("Valid_ID_Count"));
+		assertEquals(0, json.getInt("Invalid_ID_Count"));
+	}
+
+	@Test
+	public void testSignature() {
+		List<Node> nodes = nodes("x", "y", "z");
+		long signature = ColumnProfile.signature(nodes);
+		List<Node> reversed = new ArrayList<Node>(nodes);
+		Collections.reverse(reversed);
+		assertEquals(signature, ColumnProfile.signature(reversed));
+
+		nodes.get(1).setValue("w", NodeStatus.edited, null);
+		assertNotEquals(signature, ColumnProfile.signature(nodes));
+	}
+
+	@Test
+	public void testSignatureOfCollidingStrings() {
+		// The same 32 bit hash code
+		assertEquals("Aa".hashCode(), "BB".hashCode());
+		assertFalse(ColumnProfile.signature(nodes("Aa", "x")) == ColumnProfile.signature(nodes("BB", "x")));
+	}
+
+	private static List<Node> nodes(String... values) {
+		List<Node> nodes = new ArrayList<Node>();
+		for (int i = 0; i < values.length; i++) {
+			Node node = new Node(i, "HN1");
+			node.setValue(values[i], NodeStatus.original, null);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	private static ColumnProfile profile(String... values) {
+		return ColumnProfile.compute(nodes(values));
+	}
+
+	private static String histogram(JSONObject json) throws JSONException {
+		JSONArray bars = new JSONArray(json.getString("histogram"));
+		StringBuilder histogram = new StringBuilder();
+		for (int i = 0; i < bars.length(); i++) {
+			if (i > 0)
+				histogram.append(", ");
+			histogram.append(bars.getJSONObject(i).getString("Value")).append(':')
+					.append(bars.getJSONObject(i).getInt("Frequency"));
+		}
+		return histogram.toString();
+	}
+}
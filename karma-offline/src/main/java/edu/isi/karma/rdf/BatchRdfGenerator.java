@@ -0,0 +1,587 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.io.output.NullWriter;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.hp.hpl.jena.rdf.model.Model;
+
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.RDFOutputFormat;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.mapping.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
+import edu.isi.karma.util.DBType;
+import edu.isi.karma.util.EncodingDetector;
+import edu.isi.karma.util.FileUtil;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Generates the RDF of many sources, files or database tables, in one JVM.
+ * The sources are processed in parallel, each one in a workspace of its own.
+ * Every model file is loaded once, and the mapping of every source name in it
+ * is parsed and planned once and shared by all the sources that use it.
+ *
+ * Every source is written to its own output file, or, if it has none, to a
+ * merged output that holds the RDF of these sources in the order they were
+ * given. Every source gets a SourceReport telling whether it succeeded.
+ */
+public class BatchRdfGenerator {
+
+	private static Logger logger = LoggerFactory.getLogger(BatchRdfGenerator.class);
+
+	/**
+	 * A file or database table and the mapping used to generate its RDF. The
+	 * names of the JSON properties of a source are the names of the options of
+	 * OfflineRdfGenerator.
+	 */
+	public static class Source {
+		private String sourceType;
+		private URL modelURL;
+		private String sourceName;
+		private File outputFile;
+
+		private File inputFile;
+		private String encoding;
+		private int maxNumLines = -1;
+
+		private DBType dbType;
+		private String hostname;
+		private int portnumber;
+		private String username;
+		private String password;
+		private String dBorSIDName;
+		private String tablename;
+
+		public static Source createFileSource(String sourceType, File inputFile,
+				URL modelURL, String sourceName, File outputFile) {
+			Source source = new Source();
+			source.sourceType = sourceType.toUpperCase();
+			source.inputFile = inputFile;
+			source.modelURL = modelURL;
+			source.sourceName = sourceName;
+			source.outputFile = outputFile;
+			return source;
+		}
+
+		public static Source createDatabaseSource(DBType dbType, String hostname,
+				int portnumber, String username, String password,
+				String dBorSIDName, String tablename, URL modelURL, File outputFile) {
+			Source source = new Source();
+			source.sourceType = "DB";
+			source.dbType = dbType;
+			source.hostname = hostname;
+			source.portnumber = portnumber;
+			source.username = username;
+			source.password = password;
+			source.dBorSIDName = dBorSIDName;
+			source.tablename = tablename;
+			source.modelURL = modelURL;
+			source.sourceName = tablename;
+			source.outputFile = outputFile;
+			return source;
+		}
+
+		/**
+		 * @param defaults
+		 *            values used for the properties missing in json, e.g. the
+		 *            model shared by all the sources of a manifest
+		 * @param baseDirectory
+		 *            the directory relative file paths are resolved against
+		 */
+		public static Source createFromJSON(JSONObject json, JSONObject defaults,
+				File baseDirectory) throws JSONException, IOException, KarmaException {
+			Source source = new Source();
+			String sourceType = getString(json, defaults, "sourcetype");
+			if (sourceType == null) {
+				throw new KarmaException("No sourcetype for the source: " + json);
+			}
+			source.sourceType = sourceType.toUpperCase();
+
+			String modelFilePath = getString(json, defaults, "modelfilepath");
+			String modelURL = getString(json, defaults, "modelurl");
+			if (modelFilePath != null) {
+				source.modelURL = resolve(baseDirectory, modelFilePath).toURI().toURL();
+			} else if (modelURL != null) {
+				source.modelURL = new URL(modelURL);
+			} else {
+				throw new KarmaException("No modelfilepath or modelurl for the source: " + json);
+			}
+
+			String outputFilePath = json.optString("outputfile", null);
+			if (outputFilePath != null) {
+				source.outputFile = resolve(baseDirectory, outputFilePath);
+			}
+			source.encoding = getString(json, defaults, "encoding");
+
+			if (source.sourceType.equals("DB")) {
+				source.dbType = DBType.valueOf(getString(json, defaults, "dbtype"));
+				source.hostname = getString(json, defaults, "hostname");
+				source.portnumber = Integer.parseInt(getString(json, defaults, "portnumber"));
+				source.username = getString(json, defaults, "username");
+				source.password = getString(json, defaults, "password");
+				source.dBorSIDName = getString(json, defaults, "dbname");
+				source.tablename = json.getString("tablename");
+				source.sourceName = source.tablename;
+			} else {
+				source.inputFile = resolve(baseDirectory, json.getString("filepath"));
+				source.sourceName = getString(json, defaults, "sourcename");
+				if (source.sourceName == null) {
+					throw new KarmaException("No sourcename for the source: " + json);
+				}
+				String maxNumLines = getString(json, defaults, "maxNumLines");
+				if (maxNumLines != null) {
+					source.maxNumLines = Integer.parseInt(maxNumLines);
+				}
+			}
+			return source;
+		}
+
+		private static String getString(JSONObject json, JSONObject defaults, String key) {
+			if (json.has(key)) {
+				return json.optString(key, null);
+			}
+			return defaults != null ? defaults.optString(key, null) : null;
+		}
+
+		private static File resolve(File baseDirectory, String path) {
+			File file = new File(path);
+			if (!file.isAbsolute() && baseDirectory != null) {
+				file = new File(baseDirectory, path);
+			}
+			return file;
+		}
+
+		public String getSourceType() {
+			return sourceType;
+		}
+
+		public URL getModelURL() {
+			return modelURL;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+
+		public File getOutputFile() {
+			return outputFile;
+		}
+
+		public void setOutputFile(File outputFile) {
+			this.outputFile = outputFile;
+		}
+
+		public File getInputFile() {
+			return inputFile;
+		}
+
+		public void setEncoding(String encoding) {
+			this.encoding = encoding;
+		}
+
+		public void setMaxNumLines(int maxNumLines) {
+			this.maxNumLines = maxNumLines;
+		}
+
+		/**
+		 * @return the input file or the table of the source
+		 */
+		public String getName() {
+			return inputFile != null ? inputFile.getPath() : dBorSIDName + "." + tablename;
+		}
+	}
+
+	/**
+	 * The outcome of the generation of the RDF of one source
+	 */
+	public static class SourceReport {
+		private final Source source;
+		private final boolean success;
+		private final String error;
+		private final long elapsedMillis;
+
+		SourceReport(Source source, boolean success, String error, long elapsedMillis) {
+			this.source = source;
+			this.success = success;
+			this.error = error;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public Source getSource() {
+			return source;
+		}
+
+		public boolean isSuccess() {
+			return success;
+		}
+
+		/**
+		 * @return why the source failed, null if it succeeded
+		 */
+		public String getError() {
+			return error;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public JSONObject toJSON() throws JSONException {
+			JSONObject json = new JSONObject();
+			json.put("source", source.getName());
+			json.put("sourcename", source.getSourceName());
+			json.put("model", source.getModelURL() != null ? source.getModelURL().toString() : null);
+			json.put("outputfile", source.getOutputFile() != null ? source.getOutputFile().getPath() : null);
+			json.put("status", success ? "success" : "error");
+			if (error != null) {
+				json.put("error", error);
+			}
+			json.put("time", elapsedMillis);
+			return json;
+		}
+	}
+
+	private final int numThreads;
+	private RDFOutputFormat outputFormat = RDFOutputFormat.N3;
+	private boolean deduplicateTriples = false;
+	private int executionParallelism = 0;
+	private boolean columnarStorage = false;
+	private int recordsPerChunk = 0;
+
+	// Loaded models by URL, and compiled mappings by URL and source name
+	private final ConcurrentHashMap<String, Future<Model>> models = new ConcurrentHashMap<String, Future<Model>>();
+	private final ConcurrentHashMap<String, Future<CompiledKR2RMLMapping>> mappings = new ConcurrentHashMap<String, Future<CompiledKR2RMLMapping>>();
+
+	/**
+	 * @param numThreads
+	 *            number of sources processed at the same time
+	 */
+	public BatchRdfGenerator(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	public void setOutputFormat(RDFOutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	public void setDeduplicateTriples(boolean deduplicateTriples) {
+		this.deduplicateTriples = deduplicateTriples;
+	}
+
+	/**
+	 * Number of threads used for the rows of each source, see
+	 * RdfGenerator.setExecutionParallelism
+	 */
+	public void setExecutionParallelism(int executionParallelism) {
+		this.executionParallelism = executionParallelism;
+	}
+
+	public void setColumnarStorage(boolean columnarStorage) {
+		this.columnarStorage = columnarStorage;
+	}
+
+	/**
+	 * Stream the CSV, JSON and XML files in chunks of recordsPerChunk records,
+	 * see StreamingFileRdfGenerator. 0 loads every file at once.
+	 */
+	public void setRecordsPerChunk(int recordsPerChunk) {
+		this.recordsPerChunk = recordsPerChunk;
+	}
+
+	/**
+	 * Generates the RDF of all the sources.
+	 *
+	 * @param mergedOutputFile
+	 *            where the RDF of the sources without an output file of their
+	 *            own is written, in the order of sources. It can be null if
+	 *            all the sources have an output file.
+	 * @return a report for every source, in the order of sources
+	 */
+	public List<SourceReport> generateRdf(List<Source> sources, File mergedOutputFile)
+			throws IOException, KarmaException {
+		if (mergedOutputFile != null && outputFormat.isBinary()) {
+			throw new KarmaException("The " + outputFormat + " output of several sources cannot be merged");
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(1, sources.size())));
+		List<File> outputFiles = new ArrayList<File>();
+		List<Future<SourceReport>> futures = new ArrayList<Future<SourceReport>>();
+		try {
+			for (final Source source : sources) {
+				final File outputFile;
+				if (source.getOutputFile() != null) {
+					outputFile = source.getOutputFile();
+				} else if (mergedOutputFile != null) {
+					// Written apart and appended to the merged output at the end
+					File directory = mergedOutputFile.getAbsoluteFile().getParentFile();
+					outputFile = File.createTempFile("karma", "." + outputFormat.getFileExtension(), directory);
+					outputFile.deleteOnExit();
+				} else {
+					outputFile = null;
+				}
+				outputFiles.add(outputFile);
+				futures.add(executor.submit(new Callable<SourceReport>() {
+					@Override
+					public SourceReport call() {
+						return generateRdf(source, outputFile);
+					}
+				}));
+			}
+
+			List<SourceReport> reports = new ArrayList<SourceReport>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					reports.add(futures.get(i).get());
+				} catch (InterruptedException | ExecutionException e) {
+					reports.add(new SourceReport(sources.get(i), false, e.getMessage(), 0));
+				}
+			}
+
+			if (mergedOutputFile != null) {
+				mergeOutputs(sources, reports, outputFiles, mergedOutputFile);
+			}
+			return reports;
+		} finally {
+			executor.shutdown();
+			for (int i = 0; i < sources.size() && i < outputFiles.size(); i++) {
+				if (sources.get(i).getOutputFile() == null && outputFiles.get(i) != null) {
+					outputFiles.get(i).delete();
+				}
+			}
+		}
+	}
+
+	private SourceReport generateRdf(Source source, File outputFile) {
+		long start = System.currentTimeMillis();
+		if (outputFile == null) {
+			return new SourceReport(source, false, "No output file for the source", 0);
+		}
+		try {
+			CompiledKR2RMLMapping compiledMapping = getCompiledMapping(source.getModelURL(), source.getSourceName());
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFile));
+			// Binary formats are the only writer of the stream, pw goes nowhere
+			KR2RMLRDFWriter rdfWriter = null;
+			PrintWriter pw;
+			if (outputFormat.isBinary()) {
+				rdfWriter = outputFormat.createWriter(null, os, deduplicateTriples);
+				pw = new PrintWriter(new NullWriter());
+			} else {
+				pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(os, "UTF-8")));
+			}
+			try {
+				generateRdf(source, compiledMapping, pw, rdfWriter);
+			} finally {
+				if (rdfWriter != null) {
+					rdfWriter.close();
+				}
+				pw.close();
+			}
+			long elapsed = System.currentTimeMillis() - start;
+			logger.info("RDF of " + source.getName() + " generated in " + elapsed + " ms");
+			return new SourceReport(source, true, null, elapsed);
+		} catch (Exception e) {
+			logger.error("Error occured while generating RDF for " + source.getName(), e);
+			if (source.getOutputFile() != null) {
+				outputFile.delete();
+			}
+			String error = e.getMessage() != null ? e.getMessage() : e.toString();
+			return new SourceReport(source, false, error, System.currentTimeMillis() - start);
+		}
+	}
+
+	private void generateRdf(Source source, CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, KR2RMLRDFWriter rdfWriter) throws Exception {
+		if (source.getSourceType().equals("DB")) {
+			String encoding = source.encoding != null ? source.encoding : "UTF-8";
+			DatabaseTableRDFGenerator dbRdfGen = new DatabaseTableRDFGenerator(source.dbType,
+					source.hostname, source.portnumber, source.username, source.password,
+					source.dBorSIDName, source.tablename, encoding);
+			configureRdfGenerator(dbRdfGen, rdfWriter);
+			dbRdfGen.generateRDF(pw, compiledMapping);
+			return;
+		}
+
+		File inputFile = source.getInputFile();
+		if (!inputFile.exists()) {
+			throw new KarmaException("File not found: " + inputFile.getAbsolutePath());
+		}
+		String encoding = source.encoding != null ? source.encoding : EncodingDetector.detect(inputFile);
+		if (recordsPerChunk > 0) {
+			StreamingFileRdfGenerator rdfGenerator = new StreamingFileRdfGenerator(recordsPerChunk);
+			configureRdfGenerator(rdfGenerator, rdfWriter);
+			rdfGenerator.generateRdf(source.getSourceType(), compiledMapping, pw, inputFile, encoding, source.maxNumLines);
+		} else {
+			FileRdfGenerator rdfGenerator = new FileRdfGenerator();
+			configureRdfGenerator(rdfGenerator, rdfWriter);
+			rdfGenerator.generateRdf(source.getSourceType(), compiledMapping, pw, inputFile, encoding, source.maxNumLines);
+		}
+		pw.flush();
+	}
+
+	private void configureRdfGenerator(RdfGenerator rdfGenerator, KR2RMLRDFWriter rdfWriter) {
+		rdfGenerator.setExecutionParallelism(executionParallelism);
+		rdfGenerator.setOutputFormat(outputFormat);
+		rdfGenerator.setDeduplicateTriples(deduplicateTriples);
+		rdfGenerator.setColumnarStorage(columnarStorage);
+		rdfGenerator.setRDFWriter(rdfWriter);
+	}
+
+	CompiledKR2RMLMapping getCompiledMapping(final URL modelURL, final String sourceName)
+			throws Exception {
+		String key = modelURL.toString() + "\n" + sourceName;
+		FutureTask<CompiledKR2RMLMapping> task = new FutureTask<CompiledKR2RMLMapping>(
+				new Callable<CompiledKR2RMLMapping>() {
+					@Override
+					public CompiledKR2RMLMapping call() throws Exception {
+						Model model = getModel(modelURL);
+						R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(sourceName, modelURL);
+						WorksheetR2RMLJenaModelParser parser = new WorksheetR2RMLJenaModelParser(model, id);
+						// Jena models are not safe for concurrent access
+						synchronized (model) {
+							return new CompiledKR2RMLMapping(parser.parse());
+						}
+					}
+				});
+		return getOrRun(mappings, key, task);
+	}
+
+	private Model getModel(final URL modelURL) throws Exception {
+		FutureTask<Model> task = new FutureTask<Model>(new Callable<Model>() {
+			@Override
+			public Model call() throws Exception {
+				logger.info("Loading model " + modelURL);
+				return WorksheetR2RMLJenaModelParser.loadSourceModelIntoJenaModel(modelURL);
+			}
+		});
+		return getOrRun(models, modelURL.toString(), task);
+	}
+
+	/**
+	 * Runs task unless another thread already registered one for key, and
+	 * waits for the result of the registered one.
+	 */
+	private static <T> T getOrRun(ConcurrentHashMap<String, Future<T>> tasks, String key,
+			FutureTask<T> task) throws Exception {
+		Future<T> future = tasks.putIfAbsent(key, task);
+		if (future == null) {
+			future = task;
+			task.run();
+		}
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void mergeOutputs(List<Source> sources, List<SourceReport> reports,
+			List<File> outputFiles, File mergedOutputFile) throws IOException {
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(mergedOutputFile));
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			for (int i = 0; i < sources.size(); i++) {
+				if (sources.get(i).getOutputFile() != null || !reports.get(i).isSuccess()) {
+					continue;
+				}
+				InputStream in = new BufferedInputStream(new FileInputStream(outputFiles.get(i)));
+				try {
+					int n;
+					while ((n = in.read(buffer)) != -1) {
+						out.write(buffer, 0, n);
+					}
+				} finally {
+					in.close();
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return the sources of a manifest: either a JSON array of sources, or an
+	 *         object with the "sources" array and "defaults" for the
+	 *         properties missing in the sources.
+	 */
+	public static List<Source> readManifest(File manifestFile, JSONObject defaults)
+			throws IOException, JSONException, KarmaException {
+		String contents = FileUtil.readFileContentsToString(manifestFile, "UTF-8").trim();
+		JSONArray jsonSources;
+		JSONObject manifestDefaults = defaults;
+		if (contents.startsWith("[")) {
+			jsonSources = new JSONArray(contents);
+		} else {
+			JSONObject manifest = new JSONObject(contents);
+			jsonSources = manifest.getJSONArray("sources");
+			JSONObject fileDefaults = manifest.optJSONObject("defaults");
+			if (fileDefaults != null) {
+				manifestDefaults = fileDefaults;
+				if (defaults != null) {
+					Iterator<?> keys = defaults.keys();
+					while (keys.hasNext()) {
+						String key = (String) keys.next();
+						if (!manifestDefaults.has(key)) {
+							manifestDefaults.put(key, defaults.get(key));
+						}
+					}
+				}
+			}
+		}
+		File baseDirectory = manifestFile.getAbsoluteFile().getParentFile();
+		List<Source> sources = new ArrayList<Source>();
+		for (int i = 0; i < jsonSources.length(); i++) {
+			sources.add(Source.createFromJSON(jsonSources.getJSONObject(i), manifestDefaults, baseDirectory));
+		}
+		return sources;
+	}
+}
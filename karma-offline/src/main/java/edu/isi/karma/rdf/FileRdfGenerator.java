@@ -22,9 +22,9 @@
 package edu.isi.karma.rdf;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.Reader;
 
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -40,8 +40,10 @@ import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
 import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
 import edu.isi.karma.kr2rml.mapping.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
 import edu.isi.karma.rep.Worksheet;
 import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.util.EncodingDetector;
 import edu.isi.karma.util.FileUtil;
 import edu.isi.karma.util.JSONUtil;
 import edu.isi.karma.webserver.KarmaException;
@@ -55,7 +57,7 @@ public class FileRdfGenerator extends RdfGenerator {
         Worksheet worksheet = null;
 
         if (inputType.equalsIgnoreCase("JSON")) {
-            FileReader reader = new FileReader(inputFile);
+            Reader reader = EncodingDetector.getInputStreamReader(inputFile, encoding);
             Object json = JSONUtil.createJson(reader);
             JsonImport imp = new JsonImport(json, inputFile.getName(), workspace, encoding, maxNumLines);
             worksheet = imp.generateWorksheet();
@@ -76,6 +78,7 @@ public class FileRdfGenerator extends RdfGenerator {
 	public void generateRdf(String inputType, R2RMLMappingIdentifier id,
 			 PrintWriter pw, File inputFile, String encoding, int maxNumLines)
 			throws IOException, JSONException, KarmaException {
+		checkOutputFormat();
 		logger.info("Generating worksheet from the data source ...");
 		Workspace workspace = initializeWorkspace();
     		
@@ -101,12 +104,38 @@ public class FileRdfGenerator extends RdfGenerator {
 		
 		// RDF generation object initialization
 		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
-		        workspace.getFactory(), workspace.getOntologyManager(), pw,
-		        mapping, errorReport, false);
+		        workspace.getFactory(), workspace.getOntologyManager(),
+		        createRDFWriter(workspace, pw, errorReport), mapping, errorReport, false);
+		rdfGen.setExecutionParallelism(executionParallelism);
 
 		// Generate the rdf
 		rdfGen.generateRDF(false);
 		this.removeWorkspace(workspace);
 		workspace = null;
 	}
+
+	/**
+	 * Generates the RDF of inputFile with a mapping that has already been
+	 * parsed, e.g. one that is shared by several files.
+	 */
+	public void generateRdf(String inputType, CompiledKR2RMLMapping compiledMapping,
+			 PrintWriter pw, File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		checkOutputFormat();
+		logger.info("Generating worksheet from the data source ...");
+		Workspace workspace = initializeWorkspace();
+		try {
+			Worksheet worksheet;
+			try {
+				worksheet = generateWorksheetFromFile(inputFile, inputType, workspace, encoding, maxNumLines);
+			} catch (ClassNotFoundException e) {
+				throw new KarmaException("Unable to generate worksheet from file : " + e.getMessage());
+			}
+			logger.info("Generating RDF...");
+			generateRDFFromWorksheet(worksheet, workspace, compiledMapping, pw);
+		} finally {
+			shutdownBatchExecutor();
+			this.removeWorkspace(workspace);
+		}
+	}
 }
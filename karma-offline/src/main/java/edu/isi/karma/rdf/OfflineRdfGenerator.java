@@ -23,15 +23,23 @@
 
 package edu.isi.karma.rdf;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.commons.cli2.CommandLine;
 import org.apache.commons.cli2.Group;
@@ -41,7 +49,10 @@ import org.apache.commons.cli2.builder.DefaultOptionBuilder;
 import org.apache.commons.cli2.builder.GroupBuilder;
 import org.apache.commons.cli2.commandline.Parser;
 import org.apache.commons.cli2.util.HelpFormatter;
+import org.apache.commons.io.output.NullWriter;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +60,8 @@ import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 
 import edu.isi.karma.common.JenaWritable;
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.RDFOutputFormat;
 import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
 import edu.isi.karma.metadata.KarmaMetadataManager;
 import edu.isi.karma.metadata.PythonTransformationMetadata;
@@ -91,6 +104,11 @@ public class OfflineRdfGenerator {
                 return;
             }
 
+            if (cl.hasOption("--manifest") || cl.hasOption("--inputdir")) {
+                generateRdfInBatch(cl);
+                return;
+            }
+
             String inputType = (String) cl.getValue("--sourcetype");
             String modelFilePath = (String) cl.getValue("--modelfilepath");
             String modelURLString = (String) cl.getValue("--modelurl");
@@ -128,18 +146,30 @@ public class OfflineRdfGenerator {
                 return;
             }
 
-            KarmaMetadataManager userMetadataManager = new KarmaMetadataManager();
-            userMetadataManager.register(new UserPreferencesMetadata());
-            userMetadataManager.register(new PythonTransformationMetadata());
+            registerUserMetadata();
 
             /**
              * PREPATRE THE OUTPUT OBJECTS *
              */
-            OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(outputFilePath), "UTF-8");
-            BufferedWriter bw = new BufferedWriter(fw);
-//	        Model model = ModelFactory.createDefaultModel();
-//	        Writer bw = new JenaWritable(model);
-	        PrintWriter pw = new PrintWriter(bw);
+            RDFOutputFormat outputFormat = RDFOutputFormat.N3;
+            String sOutputFormat = (String) cl.getValue("--outputformat");
+            if (sOutputFormat != null) {
+                outputFormat = RDFOutputFormat.valueOf(sOutputFormat.toUpperCase());
+            }
+            OutputStream os = new BufferedOutputStream(new FileOutputStream(outputFilePath));
+	        PrintWriter pw;
+	        // Binary formats are the only writer of the stream, pw goes nowhere
+	        KR2RMLRDFWriter rdfWriter = null;
+	        if (outputFormat.isBinary()) {
+	        	rdfWriter = outputFormat.createWriter(null, os, cl.hasOption("--deduplicate"));
+	        	pw = new PrintWriter(new NullWriter());
+	        } else {
+	        	OutputStreamWriter fw = new OutputStreamWriter(os, "UTF-8");
+	        	BufferedWriter bw = new BufferedWriter(fw);
+//	        	Model model = ModelFactory.createDefaultModel();
+//	        	Writer bw = new JenaWritable(model);
+	        	pw = new PrintWriter(bw);
+	        }
 
 	        long l = System.currentTimeMillis();
 	        /**
@@ -148,10 +178,13 @@ public class OfflineRdfGenerator {
             SemanticTypeUtil.setSemanticTypeTrainingStatus(false);
             // Database table
             if (inputType.equals("DB")) {
-                generateRdfFromDatabaseTable(cl, modelURL, pw);
+                generateRdfFromDatabaseTable(cl, modelURL, pw, rdfWriter);
             } // File based worksheets such as JSON, XML, CSV
             else {
-                generateRdfFromFile(cl, inputType, modelURL, pw);
+                generateRdfFromFile(cl, inputType, modelURL, pw, rdfWriter);
+            }
+            if (rdfWriter != null) {
+            	rdfWriter.close();
             }
             pw.close();
             logger.info("done after {}", (System.currentTimeMillis() - l));
@@ -162,8 +195,139 @@ public class OfflineRdfGenerator {
         }
     }
 
+	private static void registerUserMetadata() throws KarmaException {
+		KarmaMetadataManager userMetadataManager = new KarmaMetadataManager();
+		userMetadataManager.register(new UserPreferencesMetadata());
+		userMetadataManager.register(new PythonTransformationMetadata());
+	}
+
+	/**
+	 * Generates the RDF of the sources of a manifest, or of the files of a
+	 * directory, in parallel. The options given on the command line are the
+	 * defaults of the sources of the manifest.
+	 */
+	private static void generateRdfInBatch(CommandLine cl) throws Exception {
+		String outputFilePath = (String) cl.getValue("--outputfile");
+		String outputDirectoryPath = (String) cl.getValue("--outputdir");
+		if (outputFilePath == null && outputDirectoryPath == null) {
+			logger.error("Mandatory value missing. Please provide argument value "
+					+ "for outputfile or outputdir.");
+			return;
+		}
+
+		JSONObject defaults = new JSONObject();
+		for (String key : new String[] {"sourcetype", "modelfilepath", "modelurl", "sourcename",
+				"encoding", "maxNumLines", "dbtype", "hostname", "username", "password",
+				"portnumber", "dbname"}) {
+			Object value = cl.getValue("--" + key);
+			if (value != null) {
+				defaults.put(key, value.toString());
+			}
+		}
+
+		List<BatchRdfGenerator.Source> sources;
+		String manifestPath = (String) cl.getValue("--manifest");
+		if (manifestPath != null) {
+			File manifestFile = new File(manifestPath);
+			if (!manifestFile.exists()) {
+				logger.error("File not found: " + manifestFile.getAbsolutePath());
+				return;
+			}
+			sources = BatchRdfGenerator.readManifest(manifestFile, defaults);
+		} else {
+			File inputDirectory = new File((String) cl.getValue("--inputdir"));
+			if (!inputDirectory.isDirectory()) {
+				logger.error("Directory not found: " + inputDirectory.getAbsolutePath());
+				return;
+			}
+			String glob = (String) cl.getValue("--inputglob");
+			final PathMatcher matcher = FileSystems.getDefault().getPathMatcher(
+					"glob:" + (glob != null ? glob : "*"));
+			File[] inputFiles = inputDirectory.listFiles(new FileFilter() {
+				@Override
+				public boolean accept(File file) {
+					return file.isFile() && matcher.matches(file.toPath().getFileName());
+				}
+			});
+			Arrays.sort(inputFiles);
+			sources = new ArrayList<BatchRdfGenerator.Source>();
+			for (File inputFile : inputFiles) {
+				JSONObject json = new JSONObject();
+				json.put("filepath", inputFile.getAbsolutePath());
+				sources.add(BatchRdfGenerator.Source.createFromJSON(json, defaults, null));
+			}
+		}
+		if (sources.isEmpty()) {
+			logger.error("No source to generate RDF for");
+			return;
+		}
+
+		RDFOutputFormat outputFormat = RDFOutputFormat.N3;
+		String sOutputFormat = (String) cl.getValue("--outputformat");
+		if (sOutputFormat != null) {
+			outputFormat = RDFOutputFormat.valueOf(sOutputFormat.toUpperCase());
+		}
+		if (outputDirectoryPath != null) {
+			File outputDirectory = new File(outputDirectoryPath);
+			outputDirectory.mkdirs();
+			for (BatchRdfGenerator.Source source : sources) {
+				if (source.getOutputFile() == null) {
+					String name = source.getInputFile() != null ? source.getInputFile().getName() : source.getSourceName();
+					source.setOutputFile(new File(outputDirectory, name + "." + outputFormat.getFileExtension()));
+				}
+			}
+		}
+
+		registerUserMetadata();
+		SemanticTypeUtil.setSemanticTypeTrainingStatus(false);
+
+		String sBatchThreads = (String) cl.getValue("--batchthreads");
+		int batchThreads = sBatchThreads != null ? Integer.parseInt(sBatchThreads)
+				: Runtime.getRuntime().availableProcessors();
+		BatchRdfGenerator batchRdfGen = new BatchRdfGenerator(batchThreads);
+		batchRdfGen.setOutputFormat(outputFormat);
+		batchRdfGen.setDeduplicateTriples(cl.hasOption("--deduplicate"));
+		batchRdfGen.setColumnarStorage(cl.hasOption("--columnar"));
+		String sThreads = (String) cl.getValue("--threads");
+		if (sThreads != null) {
+			batchRdfGen.setExecutionParallelism(Integer.parseInt(sThreads));
+		}
+		if (cl.hasOption("--streaming")) {
+			String sChunkSize = (String) cl.getValue("--chunksize");
+			batchRdfGen.setRecordsPerChunk(sChunkSize != null ? Integer.parseInt(sChunkSize)
+					: StreamingFileRdfGenerator.DEFAULT_RECORDS_PER_CHUNK);
+		}
+
+		long l = System.currentTimeMillis();
+		File mergedOutputFile = outputDirectoryPath == null ? new File(outputFilePath) : null;
+		List<BatchRdfGenerator.SourceReport> reports = batchRdfGen.generateRdf(sources, mergedOutputFile);
+
+		int numFailed = 0;
+		JSONArray jsonReports = new JSONArray();
+		for (BatchRdfGenerator.SourceReport report : reports) {
+			if (!report.isSuccess()) {
+				numFailed++;
+				logger.error("Failed to generate RDF for " + report.getSource().getName() + ": " + report.getError());
+			}
+			jsonReports.put(report.toJSON());
+		}
+		String reportFilePath = (String) cl.getValue("--batchreport");
+		if (reportFilePath != null) {
+			PrintWriter reportWriter = new PrintWriter(reportFilePath, "UTF-8");
+			reportWriter.println(jsonReports.toString(4));
+			reportWriter.close();
+		}
+		logger.info("done after {}", (System.currentTimeMillis() - l));
+		logger.info("RDF generated for " + (reports.size() - numFailed) + " of " + reports.size() + " sources");
+		if (mergedOutputFile != null) {
+			logger.info("RDF published at: " + outputFilePath);
+		} else {
+			logger.info("RDF published in: " + outputDirectoryPath);
+		}
+	}
+
 	private static void generateRdfFromDatabaseTable(CommandLine cl, URL modelURL,
-			PrintWriter pw) throws IOException, JSONException, KarmaException,
+			PrintWriter pw, KR2RMLRDFWriter rdfWriter) throws IOException, JSONException, KarmaException,
 			SQLException, ClassNotFoundException {
 		String dbtypeStr = (String) cl.getValue("--dbtype");
 		String hostname = (String) cl.getValue("--hostname");
@@ -207,13 +371,25 @@ public class OfflineRdfGenerator {
 		R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(tablename, modelURL);
 		DatabaseTableRDFGenerator dbRdfGen = new DatabaseTableRDFGenerator(dbType,
 		        hostname, portnumber, username, password, dBorSIDName, tablename, encoding);
+		configureRdfGenerator(cl, dbRdfGen, rdfWriter);
+		String partitionColumn = (String) cl.getValue("--partitioncolumn");
+		if (partitionColumn != null) {
+			String sPartitions = (String) cl.getValue("--partitions");
+			int numPartitions = sPartitions != null ? Integer.parseInt(sPartitions)
+					: Runtime.getRuntime().availableProcessors();
+			String sPartitionMethod = (String) cl.getValue("--partitionmethod");
+			DatabaseTableRDFGenerator.PartitionMethod partitionMethod = sPartitionMethod != null
+					? DatabaseTableRDFGenerator.PartitionMethod.valueOf(sPartitionMethod.toUpperCase())
+					: DatabaseTableRDFGenerator.PartitionMethod.RANGE;
+			dbRdfGen.setPartitioning(partitionColumn, numPartitions, partitionMethod);
+		}
 		
 		dbRdfGen.generateRDF(pw, id);
         pw.flush();
 	}
 
 	private static void generateRdfFromFile(CommandLine cl, String inputType,
-			URL modelURL, PrintWriter pw)
+			URL modelURL, PrintWriter pw, KR2RMLRDFWriter rdfWriter)
 			throws JSONException, IOException, KarmaException,
 			ClassNotFoundException, SQLException {
 		String sourceFilePath = (String) cl.getValue("--filepath");
@@ -241,11 +417,39 @@ public class OfflineRdfGenerator {
 			return;
 		}
 		R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(sourceName, modelURL);
-		FileRdfGenerator rdfGenerator = new FileRdfGenerator();
-		rdfGenerator.generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+		if (cl.hasOption("--streaming")) {
+			StreamingFileRdfGenerator rdfGenerator = null;
+			String sChunkSize = (String) cl.getValue("--chunksize");
+			if (sChunkSize != null) {
+				rdfGenerator = new StreamingFileRdfGenerator(Integer.parseInt(sChunkSize));
+			} else {
+				rdfGenerator = new StreamingFileRdfGenerator();
+			}
+			configureRdfGenerator(cl, rdfGenerator, rdfWriter);
+			rdfGenerator.generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+		} else {
+			FileRdfGenerator rdfGenerator = new FileRdfGenerator();
+			configureRdfGenerator(cl, rdfGenerator, rdfWriter);
+			rdfGenerator.generateRdf(inputType, id, pw, inputFile, encoding, maxNumLines);
+		}
         pw.flush();
 	}
 
+	private static void configureRdfGenerator(CommandLine cl, RdfGenerator rdfGenerator,
+			KR2RMLRDFWriter rdfWriter) {
+		String sThreads = (String) cl.getValue("--threads");
+		if (sThreads != null) {
+			rdfGenerator.setExecutionParallelism(Integer.parseInt(sThreads));
+		}
+		String outputFormat = (String) cl.getValue("--outputformat");
+		if (outputFormat != null) {
+			rdfGenerator.setOutputFormat(RDFOutputFormat.valueOf(outputFormat.toUpperCase()));
+		}
+		rdfGenerator.setDeduplicateTriples(cl.hasOption("--deduplicate"));
+		rdfGenerator.setColumnarStorage(cl.hasOption("--columnar"));
+		rdfGenerator.setRDFWriter(rdfWriter);
+	}
+
     private static Group createCommandLineOptions() {
         DefaultOptionBuilder obuilder = new DefaultOptionBuilder();
         ArgumentBuilder abuilder = new ArgumentBuilder();
@@ -267,6 +471,30 @@ public class OfflineRdfGenerator {
                 .withOption(buildOption("portnumber", "portnumber for database connection", "portnumber", obuilder, abuilder))
                 .withOption(buildOption("dbname", "database or SID name for database connection", "dbname", obuilder, abuilder))
                 .withOption(buildOption("tablename", "hostname for database connection", "tablename", obuilder, abuilder))
+                .withOption(buildOption("partitioncolumn", "integer column used to read the table over several connections in parallel", "partitioncolumn", obuilder, abuilder))
+                .withOption(buildOption("partitions", "number of connections reading the table when partitioncolumn is given. Default: number of processors", "partitions", obuilder, abuilder))
+                .withOption(buildOption("partitionmethod", "how the values of partitioncolumn are split. Valid values: RANGE, MODULO. Default: RANGE", "partitionmethod", obuilder, abuilder))
+                .withOption(obuilder
+                .withLongName("streaming")
+                .withDescription("read CSV, JSON and XML files a chunk of records at a time instead of loading the whole file")
+                .create())
+                .withOption(buildOption("chunksize", "number of records per chunk when streaming. Default: 10000", "chunksize", obuilder, abuilder))
+                .withOption(buildOption("outputformat", "format of the RDF output. Valid values: N3, NTRIPLES, BINARY. Default: N3", "outputformat", obuilder, abuilder))
+                .withOption(obuilder
+                .withLongName("deduplicate")
+                .withDescription("remove the duplicate triples of every row when writing NTRIPLES or BINARY")
+                .create())
+                .withOption(obuilder
+                .withLongName("columnar")
+                .withDescription("store the worksheet by column, which needs much less memory for large sources")
+                .create())
+                .withOption(buildOption("manifest", "location of a JSON file listing the sources to generate RDF for in parallel", "manifest", obuilder, abuilder))
+                .withOption(buildOption("inputdir", "directory of the input files to generate RDF for in parallel", "inputdir", obuilder, abuilder))
+                .withOption(buildOption("inputglob", "pattern of the names of the files of inputdir to use. Default: *", "inputglob", obuilder, abuilder))
+                .withOption(buildOption("outputdir", "directory where the RDF of every source of a batch is written to a file of its own, instead of outputfile", "outputdir", obuilder, abuilder))
+                .withOption(buildOption("batchthreads", "number of sources of a batch processed at the same time. Default: number of processors", "batchthreads", obuilder, abuilder))
+                .withOption(buildOption("batchreport", "location of the JSON report of the sources of a batch", "batchreport", obuilder, abuilder))
+                .withOption(buildOption("threads", "number of threads generating the RDF in batches of rows. Default: one task per triples map and row", "threads", obuilder, abuilder))
                 .withOption(obuilder
                 .withLongName("help")
                 .withDescription("print this message")
@@ -0,0 +1,391 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.XML;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.com.bytecode.opencsv.CSVReader;
+import edu.isi.karma.imp.json.JsonImport;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.mapping.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HTable;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Table;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+import edu.isi.karma.util.EncodingDetector;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Generates RDF from CSV, JSON and XML files without loading the whole file
+ * into a worksheet. The top level records of the file are read incrementally
+ * and every {@link #getRecordsPerChunk()} records are turned into a worksheet
+ * of their own, the same way {@link DatabaseTableRDFGenerator} chunks a
+ * database table. The memory used is bounded by the chunk size rather than by
+ * the size of the file.
+ *
+ * JSON files are streamed when the top level value is an array; every element
+ * of the array is a record. XML files are streamed on the children of the
+ * document element. Any other JSON document is read as a single record.
+ */
+public class StreamingFileRdfGenerator extends RdfGenerator {
+
+	private static Logger logger = LoggerFactory.getLogger(StreamingFileRdfGenerator.class);
+	static final int DEFAULT_RECORDS_PER_CHUNK = 10000;
+
+	private final char delimiter = ',';
+	private final char quoteCharacter = '\"';
+	private final char escapeCharacter = '\\';
+	private int recordsPerChunk;
+
+	public StreamingFileRdfGenerator() {
+		this(DEFAULT_RECORDS_PER_CHUNK);
+	}
+
+	public StreamingFileRdfGenerator(int recordsPerChunk) {
+		super();
+		this.recordsPerChunk = recordsPerChunk;
+	}
+
+	public int getRecordsPerChunk() {
+		return recordsPerChunk;
+	}
+
+	public void generateRdf(String inputType, R2RMLMappingIdentifier id,
+			PrintWriter pw, File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		// Parse and plan the model once for all the chunks
+		WorksheetR2RMLJenaModelParser parser = new WorksheetR2RMLJenaModelParser(id);
+		generateRdf(inputType, new CompiledKR2RMLMapping(parser.parse()), pw, inputFile, encoding, maxNumLines);
+	}
+
+	/**
+	 * Streams inputFile with a mapping that has already been parsed, e.g. one
+	 * that is shared by several files.
+	 */
+	public void generateRdf(String inputType, CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		logger.info("Streaming RDF generation from " + inputFile.getName() + " in chunks of " + recordsPerChunk + " records ...");
+		if (!inputType.equalsIgnoreCase("CSV") && !inputType.equalsIgnoreCase("JSON")
+				&& !inputType.equalsIgnoreCase("XML")) {
+			throw new KarmaException("Streaming is not supported for source type: " + inputType);
+		}
+		checkOutputFormat();
+
+		int numRecords = 0;
+		try {
+			if (inputType.equalsIgnoreCase("CSV")) {
+				numRecords = generateRdfFromCSV(compiledMapping, pw, inputFile, encoding, maxNumLines);
+			} else if (inputType.equalsIgnoreCase("JSON")) {
+				numRecords = generateRdfFromJSON(compiledMapping, pw, inputFile, encoding, maxNumLines);
+			} else {
+				numRecords = generateRdfFromXML(compiledMapping, pw, inputFile, encoding, maxNumLines);
+			}
+		} finally {
+			shutdownBatchExecutor();
+		}
+		logger.info("done after " + numRecords + " records");
+	}
+
+	private int generateRdfFromCSV(CompiledKR2RMLMapping compiledMapping, PrintWriter pw,
+			File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		BufferedReader br = new BufferedReader(EncodingDetector.getInputStreamReader(inputFile, encoding));
+		try {
+			String headerLine = br.readLine();
+			if (headerLine == null) {
+				return 0;
+			}
+			String[] columnNames = parseCSVLine(headerLine);
+			if (columnNames == null) {
+				return 0;
+			}
+
+			List<String[]> chunk = new ArrayList<String[]>(recordsPerChunk);
+			int counter = 0;
+			String line = null;
+			while ((line = br.readLine()) != null) {
+				if (maxNumLines > 0 && counter >= maxNumLines) {
+					break;
+				}
+				String[] rowValues = parseCSVLine(line);
+				if (rowValues == null) {
+					continue;
+				}
+				chunk.add(rowValues);
+				counter++;
+				if (chunk.size() == recordsPerChunk) {
+					generateRdfFromCSVChunk(compiledMapping, pw, inputFile, encoding, columnNames, chunk);
+					logger.debug("Done for " + counter + " rows ...");
+					chunk.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				generateRdfFromCSVChunk(compiledMapping, pw, inputFile, encoding, columnNames, chunk);
+			}
+			return counter;
+		} finally {
+			br.close();
+		}
+	}
+
+	private void generateRdfFromCSVChunk(CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, File inputFile, String encoding,
+			String[] columnNames, List<String[]> chunk)
+			throws IOException, JSONException, KarmaException {
+		Workspace workspace = initializeWorkspace();
+		RepFactory factory = workspace.getFactory();
+		Worksheet wk = factory.createWorksheet(inputFile.getName(), workspace, encoding);
+		wk.getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, SourceTypes.CSV.toString());
+
+		HTable headers = wk.getHeaders();
+		List<String> hNodeIdList = new ArrayList<String>(columnNames.length);
+		for (String columnName : columnNames) {
+			HNode hNode = headers.addHNode(columnName, wk, factory);
+			hNodeIdList.add(hNode.getId());
+		}
+
+		Table dataTable = wk.getDataTable();
+		for (String[] rowValues : chunk) {
+			Row row = dataTable.addRow(factory);
+			for (int i = 0; i < rowValues.length; i++) {
+				if (i < hNodeIdList.size()) {
+					row.setValue(hNodeIdList.get(i), rowValues[i], factory);
+				} else {
+					logger.error("More data elements detected in the row than number of headers!");
+				}
+			}
+		}
+		generateRDFFromChunk(compiledMapping, pw, workspace, wk);
+	}
+
+	private String[] parseCSVLine(String line) throws IOException {
+		CSVReader reader = new CSVReader(new StringReader(line), delimiter,
+				quoteCharacter, escapeCharacter);
+		try {
+			String[] rowValues = reader.readNext();
+			if (rowValues == null || rowValues.length == 0) {
+				return null;
+			}
+			return rowValues;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private int generateRdfFromJSON(CompiledKR2RMLMapping compiledMapping, PrintWriter pw,
+			File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		Reader reader = new BufferedReader(EncodingDetector.getInputStreamReader(inputFile, encoding));
+		try {
+			JSONTokener tokener = new JSONTokener(reader);
+			char c = tokener.nextClean();
+			if (c != '[') {
+				// Not a collection, nothing to stream over
+				tokener.back();
+				Object json = tokener.nextValue();
+				generateRdfFromJSONChunk(compiledMapping, pw, inputFile, encoding, json);
+				return 1;
+			}
+
+			JSONArray chunk = new JSONArray();
+			int counter = 0;
+			if (tokener.nextClean() != ']') {
+				tokener.back();
+				while (true) {
+					if (maxNumLines > 0 && counter >= maxNumLines) {
+						break;
+					}
+					chunk.put(tokener.nextValue());
+					counter++;
+					if (chunk.length() == recordsPerChunk) {
+						generateRdfFromJSONChunk(compiledMapping, pw, inputFile, encoding, chunk);
+						logger.debug("Done for " + counter + " objects ...");
+						chunk = new JSONArray();
+					}
+
+					c = tokener.nextClean();
+					if (c == ']') {
+						break;
+					}
+					if (c != ',') {
+						throw tokener.syntaxError("Expected a ',' or ']'");
+					}
+				}
+			}
+			if (chunk.length() != 0) {
+				generateRdfFromJSONChunk(compiledMapping, pw, inputFile, encoding, chunk);
+			}
+			return counter;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void generateRdfFromJSONChunk(CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, File inputFile, String encoding, Object json)
+			throws IOException, JSONException, KarmaException {
+		Workspace workspace = initializeWorkspace();
+		JsonImport imp = new JsonImport(json, inputFile.getName(), workspace, encoding, -1);
+		Worksheet wk = imp.generateWorksheet();
+		generateRDFFromChunk(compiledMapping, pw, workspace, wk);
+	}
+
+	/**
+	 * Every chunk of an XML file is rebuilt as a document that has the original
+	 * document element (with its attributes) and a batch of its children, so
+	 * the worksheet generated for a chunk has the same columns as the one that
+	 * would have been generated for the whole file.
+	 */
+	private int generateRdfFromXML(CompiledKR2RMLMapping compiledMapping, PrintWriter pw,
+			File inputFile, String encoding, int maxNumLines)
+			throws IOException, JSONException, KarmaException {
+		Reader reader = new BufferedReader(EncodingDetector.getInputStreamReader(inputFile, encoding));
+		XMLEventReader eventReader = null;
+		try {
+			XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+			XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+			XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+			eventReader = inputFactory.createXMLEventReader(reader);
+
+			StartElement rootElement = null;
+			while (eventReader.hasNext()) {
+				XMLEvent event = eventReader.nextEvent();
+				if (event.isStartElement()) {
+					rootElement = event.asStartElement();
+					break;
+				}
+			}
+			if (rootElement == null) {
+				return 0;
+			}
+
+			StringWriter chunk = null;
+			XMLEventWriter chunkWriter = null;
+			int chunkSize = 0;
+			int counter = 0;
+			int depth = 0;
+			while (eventReader.hasNext()) {
+				XMLEvent event = eventReader.nextEvent();
+				if (depth == 0) {
+					if (event.isEndElement()) {
+						// End of the document element
+						break;
+					}
+					if (!event.isStartElement()) {
+						// Whitespace and comments between the records
+						continue;
+					}
+					if (maxNumLines > 0 && counter >= maxNumLines) {
+						break;
+					}
+					if (chunk == null) {
+						chunk = new StringWriter();
+						chunkWriter = outputFactory.createXMLEventWriter(chunk);
+						chunkWriter.add(rootElement);
+					}
+				}
+				chunkWriter.add(event);
+				if (event.isStartElement()) {
+					depth++;
+				} else if (event.isEndElement()) {
+					depth--;
+					if (depth == 0) {
+						counter++;
+						chunkSize++;
+						if (chunkSize == recordsPerChunk) {
+							generateRdfFromXMLChunk(compiledMapping, pw, inputFile, encoding, chunk, chunkWriter, rootElement, eventFactory);
+							logger.debug("Done for " + counter + " elements ...");
+							chunk = null;
+							chunkWriter = null;
+							chunkSize = 0;
+						}
+					}
+				}
+			}
+			if (chunk != null) {
+				generateRdfFromXMLChunk(compiledMapping, pw, inputFile, encoding, chunk, chunkWriter, rootElement, eventFactory);
+			}
+			return counter;
+		} catch (XMLStreamException e) {
+			throw new KarmaException("Unable to read XML file " + inputFile.getName() + ": " + e.getMessage());
+		} finally {
+			if (eventReader != null) {
+				try {
+					eventReader.close();
+				} catch (XMLStreamException e) {
+					logger.error("Unable to close XML reader", e);
+				}
+			}
+			reader.close();
+		}
+	}
+
+	private void generateRdfFromXMLChunk(CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, File inputFile, String encoding, StringWriter chunk,
+			XMLEventWriter chunkWriter, StartElement rootElement,
+			XMLEventFactory eventFactory) throws XMLStreamException,
+			IOException, JSONException, KarmaException {
+		chunkWriter.add(eventFactory.createEndElement(rootElement.getName(), null));
+		chunkWriter.close();
+		JSONObject json = XML.toJSONObject(chunk.toString());
+		generateRdfFromJSONChunk(compiledMapping, pw, inputFile, encoding, json);
+	}
+
+	private void generateRDFFromChunk(CompiledKR2RMLMapping compiledMapping,
+			PrintWriter pw, Workspace workspace, Worksheet wk)
+			throws IOException, JSONException, KarmaException {
+		generateRDFFromWorksheet(wk, workspace, compiledMapping, pw);
+		removeWorkspace(workspace);
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+
+/**
+ * Checks that generating the rows in batches on several threads gives the
+ * same triples, row by row and in the same order, as the per row executor.
+ */
+public class TestBatchFileRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestBatchFileRdfGenerator.class);
+
+	@Test
+	public void testBatchCSV() {
+		try {
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				logger.info("Load file: " + modelFile.getName());
+				File csvFile = new File(csvURL.toURI());
+				List<HashSet<String>> expected = generate(0, "csv", csvFile, modelFile);
+				List<HashSet<String>> batched = generate(4, "csv", csvFile, modelFile);
+				assertEquals(modelFile.getName(), expected, batched);
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBatchJSON() {
+		try {
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			List<HashSet<String>> expected = generate(0, "json", jsonFile, modelFile);
+			List<HashSet<String>> batched = generate(2, "json", jsonFile, modelFile);
+			assertNotEquals(0, batched.size());
+			assertEquals(expected, batched);
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the triples of every row, in the order the rows were written
+	 */
+	private List<HashSet<String>> generate(int executionParallelism, String inputType,
+			File inputFile, File modelFile) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		FileRdfGenerator rdfGen = new FileRdfGenerator();
+		rdfGen.setExecutionParallelism(executionParallelism);
+		rdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		pw.flush();
+
+		String lineSeparator = System.getProperty("line.separator");
+		List<HashSet<String>> rows = new ArrayList<HashSet<String>>();
+		for (String row : sw.toString().split(lineSeparator + lineSeparator)) {
+			rows.add(getHashSet(row.split(lineSeparator)));
+		}
+		return rows;
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+
+/**
+ * Checks that generating the RDF of several sources in parallel gives the same
+ * triples as generating the RDF of every source on its own.
+ */
+public class TestBatchRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestBatchRdfGenerator.class);
+
+	@Test
+	public void testBatchCSV() {
+		try {
+			File outputDirectory = createOutputDirectory();
+			List<BatchRdfGenerator.Source> sources = new ArrayList<BatchRdfGenerator.Source>();
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				BatchRdfGenerator.Source source = BatchRdfGenerator.Source.createFileSource("csv", new File(csvURL.toURI()),
+						modelFile.toURI().toURL(), modelFile.getName(), new File(outputDirectory, name + ".n3"));
+				source.setEncoding("utf-8");
+				sources.add(source);
+			}
+
+			List<BatchRdfGenerator.SourceReport> reports = new BatchRdfGenerator(3).generateRdf(sources, null);
+			assertEquals(sources.size(), reports.size());
+			for (BatchRdfGenerator.SourceReport report : reports) {
+				BatchRdfGenerator.Source source = report.getSource();
+				assertTrue(report.getError(), report.isSuccess());
+				HashSet<String> expected = generate("csv", source.getInputFile(), source.getModelURL(), source.getSourceName());
+				assertEquals(source.getName(), expected, getFileContent(source.getOutputFile()));
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBatchMergedOutput() {
+		try {
+			File outputDirectory = createOutputDirectory();
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			File csvFile = new File(getTestResource("csv/cbev2.WebConAltNames.csv").toURI());
+			File csvModelFile = new File(getTestResource("model/cbev2.WebConAltNames-model.ttl").toURI());
+			URL modelURL = modelFile.toURI().toURL();
+			URL csvModelURL = csvModelFile.toURI().toURL();
+
+			List<BatchRdfGenerator.Source> sources = new ArrayList<BatchRdfGenerator.Source>();
+			sources.add(BatchRdfGenerator.Source.createFileSource("json", jsonFile, modelURL, modelFile.getName(), null));
+			sources.add(BatchRdfGenerator.Source.createFileSource("csv", new File(outputDirectory, "missing.csv"),
+					csvModelURL, csvModelFile.getName(), null));
+			sources.add(BatchRdfGenerator.Source.createFileSource("csv", csvFile, csvModelURL, csvModelFile.getName(), null));
+
+			File mergedOutputFile = new File(outputDirectory, "merged.n3");
+			List<BatchRdfGenerator.SourceReport> reports = new BatchRdfGenerator(2).generateRdf(sources, mergedOutputFile);
+			assertTrue(reports.get(0).getError(), reports.get(0).isSuccess());
+			assertFalse(reports.get(1).isSuccess());
+			assertNotNull(reports.get(1).getError());
+			assertTrue(reports.get(2).getError(), reports.get(2).isSuccess());
+
+			HashSet<String> expected = generate("json", jsonFile, modelURL, modelFile.getName());
+			assertNotEquals(0, expected.size());
+			expected.addAll(generate("csv", csvFile, csvModelURL, csvModelFile.getName()));
+			assertEquals(expected, getFileContent(mergedOutputFile));
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testReadManifestWithDefaults() throws Exception {
+		File outputDirectory = createOutputDirectory();
+		File manifestFile = new File(outputDirectory, "manifest.json");
+		FileUtils.writeStringToFile(manifestFile, "{\"defaults\": {\"sourcetype\": \"csv\", "
+				+ "\"modelfilepath\": \"model.ttl\"}, \"sources\": ["
+				+ "{\"filepath\": \"a.csv\", \"sourcename\": \"a\"}, "
+				+ "{\"filepath\": \"b.json\", \"sourcetype\": \"json\", \"sourcename\": \"b\"}]}", "UTF-8");
+
+		for (JSONObject defaults : new JSONObject[] {new JSONObject(), null}) {
+			List<BatchRdfGenerator.Source> sources = BatchRdfGenerator.readManifest(manifestFile, defaults);
+			assertEquals(2, sources.size());
+			assertEquals("CSV", sources.get(0).getSourceType());
+			assertEquals(new File(outputDirectory, "model.ttl").toURI().toURL(), sources.get(0).getModelURL());
+			assertEquals(new File(outputDirectory, "a.csv"), sources.get(0).getInputFile());
+			assertEquals("a", sources.get(0).getSourceName());
+			assertEquals("JSON", sources.get(1).getSourceType());
+			assertEquals("b", sources.get(1).getSourceName());
+		}
+
+		JSONObject defaults = new JSONObject();
+		defaults.put("sourcetype", "xml");
+		defaults.put("modelurl", "http://example.org/model.ttl");
+		List<BatchRdfGenerator.Source> sources = BatchRdfGenerator.readManifest(manifestFile, defaults);
+		assertEquals("CSV", sources.get(0).getSourceType());
+		assertEquals(new File(outputDirectory, "model.ttl").toURI().toURL(), sources.get(0).getModelURL());
+	}
+
+	private HashSet<String> generate(String inputType, File inputFile, URL modelURL,
+			String sourceName) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(sourceName, modelURL);
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		new FileRdfGenerator().generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		pw.flush();
+		return getHashSet(sw.toString().split(System.getProperty("line.separator")));
+	}
+
+	private File createOutputDirectory() throws Exception {
+		File outputDirectory = File.createTempFile("karma-batch", "");
+		outputDirectory.delete();
+		outputDirectory.mkdirs();
+		outputDirectory.deleteOnExit();
+		return outputDirectory;
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
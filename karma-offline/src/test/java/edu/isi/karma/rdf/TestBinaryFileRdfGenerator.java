@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.BinaryKR2RMLRDFReader;
+import edu.isi.karma.kr2rml.BinaryKR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.N3KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.RDFOutputFormat;
+import edu.isi.karma.kr2rml.URIFormatter;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Checks that the binary output, read back with BinaryKR2RMLRDFReader and
+ * written with the N3 writer, gives the same rows of triples as writing N3
+ * directly.
+ */
+public class TestBinaryFileRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestBinaryFileRdfGenerator.class);
+
+	@Test
+	public void testBinaryCSV() {
+		try {
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				logger.info("Load file: " + modelFile.getName());
+				File csvFile = new File(csvURL.toURI());
+				List<HashSet<String>> expected = generate(0, "csv", csvFile, modelFile);
+				List<HashSet<String>> binary = generate(BinaryKR2RMLRDFWriter.DEFAULT_MAX_DICTIONARY_SIZE, "csv", csvFile, modelFile);
+				assertEquals(modelFile.getName(), expected, binary);
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBinaryJSON() {
+		try {
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			List<HashSet<String>> expected = generate(0, "json", jsonFile, modelFile);
+			List<HashSet<String>> binary = generate(BinaryKR2RMLRDFWriter.DEFAULT_MAX_DICTIONARY_SIZE, "json", jsonFile, modelFile);
+			assertNotEquals(0, binary.size());
+			assertEquals(expected, binary);
+
+			// A tiny dictionary is started over many times
+			List<HashSet<String>> resetDictionary = generate(8, "json", jsonFile, modelFile);
+			assertEquals(expected, resetDictionary);
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBinaryIsSmaller() throws Exception {
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		URIFormatter uriFormatter = new URIFormatter(workspace.getOntologyManager(), new ErrorReport());
+		StringWriter sw = new StringWriter();
+		N3KR2RMLRDFWriter n3Writer = new N3KR2RMLRDFWriter(uriFormatter, new PrintWriter(sw));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryKR2RMLRDFWriter binaryWriter = new BinaryKR2RMLRDFWriter(bytes, false);
+		for (int i = 0; i < 1000; i++) {
+			String subject = "<http://example.org/person/" + i + ">";
+			n3Writer.outputTripleWithURIObject(subject, "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>", "<http://xmlns.com/foaf/0.1/Person>");
+			n3Writer.outputTripleWithLiteralObject(subject, "<http://xmlns.com/foaf/0.1/name>", "caf\u00e9 " + i, null);
+			n3Writer.finishRow();
+			binaryWriter.outputTripleWithURIObject(subject, "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>", "<http://xmlns.com/foaf/0.1/Person>");
+			binaryWriter.outputTripleWithLiteralObject(subject, "<http://xmlns.com/foaf/0.1/name>", "caf\u00e9 " + i, null);
+			binaryWriter.finishRow();
+		}
+		n3Writer.flush();
+		binaryWriter.flush();
+		logger.info("N3: " + sw.getBuffer().length() + " chars, binary: " + bytes.size() + " bytes");
+		assertTrue(bytes.size() * 3 < sw.getBuffer().length());
+
+		StringWriter replayed = new StringWriter();
+		N3KR2RMLRDFWriter replayWriter = new N3KR2RMLRDFWriter(uriFormatter, new PrintWriter(replayed));
+		assertEquals(1000, new BinaryKR2RMLRDFReader(new ByteArrayInputStream(bytes.toByteArray())).read(replayWriter));
+		replayWriter.flush();
+		assertEquals(getHashSet(sw.toString().split(System.getProperty("line.separator"))),
+				getHashSet(replayed.toString().split(System.getProperty("line.separator"))));
+		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+	}
+
+	@Test
+	public void testBinaryDeduplicationKeepsRecordTypes() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryKR2RMLRDFWriter binaryWriter = new BinaryKR2RMLRDFWriter(bytes, true);
+		String subject = "<http://example.org/person/1>";
+		String predicate = "<http://xmlns.com/foaf/0.1/homepage>";
+		String value = "<http://example.org/home/1>";
+		binaryWriter.outputTripleWithURIObject(subject, predicate, value);
+		binaryWriter.outputTripleWithURIObject(subject, predicate, value);
+		binaryWriter.outputTripleWithLiteralObject(subject, predicate, value, null);
+		binaryWriter.outputTripleWithLiteralObject(subject, predicate, value, null);
+		binaryWriter.outputQuadWithLiteralObject(subject, predicate, value, null, "");
+		binaryWriter.finishRow();
+		binaryWriter.flush();
+
+		CountingRDFWriter counter = new CountingRDFWriter();
+		BinaryKR2RMLRDFReader reader = new BinaryKR2RMLRDFReader(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(1, reader.read(counter));
+		reader.close();
+		assertEquals(1, counter.uriObjects);
+		assertEquals(1, counter.literalObjects);
+		assertEquals(1, counter.quads);
+	}
+
+	@Test(expected = KarmaException.class)
+	public void testBinaryNeedsOutputStream() throws Exception {
+		File jsonFile = new File(getTestResource("people.json").toURI());
+		File modelFile = new File(getTestResource("people-model.ttl").toURI());
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		FileRdfGenerator rdfGen = new FileRdfGenerator();
+		rdfGen.setOutputFormat(RDFOutputFormat.BINARY);
+		rdfGen.generateRdf("json", modelIdentifier, new PrintWriter(new StringWriter()), jsonFile, "utf-8", 0);
+	}
+
+	private static class CountingRDFWriter implements KR2RMLRDFWriter {
+		private int uriObjects = 0;
+		private int literalObjects = 0;
+		private int quads = 0;
+
+		@Override
+		public void outputTripleWithURIObject(String subjUri, String predicateUri, String objectUri) {
+			uriObjects++;
+		}
+
+		@Override
+		public void outputTripleWithLiteralObject(String subjUri, String predicateUri, String value,
+				String literalType) {
+			literalObjects++;
+		}
+
+		@Override
+		public void outputQuadWithLiteralObject(String subjUri, String predicateUri, String value,
+				String literalType, String graph) {
+			quads++;
+		}
+
+		@Override
+		public void finishRow() {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * @param maxDictionarySize 0 to write N3 directly
+	 * @return the triples of every row, in the order the rows were written
+	 */
+	private List<HashSet<String>> generate(int maxDictionarySize, String inputType,
+			File inputFile, File modelFile) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		FileRdfGenerator rdfGen = new FileRdfGenerator();
+		if (maxDictionarySize == 0) {
+			rdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		} else {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			BinaryKR2RMLRDFWriter binaryWriter = new BinaryKR2RMLRDFWriter(bytes, false, maxDictionarySize);
+			rdfGen.setRDFWriter(binaryWriter);
+			rdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+			binaryWriter.flush();
+
+			Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+			URIFormatter uriFormatter = new URIFormatter(workspace.getOntologyManager(), new ErrorReport());
+			BinaryKR2RMLRDFReader reader = new BinaryKR2RMLRDFReader(new ByteArrayInputStream(bytes.toByteArray()));
+			reader.read(new N3KR2RMLRDFWriter(uriFormatter, pw));
+			reader.close();
+			WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+		}
+		pw.flush();
+
+		String lineSeparator = System.getProperty("line.separator");
+		List<HashSet<String>> rows = new ArrayList<HashSet<String>>();
+		for (String row : sw.toString().split(lineSeparator + lineSeparator)) {
+			rows.add(getHashSet(row.split(lineSeparator)));
+		}
+		return rows;
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.rep.CellValue;
+import edu.isi.karma.rep.HNode;
+import edu.isi.karma.rep.HNodePath;
+import edu.isi.karma.rep.Node;
+import edu.isi.karma.rep.Node.NodeStatus;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Table;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+/**
+ * Checks that worksheets stored by column give the same RDF as worksheets with
+ * a Node object per cell, and that their rows and nodes behave like regular
+ * ones.
+ */
+public class TestColumnarFileRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestColumnarFileRdfGenerator.class);
+
+	@Test
+	public void testColumnarCSV() {
+		try {
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				logger.info("Load file: " + modelFile.getName());
+				File csvFile = new File(csvURL.toURI());
+				List<HashSet<String>> expected = generate(false, "csv", csvFile, modelFile);
+				List<HashSet<String>> columnar = generate(true, "csv", csvFile, modelFile);
+				assertEquals(modelFile.getName(), expected, columnar);
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testColumnarJSON() {
+		try {
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			List<HashSet<String>> expected = generate(false, "json", jsonFile, modelFile);
+			List<HashSet<String>> columnar = generate(true, "json", jsonFile, modelFile);
+			assertNotEquals(0, columnar.size());
+			assertEquals(expected, columnar);
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testColumnarWorksheet() {
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		RepFactory factory = workspace.getFactory();
+		factory.setColumnarStorage(true);
+		Worksheet ws = factory.createWorksheet("columnar", workspace, "utf-8");
+		HNode name = ws.getHeaders().addHNode("name", ws, factory);
+		HNode city = ws.getHeaders().addHNode("city", ws, factory);
+		Table dataTable = ws.getDataTable();
+		for (int i = 0; i < 100; i++) {
+			Row row = dataTable.addRow(factory);
+			row.setValue(name.getId(), "name" + i, factory);
+			if (i % 2 == 0) {
+				row.setValue(city.getId(), "city" + i, NodeStatus.edited, factory);
+			}
+		}
+
+		// A column added after the rows gets a node in every row
+		HNode country = ws.getHeaders().addHNode("country", ws, factory);
+		Row row = dataTable.getRows(42, 1).get(0);
+		assertNotNull(row.getNode(country.getId()));
+		assertTrue(row.getNode(country.getId()).getValue().isEmptyValue());
+		row.setValue(country.getId(), "usa", factory);
+
+		// Ids resolve to the same rows and nodes
+		assertEquals(row, factory.getRow(row.getId()));
+		for (Node n : row.getNodes()) {
+			assertEquals(n, factory.getNode(n.getId()));
+			assertEquals(row, n.getBelongsToRow());
+		}
+		assertEquals("name42", factory.getNode(row.getNode(name.getId()).getId()).getValue().asString());
+		assertEquals("city42", row.getNode(city.getId()).getValue().asString());
+		assertEquals(NodeStatus.edited, row.getNode(city.getId()).getStatus());
+		assertEquals("usa", factory.getNode(row.getNode(country.getId()).getId()).getValue().asString());
+		assertTrue(dataTable.getRows(43, 1).get(0).getNode(city.getId()).getValue().isEmptyValue());
+		assertNull(factory.getNode(row.getId()));
+		assertNull(factory.getRow(row.getNode(name.getId()).getId()));
+
+		// All the ids are different
+		HashSet<String> ids = new HashSet<String>();
+		for (Row r : dataTable.getRows(0, dataTable.getNumRows())) {
+			assertTrue(ids.add(r.getId()));
+			for (Node n : r.getNodes()) {
+				assertTrue(ids.add(n.getId()));
+			}
+		}
+		assertEquals(100 * 4, ids.size());
+
+		List<Node> nodes = new ArrayList<Node>();
+		dataTable.collectNodes(new HNodePath(name), nodes);
+		assertEquals(100, nodes.size());
+		assertEquals("name99", nodes.get(99).getValue().asString());
+
+		// Other kinds of values keep their class
+		CellValue typed = new TypedCellValue("42");
+		row.setValue(country.getId(), typed, NodeStatus.edited, factory);
+		assertTrue(row.getNode(country.getId()).getValue() instanceof TypedCellValue);
+		assertTrue(row.getNode(country.getId()).getOriginalValue().isEmptyValue());
+		row.setValue(country.getId(), "usa", factory);
+
+		// Values move to a nested table like with regular rows
+		name.addNestedTable("nested", ws, factory);
+		Table nestedTable = row.getNode(name.getId()).getNestedTable();
+		assertNotNull(nestedTable);
+		assertEquals(row.getNode(name.getId()), nestedTable.getNestedTableInNode());
+		assertEquals(1, nestedTable.getNumRows());
+		assertEquals("name42", nestedTable.getRows(0, 1).get(0).getNodes().iterator().next().getValue().asString());
+
+		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+	}
+
+	private static class TypedCellValue extends CellValue {
+		private final String value;
+
+		private TypedCellValue(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String asString() {
+			return value;
+		}
+	}
+
+	/**
+	 * @return the triples of every row, in the order the rows were written
+	 */
+	private List<HashSet<String>> generate(boolean columnarStorage,
+			String inputType, File inputFile, File modelFile) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		FileRdfGenerator rdfGen = new FileRdfGenerator();
+		rdfGen.setColumnarStorage(columnarStorage);
+		rdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		pw.flush();
+
+		String lineSeparator = System.getProperty("line.separator");
+		List<HashSet<String>> rows = new ArrayList<HashSet<String>>();
+		for (String row : sw.toString().split(lineSeparator + lineSeparator)) {
+			rows.add(getHashSet(row.split(lineSeparator)));
+		}
+		return rows;
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
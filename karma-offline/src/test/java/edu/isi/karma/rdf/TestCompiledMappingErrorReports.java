@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import edu.isi.karma.imp.csv.CSVFileImport;
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.kr2rml.mapping.WorksheetR2RMLJenaModelParser;
+import edu.isi.karma.kr2rml.planning.CompiledKR2RMLMapping;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+/**
+ * Checks that the generations sharing the worker plans of a compiled mapping
+ * each report their own errors. The ids of the two files use a different
+ * unknown prefix.
+ */
+public class TestCompiledMappingErrorReports extends TestRdfGenerator {
+
+	@Test
+	public void testSeparateErrorReports() throws Exception {
+		File modelFile = new File(getClass().getClassLoader().getResource("prefixed-ids-model.ttl").toURI());
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		CompiledKR2RMLMapping compiledMapping = new CompiledKR2RMLMapping(
+				new WorksheetR2RMLJenaModelParser(modelIdentifier).parse());
+
+		String first = generate(compiledMapping, "prefixed-ids-first.csv", 0);
+		String second = generate(compiledMapping, "prefixed-ids-second.csv", 2);
+		assertEquals(1, compiledMapping.getNumWorkerPlanGenerations());
+
+		assertTrue(first, first.contains("No namespace found for the prefix: first"));
+		assertFalse(first, first.contains("No namespace found for the prefix: second"));
+		assertTrue(second, second.contains("No namespace found for the prefix: second"));
+		assertFalse(second, second.contains("No namespace found for the prefix: first"));
+	}
+
+	/**
+	 * @return the error report of the generation, as JSON
+	 */
+	private String generate(CompiledKR2RMLMapping compiledMapping, String csvName,
+			int executionParallelism) throws Exception {
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		try {
+			File csvFile = new File(getClass().getClassLoader().getResource(csvName).toURI());
+			Worksheet worksheet = new CSVFileImport(1, 2, ',', '\"', "utf-8", -1, csvFile, workspace)
+					.generateWorksheet();
+			ErrorReport errorReport = new ErrorReport();
+			KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
+					workspace.getFactory(), workspace.getOntologyManager(),
+					new PrintWriter(new StringWriter()), compiledMapping, errorReport, false);
+			rdfGen.setExecutionParallelism(executionParallelism);
+			rdfGen.generateRDF(true);
+			return errorReport.toJSONString();
+		} finally {
+			WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+		}
+	}
+}
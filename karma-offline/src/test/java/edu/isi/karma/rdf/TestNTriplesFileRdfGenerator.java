@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.ErrorReport;
+import edu.isi.karma.kr2rml.NTriplesKR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.RDFOutputFormat;
+import edu.isi.karma.kr2rml.URIFormatter;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+/**
+ * Checks that the N-Triples writer gives the same triples, row by row, as the
+ * N3 writer. The two writers escape the literals differently, so the lines are
+ * compared unescaped.
+ */
+public class TestNTriplesFileRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestNTriplesFileRdfGenerator.class);
+
+	@Test
+	public void testNTriplesCSV() {
+		try {
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				logger.info("Load file: " + modelFile.getName());
+				File csvFile = new File(csvURL.toURI());
+				List<HashSet<String>> expected = generate(RDFOutputFormat.N3, false, "csv", csvFile, modelFile);
+				List<HashSet<String>> nTriples = generate(RDFOutputFormat.NTRIPLES, true, "csv", csvFile, modelFile);
+				assertEquals(modelFile.getName(), expected, nTriples);
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNTriplesJSON() {
+		try {
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			List<HashSet<String>> expected = generate(RDFOutputFormat.N3, false, "json", jsonFile, modelFile);
+			List<HashSet<String>> nTriples = generate(RDFOutputFormat.NTRIPLES, true, "json", jsonFile, modelFile);
+			assertNotEquals(0, nTriples.size());
+			assertEquals(expected, nTriples);
+
+			// Without deduplication the rows may repeat triples but hold the same ones
+			List<HashSet<String>> duplicated = generate(RDFOutputFormat.NTRIPLES, false, "json", jsonFile, modelFile);
+			assertEquals(expected, duplicated);
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNTriplesEscaping() {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
+		URIFormatter uriFormatter = new URIFormatter(workspace.getOntologyManager(), new ErrorReport());
+		NTriplesKR2RMLRDFWriter writer = new NTriplesKR2RMLRDFWriter(uriFormatter, pw, true);
+		writer.outputTripleWithLiteralObject("<s>", "<p>", "a \"quoted\"\tvalue\\with\nlines\u0001 and caf\u00e9", null);
+		writer.outputTripleWithLiteralObject("<s>", "<p>", "a \"quoted\"\tvalue\\with\nlines\u0001 and caf\u00e9", null);
+		writer.finishRow();
+		writer.flush();
+		String[] lines = sw.toString().split(System.getProperty("line.separator"));
+		assertEquals(1, lines.length);
+		assertEquals("<s> <p> \"a \\\"quoted\\\"\\tvalue\\\\with\\nlines\\u0001 and caf\u00e9\" .", lines[0]);
+		assertTrue(StringEscapeUtils.unescapeJava(lines[0]).contains("\tvalue\\with\n"));
+		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+	}
+
+	/**
+	 * @return the unescaped triples of every row, in the order the rows were written
+	 */
+	private List<HashSet<String>> generate(RDFOutputFormat outputFormat, boolean deduplicateTriples,
+			String inputType, File inputFile, File modelFile) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		FileRdfGenerator rdfGen = new FileRdfGenerator();
+		rdfGen.setOutputFormat(outputFormat);
+		rdfGen.setDeduplicateTriples(deduplicateTriples);
+		rdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		pw.flush();
+
+		String lineSeparator = System.getProperty("line.separator");
+		List<HashSet<String>> rows = new ArrayList<HashSet<String>>();
+		for (String row : sw.toString().split(lineSeparator + lineSeparator)) {
+			HashSet<String> triples = new HashSet<String>();
+			for (String triple : row.split(lineSeparator)) {
+				triples.add(StringEscapeUtils.unescapeJava(triple));
+			}
+			rows.add(triples);
+		}
+		return rows;
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.util.AbstractJDBCUtil;
+import edu.isi.karma.util.DBType;
+
+/**
+ * Checks that reading a table over several connections gives the same triples
+ * as reading it over one, using an in-memory H2 database as the table.
+ */
+public class TestPartitionedDatabaseTableRDFGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestPartitionedDatabaseTableRDFGenerator.class);
+
+	private static final String DB_NAME = "KARMA";
+	private static final String TABLE_NAME = "WEBCONALTNAMES";
+	private static Connection connection;
+
+	@BeforeClass
+	public static void setUpDatabase() throws Exception {
+		File csvFile = new File(TestPartitionedDatabaseTableRDFGenerator.class.getClassLoader()
+				.getResource("csv/cbev2.WebConAltNames.csv").toURI());
+		connection = new H2Util().getConnection(null, 0, null, null, DB_NAME);
+		Statement s = connection.createStatement();
+		s.execute("CREATE TABLE " + TABLE_NAME + "(\"ConstituentID\" INT, \"FirstName\" VARCHAR(255), "
+				+ "\"LastName\" VARCHAR(255), \"NameType\" VARCHAR(255), \"NameTitle\" VARCHAR(255), "
+				+ "\"Suffix\" VARCHAR(255)) AS SELECT * FROM CSVREAD('" + csvFile.getAbsolutePath()
+				+ "', NULL, 'charset=UTF-8')");
+		s.close();
+	}
+
+	@AfterClass
+	public static void tearDownDatabase() throws SQLException {
+		connection.close();
+	}
+
+	@Test
+	public void testRangePartitions() {
+		try {
+			String expected = generate(0, null, 2);
+			String partitioned = generate(3, DatabaseTableRDFGenerator.PartitionMethod.RANGE, 2);
+			HashSet<String> triples = getTriples(partitioned);
+			assertNotEquals(0, triples.size());
+			assertEquals(getTriples(expected), triples);
+			// The partitions and their chunks are written in the same order every time
+			assertEquals(getRows(partitioned), getRows(generate(3, DatabaseTableRDFGenerator.PartitionMethod.RANGE, 2)));
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testModuloPartitions() {
+		try {
+			String expected = generate(0, null, 10000);
+			String partitioned = generate(4, DatabaseTableRDFGenerator.PartitionMethod.MODULO, 1);
+			assertEquals(getTriples(expected), getTriples(partitioned));
+			assertEquals(getRows(partitioned), getRows(generate(4, DatabaseTableRDFGenerator.PartitionMethod.MODULO, 1)));
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testLimitedRows() throws Exception {
+		ArrayList<ArrayList<String>> data = new H2Util().getDataForLimitedRows(DBType.MySQL, null, 0,
+				null, null, TABLE_NAME, DB_NAME, 5);
+		// The column names, then the rows
+		assertEquals(6, data.size());
+		assertEquals("ConstituentID", data.get(0).get(0));
+	}
+
+	private String generate(int numPartitions, DatabaseTableRDFGenerator.PartitionMethod partitionMethod,
+			int rowsPerChunk) throws Exception {
+		File modelFile = new File(getClass().getClassLoader()
+				.getResource("model/cbev2.WebConAltNames-model.ttl").toURI());
+		R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(TABLE_NAME, modelFile.toURI().toURL());
+		DatabaseTableRDFGenerator rdfGen = new DatabaseTableRDFGenerator(DBType.MySQL, null, 0,
+				null, null, DB_NAME, TABLE_NAME, "UTF-8") {
+			@Override
+			protected AbstractJDBCUtil getJDBCUtil() {
+				return new H2Util();
+			}
+		};
+		if (numPartitions > 0) {
+			rdfGen.setPartitioning("ConstituentID", numPartitions, partitionMethod);
+		}
+		rdfGen.setRowsPerChunk(rowsPerChunk);
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		rdfGen.generateRDF(pw, id);
+		pw.flush();
+		return sw.toString();
+	}
+
+	private HashSet<String> getTriples(String rdf) {
+		return getHashSet(rdf.split(System.getProperty("line.separator")));
+	}
+
+	// The triples of every row, in the order of the rows
+	private List<HashSet<String>> getRows(String rdf) {
+		List<HashSet<String>> rows = new ArrayList<HashSet<String>>();
+		for (String row : rdf.split(System.getProperty("line.separator") + "\\s*" + System.getProperty("line.separator"))) {
+			HashSet<String> triples = getTriples(row);
+			if (!triples.isEmpty()) {
+				rows.add(triples);
+			}
+		}
+		return rows;
+	}
+
+	private static class H2Util extends AbstractJDBCUtil {
+
+		@Override
+		protected String getDriver() {
+			return "org.h2.Driver";
+		}
+
+		@Override
+		protected String getConnectStringTemplate() {
+			return "jdbc:h2:mem:dbname;DB_CLOSE_DELAY=-1";
+		}
+
+		@Override
+		public String escapeTablename(String name) {
+			return "\"" + name + "\"";
+		}
+
+		@Override
+		public String prepareName(String name) {
+			return escapeTablename(name);
+		}
+
+		@Override
+		public ArrayList<ArrayList<String>> getDataForLimitedRows(DBType dbType, String hostname,
+				int portnumber, String username, String password, String tableName,
+				String dBorSIDName, int rowCount) throws SQLException, ClassNotFoundException {
+			Connection conn = getConnection(hostname, portnumber, username, password, dBorSIDName);
+			try {
+				Statement s = conn.createStatement();
+				ResultSet r = s.executeQuery("SELECT * FROM " + escapeTablename(tableName) + " LIMIT " + rowCount);
+				ArrayList<ArrayList<String>> vals = parseResultSetIntoArrayListOfRows(r);
+				r.close();
+				s.close();
+				return vals;
+			} finally {
+				conn.close();
+			}
+		}
+
+		@Override
+		public ArrayList<String> getListOfTables(Connection conn) throws SQLException {
+			ArrayList<String> tableNames = new ArrayList<String>();
+			DatabaseMetaData dmd = conn.getMetaData();
+			ResultSet rs = dmd.getTables(null, null, null, new String[] {"TABLE"});
+			while (rs.next())
+				tableNames.add(rs.getString(3));
+			return tableNames;
+		}
+
+		@Override
+		protected String getConnectString(String hostname, int portnumber, String username,
+				String password, String dBorSIDName) {
+			return getConnectStringTemplate().replaceAll("dbname", dBorSIDName);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+
+/**
+ * Checks that generating the RDF a few records at a time gives the same
+ * triples as loading the whole file into one worksheet.
+ */
+public class TestStreamingFileRdfGenerator extends TestRdfGenerator {
+	private static Logger logger = LoggerFactory.getLogger(TestStreamingFileRdfGenerator.class);
+
+	@Test
+	public void testStreamingCSV() {
+		try {
+			File fileList[] = (new File(getTestResource("model").toURI()).listFiles());
+			for (int i = 0; i < fileList.length; i++) {
+				File modelFile = fileList[i];
+				String name = modelFile.getName().replace("-model.ttl", "");
+				URL csvURL = getTestResource("csv/" + name + ".csv");
+				if (csvURL == null) {
+					continue;
+				}
+				logger.info("Load file: " + modelFile.getName());
+				File csvFile = new File(csvURL.toURI());
+				HashSet<String> expected = generate(new FileRdfGenerator(), null, "csv", csvFile, modelFile);
+				HashSet<String> streamed = generate(null, new StreamingFileRdfGenerator(3), "csv", csvFile, modelFile);
+				assertEquals(modelFile.getName(), expected, streamed);
+			}
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	@Test
+	public void testStreamingJSON() {
+		try {
+			File jsonFile = new File(getTestResource("people.json").toURI());
+			File modelFile = new File(getTestResource("people-model.ttl").toURI());
+			HashSet<String> expected = generate(new FileRdfGenerator(), null, "json", jsonFile, modelFile);
+			HashSet<String> streamed = generate(null, new StreamingFileRdfGenerator(2), "json", jsonFile, modelFile);
+			assertNotEquals(0, streamed.size());
+			assertEquals(expected, streamed);
+		} catch (Exception e) {
+			logger.error("Exception", e);
+			fail("Exception: " + e.getMessage());
+		}
+	}
+
+	private HashSet<String> generate(FileRdfGenerator fileRdfGen,
+			StreamingFileRdfGenerator streamingRdfGen, String inputType,
+			File inputFile, File modelFile) throws Exception {
+		R2RMLMappingIdentifier modelIdentifier = new R2RMLMappingIdentifier(
+				modelFile.getName(), modelFile.toURI().toURL());
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		if (fileRdfGen != null) {
+			fileRdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		} else {
+			streamingRdfGen.generateRdf(inputType, modelIdentifier, pw, inputFile, "utf-8", 0);
+		}
+		pw.flush();
+		return getHashSet(sw.toString().split(System.getProperty("line.separator")));
+	}
+
+	private URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
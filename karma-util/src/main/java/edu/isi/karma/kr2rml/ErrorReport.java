@@ -43,17 +43,22 @@ public class ErrorReport {
 		this.reports = new HashSet<ReportMessage>();
 	}
 	
-	public void addReportMessage(ReportMessage errMsg) {
+	public synchronized void addReportMessage(ReportMessage errMsg) {
 		reports.add(errMsg);
 	}
 	
-	public void combine(ErrorReport other)
+	public synchronized void combine(ErrorReport other)
 	{
-		for(ReportMessage msg : other.reports)
+		for(ReportMessage msg : other.getReports())
 		{
 			reports.add(msg);
 		}
 	}
+
+	private synchronized Set<ReportMessage> getReports()
+	{
+		return new HashSet<ReportMessage>(reports);
+	}
 	public static ErrorReport merge(ErrorReport first, ErrorReport second)
 	{
 		ErrorReport newReport = new ErrorReport();
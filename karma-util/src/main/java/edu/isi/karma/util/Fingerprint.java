@@ -0,0 +1,71 @@
+package edu.isi.karma.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 64-bit FNV-1a fingerprints of character sequences. Two different strings
+ * get the same fingerprint with a probability of about 2^-64, which is good
+ * enough to detect duplicates without keeping the strings around.
+ */
+public class Fingerprint {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private Fingerprint() {
+	}
+
+	public static long of(CharSequence value) {
+		long hash = OFFSET_BASIS;
+		for (int i = 0; i < value.length(); i++) {
+			hash = update(hash, value.charAt(i));
+		}
+		return hash;
+	}
+
+	public static long of(char[] value, int start, int end) {
+		long hash = OFFSET_BASIS;
+		for (int i = start; i < end; i++) {
+			hash = update(hash, value[i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the fingerprint of the bytes left in the stream, which is read
+	 *         to its end but not closed
+	 */
+	public static long of(InputStream in) throws IOException {
+		long hash = OFFSET_BASIS;
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			for (int i = 0; i < n; i++) {
+				hash ^= (buffer[i] & 0xff);
+				hash *= PRIME;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Continues the fingerprint of a sequence with another one, so that
+	 * fingerprints of tuples can be built without concatenating them
+	 */
+	public static long combine(long hash, CharSequence value) {
+		hash = update(hash, (char) 0);
+		for (int i = 0; i < value.length(); i++) {
+			hash = update(hash, value.charAt(i));
+		}
+		return hash;
+	}
+
+	private static long update(long hash, char c) {
+		hash ^= (c & 0xff);
+		hash *= PRIME;
+		hash ^= (c >>> 8);
+		hash *= PRIME;
+		return hash;
+	}
+}
@@ -0,0 +1,115 @@
+package edu.isi.karma.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of longs with open addressing, for keeping large numbers of
+ * fingerprints without boxing them.
+ */
+public class LongHashSet {
+
+	private static final long EMPTY = 0L;
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int MAX_REUSED_CAPACITY = 1024;
+
+	private long[] table;
+	private int size;
+	private boolean containsEmpty;
+
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		table = new long[capacity];
+	}
+
+	/**
+	 * @return true if the value was not in the set yet
+	 */
+	public boolean add(long value) {
+		if (value == EMPTY) {
+			if (containsEmpty) {
+				return false;
+			}
+			containsEmpty = true;
+			size++;
+			return true;
+		}
+		int mask = table.length - 1;
+		int i = index(value, mask);
+		while (table[i] != EMPTY) {
+			if (table[i] == value) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		table[i] = value;
+		size++;
+		if (size * 2 > table.length) {
+			rehash(table.length << 1);
+		}
+		return true;
+	}
+
+	public boolean contains(long value) {
+		if (value == EMPTY) {
+			return containsEmpty;
+		}
+		int mask = table.length - 1;
+		int i = index(value, mask);
+		while (table[i] != EMPTY) {
+			if (table[i] == value) {
+				return true;
+			}
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Empties the set. Small tables are kept for reuse, large ones are
+	 * dropped so that one big set does not make every following clear slow.
+	 */
+	public void clear() {
+		if (table.length > MAX_REUSED_CAPACITY) {
+			table = new long[DEFAULT_CAPACITY];
+		} else {
+			Arrays.fill(table, EMPTY);
+		}
+		containsEmpty = false;
+		size = 0;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldTable = table;
+		table = new long[capacity];
+		int mask = capacity - 1;
+		for (long value : oldTable) {
+			if (value != EMPTY) {
+				int i = index(value, mask);
+				while (table[i] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				table[i] = value;
+			}
+		}
+	}
+
+	private static int index(long value, int mask) {
+		long h = value * 0x9e3779b97f4a7c15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}